@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package de.uniulm.omi.cloudiator.lance.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.uniulm.omi.cloudiator.lance.application.DeploymentContext;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponent;
+import de.uniulm.omi.cloudiator.lance.lca.DeploymentException;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ContainerType;
+import de.uniulm.omi.cloudiator.lance.util.application.AppArchitecture;
+import de.uniulm.omi.cloudiator.lance.util.application.ComponentInfo;
+import de.uniulm.omi.cloudiator.lance.util.application.DependencyGraph;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * deploys all components of an application along their start-up
+ * dependencies (see {@link DependencyGraph}). components whose required
+ * sinks are ready are deployed in parallel; a component is released as
+ * soon as all components it requires have reached READY. hence, the
+ * deployment takes about as long as the longest dependency chain.
+ */
+public final class DeploymentPlanner {
+
+  private final static Logger LOGGER = LoggerFactory.getLogger(DeploymentPlanner.class);
+
+  /** deploys single components; called from several threads at once. */
+  public interface ComponentDeployer {
+
+    ComponentInstanceId deploy(ComponentInfo component) throws DeploymentException;
+
+    /** blocks until the instance has reached READY */
+    void awaitReady(ComponentInfo component, ComponentInstanceId instance)
+        throws DeploymentException;
+  }
+
+  private final DependencyGraph graph;
+  private final ComponentDeployer deployer;
+  private final int parallelism;
+
+  /**
+   * @param parallelism the maximum number of components deployed at the same time
+   * @throws IllegalArgumentException if the required ports of the components form a cycle
+   */
+  public DeploymentPlanner(AppArchitecture arch, ComponentDeployer deployerParam,
+      int parallelismParam) {
+    checkNotNull(arch, "architecture is null");
+    checkNotNull(deployerParam, "deployer is null");
+    checkArgument(parallelismParam > 0, "parallelism has to be positive");
+    graph = DependencyGraph.of(arch);
+    deployer = deployerParam;
+    parallelism = parallelismParam;
+  }
+
+  public DeploymentPlanner(AppArchitecture arch, ComponentDeployer deployerParam) {
+    this(arch, deployerParam, Math.max(1, arch.getComponents().size()));
+  }
+
+  /**
+   * @return a deployer that deploys through the given client; the operating
+   * system is taken from the component info.
+   */
+  public static ComponentDeployer clientDeployer(final LifecycleClient client,
+      final DeploymentContext ctx, final Map<ComponentId, DeployableComponent> components,
+      final ContainerType containerType) {
+    return new ComponentDeployer() {
+
+      @Override
+      public ComponentInstanceId deploy(ComponentInfo component) throws DeploymentException {
+        DeployableComponent comp = components.get(component.getComponentId());
+        if (comp == null) {
+          throw new DeploymentException(
+              "no deployable component for " + component.getComponentName());
+        }
+        return client.deploy(ctx, comp, component.getOs(), containerType);
+      }
+
+      @Override
+      public void awaitReady(ComponentInfo component, ComponentInstanceId instance)
+          throws DeploymentException {
+        try {
+          client.waitForDeployment(instance, 500, 10000);
+        } catch (RuntimeException e) {
+          throw new DeploymentException(
+              "component " + component.getComponentName() + " did not become ready", e);
+        }
+      }
+    };
+  }
+
+  public DependencyGraph getGraph() {
+    return graph;
+  }
+
+  /**
+   * @throws DeploymentException if a component could not be deployed; components
+   * that depend on it are not deployed at all.
+   */
+  public DeploymentReport deploy() throws DeploymentException, InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+        new ThreadFactoryBuilder().setNameFormat("DeploymentPlanner-%d").build());
+    try {
+      return new Run(executor).execute();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private final class Run {
+
+    private final ExecutorService executor;
+    private final long start = System.nanoTime();
+    private final Map<ComponentId, AtomicInteger> open = new ConcurrentHashMap<>();
+    private final Map<ComponentId, ComponentInstanceId> instances = new ConcurrentHashMap<>();
+    private final Map<ComponentId, long[]> times = new ConcurrentHashMap<>();
+    private final AtomicInteger remaining;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();
+
+    Run(ExecutorService executorParam) {
+      executor = executorParam;
+      remaining = new AtomicInteger(graph.getComponents().size());
+      for (ComponentInfo info : graph.getComponents()) {
+        open.put(info.getComponentId(),
+            new AtomicInteger(graph.getRequirements(info.getComponentId()).size()));
+      }
+    }
+
+    DeploymentReport execute() throws DeploymentException, InterruptedException {
+      if (remaining.get() == 0) {
+        finished.complete(null);
+      }
+      for (ComponentInfo info : graph.getComponents()) {
+        if (open.get(info.getComponentId()).get() == 0) {
+          submit(info);
+        }
+      }
+      try {
+        finished.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof DeploymentException) {
+          throw (DeploymentException) cause;
+        }
+        throw new DeploymentException(cause);
+      }
+      return new DeploymentReport(graph, instances, times, System.nanoTime() - start,
+          maxRunning.get());
+    }
+
+    private void submit(ComponentInfo info) {
+      try {
+        executor.execute(() -> deployComponent(info));
+      } catch (RejectedExecutionException ree) {
+        finished.completeExceptionally(ree);
+      }
+    }
+
+    private void deployComponent(ComponentInfo info) {
+      if (finished.isDone()) {
+        return;
+      }
+      int now = running.incrementAndGet();
+      maxRunning.accumulateAndGet(now, Math::max);
+      long begin = System.nanoTime() - start;
+      try {
+        LOGGER.info("deploying component " + info.getComponentName() + " at depth "
+            + graph.getDepth(info.getComponentId()));
+        ComponentInstanceId instance = deployer.deploy(info);
+        instances.put(info.getComponentId(), instance);
+        deployer.awaitReady(info, instance);
+      } catch (DeploymentException | RuntimeException e) {
+        LOGGER.error("could not deploy component " + info.getComponentName(), e);
+        finished.completeExceptionally(e);
+        return;
+      } finally {
+        running.decrementAndGet();
+      }
+      times.put(info.getComponentId(), new long[]{begin, System.nanoTime() - start});
+      release(info);
+    }
+
+    /** starts all dependents whose requirements are now ready */
+    private void release(ComponentInfo info) {
+      for (ComponentId dependent : graph.getDependents(info.getComponentId())) {
+        if (open.get(dependent).decrementAndGet() == 0) {
+          submit(graph.getComponent(dependent));
+        }
+      }
+      if (remaining.decrementAndGet() == 0) {
+        finished.complete(null);
+      }
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package de.uniulm.omi.cloudiator.lance.client;
+
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.util.application.ComponentInfo;
+import de.uniulm.omi.cloudiator.lance.util.application.DependencyGraph;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the outcome of a {@link DeploymentPlanner} run. the critical path time is
+ * the time the deployment would have taken with unlimited parallelism given
+ * the measured time of every component; the parallelism is the average
+ * number of components that were deployed at the same time.
+ */
+public final class DeploymentReport {
+
+  private final Map<ComponentId, ComponentInstanceId> instances;
+  private final int criticalPathLength;
+  private final long wallNanos;
+  private final long busyNanos;
+  private final long criticalPathNanos;
+  private final int maxConcurrent;
+
+  DeploymentReport(DependencyGraph graph, Map<ComponentId, ComponentInstanceId> instancesParam,
+      Map<ComponentId, long[]> times, long wallNanosParam, int maxConcurrentParam) {
+    instances = Collections.unmodifiableMap(new HashMap<>(instancesParam));
+    criticalPathLength = graph.getCriticalPathLength();
+    wallNanos = wallNanosParam;
+    maxConcurrent = maxConcurrentParam;
+
+    long busy = 0;
+    long critical = 0;
+    // earliest possible end of every component; components are in dependency order //
+    Map<ComponentId, Long> ends = new HashMap<>();
+    for (ComponentInfo info : graph.getComponents()) {
+      long[] t = times.get(info.getComponentId());
+      long duration = t == null ? 0 : t[1] - t[0];
+      busy += duration;
+      long ready = 0;
+      for (ComponentId required : graph.getRequirements(info.getComponentId())) {
+        ready = Math.max(ready, ends.get(required).longValue());
+      }
+      ends.put(info.getComponentId(), Long.valueOf(ready + duration));
+      critical = Math.max(critical, ready + duration);
+    }
+    busyNanos = busy;
+    criticalPathNanos = critical;
+  }
+
+  public Map<ComponentId, ComponentInstanceId> getInstances() {
+    return instances;
+  }
+
+  /** @return the number of components on the longest dependency chain */
+  public int getCriticalPathLength() {
+    return criticalPathLength;
+  }
+
+  public long getWallTime(TimeUnit unit) {
+    return unit.convert(wallNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public long getCriticalPathTime(TimeUnit unit) {
+    return unit.convert(criticalPathNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** @return the summed up deployment time of all components divided by the wall time */
+  public double getParallelism() {
+    return wallNanos == 0 ? 0 : (double) busyNanos / wallNanos;
+  }
+
+  public int getMaxConcurrentDeployments() {
+    return maxConcurrent;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "DeploymentReport: %d components, critical path %d components / %d ms, wall time %d ms,"
+            + " parallelism %.2f (max %d)", instances.size(), criticalPathLength,
+        getCriticalPathTime(TimeUnit.MILLISECONDS), getWallTime(TimeUnit.MILLISECONDS),
+        getParallelism(), maxConcurrent);
+  }
+}
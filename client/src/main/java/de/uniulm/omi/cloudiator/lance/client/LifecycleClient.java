@@ -175,6 +175,18 @@ public final class LifecycleClient {
   }
 
   public void waitForDeployment(ComponentInstanceId cid) {
+    waitForDeployment(cid, 10000, 10000);
+  }
+
+  /**
+   * waits until the container has reached READY. the status is polled with
+   * an interval that doubles from the initial up to the maximum interval.
+   */
+  public void waitForDeployment(ComponentInstanceId cid, long initialPollMillis,
+      long maxPollMillis) {
+    checkArgument(initialPollMillis > 0 && maxPollMillis >= initialPollMillis,
+        "invalid poll intervals");
+    long poll = initialPollMillis;
     try {
       while (!Thread.currentThread().isInterrupted()) {
         final ContainerStatus componentContainerStatus =
@@ -187,7 +199,8 @@ public final class LifecycleClient {
               .format("Container reached illegal state %s while waiting for state %s",
                   componentContainerStatus, ContainerStatus.READY));
         }
-        Thread.sleep(10000);
+        Thread.sleep(poll);
+        poll = Math.min(2 * poll, maxPollMillis);
       }
     } catch (RemoteException e) {
       throw new RuntimeException(
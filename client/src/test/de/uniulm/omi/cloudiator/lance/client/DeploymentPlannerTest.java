@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2014-2018 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.client;
+
+import static org.junit.Assert.*;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.application.component.PortProperties;
+import de.uniulm.omi.cloudiator.lance.container.spec.os.OperatingSystem;
+import de.uniulm.omi.cloudiator.lance.lca.DeploymentException;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.util.application.AppArchitectureBuilder;
+import de.uniulm.omi.cloudiator.lance.util.application.ComponentInfo;
+import de.uniulm.omi.cloudiator.lance.util.application.InportInfo;
+import de.uniulm.omi.cloudiator.lance.util.application.OutportInfo;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class DeploymentPlannerTest {
+
+  private static final long DEPLOY_MILLIS = 100;
+
+  private final AppArchitectureBuilder builder =
+      new AppArchitectureBuilder("app", new ApplicationId(), new ApplicationInstanceId());
+
+  @Test
+  public void testIndependentComponentsAreDeployedInParallel() throws Exception {
+    // db <- app <- lb; db <- worker; cache and monitor are independent //
+    ComponentInfo db = component("db", 1, -1);
+    ComponentInfo app = component("app", 2, 1);
+    ComponentInfo lb = component("lb", -1, 2);
+    ComponentInfo worker = component("worker", -1, 1);
+    ComponentInfo cache = component("cache", 3, -1);
+    ComponentInfo monitor = component("monitor", -1, -1);
+    FakeDeployer deployer = new FakeDeployer(null);
+    DeploymentPlanner planner = new DeploymentPlanner(builder.build(), deployer);
+
+    assertEquals(3, planner.getGraph().getCriticalPathLength());
+    List<String> path = new ArrayList<>();
+    for (ComponentInfo info : planner.getGraph().getCriticalPath()) {
+      path.add(info.getComponentName());
+    }
+    assertEquals(Arrays.asList("db", "app", "lb"), path);
+
+    DeploymentReport report = planner.deploy();
+    assertEquals(6, report.getInstances().size());
+    assertEquals(3, report.getCriticalPathLength());
+    // dependents only start once their sinks are ready //
+    assertTrue(deployer.started(app) >= deployer.ready(db));
+    assertTrue(deployer.started(worker) >= deployer.ready(db));
+    assertTrue(deployer.started(lb) >= deployer.ready(app));
+    // independent components do not wait for each other //
+    assertTrue(deployer.started(cache) < deployer.ready(db));
+    assertTrue(deployer.started(monitor) < deployer.ready(db));
+    assertTrue(report.getMaxConcurrentDeployments() >= 3);
+    assertTrue(report.getParallelism() > 1.5);
+    assertTrue(report.toString(), report.getWallTime(TimeUnit.MILLISECONDS) < 5 * DEPLOY_MILLIS);
+  }
+
+  @Test
+  public void testOptionalAndSelfWiredPortsDoNotOrder() throws Exception {
+    // a cluster wired to itself and an optional out port //
+    component("cluster", 1, 1);
+    ComponentInfo client = component("client", -1, -1);
+    client.getOutportInfos().add(new OutportInfo("OPTIONAL", null, 1, 1, 0));
+    DeploymentPlanner planner = new DeploymentPlanner(builder.build(), new FakeDeployer(null));
+    assertEquals(1, planner.getGraph().getCriticalPathLength());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCyclesAreRejected() {
+    component("first", 1, 2);
+    component("second", 2, 1);
+    new DeploymentPlanner(builder.build(), new FakeDeployer(null));
+  }
+
+  @Test
+  public void testDependentsOfFailedComponentAreNotDeployed() throws Exception {
+    ComponentInfo db = component("db", 1, -1);
+    ComponentInfo app = component("app", -1, 1);
+    FakeDeployer deployer = new FakeDeployer(db);
+    try {
+      new DeploymentPlanner(builder.build(), deployer, 1).deploy();
+      fail("deployment succeeded although the database failed");
+    } catch (DeploymentException expected) {
+      // expected //
+    }
+    assertFalse(deployer.startTimes.containsKey(app.getComponentId()));
+  }
+
+  /**
+   * @param provided the number of the in port of the component; -1 for none
+   * @param required the number of the in port required by the out port; -1 for none
+   */
+  private ComponentInfo component(String name, int provided, int required) {
+    Set<InportInfo> in = new HashSet<>();
+    if (provided >= 0) {
+      in.add(new InportInfo(name + "_IN", PortProperties.PortType.INTERNAL_PORT, 8000, provided, 1));
+    }
+    Set<OutportInfo> out = new HashSet<>();
+    if (required >= 0) {
+      out.add(new OutportInfo(name + "_OUT", null, required, 1, 1));
+    }
+    ComponentInfo info = new ComponentInfo(name, new ComponentId(), new ComponentInstanceId(), in,
+        out, OperatingSystem.UBUNTU_14_04);
+    builder.addComponentInfo(info);
+    return info;
+  }
+
+  private static final class FakeDeployer implements DeploymentPlanner.ComponentDeployer {
+
+    private final ComponentInfo failing;
+    private final long origin = System.nanoTime();
+    final Map<ComponentId, Long> startTimes = new ConcurrentHashMap<>();
+    final Map<ComponentId, Long> readyTimes = new ConcurrentHashMap<>();
+
+    FakeDeployer(ComponentInfo failingParam) {
+      failing = failingParam;
+    }
+
+    @Override
+    public ComponentInstanceId deploy(ComponentInfo component) throws DeploymentException {
+      startTimes.put(component.getComponentId(), Long.valueOf(System.nanoTime() - origin));
+      if (component == failing) {
+        throw new DeploymentException("cannot deploy " + component.getComponentName());
+      }
+      return component.getComponentInstanceId();
+    }
+
+    @Override
+    public void awaitReady(ComponentInfo component, ComponentInstanceId instance) {
+      try {
+        Thread.sleep(DEPLOY_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      readyTimes.put(component.getComponentId(), Long.valueOf(System.nanoTime() - origin));
+    }
+
+    long started(ComponentInfo info) {
+      return startTimes.get(info.getComponentId()).longValue();
+    }
+
+    long ready(ComponentInfo info) {
+      return readyTimes.get(info.getComponentId()).longValue();
+    }
+  }
+}
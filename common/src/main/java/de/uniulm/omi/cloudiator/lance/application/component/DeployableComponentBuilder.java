@@ -72,6 +72,18 @@ public final class DeployableComponentBuilder {
         addProperty(portname, OutPort.class);
     }
     
+    public final void addOutport(String portname, PortUpdateHandler handler, int cardinality, int minSinks, int maxSinks, 
+                PortProperties.SelectionMode mode) {
+        if(minSinks < 0 || maxSinks < 1 || minSinks > maxSinks) {
+            throw new IllegalArgumentException("minSinks and maxSinks have non-fitting values: " + minSinks + ", " + maxSinks);
+        }
+        if(mode == null) {
+            throw new IllegalArgumentException("selection mode has to be set");
+        }
+        outports.add(new OutPort(portname, handler, cardinality, minSinks, maxSinks, mode));
+        addProperty(portname, OutPort.class);
+    }
+    
     public static DeployableComponentBuilder createBuilder(String name, ComponentId componentId) {
         return new DeployableComponentBuilder(name, componentId);
     }
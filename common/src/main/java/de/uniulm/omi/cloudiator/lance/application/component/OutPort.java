@@ -33,6 +33,7 @@ public final class OutPort implements Serializable {
     private final int cardinality;
     private final int min;
     private final int max;
+    private final PortProperties.SelectionMode selectionMode;
     
     /**
      * 
@@ -45,6 +46,11 @@ public final class OutPort implements Serializable {
      * @throws NullPointerException if name is null
      */
     OutPort(String nameParam, PortUpdateHandler handlerParam, int cardinalityParam, int minSinksParam, int maxSinksParam) {
+        this(nameParam, handlerParam, cardinalityParam, minSinksParam, maxSinksParam, PortProperties.SelectionMode.CONFIGURED);
+    }
+    
+    OutPort(String nameParam, PortUpdateHandler handlerParam, int cardinalityParam, int minSinksParam, int maxSinksParam, 
+                PortProperties.SelectionMode selectionModeParam) {
         if(nameParam == null) 
             throw new NullPointerException("name has to be set");
         name = nameParam;
@@ -52,6 +58,7 @@ public final class OutPort implements Serializable {
         min = minSinksParam;
         max = maxSinksParam;
         handler = handlerParam;
+        selectionMode = selectionModeParam;
     }
     
     public boolean canHandleInfiniteSinks() {
@@ -74,6 +81,11 @@ public final class OutPort implements Serializable {
     	return max; 
     }
     
+    public PortProperties.SelectionMode getSelectionMode() {
+        // ports serialised before the mode existed do not have one //
+        return selectionMode == null ? PortProperties.SelectionMode.CONFIGURED : selectionMode;
+    }
+    
     @Override
     public String toString() {
         return name + ": [" + min + "," + max + "]";
@@ -28,6 +28,15 @@ public final class PortProperties {
         ONE,
     }
     
+    /** how an out port with an upper bound selects its sinks */
+    public enum SelectionMode {
+        /** as configured for the host; all consumers in a cloud prefer the same sinks */
+        CONFIGURED,
+        /** sinks are ranked per consumer instance (rendezvous hashing), 
+         *  so that the consumers spread evenly over the sinks */
+        RENDEZVOUS,
+    }
+    
     public enum PortType {
         PUBLIC_PORT,
         INTERNAL_PORT,
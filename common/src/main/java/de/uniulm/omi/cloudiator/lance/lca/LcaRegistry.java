@@ -25,13 +25,18 @@ import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
 import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
 import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
 import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryWatch;
 
 /** interface to the global registry where 
  * properties are being stored; encapsulates 
  * the actual implementation */
 public interface LcaRegistry extends Serializable {
 
+    /** returned by {@link #getComponentVersion} when no version is available */
+    public static final long UNKNOWN_VERSION = -1L;
+
     /**
      * @param instId the uuid of the application instance
      * @param appId the uuid of the application 
@@ -44,9 +49,76 @@ public interface LcaRegistry extends Serializable {
     public void addComponent(ApplicationInstanceId instId, ComponentId cid, String name) throws RegistrationException;
     public void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) throws RegistrationException;
     void addComponentProperty(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, String property, Object value) throws RegistrationException;
+    /**
+     * adds all given properties to a component instance at once. implementations
+     * are expected to do this with a single (or pipelined) access to the registry.
+     * 
+     * @param instId the application instance the component instance belongs to
+     * @param cid the component the component instance belongs to
+     * @param cinstId the component instance to add the properties to
+     * @param properties the names and values of the properties to add
+     * @throws RegistrationException when a registration error occurs.
+     */
+    void addComponentProperties(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties) throws RegistrationException;
+    /**
+     * adds a component instance together with its initial properties. 
+     * implementations are expected to do this with a single (or pipelined) 
+     * access to the registry.
+     * 
+     * @param instId the application instance the component instance belongs to
+     * @param cid the component the component instance belongs to
+     * @param cinstId the component instance to add
+     * @param properties the names and values of the initial properties
+     * @throws RegistrationException when a registration error occurs.
+     */
+    void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties) throws RegistrationException;
+    
+    /**
+     * attaches a lease to the component instance or renews the existing one. 
+     * unless the lease is renewed within the given time, the instance is 
+     * removed from the registry together with all its properties. instances 
+     * that have never been leased do not expire.
+     * 
+     * @param instId the application instance the component instance belongs to
+     * @param cid the component the component instance belongs to
+     * @param cinstId the component instance to lease
+     * @param ttlMillis the time to live of the lease in milliseconds
+     * @return false if the component instance is not known (any more), e.g. 
+     *          because its lease has already expired
+     * @throws RegistrationException when a registration error occurs.
+     */
+    public boolean renewComponentInstanceLease(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+            long ttlMillis) throws RegistrationException;
     public Map<ComponentInstanceId, Map<String, String>> dumpComponent(ApplicationInstanceId instId, ComponentId compId) throws RegistrationException;
     public String getComponentProperty(ApplicationInstanceId appInstId,
             ComponentId compId, ComponentInstanceId myId, String name) throws RegistrationException;
     public boolean applicationInstanceExists(ApplicationInstanceId appInstId) throws RegistrationException;
     boolean applicationComponentExists(ApplicationInstanceId appInstId, ComponentId compId) throws RegistrationException;
+    
+    /**
+     * returns a version of the component that changes whenever instances or 
+     * properties of the component change. reading the version is expected to 
+     * be considerably cheaper than dumping the component.
+     * 
+     * @param appInstId the application instance the component belongs to
+     * @param compId the component to get the version for
+     * @return the current version or {@link #UNKNOWN_VERSION} if the component 
+     *          does not exist or does not provide versions
+     * @throws RegistrationException when a registration error occurs.
+     */
+    public long getComponentVersion(ApplicationInstanceId appInstId, ComponentId compId) throws RegistrationException;
+    
+    /**
+     * registers a listener that is notified whenever instances or properties 
+     * of the given component change. notifications are delivered on a 
+     * separate thread in the process that registered the listener.
+     * 
+     * @param appInstId the application instance the component belongs to
+     * @param compId the component to watch
+     * @param listener the listener to notify
+     * @return a handle that allows to cancel the watch
+     * @throws RegistrationException when the watch cannot be set up
+     */
+    public RegistryWatch watchComponent(ApplicationInstanceId appInstId, ComponentId compId, 
+            ComponentChangeListener listener) throws RegistrationException;
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+
+/** 
+ * base class for watches that block in the registry until a 
+ * component changes. each watch runs on its own daemon thread 
+ * so that no request is issued unless the component has changed 
+ * or the wait has timed out.
+ */
+public abstract class AbstractRegistryWatch implements RegistryWatch, Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LcaRegistry.class);
+    private static final long BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(3);
+    
+    protected final ApplicationInstanceId appInstId;
+    protected final ComponentId compId;
+    private final ComponentChangeListener listener;
+    private final long backoffMillis;
+    private volatile boolean cancelled = false;
+    private volatile Thread thread = null;
+    
+    protected AbstractRegistryWatch(ApplicationInstanceId appInstIdParam, ComponentId compIdParam, 
+                ComponentChangeListener listenerParam) {
+        this(appInstIdParam, compIdParam, listenerParam, BACKOFF_MILLIS);
+    }
+    
+    AbstractRegistryWatch(ApplicationInstanceId appInstIdParam, ComponentId compIdParam, 
+                ComponentChangeListener listenerParam, long backoffMillisParam) {
+        appInstId = appInstIdParam;
+        compId = compIdParam;
+        listener = listenerParam;
+        backoffMillis = backoffMillisParam;
+    }
+    
+    /**
+     * blocks until the component has changed or some timeout 
+     * has passed. 
+     * 
+     * @return true if the component (might) have changed. 
+     * @throws RegistrationException when the registry is not available
+     * @throws InterruptedException when the watch has been cancelled
+     */
+    protected abstract boolean awaitChange() throws RegistrationException, InterruptedException;
+    
+    public final RegistryWatch start() {
+        Thread t = new Thread(this, "RegistryWatch-" + compId);
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+        return this;
+    }
+    
+    @Override
+    public final void cancel() {
+        cancelled = true;
+        Thread t = thread;
+        if(t != null) {
+            t.interrupt();
+        }
+    }
+    
+    @Override
+    public final void run() {
+        while(!cancelled) {
+            try {
+                if(awaitChange() && !cancelled) {
+                    listener.componentChanged(appInstId, compId);
+                }
+            } catch(InterruptedException ie) {
+                LOGGER.debug("watch on " + appInstId + "/" + compId + " interrupted.", ie);
+            } catch(RegistrationException | RuntimeException ex) {
+                LOGGER.warn("watch on " + appInstId + "/" + compId + " failed; backing off.", ex);
+                backOff();
+            }
+        }
+        LOGGER.info("watch on " + appInstId + "/" + compId + " cancelled.");
+    }
+    
+    private void backOff() {
+        try { 
+            Thread.sleep(backoffMillis); 
+        } catch(InterruptedException ie) {
+            LOGGER.debug("back off interrupted.", ie);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * optional asynchronous variant of {@link LcaRegistry} for registries
+ * whose backend allows to have several requests in flight. callers
+ * should check for this interface and fall back to the blocking methods.
+ *
+ * the returned futures complete exceptionally with a
+ * {@link RegistrationException} when the registry cannot be accessed.
+ * they may be completed on an I/O thread of the registry client, so
+ * dependent stages must not block.
+ */
+public interface AsyncLcaRegistry extends LcaRegistry {
+
+    public CompletableFuture<Void> addComponentInstanceAsync(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId);
+    public CompletableFuture<Void> addComponentInstanceAsync(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties);
+    public CompletableFuture<Void> addComponentPropertyAsync(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, String property, Object value);
+    public CompletableFuture<Void> addComponentPropertiesAsync(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties);
+    public CompletableFuture<Map<ComponentInstanceId, Map<String, String>>> dumpComponentAsync(ApplicationInstanceId instId, ComponentId compId);
+    public CompletableFuture<String> getComponentPropertyAsync(ApplicationInstanceId appInstId, ComponentId compId, ComponentInstanceId myId, String name);
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * read-through cache for component dumps. a cached dump is only returned 
+ * after the version of the component has been found unchanged, so that 
+ * callers never see older data than without the cache. components that do 
+ * not provide a version are never cached. dumps returned by this class are 
+ * immutable. all other operations are passed on to the delegate; writes 
+ * drop the cached dump of the component they change. the asynchronous 
+ * operations are passed on if the delegate supports them and are carried 
+ * out right away otherwise.
+ */
+public final class CachingLcaRegistry implements AsyncLcaRegistry {
+
+    private static final long serialVersionUID = 4470329826711934517L;
+    
+    private final LcaRegistry delegate;
+    private transient ConcurrentMap<ComponentKey, CachedDump> cache;
+    private transient AtomicLong hits;
+    private transient AtomicLong misses;
+    private transient AtomicLong revalidations;
+    
+    public CachingLcaRegistry(LcaRegistry delegateParam) {
+        delegate = delegateParam;
+        initCache();
+    }
+    
+    private void initCache() {
+        cache = new ConcurrentHashMap<>();
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        revalidations = new AtomicLong();
+    }
+    
+    public static RegistryContainer decorate(final RegistryContainer container) {
+        final CachingLcaRegistry registry = new CachingLcaRegistry(container.getRegistry());
+        return new RegistryContainer() {
+            @Override
+            public LcaRegistry getRegistry() {
+                return registry;
+            }
+        };
+    }
+    
+    /** @return the number of dumps served from the cache */
+    public long getHits() {
+        return hits.get();
+    }
+    
+    /** @return the number of dumps that had to be retrieved from the delegate */
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    /** @return the number of version checks issued against the delegate */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+    
+    @Override
+    public Map<ComponentInstanceId, Map<String, String>> dumpComponent(ApplicationInstanceId instId, ComponentId compId) 
+                throws RegistrationException {
+        ComponentKey key = new ComponentKey(instId, compId);
+        // the version has to be read before the dump so that the 
+        // cached dump is at least as recent as its version //
+        revalidations.incrementAndGet();
+        long version = delegate.getComponentVersion(instId, compId);
+        if(version != UNKNOWN_VERSION) {
+            CachedDump cached = cache.get(key);
+            if(cached != null && cached.version == version) {
+                hits.incrementAndGet();
+                return cached.dump;
+            }
+        }
+        
+        misses.incrementAndGet();
+        CachedDump outdated = cache.get(key);
+        Map<ComponentInstanceId, Map<String, String>> dump = immutableCopy(delegate.dumpComponent(instId, compId), 
+                outdated == null ? Collections.<ComponentInstanceId, Map<String, String>>emptyMap() : outdated.dump);
+        if(version == UNKNOWN_VERSION) {
+            cache.remove(key);
+        } else {
+            cache.put(key, new CachedDump(version, dump));
+        }
+        return dump;
+    }
+    
+    @Override
+    public long getComponentVersion(ApplicationInstanceId appInstId, ComponentId compId) throws RegistrationException {
+        return delegate.getComponentVersion(appInstId, compId);
+    }
+
+    @Override
+    public boolean addApplicationInstance(ApplicationInstanceId instId, ApplicationId appId, String name) throws RegistrationException {
+        return delegate.addApplicationInstance(instId, appId, name);
+    }
+
+    @Override
+    public void addComponent(ApplicationInstanceId instId, ComponentId cid, String name) throws RegistrationException {
+        delegate.addComponent(instId, cid, name);
+    }
+
+    @Override
+    public void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) throws RegistrationException {
+        try {
+            delegate.addComponentInstance(instId, cid, cinstId);
+        } finally {
+            invalidate(instId, cid);
+        }
+    }
+
+    @Override
+    public void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+                Map<String, ?> properties) throws RegistrationException {
+        try {
+            delegate.addComponentInstance(instId, cid, cinstId, properties);
+        } finally {
+            invalidate(instId, cid);
+        }
+    }
+
+    @Override
+    public void addComponentProperty(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, String property, 
+                Object value) throws RegistrationException {
+        try {
+            delegate.addComponentProperty(instId, cid, cinstId, property, value);
+        } finally {
+            invalidate(instId, cid);
+        }
+    }
+
+    @Override
+    public void addComponentProperties(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+                Map<String, ?> properties) throws RegistrationException {
+        try {
+            delegate.addComponentProperties(instId, cid, cinstId, properties);
+        } finally {
+            invalidate(instId, cid);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> addComponentInstanceAsync(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) {
+        if(delegate instanceof AsyncLcaRegistry) 
+            return invalidateWhenDone(((AsyncLcaRegistry) delegate).addComponentInstanceAsync(instId, cid, cinstId), instId, cid);
+        return run(() -> addComponentInstance(instId, cid, cinstId));
+    }
+
+    @Override
+    public CompletableFuture<Void> addComponentInstanceAsync(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+                Map<String, ?> properties) {
+        if(delegate instanceof AsyncLcaRegistry) 
+            return invalidateWhenDone(((AsyncLcaRegistry) delegate).addComponentInstanceAsync(instId, cid, cinstId, properties), instId, cid);
+        return run(() -> addComponentInstance(instId, cid, cinstId, properties));
+    }
+
+    @Override
+    public CompletableFuture<Void> addComponentPropertyAsync(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+                String property, Object value) {
+        if(delegate instanceof AsyncLcaRegistry) 
+            return invalidateWhenDone(((AsyncLcaRegistry) delegate).addComponentPropertyAsync(instId, cid, cinstId, property, value), instId, cid);
+        return run(() -> addComponentProperty(instId, cid, cinstId, property, value));
+    }
+
+    @Override
+    public CompletableFuture<Void> addComponentPropertiesAsync(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+                Map<String, ?> properties) {
+        if(delegate instanceof AsyncLcaRegistry) 
+            return invalidateWhenDone(((AsyncLcaRegistry) delegate).addComponentPropertiesAsync(instId, cid, cinstId, properties), instId, cid);
+        return run(() -> addComponentProperties(instId, cid, cinstId, properties));
+    }
+
+    /** dumps are read through the cache and hence right away */
+    @Override
+    public CompletableFuture<Map<ComponentInstanceId, Map<String, String>>> dumpComponentAsync(ApplicationInstanceId instId, ComponentId compId) {
+        CompletableFuture<Map<ComponentInstanceId, Map<String, String>>> future = new CompletableFuture<>();
+        try {
+            future.complete(dumpComponent(instId, compId));
+        } catch(RegistrationException re) {
+            future.completeExceptionally(re);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<String> getComponentPropertyAsync(ApplicationInstanceId appInstId, ComponentId compId, ComponentInstanceId myId, 
+                String name) {
+        if(delegate instanceof AsyncLcaRegistry) 
+            return ((AsyncLcaRegistry) delegate).getComponentPropertyAsync(appInstId, compId, myId, name);
+        CompletableFuture<String> future = new CompletableFuture<>();
+        try {
+            future.complete(delegate.getComponentProperty(appInstId, compId, myId, name));
+        } catch(RegistrationException re) {
+            future.completeExceptionally(re);
+        }
+        return future;
+    }
+
+    @Override
+    public boolean renewComponentInstanceLease(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+                long ttlMillis) throws RegistrationException {
+        return delegate.renewComponentInstanceLease(instId, cid, cinstId, ttlMillis);
+    }
+
+    @Override
+    public String getComponentProperty(ApplicationInstanceId appInstId, ComponentId compId, ComponentInstanceId myId, String name) 
+                throws RegistrationException {
+        return delegate.getComponentProperty(appInstId, compId, myId, name);
+    }
+
+    @Override
+    public boolean applicationInstanceExists(ApplicationInstanceId appInstId) throws RegistrationException {
+        return delegate.applicationInstanceExists(appInstId);
+    }
+
+    @Override
+    public boolean applicationComponentExists(ApplicationInstanceId appInstId, ComponentId compId) throws RegistrationException {
+        return delegate.applicationComponentExists(appInstId, compId);
+    }
+
+    @Override
+    public RegistryWatch watchComponent(ApplicationInstanceId appInstId, ComponentId compId, ComponentChangeListener listener) 
+                throws RegistrationException {
+        return delegate.watchComponent(appInstId, compId, listener);
+    }
+    
+    private void readObject(java.io.ObjectInputStream stream) throws IOException, ClassNotFoundException {
+        stream.defaultReadObject();
+        initCache();
+    }
+    
+    /** the dump is kept without a version, so that unchanged instances keep their property maps */
+    private void invalidate(ApplicationInstanceId instId, ComponentId cid) {
+        cache.computeIfPresent(new ComponentKey(instId, cid), (key, cached) -> new CachedDump(UNKNOWN_VERSION, cached.dump));
+    }
+    
+    private CompletableFuture<Void> invalidateWhenDone(CompletableFuture<Void> write, ApplicationInstanceId instId, ComponentId cid) {
+        return write.whenComplete((ignored, t) -> invalidate(instId, cid));
+    }
+    
+    private static CompletableFuture<Void> run(Write write) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            write.run();
+            future.complete(null);
+        } catch(RegistrationException re) {
+            future.completeExceptionally(re);
+        }
+        return future;
+    }
+    
+    private interface Write {
+        void run() throws RegistrationException;
+    }
+    
+    /** 
+     * instances that have not changed since the previous dump keep their 
+     * property map, so that readers can detect unchanged instances by identity.
+     */
+    private static Map<ComponentInstanceId, Map<String, String>> immutableCopy(Map<ComponentInstanceId, Map<String, String>> dump, 
+                Map<ComponentInstanceId, Map<String, String>> previous) {
+        Map<ComponentInstanceId, Map<String, String>> copy = new HashMap<>();
+        for(Entry<ComponentInstanceId, Map<String, String>> entry : dump.entrySet()) {
+            Map<String, String> unchanged = previous.get(entry.getKey());
+            if(unchanged != null && unchanged.equals(entry.getValue())) {
+                copy.put(entry.getKey(), unchanged);
+            } else {
+                copy.put(entry.getKey(), Collections.unmodifiableMap(new HashMap<>(entry.getValue())));
+            }
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+    
+    private static final class CachedDump {
+        final long version;
+        final Map<ComponentInstanceId, Map<String, String>> dump;
+        
+        CachedDump(long versionParam, Map<ComponentInstanceId, Map<String, String>> dumpParam) {
+            version = versionParam;
+            dump = dumpParam;
+        }
+    }
+    
+    private static final class ComponentKey {
+        private final ApplicationInstanceId appInstId;
+        private final ComponentId compId;
+        
+        ComponentKey(ApplicationInstanceId appInstIdParam, ComponentId compIdParam) {
+            appInstId = appInstIdParam;
+            compId = compIdParam;
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * appInstId.hashCode() + compId.hashCode();
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof ComponentKey)) 
+                return false;
+            ComponentKey that = (ComponentKey) o;
+            return appInstId.equals(that.appInstId) && compId.equals(that.compId);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
 import de.uniulm.omi.cloudiator.lance.lca.registry.etcd.EtcdRegistryContainer;
+import de.uniulm.omi.cloudiator.lance.lca.registry.rmi.EmbeddedRegistryContainer;
 import de.uniulm.omi.cloudiator.lance.lca.registry.rmi.RmiRegistryContainer;
 
 public enum RegistryFactory {
@@ -36,6 +37,11 @@ public enum RegistryFactory {
         @Override RegistryContainer create() throws RegistrationException {
             return EtcdRegistryContainer.create();
         }
+    },
+    EMBEDDED_REGISTRY{
+        @Override RegistryContainer create() throws RegistrationException {
+            return EmbeddedRegistryContainer.create();
+        }
     };
     
     abstract RegistryContainer create() throws RegistrationException;
@@ -45,6 +51,9 @@ public enum RegistryFactory {
     public static final String LCA_REGISTRY_CONFIG_KEY = "lca.client.config.registry";
     public static final String LCA_REGISTRY_CONFIG_RMI_VALUE = "rmiregistry";
     public static final String LCA_REGISTRY_CONFIG_ETCD_VALUE = "etcdregistry";
+    public static final String LCA_REGISTRY_CONFIG_EMBEDDED_VALUE = "embeddedregistry";
+    /** set to true to cache component dumps on the client side */
+    public static final String LCA_REGISTRY_CONFIG_CACHE_KEY = "lca.client.config.registry.cache";
     
     private static RegistryContainer container = null;
     
@@ -66,12 +75,20 @@ public enum RegistryFactory {
         } else if (LCA_REGISTRY_CONFIG_RMI_VALUE.equals(value)) {
             LOGGER.debug("checking for rmi-based registry configuration.");
             retVal = RMI_REGISTRY.create();
+        } else if (LCA_REGISTRY_CONFIG_EMBEDDED_VALUE.equals(value)) {
+            LOGGER.debug("checking for embedded registry configuration.");
+            retVal = EMBEDDED_REGISTRY.create();
+        }
+        
+        if(retVal == null) {
+            LOGGER.warn("registry creation failed: falling back to RMI.");
+            retVal = RMI_REGISTRY.create();
         }
         
-        if(retVal != null) {
-            return retVal;
+        if(Boolean.getBoolean(LCA_REGISTRY_CONFIG_CACHE_KEY)) {
+            LOGGER.info("caching component dumps of the registry.");
+            return CachingLcaRegistry.decorate(retVal);
         }
-        LOGGER.warn("registry creation failed: falling back to RMI.");
-        return RMI_REGISTRY.create();
+        return retVal;
     }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.etcd;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import mousio.etcd4j.EtcdClient;
+import mousio.etcd4j.responses.EtcdException;
+import mousio.etcd4j.responses.EtcdKeysResponse;
+import mousio.etcd4j.responses.EtcdKeysResponse.EtcdNode;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.AbstractRegistryWatch;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+
+/** uses index-based recursive etcd watches on a component directory */
+final class EtcdComponentWatch extends AbstractRegistryWatch {
+
+    private static final long WAIT_TIMEOUT_SECONDS = 30;
+    private static final int KEY_NOT_FOUND = 100;
+    private static final int EVENT_INDEX_CLEARED = 401;
+    private static final long UNKNOWN_INDEX = -1;
+    
+    private final EtcdClient etcd;
+    private final String dirName;
+    private long waitIndex = UNKNOWN_INDEX;
+    
+    EtcdComponentWatch(EtcdClient etcdParam, String dirNameParam, ApplicationInstanceId appInstIdParam, 
+            ComponentId compIdParam, ComponentChangeListener listenerParam) {
+        super(appInstIdParam, compIdParam, listenerParam);
+        etcd = etcdParam;
+        dirName = dirNameParam;
+    }
+
+    @Override
+    protected boolean awaitChange() throws RegistrationException {
+        if(waitIndex == UNKNOWN_INDEX) {
+            waitIndex = readCurrentIndex() + 1;
+            return false;
+        }
+        try {
+            EtcdKeysResponse response = etcd.getDir(dirName).recursive().waitForChange(waitIndex).
+                                            timeout(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS).send().get();
+            waitIndex = response.node.modifiedIndex.longValue() + 1;
+            return true;
+        } catch (java.util.concurrent.TimeoutException e) {
+            return false;
+        } catch (EtcdException e) {
+            if(e.errorCode == EVENT_INDEX_CLEARED) {
+                // we may have missed events; continue after the current index of the cluster //
+                waitIndex = e.index > 0 ? e.index + 1 : UNKNOWN_INDEX;
+                return true;
+            }
+            throw new RegistrationException(e);
+        } catch(IOException ioe) {
+            throw new RegistrationException(ioe);
+        }
+    }
+    
+    /** 
+     * @return the index of the cluster rather than of the directory. the latter
+     * may have fallen out of the event history when the component is quiet.
+     */
+    private long readCurrentIndex() throws RegistrationException {
+        try {
+            EtcdKeysResponse response = etcd.getDir(dirName).recursive().send().get();
+            if(response.etcdIndex != null)
+                return response.etcdIndex.longValue();
+            return highestModifiedIndex(response.node);
+        } catch (EtcdException e) {
+            if(e.errorCode == KEY_NOT_FOUND) 
+                return e.index;
+            throw new RegistrationException(e);
+        } catch(IOException ioe) {
+            throw new RegistrationException(ioe);
+        } catch (java.util.concurrent.TimeoutException e) {
+            throw new RegistrationException(e);
+        }
+    }
+    
+    private static long highestModifiedIndex(EtcdNode node) {
+        long max = node.modifiedIndex == null ? 0 : node.modifiedIndex.longValue();
+        if(node.nodes == null) 
+            return max;
+        for(EtcdNode child : node.nodes) {
+            max = Math.max(max, highestModifiedIndex(child));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.etcd;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * hierarchical index of the etcd directories used by the registry. the 
+ * directory names of application instances and components are built once 
+ * and shared afterwards, so that repeated accesses to the same component 
+ * do not build the same paths over and over again. component instances 
+ * come and go; their directory names are built on each access so that 
+ * the index does not grow with every instance ever seen. property names 
+ * read from etcd are interned as well.
+ */
+final class EtcdKeyIndex {
+
+    static final String ROOT = "/lca";
+    /** rewritten after every change to a component; its modifiedIndex serves as version */
+    static final String MODIFIED = "Modified";
+
+    private static final Node LCA = new Node(ROOT);
+    private static final Interner<String> PROPERTY_NAMES = Interners.newWeakInterner();
+
+    private EtcdKeyIndex() {
+        // no instances //
+    }
+
+    static String applicationInstanceDirectory(ApplicationInstanceId instId) {
+        return LCA.child(instId).path;
+    }
+
+    static String componentDirectory(ApplicationInstanceId instId, ComponentId cid) {
+        return LCA.child(instId).child(cid).path;
+    }
+
+    /** @return the key of the entry in the component directory that serves as its version */
+    static String componentMarker(ApplicationInstanceId instId, ComponentId cid) {
+        return LCA.child(instId).child(cid).marker;
+    }
+
+    static String componentInstanceDirectory(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) {
+        return LCA.child(instId).child(cid).path + "/" + cinstId.toString();
+    }
+
+    /** @return the canonical instance of the given property name */
+    static String propertyName(String name) {
+        return PROPERTY_NAMES.intern(name);
+    }
+
+    private static final class Node {
+
+        final String path;
+        final String marker;
+        private final ConcurrentMap<Object, Node> children = new ConcurrentHashMap<>();
+
+        Node(String pathParam) {
+            path = pathParam;
+            marker = path + "/" + MODIFIED;
+        }
+
+        Node child(Object id) {
+            Node node = children.get(id);
+            if(node != null)
+                return node;
+            Node created = new Node(path + "/" + id.toString());
+            node = children.putIfAbsent(id, created);
+            return node == null ? created : node;
+        }
+    }
+}
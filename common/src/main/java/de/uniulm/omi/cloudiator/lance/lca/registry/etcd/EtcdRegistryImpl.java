@@ -20,25 +20,39 @@ package de.uniulm.omi.cloudiator.lance.lca.registry.etcd;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 
+import mousio.client.promises.ResponsePromise;
+import mousio.client.promises.ResponsePromise.IsSimplePromiseResponseHandler;
 import mousio.etcd4j.EtcdClient;
+import mousio.etcd4j.promises.EtcdResponsePromise;
 import mousio.etcd4j.responses.EtcdException;
 import mousio.etcd4j.responses.EtcdKeysResponse;
 import mousio.etcd4j.responses.EtcdKeysResponse.EtcdNode;
 import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
 import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
 import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
-import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.AsyncLcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
 import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryWatch;
 
-final class EtcdRegistryImpl implements LcaRegistry {
+final class EtcdRegistryImpl implements AsyncLcaRegistry {
 
     private static final long serialVersionUID = -7017922645290003357L;
+    private static final int KEY_NOT_FOUND = 100;
+    private static final int KEY_ALREADY_EXISTS = 105;
     private static String DESCRIPTION = "Description";
     private static String NAME = "Name";
     private static String MAIN_DESCRIPTION = "main directory for cloudiator's life cylce agent";
@@ -50,6 +64,7 @@ final class EtcdRegistryImpl implements LcaRegistry {
     
     private final URI[] uris;
     private transient EtcdClient etcd;
+    private transient ConcurrentMap<String, ModificationMarker> markers = new ConcurrentHashMap<>();
     
     public EtcdRegistryImpl(URI[] urisParam) throws RegistrationException {
         uris = urisParam;
@@ -58,10 +73,10 @@ final class EtcdRegistryImpl implements LcaRegistry {
     }
     
     private void init() throws RegistrationException {
-        String dirName = "/lca";
-        createDirectorIfItDoesNotExist(dirName);
-        setPropertyInDirectory(dirName, DESCRIPTION, MAIN_DESCRIPTION);
-        setPropertyInDirectory(dirName, NAME, MAIN_NAME);
+        String dirName = EtcdKeyIndex.ROOT;
+        await(CompletableFuture.allOf(createDirectoryIfItDoesNotExist(dirName), 
+                setPropertyInDirectory(dirName, DESCRIPTION, MAIN_DESCRIPTION), 
+                setPropertyInDirectory(dirName, NAME, MAIN_NAME)));
     }
     
     @Override
@@ -70,11 +85,13 @@ final class EtcdRegistryImpl implements LcaRegistry {
              in the registry.
      */
     public boolean addApplicationInstance(ApplicationInstanceId instId, ApplicationId appId, String name) throws RegistrationException {
-        String dirName = generateApplicationInstanceDirectory(instId);
-        boolean b = createDirectorIfItDoesNotExist(dirName);
+        final String dirName = generateApplicationInstanceDirectory(instId);
+        // the properties must not be written before the directory has been  
+        // created, as this would create the directory implicitly //
+        boolean b = await(createDirectoryIfItDoesNotExist(dirName)).booleanValue();
         if(b) { // only add properties if this is a new directory //
-            setPropertyInDirectory(dirName, DESCRIPTION, APP_INSTANCE_DESCRIPTION);
-            setPropertyInDirectory(dirName, NAME, name);
+            await(CompletableFuture.allOf(setPropertyInDirectory(dirName, DESCRIPTION, APP_INSTANCE_DESCRIPTION), 
+                    setPropertyInDirectory(dirName, NAME, name)));
         }
         return b;
     }
@@ -82,56 +99,101 @@ final class EtcdRegistryImpl implements LcaRegistry {
     @Override
     public void addComponent(ApplicationInstanceId instId, ComponentId cid, String name) throws RegistrationException {
         String dirName = generateComponentDirectory(instId, cid);
-        createDirectorIfItDoesNotExist(dirName);
-        setPropertyInDirectory(dirName, DESCRIPTION, COMPONENT_DESCRIPTION);
-        setPropertyInDirectory(dirName, NAME, name);
+        // see addApplicationInstance; existing components get their properties rewritten //
+        await(createDirectoryIfItDoesNotExist(dirName).thenCompose(created -> CompletableFuture.allOf(
+                setPropertyInDirectory(dirName, DESCRIPTION, COMPONENT_DESCRIPTION), 
+                setPropertyInDirectory(dirName, NAME, name))));
     }
 
     @Override
     public void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId)
             throws RegistrationException {
-        String dirName = generateComponentInstanceDirectory(instId, cid, cinstId);
-        createDirectorIfItDoesNotExist(dirName);
-        setPropertyInDirectory(dirName, DESCRIPTION, COMPONENT_INSTANCE_DESCRIPTION);
+        await(addComponentInstanceAsync(instId, cid, cinstId));
+    }
+
+    @Override
+    public void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties)
+            throws RegistrationException {
+        await(addComponentInstanceAsync(instId, cid, cinstId, properties));
     }
 
     @Override
     public void addComponentProperty(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, String property, Object value) throws RegistrationException {
-        String dirName = generateComponentInstanceDirectory(instId, cid, cinstId);
-        setPropertyInDirectory(dirName, property, value.toString());
+        await(addComponentPropertyAsync(instId, cid, cinstId, property, value));
+    }
+
+    @Override
+    public void addComponentProperties(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties) throws RegistrationException {
+        await(addComponentPropertiesAsync(instId, cid, cinstId, properties));
     }
 
     @Override
     public Map<ComponentInstanceId, Map<String, String>> dumpComponent(ApplicationInstanceId instId, ComponentId compId) throws RegistrationException {
-        
-        Map<ComponentInstanceId, Map<String, String>> retVal = null;
+        return await(dumpComponentAsync(instId, compId));
+    }
+    
+    @Override
+    public String getComponentProperty(ApplicationInstanceId appInstId, ComponentId compId, ComponentInstanceId myId, String property) throws RegistrationException {
+        return await(getComponentPropertyAsync(appInstId, compId, myId, property));
+    }
+    
+    @Override
+    public CompletableFuture<Void> addComponentInstanceAsync(final ApplicationInstanceId instId, final ComponentId cid, ComponentInstanceId cinstId) {
+        return addComponentInstanceAsync(instId, cid, cinstId, Collections.<String, Object>emptyMap());
+    }
+    
+    @Override
+    public CompletableFuture<Void> addComponentInstanceAsync(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties) {
+        String dirName = generateComponentInstanceDirectory(instId, cid, cinstId);
+        // the properties are sent back to back, but only once the directory 
+        // exists, as writing them first would create the directory implicitly //
+        CompletableFuture<Void> written = createDirectoryIfItDoesNotExist(dirName).thenCompose(created -> {
+            List<CompletableFuture<?>> futures = new ArrayList<>(properties.size() + 1);
+            futures.add(setPropertyInDirectory(dirName, DESCRIPTION, COMPONENT_INSTANCE_DESCRIPTION));
+            for(Entry<String, ?> entry : properties.entrySet()) {
+                futures.add(setPropertyInDirectory(dirName, entry.getKey(), entry.getValue().toString()));
+            }
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+        });
+        return thenMarkComponentModified(written, instId, cid);
+    }
+    
+    @Override
+    public CompletableFuture<Void> addComponentPropertyAsync(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, String property, Object value) {
+        String dirName = generateComponentInstanceDirectory(instId, cid, cinstId);
+        return thenMarkComponentModified(setPropertyInDirectory(dirName, property, value.toString()), instId, cid);
+    }
+    
+    @Override
+    public CompletableFuture<Void> addComponentPropertiesAsync(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties) {
+        String dirName = generateComponentInstanceDirectory(instId, cid, cinstId);
+        // etcd does not offer multi-key transactions; pipeline the 
+        // requests instead of waiting for each response in turn //
+        List<CompletableFuture<EtcdKeysResponse>> futures = new ArrayList<>(properties.size());
+        for(Entry<String, ?> entry : properties.entrySet()) {
+            futures.add(setPropertyInDirectory(dirName, entry.getKey(), entry.getValue().toString()));
+        }
+        CompletableFuture<Void> written = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+        return thenMarkComponentModified(written, instId, cid);
+    }
+    
+    @Override
+    public CompletableFuture<Map<ComponentInstanceId, Map<String, String>>> dumpComponentAsync(ApplicationInstanceId instId, ComponentId compId) {
         String dirName = generateComponentDirectory(instId, compId);
-        EtcdKeysResponse ccc = null;
         try {
-            ccc = etcd.getDir(dirName).recursive().sorted().send().get();
-            retVal = dumpFirstLevelKeys(ccc.node);
-            for(Entry<ComponentInstanceId, Map<String, String>> entry : retVal.entrySet()) {
-                ComponentInstanceId id = entry.getKey();
-                String secondLevelDir = generateComponentInstanceDirectory(instId, compId, id); 
-                ccc = etcd.getDir(secondLevelDir).recursive().sorted().send().get();
-                dumpSecondLevelKeys(ccc.node, entry.getValue());
-            }
+            // a single recursive request already contains all component 
+            // instances including their properties; no need for further requests //
+            return whenDone(etcd.getDir(dirName).recursive().sorted().send()).thenApply(response -> dumpComponentTree(response.node));
         } catch(IOException ioe) {
-            throw new RegistrationException(ioe);
-        } catch (java.util.concurrent.TimeoutException e) {
-            throw new RegistrationException(e);
-        } catch (EtcdException e) {
-            throw new RegistrationException(e);
+            return failed(ioe);
         }
-        return retVal;
     }
     
     @Override
-    public String getComponentProperty(ApplicationInstanceId appInstId, ComponentId compId, ComponentInstanceId myId, String property) throws RegistrationException {
+    public CompletableFuture<String> getComponentPropertyAsync(ApplicationInstanceId appInstId, ComponentId compId, ComponentInstanceId myId, String property) {
         String dirName = generateComponentInstanceDirectory(appInstId, compId, myId);
         return readPropertyFromDirectory(dirName, property);
     }
-    
 
     @Override
     public boolean applicationInstanceExists(ApplicationInstanceId appInstId) throws RegistrationException {
@@ -146,24 +208,98 @@ final class EtcdRegistryImpl implements LcaRegistry {
     }
     
     /**
-     * @return true if this directory has been created successfully. false if it was already 
-     *             contained in the registry.
+     * etcd removes expired component instance directories without touching 
+     * the modification marker. hence, the version combines the marker with 
+     * the set of component instance directories that currently exist.
      */
-    private boolean createDirectorIfItDoesNotExist(String dirName) throws RegistrationException {
-        if(directoryDoesExist(dirName)) 
-            return false;
-        
+    @Override
+    public long getComponentVersion(ApplicationInstanceId appInstId, ComponentId compId) throws RegistrationException {
         try {
-            // EtcdKeysResponse ccc = 
-            etcd.putDir(dirName).send().get();
+            EtcdKeysResponse ccc = etcd.getDir(generateComponentDirectory(appInstId, compId)).send().get();
+            String marker = EtcdKeyIndex.componentMarker(appInstId, compId);
+            long modified = UNKNOWN_VERSION;
+            long instances = 0;
+            if(ccc.node.nodes != null) {
+                for(EtcdNode child : ccc.node.nodes) {
+                    if(child.dir) {
+                        instances += child.createdIndex.longValue();
+                    } else if(marker.equals(child.key)) {
+                        modified = child.modifiedIndex.longValue();
+                    }
+                }
+            }
+            // component has been written by an older version //
+            if(modified == UNKNOWN_VERSION) 
+                return UNKNOWN_VERSION;
+            return (modified * 0x9E3779B97F4A7C15L + instances) & Long.MAX_VALUE;
         } catch(IOException ioe) {
             throw new RegistrationException(ioe);
         } catch (java.util.concurrent.TimeoutException e) {
             throw new RegistrationException(e);
         } catch (EtcdException e) {
+            // component does not exist //
+            if(e.errorCode == KEY_NOT_FOUND) 
+                return UNKNOWN_VERSION;
             throw new RegistrationException(e);
         }
-        return true;
+    }
+    
+    /**
+     * relies on etcd's native time to live: the component instance 
+     * directory expires together with all of its properties unless 
+     * it is renewed in time.
+     */
+    @Override
+    public boolean renewComponentInstanceLease(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, long ttlMillis) 
+            throws RegistrationException {
+        if(ttlMillis <= 0) 
+            throw new IllegalArgumentException("time to live must be positive: " + ttlMillis);
+        String dirName = generateComponentInstanceDirectory(instId, cid, cinstId);
+        int seconds = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (ttlMillis + 999) / 1000));
+        final CompletableFuture<Boolean> renewed;
+        try {
+            renewed = whenDone(etcd.putDir(dirName).ttl(Integer.valueOf(seconds)).prevExist(true).send()).handle((response, t) -> {
+                if(t == null) 
+                    return Boolean.TRUE;
+                // expired already or never added //
+                if(hasErrorCode(t, KEY_NOT_FOUND)) 
+                    return Boolean.FALSE;
+                throw new CompletionException(t);
+            });
+        } catch(IOException ioe) {
+            throw new RegistrationException(ioe);
+        }
+        return await(renewed).booleanValue();
+    }
+    
+    @Override
+    public RegistryWatch watchComponent(ApplicationInstanceId appInstId, ComponentId compId, ComponentChangeListener listener) 
+            throws RegistrationException {
+        String dirName = generateComponentDirectory(appInstId, compId);
+        return new EtcdComponentWatch(etcd, dirName, appInstId, compId, listener).start();
+    }
+    
+    /**
+     * creates the directory in a single request; etcd rejects the request 
+     * if the directory exists already.
+     * 
+     * @return a future yielding true if this directory has been created successfully. 
+     *             false if it was already contained in the registry.
+     */
+    private CompletableFuture<Boolean> createDirectoryIfItDoesNotExist(String dirName) {
+        final CompletableFuture<EtcdKeysResponse> future;
+        try {
+            future = whenDone(etcd.putDir(dirName).prevExist(false).send());
+        } catch(IOException ioe) {
+            return failed(ioe);
+        }
+        return future.handle((response, t) -> {
+            if(t == null) 
+                return Boolean.TRUE;
+            if(hasErrorCode(t, KEY_ALREADY_EXISTS)) 
+                return Boolean.FALSE;
+            throw new CompletionException(t);
+        });
     }
     
     /**
@@ -179,7 +315,7 @@ final class EtcdRegistryImpl implements LcaRegistry {
         } catch (java.util.concurrent.TimeoutException e) {
             throw new RegistrationException(e);
         } catch (EtcdException e) {
-            if(e.errorCode == 100) 
+            if(e.errorCode == KEY_NOT_FOUND) 
                 return false;
             throw new RegistrationException(e);
         }
@@ -188,44 +324,162 @@ final class EtcdRegistryImpl implements LcaRegistry {
     private void readObject(java.io.ObjectInputStream stream) throws IOException, ClassNotFoundException {
         stream.defaultReadObject();
         etcd = new EtcdClient(uris);
+        markers = new ConcurrentHashMap<>();
     }
     
-    private String readPropertyFromDirectory(String dirName, String prop) throws RegistrationException {
+    private CompletableFuture<String> readPropertyFromDirectory(String dirName, String prop) {
         try {
-            EtcdKeysResponse ccc = etcd.get(dirName + "/" + prop).send().get();
-            return ccc.node.value;
+            return whenDone(etcd.get(dirName + "/" + prop).send()).thenApply(response -> response.node.value);
         } catch(IOException ioe) {
-            throw new RegistrationException(ioe);
-        } catch (java.util.concurrent.TimeoutException e) {
-            throw new RegistrationException(e);
-        } catch (EtcdException e) {
-            throw new RegistrationException(e);
+            return failed(ioe);
         }
     }
     
-    private void setPropertyInDirectory(String dirName, String prop, String value) throws RegistrationException {
+    private CompletableFuture<EtcdKeysResponse> setPropertyInDirectory(String dirName, String prop, String value) {
+        return setProperty(dirName + "/" + prop, value);
+    }
+    
+    private CompletableFuture<EtcdKeysResponse> setProperty(String key, String value) {
         try {
-            EtcdKeysResponse ccc = etcd.put(dirName + "/" + prop, value.toString()).send().get();
-            ccc.toString();
+            return whenDone(etcd.put(key, value).send());
         } catch(IOException ioe) {
-            throw new RegistrationException(ioe);
-        } catch (java.util.concurrent.TimeoutException e) {
-            throw new RegistrationException(e);
-        } catch (EtcdException e) {
-            throw new RegistrationException(e);
+            return failed(ioe);
+        }
+    }
+
+    /** 
+     * the marker is only written once the change has been completed so 
+     * that readers that see the new version also see the change. changes 
+     * that complete while a marker write is in flight share a single 
+     * follow-up write.
+     */
+    private CompletableFuture<Void> thenMarkComponentModified(CompletableFuture<?> change, final ApplicationInstanceId instId, final ComponentId cid) {
+        final String key = EtcdKeyIndex.componentMarker(instId, cid);
+        return change.thenCompose(ignored -> markerFor(key).bump());
+    }
+    
+    private ModificationMarker markerFor(String key) {
+        ModificationMarker marker = markers.get(key);
+        if(marker != null)
+            return marker;
+        marker = new ModificationMarker(key);
+        ModificationMarker other = markers.putIfAbsent(key, marker);
+        return other == null ? marker : other;
+    }
+    
+    /** 
+     * serialises the writes to a single marker key. at most one write is 
+     * in flight; all bumps requested meanwhile are answered by the next one.
+     */
+    private final class ModificationMarker {
+        
+        private final String key;
+        private boolean writing;
+        private CompletableFuture<Void> pending;
+        
+        ModificationMarker(String keyParam) {
+            key = keyParam;
+        }
+        
+        CompletableFuture<Void> bump() {
+            synchronized(this) {
+                if(writing) {
+                    if(pending == null)
+                        pending = new CompletableFuture<>();
+                    return pending;
+                }
+                writing = true;
+            }
+            return write();
+        }
+        
+        private CompletableFuture<Void> write() {
+            CompletableFuture<Void> written = setProperty(key, Long.toString(System.currentTimeMillis())).thenApply(ignored -> (Void) null);
+            written.whenComplete((ignored, t) -> writeNext());
+            return written;
+        }
+        
+        private void writeNext() {
+            final CompletableFuture<Void> next;
+            synchronized(this) {
+                next = pending;
+                pending = null;
+                if(next == null) {
+                    writing = false;
+                    return;
+                }
+            }
+            write().whenComplete((ignored, t) -> {
+                if(t == null)
+                    next.complete(null);
+                else
+                    next.completeExceptionally(t);
+            });
+        }
+    }
+    
+    /** 
+     * adapts a promise of the etcd client; the resulting future is completed 
+     * on the client's I/O thread, so it must not be blocked by dependent stages.
+     */
+    private static CompletableFuture<EtcdKeysResponse> whenDone(EtcdResponsePromise<EtcdKeysResponse> promise) {
+        final CompletableFuture<EtcdKeysResponse> future = new CompletableFuture<>();
+        promise.addListener(new IsSimplePromiseResponseHandler<EtcdKeysResponse>() {
+            @Override
+            public void onResponse(ResponsePromise<EtcdKeysResponse> response) {
+                Throwable t = response.getException();
+                if(t == null) {
+                    future.complete(response.getNow());
+                } else {
+                    future.completeExceptionally(new RegistrationException(t));
+                }
+            }
+        });
+        return future;
+    }
+    
+    private static <T> CompletableFuture<T> failed(Throwable t) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new RegistrationException(t));
+        return future;
+    }
+    
+    private static boolean hasErrorCode(Throwable t, int errorCode) {
+        Throwable cause = t;
+        while(cause != null) {
+            if(cause instanceof EtcdException) 
+                return ((EtcdException) cause).errorCode == errorCode;
+            cause = cause.getCause();
+        }
+        return false;
+    }
+    
+    private static <T> T await(CompletableFuture<T> future) throws RegistrationException {
+        try {
+            return future.get();
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RegistrationException(ie);
+        } catch(ExecutionException ee) {
+            Throwable t = ee.getCause();
+            if(t instanceof CompletionException && t.getCause() != null) 
+                t = t.getCause();
+            if(t instanceof RegistrationException) 
+                throw (RegistrationException) t;
+            throw new RegistrationException(t);
         }
     }
 
     private final static String generateApplicationInstanceDirectory(ApplicationInstanceId instId) {
-        return "/lca/" + instId.toString();
+        return EtcdKeyIndex.applicationInstanceDirectory(instId);
     }
     
     private final static String generateComponentDirectory(ApplicationInstanceId instId, ComponentId cid) {
-        return generateApplicationInstanceDirectory(instId) + "/" + cid.toString();
+        return EtcdKeyIndex.componentDirectory(instId, cid);
     }
     
     private final static String generateComponentInstanceDirectory(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) {
-        return generateComponentDirectory(instId, cid) + "/" + cinstId.toString();
+        return EtcdKeyIndex.componentInstanceDirectory(instId, cid, cinstId);
     }
     
     private static void fillMapWithValue(String key, String value, Map<String, String> map) {
@@ -236,41 +490,38 @@ final class EtcdRegistryImpl implements LcaRegistry {
         map.put(key, value);
     }
     
-    private static Map<ComponentInstanceId, Map<String, String>> dumpFirstLevelKeys(EtcdNode root) {
-        final String mainDir = root.key;
+    /**
+     * parses the result of a recursive request on a component directory 
+     * into a map of component instances and their properties.
+     */
+    static Map<ComponentInstanceId, Map<String, String>> dumpComponentTree(EtcdNode root) {
         Map<ComponentInstanceId, Map<String, String>> retVal = new HashMap<>();
-        final int length = mainDir.length() + 1;
+        if(root.nodes == null) 
+            return retVal;
+        final int length = root.key.length() + 1;
         for(EtcdNode node : root.nodes) {
-            if(! node.dir) 
+            if(! node.dir) // description and name of the component //
                 continue;
             String key = node.key.substring(length);
-            String[] split = key.split("/");
-            if(split.length == 1) { // component instance element //
-                createComponentInstanceIfNotExistantAndFillWithMap(key, retVal);
-            } else {
+            if(key.indexOf('/') > -1) 
                 throw new IllegalStateException("invalid directory structure for key");
-                // Map<String,String> map = createComponentInstanceIfNotExistantAndFillWithMap(split[0], retVal);
-                // fillMapWithValue(split[1], map);
-            }
+            Map<String, String> map = createComponentInstanceIfNotExistantAndFillWithMap(key, retVal);
+            dumpComponentInstanceKeys(node, map);
         }
         return retVal;
     }
     
-    private static void dumpSecondLevelKeys(EtcdNode root, Map<String, String> map) {
-        final String mainDir = root.key;
-        final int length = mainDir.length() + 1;
+    private static void dumpComponentInstanceKeys(EtcdNode root, Map<String, String> map) {
+        if(root.nodes == null) 
+            return;
+        final int length = root.key.length() + 1;
         for(EtcdNode node : root.nodes) {
             if(node.dir) 
                 throw new IllegalStateException("unexpected to find directories in component instances");
             String key = node.key.substring(length);
-            String[] split = key.split("/");
-            if(split.length == 1) { // component instance element //
-                fillMapWithValue(key, node.value, map);
-            } else {
+            if(key.indexOf('/') > -1) 
                 throw new IllegalStateException("invalid directory structure for key");
-                // Map<String,String> map = createComponentInstanceIfNotExistantAndFillWithMap(split[0], retVal);
-                // fillMapWithValue(split[1], map);
-            }
+            fillMapWithValue(EtcdKeyIndex.propertyName(key), node.value, map);
         }
     }
     
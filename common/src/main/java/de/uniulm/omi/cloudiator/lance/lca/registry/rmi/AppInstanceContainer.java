@@ -18,25 +18,45 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
 
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
 import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
 import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
 
+/** thread-safe; components can be added and accessed concurrently */
 final class AppInstanceContainer {
 
-    //private final ApplicationId appId;
+    private final ApplicationId appId;
     private final ApplicationInstanceId appInstId;
-    private final Map<ComponentId,ComponentInstanceContainer> comps = new HashMap<>();
+    private final String name;
+    private final ConcurrentMap<ComponentId,ComponentInstanceContainer> comps = new ConcurrentHashMap<>();
     
-    AppInstanceContainer(ApplicationInstanceId instId, @SuppressWarnings("unused") ApplicationId appIdParam, 
-            @SuppressWarnings("unused") String name) { 
-        //appId = _appId; 
+    AppInstanceContainer(ApplicationInstanceId instId, ApplicationId appIdParam, String nameParam) { 
+        appId = appIdParam; 
         appInstId = instId; 
+        name = nameParam;
+    }
+    
+    ApplicationInstanceId getInstanceId() {
+        return appInstId;
+    }
+    
+    ApplicationId getApplicationId() {
+        return appId;
+    }
+    
+    String getName() {
+        return name;
+    }
+    
+    Collection<ComponentInstanceContainer> getComponents() {
+        return comps.values();
     }
 
     String getComponentProperty(ComponentId compId, ComponentInstanceId myId, String name) {
@@ -54,24 +74,52 @@ final class AppInstanceContainer {
         return c.dumpInstances();
     }
 
-    void addComponentProperty(ComponentId cid, ComponentInstanceId cinstId, String property, Object value) {
+    void addComponentProperty(ComponentId cid, ComponentInstanceId cinstId, String property, Object value, RegistryJournal journal) {
         ComponentInstanceContainer c = comps.get(cid);
         if(c == null) 
             throw new IllegalArgumentException("component not known: " + cid);
-        c.addComponentProperty(cinstId, property, value);
+        c.addComponentProperty(cinstId, property, value, journal);
     }
 
-    void addComponent(ComponentId cid, String name) {
-        if(comps.containsKey(cid)) 
-            throw new IllegalArgumentException("alread exists: " + cid);
-        comps.put(cid, new ComponentInstanceContainer(this, cid, name));
+    void addComponentProperties(ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties, RegistryJournal journal) {
+        ComponentInstanceContainer c = comps.get(cid);
+        if(c == null) 
+            throw new IllegalArgumentException("component not known: " + cid);
+        c.addComponentProperties(cinstId, properties, journal);
     }
 
-    void addComponentInstance(ComponentId cid, ComponentInstanceId cinstId) {
+    ComponentInstanceContainer addComponent(ComponentId cid, String componentName, RegistryJournal journal) {
+        // components are added rarely; the lock makes sure the component is 
+        // logged before any of its instances can be logged //
+        synchronized(comps) {
+            if(comps.containsKey(cid)) 
+                throw new IllegalArgumentException("alread exists: " + cid);
+            journal.componentAdded(appInstId, cid, componentName);
+            ComponentInstanceContainer c = new ComponentInstanceContainer(this, cid, componentName);
+            comps.put(cid, c);
+            return c;
+        }
+    }
+
+    void addComponentInstance(ComponentId cid, ComponentInstanceId cinstId, RegistryJournal journal) {
+        ComponentInstanceContainer c = comps.get(cid);
+        if(c == null) 
+            throw new IllegalArgumentException("not known: " + cid);
+        c.addComponentInstance(cinstId, journal);
+    }
+
+    void addComponentInstance(ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties, RegistryJournal journal) {
+        ComponentInstanceContainer c = comps.get(cid);
+        if(c == null) 
+            throw new IllegalArgumentException("not known: " + cid);
+        c.addComponentInstance(cinstId, properties, journal);
+    }
+    
+    ComponentInstanceContainer getComponent(ComponentId cid) {
         ComponentInstanceContainer c = comps.get(cid);
         if(c == null) 
             throw new IllegalArgumentException("not known: " + cid);
-        c.addComponentInstance(cinstId);
+        return c;
     }
     
     boolean componentExists(ComponentId cid) {
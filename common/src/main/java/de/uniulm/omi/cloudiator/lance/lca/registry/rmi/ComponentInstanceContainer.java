@@ -18,9 +18,12 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
@@ -31,67 +34,271 @@ import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
 import de.uniulm.omi.cloudiator.lance.lca.LcaRegistryConstants;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
 
+/**
+ * keeps the component instances of a component as an immutable snapshot 
+ * that is replaced on every change (copy on write). readers never block; 
+ * writers to the same component are serialised, writers to different 
+ * components do not interfere with each other.
+ */
 final class ComponentInstanceContainer {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(LcaRegistry.class);
+    
+    /** 
+     * versions start from the time of start-up, so that clients that 
+     * survive a restart of a durable registry do not mistake new versions 
+     * for the ones they have seen before the restart.
+     */
+    private static final long INITIAL_VERSION = System.currentTimeMillis() << 16;
 
     private final AtomicInteger counter = new AtomicInteger(0);
     private final AppInstanceContainer myContainer;
     private final ComponentId cid;
-    private final Map<ComponentInstanceId, Map<String,Object>> instances = new HashMap<>();
+    private final String componentName;
     
-    public ComponentInstanceContainer(AppInstanceContainer cnt, ComponentId cidParam, 
-            @SuppressWarnings("unused") String name) { 
+    private final Object writeLock = new Object();
+    // replaced under writeLock; the maps themselves are never modified //
+    private volatile Map<ComponentInstanceId, Map<String,String>> instances = Collections.emptyMap();
+    // protected by writeLock
+    private long version = INITIAL_VERSION;
+    // modified under writeLock; renewals read it without //
+    private final ConcurrentMap<ComponentInstanceId, LeaseWheel.Lease> leases = new ConcurrentHashMap<>();
+    // time to live of restored leases until they are handed to the lease wheel //
+    private Map<ComponentInstanceId, Long> restoredLeases = Collections.emptyMap();
+    
+    public ComponentInstanceContainer(AppInstanceContainer cnt, ComponentId cidParam, String nameParam) { 
         myContainer = cnt; 
         cid = cidParam; 
+        componentName = nameParam;
+    }
+    
+    ComponentId getComponentId() {
+        return cid;
+    }
+    
+    String getName() {
+        return componentName;
+    }
+    
+    /** must only be called while no mutations are in progress */
+    int getInstanceCounter() {
+        return counter.get();
+    }
+    
+    /** must only be called while no mutations are in progress */
+    Map<ComponentInstanceId, Long> getLeaseTtls() {
+        Map<ComponentInstanceId, Long> ttls = new HashMap<>();
+        for(LeaseWheel.Lease lease : leases.values()) {
+            ttls.put(lease.instanceId, Long.valueOf(lease.ttlMillis));
+        }
+        return ttls;
+    }
+    
+    /** 
+     * must only be called before the container is in use. the container 
+     * takes ownership of the given maps. 
+     */
+    void restore(Map<ComponentInstanceId, Map<String,String>> instancesParam, Map<ComponentInstanceId, Long> leasesParam, int counterParam) {
+        synchronized(writeLock) {
+            for(Entry<ComponentInstanceId, Map<String,String>> entry : instancesParam.entrySet()) {
+                entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+            }
+            instances = Collections.unmodifiableMap(instancesParam);
+            restoredLeases = leasesParam;
+            counter.set(counterParam);
+        }
     }
     
     public String getComponentProperty(ComponentInstanceId myId, String name) {
-        Map<String,Object> props = instances.get(myId);
+        Map<String,String> props = instances.get(myId);
         if(props == null) 
             throw new IllegalArgumentException("not known: " + myId);
-        Object old = props.get(name);
-        return old == null ? null : old.toString();
+        return props.get(name);
     }
 
+    /** 
+     * @return an immutable snapshot of all component instances and their properties 
+     */
     public Map<ComponentInstanceId, Map<String,String>> dumpInstances() {
-        Map<ComponentInstanceId, Map<String,String>> copy = new HashMap<>();
-        for(Entry<ComponentInstanceId, Map<String, Object>> entry : instances.entrySet()) {
-            ComponentInstanceId id = entry.getKey();
-            Map<String,Object> content = entry.getValue();
-            Map<String,String> innerCopy = new HashMap<>();
-            for(Entry<String, Object> innerEntry : content.entrySet()) {
-                innerCopy.put(innerEntry.getKey(), innerEntry.getValue().toString());
-            }
-            copy.put(id, innerCopy);
-        }
-        return copy;
+        return instances;
     }
 
-    public void addComponentProperty(ComponentInstanceId cinstId, String property, Object value) {
-        Map<String,Object> props = instances.get(cinstId);
-        if(props == null) 
-            throw new IllegalArgumentException("not known: " + cinstId);
-        Object old = props.put(property, value);
+    public void addComponentProperty(ComponentInstanceId cinstId, String property, Object value, RegistryJournal journal) {
+        Object old = null;
+        String stringValue = value.toString();
+        synchronized(writeLock) {
+            Map<String,String> props = getPropertiesForUpdate(cinstId);
+            Map<String,String> newProps = new HashMap<>(props);
+            old = newProps.put(property, stringValue);
+            journal.propertiesAdded(myContainer.getInstanceId(), cid, cinstId, Collections.singletonMap(property, stringValue));
+            replaceInstance(cinstId, newProps);
+        }
         String add = "";
         if(old != null) { 
             add = " (old value was " + old + ")";
         }
-        //FIXME: wake up listeners (?)
-        LOGGER.error("TODO: wake up listeners");
-        
-        LOGGER.info("LcaRegistry: added property: " + this + "/" + cinstId + "." + property + "=" + value + old);
+        LOGGER.info("LcaRegistry: added property: " + this + "/" + cinstId + "." + property + "=" + value + add);
+    }
+
+    public void addComponentProperties(ComponentInstanceId cinstId, Map<String, ?> properties, RegistryJournal journal) {
+        Map<String,String> added = new HashMap<>();
+        for(Entry<String, ?> entry : properties.entrySet()) {
+            added.put(entry.getKey(), entry.getValue().toString());
+        }
+        synchronized(writeLock) {
+            Map<String,String> props = getPropertiesForUpdate(cinstId);
+            Map<String,String> newProps = new HashMap<>(props);
+            newProps.putAll(added);
+            journal.propertiesAdded(myContainer.getInstanceId(), cid, cinstId, added);
+            replaceInstance(cinstId, newProps);
+        }
+        LOGGER.info("LcaRegistry: added properties: " + this + "/" + cinstId + "." + properties);
     }
 
-    public void addComponentInstance(ComponentInstanceId cinstId) {
-        if(instances.containsKey(cinstId)) 
-            throw new IllegalArgumentException("alread exists: " + cinstId);
-        Map<String,Object> map = new HashMap<>();
-        Integer i = Integer.valueOf(counter.incrementAndGet());
-        map.put(LcaRegistryConstants.INSTANCE_NR, i);
-        instances.put(cinstId, map);
-        
-        LOGGER.info("LcaRegistry: added component instance: " + this + "/" + cinstId);
+    public void addComponentInstance(ComponentInstanceId cinstId, RegistryJournal journal) {
+        addComponentInstance(cinstId, Collections.<String, Object>emptyMap(), journal);
+    }
+
+    /** adds the instance and its initial properties as a single change */
+    public void addComponentInstance(ComponentInstanceId cinstId, Map<String, ?> properties, RegistryJournal journal) {
+        Map<String,String> added = new HashMap<>();
+        for(Entry<String, ?> entry : properties.entrySet()) {
+            added.put(entry.getKey(), entry.getValue().toString());
+        }
+        synchronized(writeLock) {
+            if(instances.containsKey(cinstId)) 
+                throw new IllegalArgumentException("alread exists: " + cinstId);
+            // logged under the lock so that replaying the log assigns the same instance numbers //
+            journal.componentInstanceAdded(myContainer.getInstanceId(), cid, cinstId);
+            if(!added.isEmpty()) 
+                journal.propertiesAdded(myContainer.getInstanceId(), cid, cinstId, added);
+            Map<String,String> map = new HashMap<>();
+            Integer i = Integer.valueOf(counter.incrementAndGet());
+            map.put(LcaRegistryConstants.INSTANCE_NR, i.toString());
+            map.putAll(added);
+            replaceInstance(cinstId, map);
+        }
+        LOGGER.info("LcaRegistry: added component instance: " + this + "/" + cinstId + (added.isEmpty() ? "" : "." + added));
+    }
+    
+    /**
+     * renews the lease of the instance or creates one. renewing a lease with 
+     * an unchanged time to live does not block. the time to live of a new 
+     * lease is journaled, so that the lease can be restored; it is not 
+     * visible as a property of the instance.
+     * 
+     * @return false if the instance is not known or its lease has expired
+     */
+    boolean renewLease(ComponentInstanceId cinstId, long ttlMillis, LeaseWheel wheel, RegistryJournal journal) {
+        LeaseWheel.Lease lease = leases.get(cinstId);
+        if(lease != null && lease.ttlMillis == ttlMillis && lease.renew()) 
+            return true;
+        synchronized(writeLock) {
+            if(!instances.containsKey(cinstId)) 
+                return false;
+            lease = leases.get(cinstId);
+            if(lease != null && lease.isExpired()) 
+                return false; // about to be removed //
+            if(lease != null && lease.ttlMillis == ttlMillis) 
+                return lease.renew();
+            if(lease != null) 
+                lease.cancel();
+            LeaseWheel.Lease created = new LeaseWheel.Lease(this, cinstId, ttlMillis);
+            leases.put(cinstId, created);
+            journal.leaseGranted(myContainer.getInstanceId(), cid, cinstId, ttlMillis);
+            wheel.add(created);
+        }
+        return true;
+    }
+    
+    /**
+     * removes the instance of an expired lease unless the lease 
+     * has been replaced in the meantime.
+     */
+    void removeExpired(LeaseWheel.Lease lease, RegistryJournal journal) {
+        synchronized(writeLock) {
+            if(leases.get(lease.instanceId) != lease) 
+                return;
+            leases.remove(lease.instanceId);
+            journal.componentInstanceRemoved(myContainer.getInstanceId(), cid, lease.instanceId);
+            Map<ComponentInstanceId, Map<String,String>> newInstances = new HashMap<>(instances);
+            newInstances.remove(lease.instanceId);
+            publish(newInstances);
+        }
+        LOGGER.info("LcaRegistry: lease expired; removed component instance: " + this + "/" + lease.instanceId);
+    }
+    
+    /** 
+     * creates leases for all restored instances that had a lease, as if 
+     * they had just been renewed. must only be called after {@link #restore}.
+     */
+    void restoreLeases(LeaseWheel wheel) {
+        synchronized(writeLock) {
+            for(Entry<ComponentInstanceId, Long> entry : restoredLeases.entrySet()) {
+                LeaseWheel.Lease lease = new LeaseWheel.Lease(this, entry.getKey(), entry.getValue().longValue());
+                leases.put(entry.getKey(), lease);
+                wheel.add(lease);
+            }
+            restoredLeases = Collections.emptyMap();
+        }
+    }
+    
+    /** must only be called after {@link #restore} */
+    boolean hasLeases() {
+        synchronized(writeLock) {
+            return !restoredLeases.isEmpty();
+        }
+    }
+    
+    /**
+     * the version is increased with every change. as the snapshot is 
+     * replaced before the version is increased, a snapshot read after 
+     * the version is at least as recent as that version.
+     */
+    long getVersion() {
+        synchronized(writeLock) {
+            return version;
+        }
+    }
+    
+    /**
+     * blocks until the version of this component differs from the 
+     * given version or the timeout has passed.
+     * 
+     * @return the current version of this component
+     */
+    long awaitChange(long knownVersion, long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized(writeLock) {
+            long remaining = timeoutMillis;
+            while(version == knownVersion && remaining > 0) {
+                writeLock.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return version;
+        }
+    }
+    
+    // must be called with writeLock held //
+    private Map<String,String> getPropertiesForUpdate(ComponentInstanceId cinstId) {
+        Map<String,String> props = instances.get(cinstId);
+        if(props == null) 
+            throw new IllegalArgumentException("not known: " + cinstId);
+        return props;
+    }
+    
+    // must be called with writeLock held //
+    private void replaceInstance(ComponentInstanceId cinstId, Map<String,String> props) {
+        Map<ComponentInstanceId, Map<String,String>> newInstances = new HashMap<>(instances);
+        newInstances.put(cinstId, Collections.unmodifiableMap(props));
+        publish(newInstances);
+    }
+    
+    // must be called with writeLock held //
+    private void publish(Map<ComponentInstanceId, Map<String,String>> newInstances) {
+        instances = Collections.unmodifiableMap(newInstances);
+        version++;
+        writeLock.notifyAll();
     }
     
     @Override
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryContainer;
+
+/**
+ * hosts the registry in the current JVM and calls it directly, without 
+ * RMI and without copying data. dumps are the immutable snapshots kept 
+ * by the registry. 
+ * 
+ * the registry is only exported via RMI when a port is configured; only 
+ * then can it be handed to agents in other JVMs.
+ */
+public final class EmbeddedRegistryContainer implements RegistryContainer {
+
+    /** port to export the registry on for external clients; 0 for any free port */
+    public static final String LCA_REGISTRY_CONFIG_EMBEDDED_PORT_KEY = "lca.client.config.registry.embedded.port";
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegistryContainer.class);
+    
+    private final RemoteRegistryImpl reg;
+    private final RmiWrapper wrapper;
+    
+    private EmbeddedRegistryContainer(RemoteRegistryImpl regParam, RmiLcaRegistry exportedParam) {
+        reg = regParam;
+        wrapper = new RmiWrapper(exportedParam, reg);
+    }
+    
+    @Override
+    public LcaRegistry getRegistry() {
+        return wrapper;
+    }
+    
+    public static RegistryContainer create() throws RegistrationException {
+        RemoteRegistryImpl impl = RmiRegistryContainer.createRegistryImpl();
+        Integer port = Integer.getInteger(LCA_REGISTRY_CONFIG_EMBEDDED_PORT_KEY);
+        if(port == null) {
+            LOGGER.info("embedded registry is not exported.");
+            return new EmbeddedRegistryContainer(impl, null);
+        }
+        try { 
+            RmiLcaRegistry exported = (RmiLcaRegistry) UnicastRemoteObject.exportObject(impl, port.intValue());
+            return new EmbeddedRegistryContainer(impl, exported); 
+        } catch(RemoteException re) {
+            throw new RegistrationException("cannot export registry", re);
+        }
+    }
+}
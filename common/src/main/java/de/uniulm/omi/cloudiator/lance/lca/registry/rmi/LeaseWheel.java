@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * hashed timing wheel that expires leased component instances. renewing a
+ * lease only moves its deadline forward; the lease itself is moved to a
+ * later slot once the wheel reaches the slot it is in. hence, renewals are
+ * cheap and never touch the wheel, and each tick only visits the leases
+ * that are due (or have been renewed since they were placed) in that slot.
+ *
+ * all slots are owned by a single timer thread; new leases are handed
+ * over through a concurrent queue.
+ */
+final class LeaseWheel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LcaRegistry.class);
+
+    static final long DEFAULT_TICK_MILLIS = 100;
+    private static final int SLOTS = 512;
+
+    /** called on the timer thread for every lease that has expired */
+    interface ExpiryHandler {
+        void expired(Lease lease);
+    }
+
+    private final long tickMillis;
+    private final ExpiryHandler handler;
+    private final Queue<Lease> incoming = new ConcurrentLinkedQueue<>();
+    private final List<ArrayDeque<Lease>> slots = new ArrayList<>(SLOTS);
+    private final ScheduledExecutorService timer;
+    // only accessed by the timer thread //
+    private long currentTick;
+
+    LeaseWheel(long tickMillisParam, ExpiryHandler handlerParam) {
+        tickMillis = tickMillisParam;
+        handler = handlerParam;
+        for(int i = 0; i < SLOTS; i++) {
+            slots.add(new ArrayDeque<Lease>());
+        }
+        currentTick = now() / tickMillis;
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "registry-lease-wheel");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        timer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    advance();
+                } catch(RuntimeException re) {
+                    LOGGER.error("could not expire leases", re);
+                }
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** monotonic clock all deadlines are based on */
+    static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    void add(Lease lease) {
+        incoming.add(lease);
+    }
+
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private void advance() {
+        final long nowTick = now() / tickMillis;
+        // catches up when the timer has been delayed //
+        while(currentTick <= nowTick) {
+            placeIncoming();
+            ArrayDeque<Lease> slot = slots.get((int) (currentTick % SLOTS));
+            List<Lease> due = new ArrayList<>(slot);
+            slot.clear();
+            for(Lease lease : due) {
+                visit(lease);
+            }
+            currentTick++;
+        }
+    }
+
+    private void visit(Lease lease) {
+        if(lease.isExpired())
+            return;
+        if(lease.tryExpire(now())) {
+            handler.expired(lease);
+        } else {
+            place(lease);
+        }
+    }
+
+    private void placeIncoming() {
+        for(Lease lease = incoming.poll(); lease != null; lease = incoming.poll()) {
+            place(lease);
+        }
+    }
+
+    private void place(Lease lease) {
+        // never place into the current slot, as it is being processed //
+        long tick = Math.max(lease.deadline() / tickMillis, currentTick + 1);
+        slots.get((int) (tick % SLOTS)).add(lease);
+    }
+
+    /**
+     * lease of a single component instance. the deadline only moves
+     * forward until the lease has expired; an expired lease stays expired.
+     */
+    static final class Lease {
+
+        private static final long EXPIRED = Long.MIN_VALUE;
+
+        final ComponentInstanceContainer component;
+        final ComponentInstanceId instanceId;
+        final long ttlMillis;
+        private final AtomicLong deadline;
+
+        Lease(ComponentInstanceContainer componentParam, ComponentInstanceId instanceIdParam, long ttlMillisParam) {
+            component = componentParam;
+            instanceId = instanceIdParam;
+            ttlMillis = ttlMillisParam;
+            deadline = new AtomicLong(now() + ttlMillis);
+        }
+
+        long deadline() {
+            return deadline.get();
+        }
+
+        boolean isExpired() {
+            return deadline.get() == EXPIRED;
+        }
+
+        /** @return false if the lease has expired already */
+        boolean renew() {
+            final long next = now() + ttlMillis;
+            while(true) {
+                long current = deadline.get();
+                if(current == EXPIRED)
+                    return false;
+                if(current >= next || deadline.compareAndSet(current, next))
+                    return true;
+            }
+        }
+
+        /** @return true if the lease has been expired by this call */
+        boolean tryExpire(long nowMillis) {
+            long current = deadline.get();
+            return current != EXPIRED && current <= nowMillis && deadline.compareAndSet(current, EXPIRED);
+        }
+
+        /** expires the lease regardless of its deadline, e.g. when it is replaced */
+        void cancel() {
+            deadline.set(EXPIRED);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
+
+import java.io.IOException;
+import java.util.Map;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * receives every mutation of the registry. mutations of the same component 
+ * are reported in the order in which they have been applied. recording a 
+ * mutation must not block; {@link #sync()} makes the recorded mutations 
+ * durable.
+ */
+interface RegistryJournal {
+
+    /** journal of an in-memory registry that does not record anything */
+    static final RegistryJournal NONE = new RegistryJournal() {
+        @Override public void beginMutation() { /* nothing to do */ }
+        @Override public void endMutation() { /* nothing to do */ }
+        @Override public void applicationInstanceAdded(ApplicationInstanceId instId, ApplicationId appId, String name) { /* nothing to do */ }
+        @Override public void componentAdded(ApplicationInstanceId instId, ComponentId cid, String name) { /* nothing to do */ }
+        @Override public void componentInstanceAdded(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) { /* nothing to do */ }
+        @Override public void componentInstanceRemoved(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) { /* nothing to do */ }
+        @Override public void propertiesAdded(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+                        Map<String, String> properties) { /* nothing to do */ }
+        @Override public void leaseGranted(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+                        long ttlMillis) { /* nothing to do */ }
+        @Override public void sync() { /* nothing to do */ }
+        @Override public void compact() { /* nothing to do */ }
+        @Override public void close() { /* nothing to do */ }
+    };
+    
+    /** 
+     * has to be called before a mutation is applied and recorded. mutations 
+     * may run concurrently, but are held back while a snapshot is taken.
+     */
+    void beginMutation();
+    
+    void endMutation();
+    
+    void applicationInstanceAdded(ApplicationInstanceId instId, ApplicationId appId, String name);
+    
+    void componentAdded(ApplicationInstanceId instId, ComponentId cid, String name);
+    
+    void componentInstanceAdded(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId);
+    
+    void componentInstanceRemoved(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId);
+    
+    void propertiesAdded(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, String> properties);
+    
+    /** the instance has been given a lease with the given time to live; it replaces any earlier one */
+    void leaseGranted(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, long ttlMillis);
+    
+    /** 
+     * blocks until all mutations recorded by the calling thread are durable. 
+     * concurrent callers share the same write to disk.
+     */
+    void sync() throws IOException;
+    
+    /** condenses the recorded mutations, e.g. by writing a snapshot */
+    void compact() throws IOException;
+    
+    void close() throws IOException;
+}
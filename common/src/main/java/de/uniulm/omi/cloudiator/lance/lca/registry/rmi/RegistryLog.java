@@ -0,0 +1,766 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistryConstants;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * append-only log of all registry mutations plus compacted snapshots. 
+ * 
+ * the directory contains pairs of registry-&lt;generation&gt;.snapshot and 
+ * registry-&lt;generation&gt;.log files, where the snapshot holds the state 
+ * at the time the log of the same generation was started. once the log 
+ * has grown beyond a threshold, a new generation is started and a snapshot 
+ * is written in the background. once the new snapshot has been read back, 
+ * all generations older than the previous snapshot are deleted, so that 
+ * the previous snapshot and the logs following it remain as a fallback. 
+ * 
+ * records are length-prefixed and check-summed so that an incomplete 
+ * record at the end of the log (e.g. after a crash) is detected and dropped. 
+ * records are collected in memory and written by whichever thread syncs 
+ * first, so that concurrent writers share a single force to disk (group commit). 
+ * alternatively, records can be forced to disk periodically; then writers 
+ * do not wait for the disk at the risk of losing the changes of the last 
+ * interval on a crash.
+ */
+final class RegistryLog implements RegistryJournal {
+
+    static final long DEFAULT_COMPACTION_THRESHOLD = 64L * 1024L * 1024L;
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(LcaRegistry.class);
+    
+    private static final String FILE_PREFIX = "registry-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+    
+    private static final int SNAPSHOT_MAGIC = 0x4c434132;
+    private static final int SNAPSHOT_END = 0x454e4421;
+    private static final int RECORD_HEADER = 8;
+    
+    private static final byte APPLICATION_INSTANCE = 1;
+    private static final byte COMPONENT = 2;
+    private static final byte COMPONENT_INSTANCE = 3;
+    private static final byte PROPERTIES = 4;
+    private static final byte COMPONENT_INSTANCE_REMOVED = 5;
+    private static final byte LEASE = 6;
+    
+    private final File dir;
+    private final long compactionThreshold;
+    private final ReadWriteLock mutationLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+    private final long syncIntervalMillis;
+    private final ScheduledExecutorService background;
+    private final Object compactionLock = new Object();
+    private volatile RemoteRegistryImpl registry;
+    // protected by compactionLock
+    private boolean closed = false;
+    
+    private final Object appendLock = new Object();
+    // protected by appendLock
+    private RecordBuffer pending = new RecordBuffer();
+    // protected by appendLock
+    private long appended = 0;
+    
+    private final Object flushLock = new Object();
+    private volatile long durable = 0;
+    private volatile long logSize = 0;
+    private volatile IOException failure = null;
+    // protected by flushLock
+    private FileChannel channel;
+    // protected by flushLock
+    private long generation;
+    
+    /**
+     * @param syncIntervalMillis 0 to make every change durable before the 
+     *          registry call returns; otherwise the interval to force changes to disk
+     */
+    RegistryLog(File dirParam, long compactionThresholdParam, long syncIntervalMillisParam) {
+        dir = dirParam;
+        compactionThreshold = compactionThresholdParam;
+        syncIntervalMillis = syncIntervalMillisParam;
+        background = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "registry-log");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+    
+    /**
+     * restores the latest snapshot and all later log records into the given 
+     * registry and opens the log for appending. if the latest snapshot cannot 
+     * be read, an older one is used provided that all logs following it still 
+     * exist; otherwise recovery fails.
+     */
+    void recover(RemoteRegistryImpl registryParam) throws IOException {
+        if(!dir.isDirectory() && !dir.mkdirs()) 
+            throw new IOException("cannot create registry directory: " + dir);
+        deleteTemporaryFiles();
+        
+        final long start = System.nanoTime();
+        Map<ApplicationInstanceId, ApplicationState> state = new LinkedHashMap<>();
+        long first = 0;
+        List<File> unreadable = new ArrayList<>();
+        for(Entry<Long, File> snapshot : listFiles(SNAPSHOT_SUFFIX).descendingMap().entrySet()) {
+            try {
+                state = readSnapshot(snapshot.getValue());
+                first = snapshot.getKey().longValue();
+                break;
+            } catch(IOException ioe) {
+                LOGGER.warn("ignoring unreadable registry snapshot: " + snapshot.getValue(), ioe);
+                unreadable.add(snapshot.getValue());
+            }
+        }
+        
+        TreeMap<Long, File> logs = new TreeMap<>(listFiles(LOG_SUFFIX).tailMap(Long.valueOf(first)));
+        // a gap means that changes have been lost //
+        if(!logs.isEmpty()) {
+            for(long gen = first; gen <= logs.lastKey().longValue(); gen++) {
+                if(!logs.containsKey(Long.valueOf(gen))) 
+                    throw new IOException("cannot recover registry: " + fileFor(gen, LOG_SUFFIX) 
+                                    + " is missing and no later snapshot is readable");
+            }
+        }
+        long records = 0;
+        long validLength = 0;
+        for(Entry<Long, File> log : logs.entrySet()) {
+            boolean last = log.getKey().equals(logs.lastKey());
+            long[] result = replayLog(log.getValue(), state, last);
+            records += result[0];
+            validLength = result[1];
+        }
+        
+        synchronized(flushLock) {
+            generation = logs.isEmpty() ? first : logs.lastKey().longValue();
+            channel = openLog(generation);
+            channel.truncate(validLength);
+            channel.position(validLength);
+            logSize = validLength;
+        }
+        // keep unreadable snapshots aside so that they are not used as fallback //
+        for(File f : unreadable) {
+            File aside = new File(dir, f.getName() + CORRUPT_SUFFIX);
+            if(!f.renameTo(aside)) 
+                throw new IOException("cannot move unreadable registry snapshot aside: " + f);
+        }
+        deleteObsoleteGenerations(first);
+        
+        registryParam.restore(state.values());
+        registry = registryParam;
+        if(syncIntervalMillis > 0) {
+            background.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try { 
+                        flushPending(); 
+                    } catch(IOException ioe) {
+                        LOGGER.error("could not write registry log", ioe);
+                    }
+                }
+            }, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        LOGGER.info("recovered registry from " + dir + " (" + records + " log records) in " 
+                        + (System.nanoTime() - start) / 1000000 + " ms.");
+    }
+    
+    @Override
+    public void beginMutation() {
+        mutationLock.readLock().lock();
+    }
+    
+    @Override
+    public void endMutation() {
+        mutationLock.readLock().unlock();
+    }
+    
+    @Override
+    public void applicationInstanceAdded(ApplicationInstanceId instId, ApplicationId appId, String name) {
+        RecordBuffer record = new RecordBuffer();
+        record.write(APPLICATION_INSTANCE);
+        record.writeString(instId.toString());
+        record.writeString(appId.toString());
+        record.writeString(name);
+        append(record);
+    }
+    
+    @Override
+    public void componentAdded(ApplicationInstanceId instId, ComponentId cid, String name) {
+        RecordBuffer record = new RecordBuffer();
+        record.write(COMPONENT);
+        record.writeString(instId.toString());
+        record.writeString(cid.toString());
+        record.writeString(name);
+        append(record);
+    }
+    
+    @Override
+    public void componentInstanceAdded(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) {
+        RecordBuffer record = new RecordBuffer();
+        record.write(COMPONENT_INSTANCE);
+        record.writeString(instId.toString());
+        record.writeString(cid.toString());
+        record.writeString(cinstId.toString());
+        append(record);
+    }
+    
+    @Override
+    public void componentInstanceRemoved(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) {
+        RecordBuffer record = new RecordBuffer();
+        record.write(COMPONENT_INSTANCE_REMOVED);
+        record.writeString(instId.toString());
+        record.writeString(cid.toString());
+        record.writeString(cinstId.toString());
+        append(record);
+    }
+    
+    @Override
+    public void propertiesAdded(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+                    Map<String, String> properties) {
+        RecordBuffer record = new RecordBuffer();
+        record.write(PROPERTIES);
+        record.writeString(instId.toString());
+        record.writeString(cid.toString());
+        record.writeString(cinstId.toString());
+        record.writeInt(properties.size());
+        for(Entry<String, String> entry : properties.entrySet()) {
+            record.writeString(entry.getKey());
+            record.writeString(entry.getValue());
+        }
+        append(record);
+    }
+    
+    @Override
+    public void leaseGranted(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, long ttlMillis) {
+        RecordBuffer record = new RecordBuffer();
+        record.write(LEASE);
+        record.writeString(instId.toString());
+        record.writeString(cid.toString());
+        record.writeString(cinstId.toString());
+        record.writeLong(ttlMillis);
+        append(record);
+    }
+    
+    private void append(RecordBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.size());
+        synchronized(appendLock) {
+            pending.writeInt(record.size());
+            pending.writeInt((int) crc.getValue());
+            pending.write(record.array(), 0, record.size());
+            appended++;
+        }
+    }
+    
+    @Override
+    public void sync() throws IOException {
+        if(syncIntervalMillis > 0) {
+            if(failure != null) 
+                throw new IOException("registry log has failed before", failure);
+        } else {
+            syncAppended();
+        }
+        if(logSize > compactionThreshold) {
+            scheduleCompaction();
+        }
+    }
+    
+    private void flushPending() throws IOException {
+        synchronized(flushLock) {
+            if(channel.isOpen()) {
+                syncAppended();
+            }
+        }
+    }
+    
+    private void syncAppended() throws IOException {
+        long target;
+        synchronized(appendLock) {
+            target = appended;
+        }
+        if(durable < target) {
+            synchronized(flushLock) {
+                // another thread may have written our records in the meantime //
+                if(durable < target) {
+                    flush();
+                }
+            }
+        }
+    }
+    
+    // must be called with flushLock held //
+    private void flush() throws IOException {
+        if(failure != null) 
+            throw new IOException("registry log has failed before", failure);
+        RecordBuffer toWrite;
+        long upTo;
+        synchronized(appendLock) {
+            toWrite = pending;
+            upTo = appended;
+            pending = new RecordBuffer();
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(toWrite.array(), 0, toWrite.size());
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch(IOException ioe) {
+            failure = ioe;
+            throw ioe;
+        }
+        logSize += toWrite.size();
+        durable = upTo;
+    }
+    
+    private void scheduleCompaction() {
+        if(!compacting.compareAndSet(false, true)) 
+            return;
+        background.execute(new Runnable() {
+            @Override
+            public void run() {
+                try { 
+                    compact(); 
+                } catch(IOException ioe) {
+                    LOGGER.warn("could not compact registry log", ioe);
+                } finally {
+                    compacting.set(false);
+                }
+            }
+        });
+    }
+    
+    /**
+     * starts a new log generation and writes a snapshot of the state at 
+     * that point. mutations are only held back while the log is switched 
+     * and the (immutable) state of the components is collected.
+     */
+    @Override
+    public void compact() throws IOException {
+        synchronized(compactionLock) {
+            if(closed) 
+                return;
+            long newGeneration;
+            Collection<ApplicationState> state;
+            mutationLock.writeLock().lock();
+            try {
+                synchronized(flushLock) {
+                    flush();
+                    FileChannel newChannel = openLog(generation + 1);
+                    channel.close();
+                    channel = newChannel;
+                    generation = generation + 1;
+                    newGeneration = generation;
+                    logSize = 0;
+                }
+                state = registry.captureState();
+            } finally {
+                mutationLock.writeLock().unlock();
+            }
+            writeSnapshot(newGeneration, state);
+            verifySnapshot(newGeneration);
+            deleteObsoleteGenerations(newGeneration);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        background.shutdown();
+        synchronized(compactionLock) {
+            closed = true;
+            synchronized(flushLock) {
+                try {
+                    flush();
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+    }
+    
+    private FileChannel openLog(long gen) throws IOException {
+        return FileChannel.open(fileFor(gen, LOG_SUFFIX).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+    
+    private File fileFor(long gen, String suffix) {
+        return new File(dir, FILE_PREFIX + gen + suffix);
+    }
+    
+    private TreeMap<Long, File> listFiles(String suffix) {
+        TreeMap<Long, File> files = new TreeMap<>();
+        File[] candidates = dir.listFiles();
+        if(candidates == null) 
+            return files;
+        for(File f : candidates) {
+            String name = f.getName();
+            if(!name.startsWith(FILE_PREFIX) || !name.endsWith(suffix)) 
+                continue;
+            try {
+                files.put(Long.valueOf(name.substring(FILE_PREFIX.length(), name.length() - suffix.length())), f);
+            } catch(NumberFormatException nfe) {
+                LOGGER.warn("ignoring unexpected file in registry directory: " + f);
+            }
+        }
+        return files;
+    }
+    
+    /** 
+     * deletes all generations older than the last snapshot before the given 
+     * one. that snapshot and the logs following it are kept as a fallback.
+     */
+    private void deleteObsoleteGenerations(long current) {
+        Long previous = listFiles(SNAPSHOT_SUFFIX).lowerKey(Long.valueOf(current));
+        if(previous == null) 
+            return;
+        deleteFiles(SNAPSHOT_SUFFIX, previous.longValue());
+        deleteFiles(LOG_SUFFIX, previous.longValue());
+    }
+    
+    private void deleteFiles(String suffix, long belowGeneration) {
+        for(File f : listFiles(suffix).headMap(Long.valueOf(belowGeneration)).values()) {
+            if(!f.delete()) {
+                LOGGER.warn("could not delete obsolete registry file: " + f);
+            }
+        }
+    }
+    
+    /** removes left-overs of snapshots that have not been completed */
+    private void deleteTemporaryFiles() {
+        File[] candidates = dir.listFiles();
+        if(candidates == null) 
+            return;
+        for(File f : candidates) {
+            if(f.getName().endsWith(TEMP_SUFFIX) && !f.delete()) {
+                LOGGER.warn("could not delete temporary registry file: " + f);
+            }
+        }
+    }
+    
+    private void writeSnapshot(long gen, Collection<ApplicationState> state) throws IOException {
+        File tmp = fileFor(gen, SNAPSHOT_SUFFIX + TEMP_SUFFIX);
+        try(FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(state.size());
+            for(ApplicationState app : state) {
+                writeString(out, app.instId.toString());
+                writeString(out, app.appId.toString());
+                writeString(out, app.name);
+                out.writeInt(app.components.size());
+                for(ComponentState comp : app.components.values()) {
+                    writeString(out, comp.compId.toString());
+                    writeString(out, comp.name);
+                    out.writeInt(comp.counter);
+                    out.writeInt(comp.instances.size());
+                    for(Entry<ComponentInstanceId, Map<String, String>> inst : comp.instances.entrySet()) {
+                        writeString(out, inst.getKey().toString());
+                        out.writeInt(inst.getValue().size());
+                        for(Entry<String, String> prop : inst.getValue().entrySet()) {
+                            writeString(out, prop.getKey());
+                            writeString(out, prop.getValue());
+                        }
+                    }
+                    out.writeInt(comp.leases.size());
+                    for(Entry<ComponentInstanceId, Long> lease : comp.leases.entrySet()) {
+                        writeString(out, lease.getKey().toString());
+                        out.writeLong(lease.getValue().longValue());
+                    }
+                }
+            }
+            out.writeInt(SNAPSHOT_END);
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp.toPath(), fileFor(gen, SNAPSHOT_SUFFIX).toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /** 
+     * reads a freshly written snapshot back; a snapshot that cannot be read is 
+     * removed so that older generations are neither deleted nor replaced by it.
+     */
+    private void verifySnapshot(long gen) throws IOException {
+        File file = fileFor(gen, SNAPSHOT_SUFFIX);
+        try {
+            readSnapshot(file);
+        } catch(IOException ioe) {
+            if(!file.delete()) 
+                LOGGER.warn("could not delete unreadable registry snapshot: " + file);
+            throw ioe;
+        }
+    }
+    
+    private static Map<ApplicationInstanceId, ApplicationState> readSnapshot(File file) throws IOException {
+        ByteBuffer in = map(file);
+        Map<ApplicationInstanceId, ApplicationState> state = new LinkedHashMap<>();
+        try {
+            if(in.getInt() != SNAPSHOT_MAGIC) 
+                throw new IOException("not a registry snapshot: " + file);
+            for(int apps = in.getInt(); apps > 0; apps--) {
+                ApplicationState app = new ApplicationState(ApplicationInstanceId.fromString(readString(in)), 
+                                            ApplicationId.fromString(readString(in)), readString(in));
+                for(int comps = in.getInt(); comps > 0; comps--) {
+                    ComponentState comp = new ComponentState(ComponentId.fromString(readString(in)), readString(in));
+                    comp.counter = in.getInt();
+                    int instances = in.getInt();
+                    comp.instances = new HashMap<>(instances * 2);
+                    for(; instances > 0; instances--) {
+                        ComponentInstanceId cinstId = ComponentInstanceId.fromString(readString(in));
+                        int props = in.getInt();
+                        Map<String, String> map = new HashMap<>(props * 2);
+                        for(; props > 0; props--) {
+                            map.put(readString(in), readString(in));
+                        }
+                        comp.instances.put(cinstId, map);
+                    }
+                    for(int leases = in.getInt(); leases > 0; leases--) {
+                        comp.leases.put(ComponentInstanceId.fromString(readString(in)), Long.valueOf(in.getLong()));
+                    }
+                    app.components.put(comp.compId, comp);
+                }
+                state.put(app.instId, app);
+            }
+            if(in.getInt() != SNAPSHOT_END) 
+                throw new IOException("incomplete registry snapshot: " + file);
+        } catch(RuntimeException re) {
+            // buffer underflows and malformed identifiers //
+            throw new IOException("corrupted registry snapshot: " + file, re);
+        }
+        return state;
+    }
+    
+    /**
+     * @return the number of records replayed and the length of the valid part of the log
+     */
+    private static long[] replayLog(File file, Map<ApplicationInstanceId, ApplicationState> state, boolean last) throws IOException {
+        ByteBuffer in = map(file);
+        CRC32 crc = new CRC32();
+        long records = 0;
+        int valid = 0;
+        while(in.remaining() >= RECORD_HEADER) {
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if(length <= 0 || length > in.remaining()) 
+                break;
+            ByteBuffer record = in.slice();
+            record.limit(length);
+            crc.reset();
+            crc.update(record);
+            if((int) crc.getValue() != checksum) 
+                break;
+            record.rewind();
+            try {
+                applyRecord(record, state);
+            } catch(RuntimeException re) {
+                throw new IOException("inconsistent registry log: " + file, re);
+            }
+            in.position(in.position() + length);
+            valid = in.position();
+            records++;
+        }
+        if(valid < in.limit()) {
+            if(!last) 
+                throw new IOException("corrupted registry log: " + file);
+            LOGGER.warn("dropping " + (in.limit() - valid) + " bytes of incomplete records at the end of " + file);
+        }
+        return new long[] {records, valid};
+    }
+    
+    private static void applyRecord(ByteBuffer record, Map<ApplicationInstanceId, ApplicationState> state) {
+        byte type = record.get();
+        ApplicationInstanceId instId = ApplicationInstanceId.fromString(readString(record));
+        if(type == APPLICATION_INSTANCE) {
+            ApplicationState app = new ApplicationState(instId, ApplicationId.fromString(readString(record)), readString(record));
+            state.put(instId, app);
+            return;
+        }
+        ApplicationState app = state.get(instId);
+        if(app == null) 
+            throw new IllegalStateException("application instance not known: " + instId);
+        ComponentId cid = ComponentId.fromString(readString(record));
+        if(type == COMPONENT) {
+            app.components.put(cid, new ComponentState(cid, readString(record)));
+            return;
+        }
+        ComponentState comp = app.components.get(cid);
+        if(comp == null) 
+            throw new IllegalStateException("component not known: " + cid);
+        ComponentInstanceId cinstId = ComponentInstanceId.fromString(readString(record));
+        if(type == COMPONENT_INSTANCE) {
+            // same numbering as in ComponentInstanceContainer //
+            Map<String, String> props = new HashMap<>();
+            comp.counter++;
+            props.put(LcaRegistryConstants.INSTANCE_NR, Integer.toString(comp.counter));
+            comp.instances.put(cinstId, props);
+            return;
+        }
+        if(type == COMPONENT_INSTANCE_REMOVED) {
+            if(comp.instances.remove(cinstId) == null) 
+                throw new IllegalStateException("component instance not known: " + cinstId);
+            comp.leases.remove(cinstId);
+            return;
+        }
+        if(type == LEASE) {
+            if(!comp.instances.containsKey(cinstId)) 
+                throw new IllegalStateException("component instance not known: " + cinstId);
+            comp.leases.put(cinstId, Long.valueOf(record.getLong()));
+            return;
+        }
+        if(type != PROPERTIES) 
+            throw new IllegalStateException("unknown record type: " + type);
+        Map<String, String> props = comp.instances.get(cinstId);
+        if(props == null) 
+            throw new IllegalStateException("component instance not known: " + cinstId);
+        for(int count = record.getInt(); count > 0; count--) {
+            props.put(readString(record), readString(record));
+        }
+    }
+    
+    private static ByteBuffer map(File file) throws IOException {
+        try(FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            if(size > Integer.MAX_VALUE) 
+                throw new IOException("registry file too large: " + file);
+            MappedByteBuffer buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return buffer;
+        }
+    }
+    
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if(s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if(length == -1) 
+            return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /** state of an application instance as stored in snapshots */
+    static final class ApplicationState {
+        final ApplicationInstanceId instId;
+        final ApplicationId appId;
+        final String name;
+        final Map<ComponentId, ComponentState> components = new LinkedHashMap<>();
+        
+        ApplicationState(ApplicationInstanceId instIdParam, ApplicationId appIdParam, String nameParam) {
+            instId = instIdParam;
+            appId = appIdParam;
+            name = nameParam;
+        }
+    }
+    
+    /** state of a component as stored in snapshots */
+    static final class ComponentState {
+        final ComponentId compId;
+        final String name;
+        int counter;
+        Map<ComponentInstanceId, Map<String, String>> instances = new HashMap<>();
+        // time to live of the lease of an instance, if any //
+        Map<ComponentInstanceId, Long> leases = new HashMap<>();
+        
+        ComponentState(ComponentId compIdParam, String nameParam) {
+            compId = compIdParam;
+            name = nameParam;
+        }
+    }
+    
+    /** in-memory buffer that does not throw IOExceptions */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        
+        RecordBuffer() {
+            super(256);
+        }
+        
+        byte[] array() {
+            return buf;
+        }
+        
+        void writeInt(int v) {
+            write(v >>> 24);
+            write(v >>> 16);
+            write(v >>> 8);
+            write(v);
+        }
+        
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+        
+        void writeString(String s) {
+            if(s == null) {
+                writeInt(-1);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
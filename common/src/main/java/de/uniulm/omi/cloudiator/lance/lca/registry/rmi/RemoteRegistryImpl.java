@@ -18,10 +18,16 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
 
+import java.io.File;
+import java.io.IOException;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,13 +38,69 @@ import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
 import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
 
+/** 
+ * the registry does not use a global lock. application instances and components 
+ * are kept in concurrent maps, while each component maintains its instances 
+ * as immutable snapshots so that dumps never block writers and vice versa.
+ * 
+ * a durable registry additionally records every mutation in a {@link RegistryLog} 
+ * before the call returns and recovers its state from there on start-up.
+ * 
+ * leased component instances are expired by a {@link LeaseWheel} that is 
+ * only started once the first lease is requested.
+ */
 public final class RemoteRegistryImpl implements RmiLcaRegistry {
     
     private final static Logger LOGGER = LoggerFactory.getLogger(LcaRegistry.class);
-    private final Map<ApplicationInstanceId,AppInstanceContainer> apps = new HashMap<>();
+    private final ConcurrentMap<ApplicationInstanceId,AppInstanceContainer> apps = new ConcurrentHashMap<>();
+    private final RegistryJournal journal;
+    private final Object wheelLock = new Object();
+    // notified whenever an application instance or a component has been added //
+    private final Object structureLock = new Object();
+    // protected by wheelLock //
+    private LeaseWheel leaseWheel;
+    
+    public RemoteRegistryImpl() {
+        this(RegistryJournal.NONE);
+    }
+    
+    private RemoteRegistryImpl(RegistryJournal journalParam) {
+        journal = journalParam;
+    }
+    
+    /**
+     * creates a registry that persists all changes to the given directory 
+     * and recovers the state found there.
+     * 
+     * @param syncIntervalMillis 0 to persist every change before returning from 
+     *          the call; otherwise the interval in which changes are persisted
+     */
+    public static RemoteRegistryImpl openDurable(File dir, long syncIntervalMillis) throws IOException {
+        return openDurable(dir, RegistryLog.DEFAULT_COMPACTION_THRESHOLD, syncIntervalMillis);
+    }
+    
+    static RemoteRegistryImpl openDurable(File dir, long compactionThreshold, long syncIntervalMillis) throws IOException {
+        RegistryLog log = new RegistryLog(dir, compactionThreshold, syncIntervalMillis);
+        RemoteRegistryImpl reg = new RemoteRegistryImpl(log);
+        log.recover(reg);
+        return reg;
+    }
+    
+    void compact() throws IOException {
+        journal.compact();
+    }
+    
+    void close() throws IOException {
+        synchronized(wheelLock) {
+            if(leaseWheel != null) {
+                leaseWheel.shutdown();
+            }
+        }
+        journal.close();
+    }
     
     @Override
-    public synchronized Map<ComponentInstanceId, Map<String, String>> dumpComponent(ApplicationInstanceId instId, ComponentId compId) throws RemoteException {
+    public Map<ComponentInstanceId, Map<String, String>> dumpComponent(ApplicationInstanceId instId, ComponentId compId) throws RemoteException {
         AppInstanceContainer c = apps.get(instId);
         if(c == null) 
             return Collections.emptyMap();
@@ -51,38 +113,155 @@ public final class RemoteRegistryImpl implements RmiLcaRegistry {
      * @return true if this application instance has been added successfully. false if it was already contained
              in the registry.
      */
-    public synchronized boolean addApplicationInstance(ApplicationInstanceId instId, ApplicationId appId, String name) throws RemoteException {
-        if(apps.containsKey(instId)) {
-            LOGGER.info("application instance '" + instId + "' already exists.");
-            return false;
+    public boolean addApplicationInstance(ApplicationInstanceId instId, ApplicationId appId, String name) throws RemoteException {
+        journal.beginMutation();
+        try {
+            // application instances are added rarely; the lock makes sure the application 
+            // instance is logged before any of its components can be logged // 
+            synchronized(apps) {
+                if(apps.containsKey(instId)) {
+                    LOGGER.info("application instance '" + instId + "' already exists.");
+                    return false;
+                }
+                journal.applicationInstanceAdded(instId, appId, name);
+                apps.put(instId, new AppInstanceContainer(instId, appId, name));
+            }
+        } finally {
+            journal.endMutation();
         }
-        apps.put(instId, new AppInstanceContainer(instId, appId, name));
+        structureChanged();
+        sync();
         return true;
     }
     
     @Override
-    public synchronized void addComponent(ApplicationInstanceId instId, ComponentId cid, String name)  throws RemoteException {
+    public void addComponent(ApplicationInstanceId instId, ComponentId cid, String name)  throws RemoteException {
+        AppInstanceContainer c = apps.get(instId);
+        if(c == null) 
+            throw new IllegalArgumentException("not known: " + instId);
+        journal.beginMutation();
+        try { 
+            c.addComponent(cid, name, journal); 
+        } finally {
+            journal.endMutation();
+        }
+        structureChanged();
+        sync();
+    }
+
+    @Override
+    public void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) 
+                throws RemoteException {
         AppInstanceContainer c = apps.get(instId);
         if(c == null) 
             throw new IllegalArgumentException("not known: " + instId);
-        c.addComponent(cid, name);
+        journal.beginMutation();
+        try { 
+            c.addComponentInstance(cid, cinstId, journal); 
+        } finally {
+            journal.endMutation();
+        }
+        sync();
     }
 
     @Override
-    public synchronized void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) 
+    public void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties) 
                 throws RemoteException {
         AppInstanceContainer c = apps.get(instId);
         if(c == null) 
             throw new IllegalArgumentException("not known: " + instId);
-        c.addComponentInstance(cid, cinstId);
+        journal.beginMutation();
+        try { 
+            c.addComponentInstance(cid, cinstId, properties, journal); 
+        } finally {
+            journal.endMutation();
+        }
+        sync();
     }
 
     @Override
-    public synchronized void addComponentProperty(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, String property, Object value) throws RemoteException {
+    public void addComponentProperty(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, String property, Object value) throws RemoteException {
         AppInstanceContainer c = apps.get(instId);
         if(c == null) 
             throw new IllegalArgumentException("not known: " + instId);
-        c.addComponentProperty(cid, cinstId, property, value);
+        journal.beginMutation();
+        try { 
+            c.addComponentProperty(cid, cinstId, property, value, journal); 
+        } finally {
+            journal.endMutation();
+        }
+        sync();
+    }
+    
+    @Override
+    public void addComponentProperties(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties) throws RemoteException {
+        AppInstanceContainer c = apps.get(instId);
+        if(c == null) 
+            throw new IllegalArgumentException("not known: " + instId);
+        journal.beginMutation();
+        try { 
+            c.addComponentProperties(cid, cinstId, properties, journal); 
+        } finally {
+            journal.endMutation();
+        }
+        sync();
+    }
+    
+    @Override
+    public boolean renewComponentInstanceLease(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, long ttlMillis) 
+                throws RemoteException {
+        if(ttlMillis <= 0) 
+            throw new IllegalArgumentException("time to live must be positive: " + ttlMillis);
+        AppInstanceContainer c = apps.get(instId);
+        if(c == null || !c.componentExists(cid)) 
+            return false;
+        ComponentInstanceContainer comp = c.getComponent(cid);
+        LeaseWheel wheel = leaseWheel();
+        journal.beginMutation();
+        final boolean b;
+        try { 
+            b = comp.renewLease(cinstId, ttlMillis, wheel, journal);
+        } finally {
+            journal.endMutation();
+        }
+        sync();
+        return b;
+    }
+    
+    private LeaseWheel leaseWheel() {
+        synchronized(wheelLock) {
+            if(leaseWheel == null) {
+                leaseWheel = new LeaseWheel(LeaseWheel.DEFAULT_TICK_MILLIS, new LeaseWheel.ExpiryHandler() {
+                    @Override
+                    public void expired(LeaseWheel.Lease lease) {
+                        expireLease(lease);
+                    }
+                });
+            }
+            return leaseWheel;
+        }
+    }
+    
+    private void expireLease(LeaseWheel.Lease lease) {
+        journal.beginMutation();
+        try {
+            lease.component.removeExpired(lease, journal);
+        } finally {
+            journal.endMutation();
+        }
+        try { 
+            journal.sync(); 
+        } catch(IOException ioe) {
+            LOGGER.warn("could not persist expiry of component instance " + lease.instanceId, ioe);
+        }
+    }
+    
+    private void sync() throws RemoteException {
+        try { 
+            journal.sync(); 
+        } catch(IOException ioe) {
+            throw new RemoteException("could not persist registry change", ioe);
+        }
     }
     
     @Override
@@ -107,4 +286,80 @@ public final class RemoteRegistryImpl implements RmiLcaRegistry {
         return c != null && c.componentExists(compId);
     }
 
+    @Override
+    public long getComponentVersion(ApplicationInstanceId appInstId, ComponentId compId) throws RemoteException {
+        AppInstanceContainer a = apps.get(appInstId);
+        if(a == null || !a.componentExists(compId)) 
+            return LcaRegistry.UNKNOWN_VERSION;
+        return a.getComponent(compId).getVersion();
+    }
+
+    @Override
+    public long awaitComponentChange(ApplicationInstanceId appInstId, ComponentId compId, long knownVersion, long timeoutMillis) 
+                throws RemoteException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        try { 
+            ComponentInstanceContainer c = awaitComponent(appInstId, compId, deadline);
+            if(c == null) 
+                return LcaRegistry.UNKNOWN_VERSION;
+            return c.awaitChange(knownVersion, deadline - System.currentTimeMillis()); 
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("interrupted while waiting for changes", ie);
+        }
+    }
+    
+    /** @return the component once it has been added; null if it has not been added before the deadline */
+    private ComponentInstanceContainer awaitComponent(ApplicationInstanceId appInstId, ComponentId compId, long deadline) 
+                throws InterruptedException {
+        synchronized(structureLock) {
+            while(true) {
+                AppInstanceContainer a = apps.get(appInstId);
+                if(a != null && a.componentExists(compId)) 
+                    return a.getComponent(compId);
+                long remaining = deadline - System.currentTimeMillis();
+                if(remaining <= 0) 
+                    return null;
+                structureLock.wait(remaining);
+            }
+        }
+    }
+    
+    private void structureChanged() {
+        synchronized(structureLock) {
+            structureLock.notifyAll();
+        }
+    }
+    
+    /** must only be called before the registry is in use */
+    void restore(Collection<RegistryLog.ApplicationState> state) {
+        for(RegistryLog.ApplicationState app : state) {
+            AppInstanceContainer a = new AppInstanceContainer(app.instId, app.appId, app.name);
+            for(RegistryLog.ComponentState comp : app.components.values()) {
+                ComponentInstanceContainer c = a.addComponent(comp.compId, comp.name, RegistryJournal.NONE);
+                c.restore(comp.instances, comp.leases, comp.counter);
+                if(c.hasLeases()) {
+                    c.restoreLeases(leaseWheel());
+                }
+            }
+            apps.put(app.instId, a);
+        }
+    }
+    
+    /** must only be called while mutations are held back */
+    Collection<RegistryLog.ApplicationState> captureState() {
+        List<RegistryLog.ApplicationState> state = new ArrayList<>(apps.size());
+        for(AppInstanceContainer a : apps.values()) {
+            RegistryLog.ApplicationState app = new RegistryLog.ApplicationState(a.getInstanceId(), a.getApplicationId(), a.getName());
+            for(ComponentInstanceContainer c : a.getComponents()) {
+                RegistryLog.ComponentState comp = new RegistryLog.ComponentState(c.getComponentId(), c.getName());
+                comp.counter = c.getInstanceCounter();
+                comp.instances = c.dumpInstances();
+                comp.leases = c.getLeaseTtls();
+                app.components.put(comp.compId, comp);
+            }
+            state.add(app);
+        }
+        return state;
+    }
 }
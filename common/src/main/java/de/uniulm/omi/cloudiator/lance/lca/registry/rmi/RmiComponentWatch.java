@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.TimeUnit;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.AbstractRegistryWatch;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+
+/** 
+ * long-polls the remote registry for new versions of a component. a 
+ * component that does not exist yet is waited for; its addition counts 
+ * as a change.
+ */
+final class RmiComponentWatch extends AbstractRegistryWatch {
+
+    private static final long WAIT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+    private static final long UNKNOWN_VERSION = -1;
+    
+    private final RmiLcaRegistry delegate;
+    private long knownVersion = UNKNOWN_VERSION;
+    private boolean started;
+    
+    RmiComponentWatch(RmiLcaRegistry delegateParam, ApplicationInstanceId appInstIdParam, 
+            ComponentId compIdParam, ComponentChangeListener listenerParam) {
+        super(appInstIdParam, compIdParam, listenerParam);
+        delegate = delegateParam;
+    }
+
+    @Override
+    protected boolean awaitChange() throws RegistrationException {
+        try {
+            if(knownVersion == UNKNOWN_VERSION) {
+                // the first call only determines the current version; later ones wait for the component //
+                knownVersion = delegate.awaitComponentChange(appInstId, compId, UNKNOWN_VERSION, started ? WAIT_TIMEOUT : 0);
+                boolean added = started && knownVersion != UNKNOWN_VERSION;
+                started = true;
+                return added;
+            }
+            long version = delegate.awaitComponentChange(appInstId, compId, knownVersion, WAIT_TIMEOUT);
+            if(version == knownVersion) {
+                return false;
+            }
+            knownVersion = version;
+            return true;
+        } catch(RemoteException re) {
+            throw new RegistrationException("operation failed.", re);
+        }
+    }
+}
@@ -32,9 +32,23 @@ public interface RmiLcaRegistry extends Remote {
     public void addComponent(ApplicationInstanceId instId, ComponentId cid, String name) throws RemoteException;
     public void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) throws RemoteException;
     void addComponentProperty(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, String property, Object value) throws RemoteException;
+    void addComponentProperties(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties) throws RemoteException;
+    void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, Map<String, ?> properties) throws RemoteException;
+    public boolean renewComponentInstanceLease(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, long ttlMillis) throws RemoteException;
     public Map<ComponentInstanceId, Map<String, String>> dumpComponent(ApplicationInstanceId instId, ComponentId compId) throws RemoteException;
     public String getComponentProperty(ApplicationInstanceId appInstId,
             ComponentId compId, ComponentInstanceId myId, String name) throws RemoteException;
     public boolean applicationInstanceExists(ApplicationInstanceId appInstId) throws RemoteException;
     public boolean applicationComponentExists(ApplicationInstanceId appInstId, ComponentId compId) throws RemoteException;
+    public long getComponentVersion(ApplicationInstanceId appInstId, ComponentId compId) throws RemoteException;
+    
+    /**
+     * blocks until the component has a version different from knownVersion or 
+     * the timeout has passed. waits for the component to be added if it does 
+     * not exist yet. 
+     * 
+     * @return the current version of the component; UNKNOWN_VERSION if the 
+     *          component has not been added before the timeout has passed
+     */
+    public long awaitComponentChange(ApplicationInstanceId appInstId, ComponentId compId, long knownVersion, long timeoutMillis) throws RemoteException;
 }
@@ -18,16 +18,28 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
 
+import java.io.File;
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
 import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
 import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryContainer;
 
 public final class RmiRegistryContainer implements RegistryContainer {
 
-    private final RemoteRegistryImpl reg = new RemoteRegistryImpl();
+    /** directory to persist the registry in; if not set, the registry is kept in memory only */
+    public static final String LCA_REGISTRY_CONFIG_RMI_DIRECTORY_KEY = "lca.client.config.registry.rmi.directory";
+    /** interval in milliseconds to persist changes in; if not set, every change is persisted immediately */
+    public static final String LCA_REGISTRY_CONFIG_RMI_SYNC_INTERVAL_KEY = "lca.client.config.registry.rmi.sync_interval";
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegistryContainer.class);
+    
+    private final RemoteRegistryImpl reg;
     private final RmiLcaRegistry exportedRegistry;
     private final RmiWrapper wrapper;
     
@@ -38,7 +50,8 @@ public final class RmiRegistryContainer implements RegistryContainer {
         return re;
     }
     
-    private RmiRegistryContainer() throws RemoteException {
+    private RmiRegistryContainer(RemoteRegistryImpl regParam) throws RemoteException {
+        reg = regParam;
         exportedRegistry = initComponentRegistry();
         wrapper = new RmiWrapper(exportedRegistry);
     }
@@ -49,10 +62,24 @@ public final class RmiRegistryContainer implements RegistryContainer {
     }
     
     public static RegistryContainer create() throws RegistrationException {
+        RemoteRegistryImpl impl = createRegistryImpl();
         try { 
-            return new RmiRegistryContainer(); 
+            return new RmiRegistryContainer(impl); 
         } catch(RemoteException re) {
             throw new RegistrationException("cannot create registry", re);
         }
     }
+    
+    static RemoteRegistryImpl createRegistryImpl() throws RegistrationException {
+        String dir = System.getProperty(LCA_REGISTRY_CONFIG_RMI_DIRECTORY_KEY);
+        if(dir == null || dir.isEmpty()) 
+            return new RemoteRegistryImpl();
+        
+        LOGGER.info("using durable registry in directory: " + dir);
+        try { 
+            return RemoteRegistryImpl.openDurable(new File(dir), Long.getLong(LCA_REGISTRY_CONFIG_RMI_SYNC_INTERVAL_KEY, 0L).longValue()); 
+        } catch(IOException ioe) {
+            throw new RegistrationException("cannot recover registry from " + dir, ioe);
+        }
+    }
 }
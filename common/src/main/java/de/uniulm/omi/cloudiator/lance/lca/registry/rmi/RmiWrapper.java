@@ -18,7 +18,12 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
 
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.rmi.RemoteException;
+import java.util.HashMap;
 import java.util.Map;
 
 import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
@@ -26,15 +31,31 @@ import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
 import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
 import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
 import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryWatch;
 
+/**
+ * adapts an {@link RmiLcaRegistry} to {@link LcaRegistry}. within the JVM that 
+ * hosts the registry, calls can go to the registry implementation directly; 
+ * when the wrapper is sent to another JVM, only the exported stub is sent and 
+ * used from there on.
+ */
 public final class RmiWrapper implements LcaRegistry {
 
     private static final long serialVersionUID = -861702428390506630L;
+    /** the exported stub; null if the registry has not been exported */
     private final RmiLcaRegistry delegate;
+    /** the registry all calls go to */
+    private transient RmiLcaRegistry local;
     
     RmiWrapper(RmiLcaRegistry delegateParam) {
-        delegate = delegateParam;
+        this(delegateParam, delegateParam);
+    }
+    
+    RmiWrapper(RmiLcaRegistry exportedParam, RmiLcaRegistry localParam) {
+        delegate = exportedParam;
+        local = localParam;
     }
        
     /**
@@ -44,7 +65,7 @@ public final class RmiWrapper implements LcaRegistry {
     @Override
     public boolean addApplicationInstance(ApplicationInstanceId instId, ApplicationId appId, String name) throws RegistrationException {
         try { 
-            return delegate.addApplicationInstance(instId, appId, name); 
+            return local.addApplicationInstance(instId, appId, name); 
         } catch(RemoteException re){
             throw new RegistrationException("operation failed.", re);
         }
@@ -53,7 +74,7 @@ public final class RmiWrapper implements LcaRegistry {
     @Override
     public void addComponent(ApplicationInstanceId instId, ComponentId cid, String name) throws RegistrationException {
         try { 
-            delegate.addComponent(instId, cid, name);
+            local.addComponent(instId, cid, name);
         } catch(RemoteException re){
             throw new RegistrationException("operation failed.", re);
         }
@@ -62,7 +83,18 @@ public final class RmiWrapper implements LcaRegistry {
     @Override
     public void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId) throws RegistrationException {
         try { 
-            delegate.addComponentInstance(instId, cid, cinstId); 
+            local.addComponentInstance(instId, cid, cinstId); 
+        } catch(RemoteException re){
+            throw new RegistrationException("operation failed.", re);
+        }
+    }
+
+    @Override
+    public void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+            Map<String, ?> properties) throws RegistrationException {
+        try { 
+            // copy to make sure the map can be serialised //
+            local.addComponentInstance(instId, cid, cinstId, new HashMap<String, Object>(properties)); 
         } catch(RemoteException re){
             throw new RegistrationException("operation failed.", re);
         }
@@ -72,7 +104,28 @@ public final class RmiWrapper implements LcaRegistry {
     public void addComponentProperty(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, String property,
             Object value) throws RegistrationException {
         try { 
-            delegate.addComponentProperty(instId, cid, cinstId, property, value); 
+            local.addComponentProperty(instId, cid, cinstId, property, value); 
+        } catch(RemoteException re){
+            throw new RegistrationException("operation failed.", re);
+        }
+    }
+
+    @Override
+    public void addComponentProperties(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+            Map<String, ?> properties) throws RegistrationException {
+        try { 
+            // copy to make sure the map can be serialised //
+            local.addComponentProperties(instId, cid, cinstId, new HashMap<String, Object>(properties)); 
+        } catch(RemoteException re){
+            throw new RegistrationException("operation failed.", re);
+        }
+    }
+
+    @Override
+    public boolean renewComponentInstanceLease(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId, 
+            long ttlMillis) throws RegistrationException {
+        try { 
+            return local.renewComponentInstanceLease(instId, cid, cinstId, ttlMillis); 
         } catch(RemoteException re){
             throw new RegistrationException("operation failed.", re);
         }
@@ -82,7 +135,7 @@ public final class RmiWrapper implements LcaRegistry {
     public Map<ComponentInstanceId, Map<String, String>> dumpComponent(
             ApplicationInstanceId instId, ComponentId compId) throws RegistrationException {
         try { 
-            return delegate.dumpComponent(instId, compId);  
+            return local.dumpComponent(instId, compId);  
         } catch(RemoteException re){
             throw new RegistrationException("operation failed.", re);
         }
@@ -92,7 +145,7 @@ public final class RmiWrapper implements LcaRegistry {
     public String getComponentProperty(ApplicationInstanceId appInstId, ComponentId compId, ComponentInstanceId myId, String name)
             throws RegistrationException {
          try { 
-             return delegate.getComponentProperty(appInstId, compId, myId, name); 
+             return local.getComponentProperty(appInstId, compId, myId, name); 
          } catch(RemoteException re){
              throw new RegistrationException("operation failed.", re);
          }
@@ -101,7 +154,7 @@ public final class RmiWrapper implements LcaRegistry {
     @Override
     public boolean applicationInstanceExists(ApplicationInstanceId appInstId) throws RegistrationException {
         try { 
-            return delegate.applicationInstanceExists(appInstId); 
+            return local.applicationInstanceExists(appInstId); 
         } catch(RemoteException re){
             throw new RegistrationException("operation failed.", re);
         }
@@ -110,9 +163,35 @@ public final class RmiWrapper implements LcaRegistry {
     @Override
     public boolean applicationComponentExists(ApplicationInstanceId appInstId, ComponentId compId) throws RegistrationException {
         try { 
-            return delegate.applicationComponentExists(appInstId, compId); 
+            return local.applicationComponentExists(appInstId, compId); 
         } catch(RemoteException re){
             throw new RegistrationException("operation failed.", re);
         }
     }
+
+    @Override
+    public long getComponentVersion(ApplicationInstanceId appInstId, ComponentId compId) throws RegistrationException {
+        try { 
+            return local.getComponentVersion(appInstId, compId); 
+        } catch(RemoteException re){
+            throw new RegistrationException("operation failed.", re);
+        }
+    }
+
+    @Override
+    public RegistryWatch watchComponent(ApplicationInstanceId appInstId, ComponentId compId, ComponentChangeListener listener) 
+            throws RegistrationException {
+        return new RmiComponentWatch(local, appInstId, compId, listener).start();
+    }
+    
+    private void writeObject(ObjectOutputStream stream) throws IOException {
+        if(delegate == null) 
+            throw new NotSerializableException("registry has not been exported for remote access");
+        stream.defaultWriteObject();
+    }
+    
+    private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+        stream.defaultReadObject();
+        local = delegate;
+    }
 }
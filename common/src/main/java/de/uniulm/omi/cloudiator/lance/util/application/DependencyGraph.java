@@ -0,0 +1,181 @@
+package de.uniulm.omi.cloudiator.lance.util.application;
+
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * the start-up dependencies between the components of an application. a
+ * component depends on another one if one of its out ports requires at
+ * least one sink (min &gt; 0) and is wired to an in port of the other
+ * component, i.e. the provided port number of the out port matches the
+ * required port number of the in port. a component that is wired to
+ * itself (e.g. the peers of a cluster) does not depend on itself.
+ */
+public final class DependencyGraph {
+
+    private final Map<ComponentId, ComponentInfo> components;
+    private final Map<ComponentId, Set<ComponentId>> requirements;
+    private final Map<ComponentId, Set<ComponentId>> dependents;
+    private final List<ComponentInfo> ordered;
+    private final Map<ComponentId, Integer> depth;
+
+    private DependencyGraph(Map<ComponentId, ComponentInfo> componentsParam, Map<ComponentId, Set<ComponentId>> requirementsParam,
+                Map<ComponentId, Set<ComponentId>> dependentsParam) {
+        components = componentsParam;
+        requirements = requirementsParam;
+        dependents = dependentsParam;
+        ordered = new ArrayList<>(components.size());
+        depth = new HashMap<>();
+        sort();
+    }
+
+    /**
+     * @throws IllegalArgumentException if two components share an id or
+     *          if the required ports form a cycle
+     */
+    public static DependencyGraph of(AppArchitecture arch) {
+        Map<ComponentId, ComponentInfo> components = new HashMap<>();
+        Map<Integer, List<ComponentId>> providers = new HashMap<>();
+        for(ComponentInfo info : arch.getComponents()) {
+            if(components.put(info.getComponentId(), info) != null) {
+                throw new IllegalArgumentException("component " + info.getComponentId() + " is contained more than once");
+            }
+            for(InportInfo in : info.getInportInfos()) {
+                List<ComponentId> list = providers.get(in.getRequiredPortNumber());
+                if(list == null) {
+                    list = new ArrayList<>();
+                    providers.put(in.getRequiredPortNumber(), list);
+                }
+                list.add(info.getComponentId());
+            }
+        }
+        Map<ComponentId, Set<ComponentId>> requirements = new HashMap<>();
+        Map<ComponentId, Set<ComponentId>> dependents = new HashMap<>();
+        for(ComponentId id : components.keySet()) {
+            requirements.put(id, new LinkedHashSet<ComponentId>());
+            dependents.put(id, new LinkedHashSet<ComponentId>());
+        }
+        for(ComponentInfo info : components.values()) {
+            ComponentId consumer = info.getComponentId();
+            for(OutportInfo out : info.getOutportInfos()) {
+                List<ComponentId> sinks = providers.get(out.getProvidedPortNumber());
+                if(out.getMin() <= 0 || sinks == null) {
+                    continue;
+                }
+                for(ComponentId sink : sinks) {
+                    if(sink.equals(consumer)) {
+                        continue;
+                    }
+                    requirements.get(consumer).add(sink);
+                    dependents.get(sink).add(consumer);
+                }
+            }
+        }
+        return new DependencyGraph(components, requirements, dependents);
+    }
+
+    /** orders the components topologically (kahn) and computes their depth */
+    private void sort() {
+        Map<ComponentId, Integer> open = new HashMap<>();
+        Deque<ComponentId> free = new ArrayDeque<>();
+        for(ComponentId id : components.keySet()) {
+            int count = requirements.get(id).size();
+            open.put(id, Integer.valueOf(count));
+            if(count == 0) {
+                free.add(id);
+                depth.put(id, Integer.valueOf(1));
+            }
+        }
+        while(!free.isEmpty()) {
+            ComponentId id = free.poll();
+            ordered.add(components.get(id));
+            int next = depth.get(id).intValue() + 1;
+            for(ComponentId dependent : dependents.get(id)) {
+                Integer known = depth.get(dependent);
+                if(known == null || known.intValue() < next) {
+                    depth.put(dependent, Integer.valueOf(next));
+                }
+                int count = open.get(dependent).intValue() - 1;
+                open.put(dependent, Integer.valueOf(count));
+                if(count == 0) {
+                    free.add(dependent);
+                }
+            }
+        }
+        if(ordered.size() < components.size()) {
+            List<ComponentId> cyclic = new ArrayList<>();
+            for(Map.Entry<ComponentId, Integer> entry : open.entrySet()) {
+                if(entry.getValue().intValue() > 0) {
+                    cyclic.add(entry.getKey());
+                }
+            }
+            throw new IllegalArgumentException("required ports form a cycle between components " + cyclic);
+        }
+    }
+
+    /** @return all components; every component comes after the components it requires */
+    public List<ComponentInfo> getComponents() {
+        return Collections.unmodifiableList(ordered);
+    }
+
+    public ComponentInfo getComponent(ComponentId id) {
+        return components.get(id);
+    }
+
+    /** @return the components that have to be ready before the given one can start */
+    public Set<ComponentId> getRequirements(ComponentId id) {
+        return Collections.unmodifiableSet(requirements.get(id));
+    }
+
+    /** @return the components that require the given one */
+    public Set<ComponentId> getDependents(ComponentId id) {
+        return Collections.unmodifiableSet(dependents.get(id));
+    }
+
+    /** @return the number of components on the longest chain ending with the given one */
+    public int getDepth(ComponentId id) {
+        return depth.get(id).intValue();
+    }
+
+    /** @return the number of components on the longest dependency chain */
+    public int getCriticalPathLength() {
+        int max = 0;
+        for(Integer d : depth.values()) {
+            max = Math.max(max, d.intValue());
+        }
+        return max;
+    }
+
+    /** @return the longest dependency chain, starting with a component that requires no other */
+    public List<ComponentInfo> getCriticalPath() {
+        List<ComponentInfo> path = new ArrayList<>();
+        ComponentId current = null;
+        for(int i = ordered.size() - 1; i >= 0; i--) {
+            ComponentId id = ordered.get(i).getComponentId();
+            if(current == null || getDepth(id) > getDepth(current)) {
+                current = id;
+            }
+        }
+        while(current != null) {
+            path.add(0, components.get(current));
+            ComponentId next = null;
+            for(ComponentId required : requirements.get(current)) {
+                if(getDepth(required) == getDepth(current) - 1) {
+                    next = required;
+                    break;
+                }
+            }
+            current = next;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.util.execution;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * runs tasks on a fixed number of threads such that tasks submitted 
+ * for the same key run one after the other in submission order while 
+ * tasks for different keys run in parallel. each key has a lane of its 
+ * own; a lane hands its thread back after every task so that busy keys 
+ * cannot starve the others. the number of queued tasks is bounded.
+ */
+public final class KeyedExecutor<K> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyedExecutor.class);
+
+    private final ExecutorService workers;
+    private final int capacity;
+    // a lane is only modified within compute operations on its key //
+    private final ConcurrentHashMap<K, Lane> lanes = new ConcurrentHashMap<>();
+    
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong runNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public KeyedExecutor(int threads, int capacityParam, ThreadFactory threadFactory) {
+        if(capacityParam < 1) 
+            throw new IllegalArgumentException("capacity must be positive: " + capacityParam);
+        workers = new LoggingThreadPoolExecutor(threads, threadFactory);
+        capacity = capacityParam;
+    }
+    
+    /**
+     * @throws RejectedExecutionException if the executor has been shut 
+     *             down or too many tasks are waiting to be run
+     */
+    public void execute(final K key, Runnable task) {
+        if(queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            throw new RejectedExecutionException("too many queued tasks: " + capacity);
+        }
+        final Task t = new Task(task);
+        final boolean[] start = new boolean[1];
+        lanes.compute(key, (k, lane) -> {
+            Lane l = lane == null ? new Lane() : lane;
+            l.tasks.add(t);
+            if(!l.scheduled) {
+                l.scheduled = true;
+                start[0] = true;
+            }
+            return l;
+        });
+        if(start[0]) {
+            schedule(key);
+        }
+    }
+    
+    private void schedule(final K key) {
+        try {
+            workers.execute(() -> runNext(key));
+        } catch(RejectedExecutionException ree) {
+            Lane dropped = lanes.remove(key);
+            if(dropped != null) {
+                queued.addAndGet(-dropped.tasks.size());
+            }
+            throw ree;
+        }
+    }
+    
+    private void runNext(final K key) {
+        final Task[] next = new Task[1];
+        lanes.computeIfPresent(key, (k, lane) -> {
+            next[0] = lane.tasks.poll();
+            return lane;
+        });
+        Task t = next[0];
+        if(t == null) 
+            return;
+        queued.decrementAndGet();
+        try {
+            runTask(t);
+        } finally {
+            final boolean[] more = new boolean[1];
+            lanes.computeIfPresent(key, (k, lane) -> {
+                if(lane.tasks.isEmpty()) {
+                    lane.scheduled = false;
+                    return null;
+                }
+                more[0] = true;
+                return lane;
+            });
+            if(more[0]) {
+                rescheduleQuietly(key);
+            }
+        }
+    }
+    
+    private void runTask(Task t) {
+        final long started = System.nanoTime();
+        try {
+            t.delegate.run();
+        } catch(RuntimeException re) {
+            LOGGER.error("Uncaught exception occurred during the execution of task " + t.delegate + ".", re);
+        } finally {
+            final long done = System.nanoTime();
+            waitNanos.addAndGet(started - t.submitted);
+            runNanos.addAndGet(done - started);
+            completed.incrementAndGet();
+            long latency = done - t.submitted;
+            long max = maxLatencyNanos.get();
+            while(latency > max && !maxLatencyNanos.compareAndSet(max, latency)) {
+                max = maxLatencyNanos.get();
+            }
+        }
+    }
+    
+    private void rescheduleQuietly(K key) {
+        try {
+            schedule(key);
+        } catch(RejectedExecutionException ree) {
+            LOGGER.debug("executor has been shut down; dropping tasks for " + key, ree);
+        }
+    }
+    
+    /** @return the number of tasks that have been submitted, but not started yet */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+    
+    /** @return the number of tasks for key that have not started yet */
+    public int getQueueDepth(K key) {
+        final int[] depth = new int[1];
+        lanes.computeIfPresent(key, (k, lane) -> {
+            depth[0] = lane.tasks.size();
+            return lane;
+        });
+        return depth[0];
+    }
+    
+    /** @return the number of keys that have tasks queued or running */
+    public int getActiveKeys() {
+        return lanes.size();
+    }
+    
+    public long getCompletedTasks() {
+        return completed.get();
+    }
+    
+    /** @return the average time tasks have been waiting to be run */
+    public long getAverageWaitTime(TimeUnit unit) {
+        return average(waitNanos, unit);
+    }
+    
+    /** @return the average time tasks have been running */
+    public long getAverageRunTime(TimeUnit unit) {
+        return average(runNanos, unit);
+    }
+    
+    /** @return the longest time from submission to completion of a task */
+    public long getMaxLatency(TimeUnit unit) {
+        return unit.convert(maxLatencyNanos.get(), TimeUnit.NANOSECONDS);
+    }
+    
+    private long average(AtomicLong nanos, TimeUnit unit) {
+        long count = completed.get();
+        return count == 0 ? 0 : unit.convert(nanos.get() / count, TimeUnit.NANOSECONDS);
+    }
+    
+    public void shutdown() throws InterruptedException {
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    
+    @Override
+    public String toString() {
+        return "KeyedExecutor: queued=" + getQueueDepth() + ", keys=" + getActiveKeys() + ", completed=" + getCompletedTasks()
+                + ", avg wait=" + getAverageWaitTime(TimeUnit.MILLISECONDS) + "ms, avg run=" + getAverageRunTime(TimeUnit.MILLISECONDS) 
+                + "ms, max latency=" + getMaxLatency(TimeUnit.MILLISECONDS) + "ms";
+    }
+
+    private static final class Lane {
+        final ArrayDeque<Task> tasks = new ArrayDeque<>();
+        boolean scheduled;
+    }
+    
+    private static final class Task {
+        final Runnable delegate;
+        final long submitted = System.nanoTime();
+        
+        Task(Runnable delegateParam) {
+            delegate = delegateParam;
+        }
+    }
+}
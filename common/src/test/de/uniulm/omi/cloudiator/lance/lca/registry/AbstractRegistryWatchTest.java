@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+
+public class AbstractRegistryWatchTest {
+
+    private final Semaphore changes = new Semaphore(0);
+    private final ComponentChangeListener listener = new ComponentChangeListener() {
+        @Override
+        public void componentChanged(ApplicationInstanceId appInstId, ComponentId compId) {
+            changes.release();
+        }
+    };
+    private RegistryWatch watch;
+
+    @After
+    public void tearDown() {
+        if(watch != null) 
+            watch.cancel();
+    }
+
+    @Test
+    public void testFailingRegistryIsNotRetriedBeforeBackOff() throws Exception {
+        FailingWatch failing = new FailingWatch(listener);
+        watch = failing.start();
+        Thread.sleep(1000);
+        assertEquals(1, failing.calls.get());
+        
+        // the back off ends with the cancellation //
+        watch.cancel();
+        Thread.sleep(100);
+        assertEquals(1, failing.calls.get());
+        assertEquals(0, changes.availablePermits());
+    }
+
+    @Test
+    public void testWatchRecoversAfterBackOff() throws Exception {
+        FailingWatch failing = new FailingWatch(listener, 200);
+        long start = System.nanoTime();
+        watch = failing.start();
+        assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+        assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+        
+        watch.cancel();
+        Thread.sleep(100);
+        changes.drainPermits();
+        assertFalse(changes.tryAcquire(200, TimeUnit.MILLISECONDS));
+    }
+    
+    /** fails on the first call and reports a change on all further ones */
+    private static final class FailingWatch extends AbstractRegistryWatch {
+        
+        final AtomicInteger calls = new AtomicInteger(0);
+        
+        FailingWatch(ComponentChangeListener listenerParam) {
+            super(new ApplicationInstanceId(), new ComponentId(), listenerParam);
+        }
+        
+        FailingWatch(ComponentChangeListener listenerParam, long backoffMillisParam) {
+            super(new ApplicationInstanceId(), new ComponentId(), listenerParam, backoffMillisParam);
+        }
+
+        @Override
+        protected boolean awaitChange() throws RegistrationException, InterruptedException {
+            if(calls.incrementAndGet() == 1) 
+                throw new RegistrationException("registry not available");
+            Thread.sleep(10);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.etcd;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+
+public class AsyncEtcdRegistryTest {
+
+    private EtcdStandIn standIn;
+    private EtcdRegistryImpl registry;
+    private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+    private final ComponentId compId = new ComponentId();
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = new EtcdStandIn(0);
+        registry = new EtcdRegistryImpl(new java.net.URI[] {standIn.getUri()});
+    }
+
+    @After
+    public void tearDown() {
+        standIn.stop();
+    }
+
+    @Test
+    public void testApplicationInstanceIsOnlyAddedOnce() throws Exception {
+        standIn.resetRequestCount();
+        assertTrue(registry.addApplicationInstance(appInstId, new ApplicationId(), "app"));
+        // directory plus description and name; no existence check //
+        assertEquals(3, standIn.requestCount());
+
+        standIn.resetRequestCount();
+        assertFalse(registry.addApplicationInstance(appInstId, new ApplicationId(), "app"));
+        assertEquals(1, standIn.requestCount());
+    }
+
+    @Test
+    public void testAddingComponentTwiceSucceeds() throws Exception {
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        registry.addComponent(appInstId, compId, "comp");
+        registry.addComponent(appInstId, compId, "comp");
+        assertTrue(registry.applicationComponentExists(appInstId, compId));
+    }
+
+    @Test
+    public void testOverlappingWrites() throws Exception {
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        registry.addComponent(appInstId, compId, "comp");
+        ComponentInstanceId first = new ComponentInstanceId();
+        ComponentInstanceId second = new ComponentInstanceId();
+        registry.addComponentInstance(appInstId, compId, first);
+        registry.addComponentInstance(appInstId, compId, second);
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put("A", "1");
+        properties.put("B", "2");
+        CompletableFuture.allOf(registry.addComponentPropertiesAsync(appInstId, compId, first, properties),
+                registry.addComponentPropertyAsync(appInstId, compId, second, "A", "3")).get();
+
+        Map<ComponentInstanceId, Map<String, String>> dump = registry.dumpComponentAsync(appInstId, compId).get();
+        assertEquals(2, dump.size());
+        assertEquals("2", dump.get(first).get("B"));
+        assertEquals("3", dump.get(second).get("A"));
+        assertEquals("1", registry.getComponentPropertyAsync(appInstId, compId, first, "A").get());
+        assertTrue(registry.getComponentVersion(appInstId, compId) > 0);
+    }
+
+    @Test
+    public void testExpiredInstanceChangesVersion() throws Exception {
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        registry.addComponent(appInstId, compId, "comp");
+        ComponentInstanceId leased = new ComponentInstanceId();
+        ComponentInstanceId unleased = new ComponentInstanceId();
+        registry.addComponentInstance(appInstId, compId, leased);
+        registry.addComponentInstance(appInstId, compId, unleased);
+        assertFalse(registry.renewComponentInstanceLease(appInstId, compId, new ComponentInstanceId(), 1000));
+        assertTrue(registry.renewComponentInstanceLease(appInstId, compId, leased, 1000));
+        long version = registry.getComponentVersion(appInstId, compId);
+
+        Thread.sleep(1500);
+        Map<ComponentInstanceId, Map<String, String>> dump = registry.dumpComponent(appInstId, compId);
+        assertFalse(dump.containsKey(leased));
+        assertTrue(dump.containsKey(unleased));
+        assertTrue(registry.getComponentVersion(appInstId, compId) != version);
+        assertFalse(registry.renewComponentInstanceLease(appInstId, compId, leased, 1000));
+    }
+
+    @Test
+    public void testFailureCompletesExceptionally() throws Exception {
+        try {
+            registry.dumpComponentAsync(appInstId, compId).get();
+            fail("component does not exist");
+        } catch(ExecutionException ee) {
+            assertTrue(ee.getCause() instanceof RegistrationException);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.etcd;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.AsyncLcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.registry.CachingLcaRegistry;
+
+public class CachingEtcdRegistryTest {
+
+    private EtcdStandIn standIn;
+    private CachingLcaRegistry registry;
+    private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+    private final ComponentId compId = new ComponentId();
+    
+    @Before
+    public void setUp() throws Exception {
+        standIn = new EtcdStandIn(0);
+        registry = new CachingLcaRegistry(new EtcdRegistryImpl(new java.net.URI[] {standIn.getUri()}));
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        registry.addComponent(appInstId, compId, "comp");
+    }
+    
+    @After
+    public void tearDown() {
+        standIn.stop();
+    }
+    
+    @Test
+    public void testComponentWithoutVersionIsNotCached() throws Exception {
+        assertEquals(LcaRegistry.UNKNOWN_VERSION, registry.getComponentVersion(appInstId, compId));
+        registry.dumpComponent(appInstId, compId);
+        registry.dumpComponent(appInstId, compId);
+        assertEquals(0, registry.getHits());
+        assertEquals(2, registry.getMisses());
+    }
+    
+    @Test
+    public void testUnchangedComponentIsServedFromCache() throws Exception {
+        ComponentInstanceId cinstId = new ComponentInstanceId();
+        registry.addComponentInstance(appInstId, compId, cinstId);
+        registry.addComponentProperty(appInstId, compId, cinstId, "Port", Integer.valueOf(80));
+        
+        Map<ComponentInstanceId, Map<String, String>> first = registry.dumpComponent(appInstId, compId);
+        standIn.resetRequestCount();
+        Map<ComponentInstanceId, Map<String, String>> second = registry.dumpComponent(appInstId, compId);
+        
+        assertSame(first, second);
+        assertEquals(1, standIn.requestCount());
+        assertEquals(1, registry.getHits());
+        assertEquals(1, registry.getMisses());
+        assertEquals(2, registry.getRevalidations());
+    }
+    
+    @Test
+    public void testChangesInvalidateCachedDump() throws Exception {
+        ComponentInstanceId cinstId = new ComponentInstanceId();
+        registry.addComponentInstance(appInstId, compId, cinstId);
+        registry.addComponentProperty(appInstId, compId, cinstId, "Port", Integer.valueOf(80));
+        assertEquals("80", registry.dumpComponent(appInstId, compId).get(cinstId).get("Port"));
+        
+        registry.addComponentProperty(appInstId, compId, cinstId, "Port", Integer.valueOf(8080));
+        assertEquals("8080", registry.dumpComponent(appInstId, compId).get(cinstId).get("Port"));
+        
+        ComponentInstanceId other = new ComponentInstanceId();
+        registry.addComponentInstance(appInstId, compId, other);
+        assertEquals(2, registry.dumpComponent(appInstId, compId).size());
+        assertEquals(0, registry.getHits());
+        assertEquals(3, registry.getMisses());
+    }
+    
+    @Test
+    public void testAsyncWritesArePassedOnAndInvalidateCachedDump() throws Exception {
+        LcaRegistry plain = registry;
+        // callers look for the asynchronous variant this way //
+        assertTrue(plain instanceof AsyncLcaRegistry);
+        ComponentInstanceId cinstId = new ComponentInstanceId();
+        ComponentInstanceId other = new ComponentInstanceId();
+        registry.addComponentInstanceAsync(appInstId, compId, cinstId, Collections.singletonMap("Port", "80")).get();
+        registry.addComponentInstanceAsync(appInstId, compId, other).get();
+        Map<ComponentInstanceId, Map<String, String>> first = registry.dumpComponent(appInstId, compId);
+        assertEquals("80", first.get(cinstId).get("Port"));
+        
+        registry.addComponentPropertyAsync(appInstId, compId, cinstId, "Port", Integer.valueOf(8080)).get();
+        Map<ComponentInstanceId, Map<String, String>> second = registry.dumpComponentAsync(appInstId, compId).get();
+        assertEquals("8080", second.get(cinstId).get("Port"));
+        assertSame(first.get(other), second.get(other));
+        assertEquals("8080", registry.getComponentPropertyAsync(appInstId, compId, cinstId, "Port").get());
+        assertEquals(0, registry.getHits());
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testDumpsAreImmutable() throws Exception {
+        ComponentInstanceId cinstId = new ComponentInstanceId();
+        registry.addComponentInstance(appInstId, compId, cinstId);
+        registry.dumpComponent(appInstId, compId).get(cinstId).put("Port", "1");
+    }
+}
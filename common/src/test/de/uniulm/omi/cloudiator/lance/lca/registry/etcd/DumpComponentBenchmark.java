@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.etcd;
+
+import java.net.URI;
+import java.util.Map;
+
+import mousio.etcd4j.EtcdClient;
+import mousio.etcd4j.responses.EtcdKeysResponse;
+import mousio.etcd4j.responses.EtcdKeysResponse.EtcdNode;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * compares the single-request component dump against the former
+ * approach of one additional request per component instance.
+ *
+ * run with: java DumpComponentBenchmark [latency in microseconds]
+ */
+public final class DumpComponentBenchmark {
+
+    private static final int[] INSTANCE_COUNTS = new int[] {1, 10, 50, 200, 500};
+    private static final int PROPERTIES_PER_INSTANCE = 12;
+    private static final int ITERATIONS = 20;
+
+    private DumpComponentBenchmark() {
+        // no instances //
+    }
+
+    public static void main(String[] args) throws Exception {
+        long latency = args.length > 0 ? Long.parseLong(args[0]) : 500L;
+        EtcdStandIn standIn = new EtcdStandIn(latency);
+        try {
+            URI[] uris = new URI[] {standIn.getUri()};
+            EtcdRegistryImpl registry = new EtcdRegistryImpl(uris);
+            EtcdClient client = new EtcdClient(uris);
+            System.out.println("simulated latency per request: " + latency + "us");
+            System.out.println("instances\tdump requests\tdump ms\tlegacy requests\tlegacy ms");
+            for(int count : INSTANCE_COUNTS) {
+                runForInstanceCount(standIn, registry, client, count);
+            }
+            client.close();
+        } finally {
+            standIn.stop();
+        }
+    }
+
+    private static void runForInstanceCount(EtcdStandIn standIn, EtcdRegistryImpl registry, EtcdClient client, int count) throws Exception {
+        ApplicationInstanceId appInstId = new ApplicationInstanceId();
+        ComponentId compId = new ComponentId();
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "benchmark");
+        registry.addComponent(appInstId, compId, "component");
+        for(int i = 0; i < count; i++) {
+            ComponentInstanceId cinstId = new ComponentInstanceId();
+            registry.addComponentInstance(appInstId, compId, cinstId);
+            for(int j = 0; j < PROPERTIES_PER_INSTANCE; j++) {
+                registry.addComponentProperty(appInstId, compId, cinstId, "PROPERTY_" + j, Integer.valueOf(j));
+            }
+        }
+
+        // warm up //
+        registry.dumpComponent(appInstId, compId);
+        legacyDump(client, "/lca/" + appInstId + "/" + compId);
+
+        standIn.resetRequestCount();
+        long start = System.nanoTime();
+        for(int i = 0; i < ITERATIONS; i++) {
+            Map<ComponentInstanceId, Map<String, String>> dump = registry.dumpComponent(appInstId, compId);
+            if(dump.size() != count)
+                throw new IllegalStateException("unexpected dump size: " + dump.size());
+        }
+        long dumpNanos = (System.nanoTime() - start) / ITERATIONS;
+        int dumpRequests = standIn.requestCount() / ITERATIONS;
+
+        standIn.resetRequestCount();
+        start = System.nanoTime();
+        for(int i = 0; i < ITERATIONS; i++) {
+            legacyDump(client, "/lca/" + appInstId + "/" + compId);
+        }
+        long legacyNanos = (System.nanoTime() - start) / ITERATIONS;
+        int legacyRequests = standIn.requestCount() / ITERATIONS;
+
+        System.out.println(count + "\t" + dumpRequests + "\t" + (dumpNanos / 1000000.0)
+                + "\t" + legacyRequests + "\t" + (legacyNanos / 1000000.0));
+    }
+
+    /** issues the requests the former implementation of dumpComponent used to issue */
+    private static void legacyDump(EtcdClient client, String dirName) throws Exception {
+        EtcdKeysResponse response = client.getDir(dirName).recursive().sorted().send().get();
+        for(EtcdNode node : response.node.nodes) {
+            if(node.dir) {
+                client.getDir(node.key).recursive().sorted().send().get();
+            }
+        }
+    }
+}
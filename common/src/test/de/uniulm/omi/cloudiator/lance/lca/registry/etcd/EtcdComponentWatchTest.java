@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.etcd;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryWatch;
+
+public class EtcdComponentWatchTest {
+
+    private static final int HISTORY_SIZE = 10;
+    
+    private EtcdStandIn standIn;
+    private EtcdRegistryImpl registry;
+    private RegistryWatch watch;
+    private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+    private final ComponentId compId = new ComponentId();
+    private final Semaphore changes = new Semaphore(0);
+    private final ComponentChangeListener listener = new ComponentChangeListener() {
+        @Override
+        public void componentChanged(ApplicationInstanceId appInstIdParam, ComponentId compIdParam) {
+            assertEquals(appInstId, appInstIdParam);
+            assertEquals(compId, compIdParam);
+            changes.release();
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = new EtcdStandIn(0, HISTORY_SIZE);
+        registry = new EtcdRegistryImpl(new java.net.URI[] {standIn.getUri()});
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+    }
+
+    @After
+    public void tearDown() {
+        if(watch != null) 
+            watch.cancel();
+        standIn.stop();
+    }
+
+    @Test
+    public void testListenerFiresOnEveryChangeUntilCancelled() throws Exception {
+        registry.addComponent(appInstId, compId, "comp");
+        watch = registry.watchComponent(appInstId, compId, listener);
+        awaitWaiters(1);
+        assertFalse(changes.tryAcquire(200, TimeUnit.MILLISECONDS));
+        
+        ComponentInstanceId cinstId = new ComponentInstanceId();
+        registry.addComponentInstance(appInstId, compId, cinstId);
+        assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+        changes.drainPermits();
+        awaitWaiters(1);
+        
+        registry.addComponentProperty(appInstId, compId, cinstId, "port", "80");
+        assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+        changes.drainPermits();
+        awaitWaiters(1);
+        
+        watch.cancel();
+        Thread.sleep(100);
+        changes.drainPermits();
+        registry.addComponentProperty(appInstId, compId, cinstId, "port", "81");
+        assertFalse(changes.tryAcquire(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testQuietComponentIsWaitedForWithoutPolling() throws Exception {
+        registry.addComponent(appInstId, compId, "comp");
+        watch = registry.watchComponent(appInstId, compId, listener);
+        awaitWaiters(1);
+        standIn.resetRequestCount();
+        
+        Thread.sleep(500);
+        assertEquals(0, standIn.requestCount());
+        assertEquals(1, standIn.waiters());
+        assertEquals(0, changes.availablePermits());
+    }
+
+    @Test
+    public void testWatchStartsFromClusterIndexOfQuietComponent() throws Exception {
+        registry.addComponent(appInstId, compId, "comp");
+        // pushes the creation of the component out of the event history //
+        ComponentId other = new ComponentId();
+        registry.addComponent(appInstId, other, "other");
+        for(int i = 0; i < 2 * HISTORY_SIZE; i++) {
+            registry.addComponentInstance(appInstId, other, new ComponentInstanceId());
+        }
+        
+        watch = registry.watchComponent(appInstId, compId, listener);
+        awaitWaiters(1);
+        registry.addComponentInstance(appInstId, other, new ComponentInstanceId());
+        assertFalse(changes.tryAcquire(500, TimeUnit.MILLISECONDS));
+        
+        registry.addComponentInstance(appInstId, compId, new ComponentInstanceId());
+        assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testMissingComponentFiresWhenAdded() throws Exception {
+        watch = registry.watchComponent(appInstId, compId, listener);
+        awaitWaiters(1);
+        assertFalse(changes.tryAcquire(200, TimeUnit.MILLISECONDS));
+        
+        registry.addComponent(appInstId, compId, "comp");
+        assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+    }
+    
+    private void awaitWaiters(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(standIn.waiters() != expected) {
+            assertTrue("watch did not wait for changes", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.etcd;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+public class EtcdKeyIndexTest {
+
+    private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+    private final ComponentId compId = new ComponentId();
+
+    @Test
+    public void testPathsFollowTheHierarchy() {
+        ComponentInstanceId cinstId = new ComponentInstanceId();
+        String application = "/lca/" + appInstId;
+        String component = application + "/" + compId;
+        assertEquals(application, EtcdKeyIndex.applicationInstanceDirectory(appInstId));
+        assertEquals(component, EtcdKeyIndex.componentDirectory(appInstId, compId));
+        assertEquals(component + "/" + EtcdKeyIndex.MODIFIED, EtcdKeyIndex.componentMarker(appInstId, compId));
+        assertEquals(component + "/" + cinstId, EtcdKeyIndex.componentInstanceDirectory(appInstId, compId, cinstId));
+    }
+
+    @Test
+    public void testComponentPathsAreBuiltOnce() {
+        assertSame(EtcdKeyIndex.applicationInstanceDirectory(appInstId), EtcdKeyIndex.applicationInstanceDirectory(appInstId));
+        assertSame(EtcdKeyIndex.componentDirectory(appInstId, compId), EtcdKeyIndex.componentDirectory(appInstId, compId));
+        assertSame(EtcdKeyIndex.componentMarker(appInstId, compId), EtcdKeyIndex.componentMarker(appInstId, compId));
+    }
+
+    @Test
+    public void testInstancePathsAreNotKept() {
+        ComponentInstanceId cinstId = new ComponentInstanceId();
+        String first = EtcdKeyIndex.componentInstanceDirectory(appInstId, compId, cinstId);
+        String second = EtcdKeyIndex.componentInstanceDirectory(appInstId, compId, cinstId);
+        assertEquals(first, second);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testPropertyNamesAreInterned() {
+        String name = EtcdKeyIndex.propertyName(new String("HOST_PUBLIC_IP"));
+        assertSame(name, EtcdKeyIndex.propertyName(new String("HOST_PUBLIC_IP")));
+        assertEquals("HOST_PUBLIC_IP", name);
+    }
+}
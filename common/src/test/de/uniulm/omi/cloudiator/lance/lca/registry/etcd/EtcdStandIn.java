@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.etcd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * minimal in-process stand-in for the etcd v2 keys API. it
+ * supports just as much of the protocol as {@link EtcdRegistryImpl}
+ * uses and counts the requests it has served. keys with a time 
+ * to live are purged lazily whenever a request is served. watches
+ * are answered from a bounded event history just like etcd does.
+ */
+final class EtcdStandIn implements HttpHandler {
+
+    private static final String PREFIX = "/v2/keys";
+    private static final int DEFAULT_HISTORY_SIZE = 1000;
+    private static final long MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final long PURGE_INTERVAL_MILLIS = 100;
+
+    static {
+        // otherwise delayed acks add ~40ms to every request //
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger(0);
+    private final long latencyMicros;
+    private final int historySize;
+
+    // protected by 'this' //
+    private final NavigableMap<String, Node> nodes = new TreeMap<>();
+    private final Deque<Event> history = new ArrayDeque<>();
+    private long index = 1;
+    private long clearedIndex = 0;
+    private int waiters = 0;
+    private boolean stopped = false;
+
+    EtcdStandIn(long latencyMicrosParam) throws IOException {
+        this(latencyMicrosParam, DEFAULT_HISTORY_SIZE);
+    }
+
+    EtcdStandIn(long latencyMicrosParam, int historySizeParam) throws IOException {
+        latencyMicros = latencyMicrosParam;
+        historySize = historySizeParam;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(PREFIX, this);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    URI getUri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    int requestCount() {
+        return requests.get();
+    }
+
+    void resetRequestCount() {
+        requests.set(0);
+    }
+
+    /** @return the number of watches currently waiting for a change */
+    synchronized int waiters() {
+        return waiters;
+    }
+
+    void stop() {
+        synchronized(this) {
+            stopped = true;
+            notifyAll();
+        }
+        server.stop(0);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        simulateLatency();
+        String key = normalise(exchange.getRequestURI().getPath().substring(PREFIX.length()));
+        Map<String, String> params = parseParameters(exchange.getRequestURI().getRawQuery());
+        params.putAll(parseParameters(readBody(exchange.getRequestBody())));
+
+        final Response response;
+        synchronized(this) {
+            purgeExpired();
+            String method = exchange.getRequestMethod();
+            if("GET".equals(method) && "true".equals(params.get("wait"))) {
+                response = doWait(key, params);
+            } else if("GET".equals(method)) {
+                response = doGet(key, params);
+            } else if("PUT".equals(method)) {
+                response = doPut(key, params);
+            } else if("DELETE".equals(method)) {
+                response = doDelete(key);
+            } else {
+                response = new Response(405, "{}");
+            }
+        }
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.getResponseHeaders().add("X-Etcd-Index", Long.toString(currentIndex()));
+        exchange.sendResponseHeaders(response.status, body.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private synchronized long currentIndex() {
+        return index;
+    }
+
+    private Response doGet(String key, Map<String, String> params) {
+        Node n = lookup(key);
+        if(n == null)
+            return keyNotFound(key);
+        boolean recursive = "true".equals(params.get("recursive"));
+        return new Response(200, "{\"action\":\"get\",\"node\":" + toJson(key, n, recursive, true) + "}");
+    }
+
+    private Response doWait(String key, Map<String, String> params) {
+        boolean recursive = "true".equals(params.get("recursive"));
+        String waitIndex = params.get("waitIndex");
+        long from = waitIndex == null ? index + 1 : Long.parseLong(waitIndex);
+        if(from <= clearedIndex) {
+            return new Response(400, error(401, "The event in requested index is outdated and cleared", 
+                                    "the requested history has been cleared [" + clearedIndex + "/" + from + "]"));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_MILLIS);
+        waiters++;
+        try {
+            while(!stopped) {
+                for(Event event : history) {
+                    if(event.index >= from && event.matches(key, recursive)) {
+                        return new Response(200, event.json);
+                    }
+                }
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if(remaining <= 0)
+                    break;
+                // expiring keys have to show up as events without further requests //
+                wait(Math.min(remaining, PURGE_INTERVAL_MILLIS));
+                purgeExpired();
+            }
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiters--;
+        }
+        return new Response(503, "{}");
+    }
+
+    private Response doPut(String key, Map<String, String> params) {
+        boolean isDir = "true".equals(params.get("dir"));
+        Node old = lookup(key);
+        if(old != null && "false".equals(params.get("prevExist"))) {
+            return new Response(412, error(105, "Key already exists", key));
+        }
+        if(old == null && "true".equals(params.get("prevExist"))) {
+            return keyNotFound(key);
+        }
+        long expires = expiresAt(params.get("ttl"));
+        if(old != null && old.dir && isDir && "true".equals(params.get("prevExist"))) {
+            // refreshes the time to live and keeps the children //
+            Node n = new Node(true, null, old.created, ++index, expires);
+            nodes.put(key, n);
+            record("update", key, toJson(key, n, false, false));
+            return new Response(200, "{\"action\":\"update\",\"node\":" + toJson(key, n, false, false) + "}");
+        }
+        if(old != null && old.dir) {
+            return new Response(403, error(102, "Not a file", key));
+        }
+        createParents(key);
+        ++index;
+        Node n = new Node(isDir, isDir ? null : params.get("value"), index, index, expires);
+        nodes.put(key, n);
+        record("set", key, toJson(key, n, false, false));
+        return new Response(old == null ? 201 : 200, "{\"action\":\"set\",\"node\":" + toJson(key, n, false, false) + "}");
+    }
+
+    private Response doDelete(String key) {
+        Node n = nodes.remove(key);
+        if(n == null)
+            return keyNotFound(key);
+        nodes.subMap(key + "/", true, key + "/\uffff", true).clear();
+        index++;
+        record("delete", key, removedNode(key));
+        return new Response(200, "{\"action\":\"delete\",\"node\":" + removedNode(key) + "}");
+    }
+
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        List<String> expired = new ArrayList<>();
+        for(Map.Entry<String, Node> entry : nodes.entrySet()) {
+            long expires = entry.getValue().expires;
+            if(expires != 0 && expires - now <= 0) {
+                expired.add(entry.getKey());
+            }
+        }
+        for(String key : expired) {
+            if(nodes.remove(key) != null) {
+                nodes.subMap(key + "/", true, key + "/\uffff", true).clear();
+                index++;
+                record("expire", key, removedNode(key));
+            }
+        }
+    }
+
+    private String removedNode(String key) {
+        return "{\"key\":\"" + key + "\",\"modifiedIndex\":" + index + "}";
+    }
+
+    /** remembers the change that has led to the current index and wakes up all watches */
+    private void record(String action, String key, String node) {
+        history.addLast(new Event(key, index, "{\"action\":\"" + action + "\",\"node\":" + node + "}"));
+        while(history.size() > historySize) {
+            clearedIndex = history.removeFirst().index;
+        }
+        notifyAll();
+    }
+
+    private static long expiresAt(String ttl) {
+        if(ttl == null || ttl.isEmpty())
+            return 0;
+        long expires = System.nanoTime() + TimeUnit.SECONDS.toNanos(Long.parseLong(ttl));
+        // 0 denotes keys that do not expire //
+        return expires == 0 ? 1 : expires;
+    }
+
+    private Response keyNotFound(String key) {
+        return new Response(404, error(100, "Key not found", key));
+    }
+
+    private String error(int code, String message, String cause) {
+        return "{\"errorCode\":" + code + ",\"message\":\"" + message + "\",\"cause\":\"" + cause + "\",\"index\":" + index + "}";
+    }
+
+    private void createParents(String key) {
+        int pos = key.indexOf('/', 1);
+        while(pos > -1) {
+            String parent = key.substring(0, pos);
+            if(!nodes.containsKey(parent)) {
+                ++index;
+                Node n = new Node(true, null, index, index, 0);
+                nodes.put(parent, n);
+                record("set", parent, toJson(parent, n, false, false));
+            }
+            pos = key.indexOf('/', pos + 1);
+        }
+    }
+
+    private Node lookup(String key) {
+        if("/".equals(key))
+            return new Node(true, null, 0, 0, 0);
+        return nodes.get(key);
+    }
+
+    private List<String> children(String key) {
+        String prefix = "/".equals(key) ? "/" : key + "/";
+        List<String> children = new ArrayList<>();
+        for(String child : nodes.subMap(prefix, false, prefix + "\uffff", true).keySet()) {
+            if(child.indexOf('/', prefix.length()) == -1) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    private String toJson(String key, Node n, boolean recursive, boolean expand) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"key\":\"").append(key).append('"');
+        if(n.dir) {
+            builder.append(",\"dir\":true");
+        } else {
+            builder.append(",\"value\":\"").append(escape(n.value)).append('"');
+        }
+        if(n.dir && expand) {
+            builder.append(",\"nodes\":[");
+            boolean first = true;
+            for(String child : children(key)) {
+                if(!first)
+                    builder.append(',');
+                first = false;
+                builder.append(toJson(child, nodes.get(child), recursive, recursive));
+            }
+            builder.append(']');
+        }
+        builder.append(",\"modifiedIndex\":").append(n.modified).append(",\"createdIndex\":").append(n.created).append('}');
+        return builder.toString();
+    }
+
+    private void simulateLatency() {
+        if(latencyMicros <= 0)
+            return;
+        try {
+            TimeUnit.MICROSECONDS.sleep(latencyMicros);
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String normalise(String key) {
+        if(key.isEmpty())
+            return "/";
+        if(key.length() > 1 && key.endsWith("/"))
+            return key.substring(0, key.length() - 1);
+        return key;
+    }
+
+    private static String escape(String value) {
+        if(value == null)
+            return "";
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parseParameters(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if(query == null || query.isEmpty())
+            return params;
+        for(String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if(eq == -1) {
+                params.put(URLDecoder.decode(pair, "UTF-8"), "true");
+            } else {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private static final class Node {
+        final boolean dir;
+        final String value;
+        final long created;
+        final long modified;
+        final long expires;
+
+        Node(boolean dirParam, String valueParam, long createdParam, long modifiedParam, long expiresParam) {
+            dir = dirParam;
+            value = valueParam;
+            created = createdParam;
+            modified = modifiedParam;
+            expires = expiresParam;
+        }
+    }
+
+    private static final class Event {
+        final String key;
+        final long index;
+        final String json;
+
+        Event(String keyParam, long indexParam, String jsonParam) {
+            key = keyParam;
+            index = indexParam;
+            json = jsonParam;
+        }
+
+        boolean matches(String watched, boolean recursive) {
+            if(key.equals(watched))
+                return true;
+            String prefix = "/".equals(watched) ? "/" : watched + "/";
+            return recursive && key.startsWith(prefix);
+        }
+    }
+
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int statusParam, String bodyParam) {
+            status = statusParam;
+            body = bodyParam;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+public class EmbeddedRegistryTest {
+
+    private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+    private final ComponentId compId = new ComponentId();
+    private final ComponentInstanceId cinstId = new ComponentInstanceId();
+    
+    @After
+    public void tearDown() {
+        System.clearProperty(EmbeddedRegistryContainer.LCA_REGISTRY_CONFIG_EMBEDDED_PORT_KEY);
+    }
+    
+    @Test
+    public void testDumpsAreSharedWithoutCopying() throws Exception {
+        LcaRegistry reg = EmbeddedRegistryContainer.create().getRegistry();
+        populate(reg);
+        assertSame(reg.dumpComponent(appInstId, compId), reg.dumpComponent(appInstId, compId));
+        assertEquals("80", reg.getComponentProperty(appInstId, compId, cinstId, "port"));
+    }
+    
+    @Test(expected = NotSerializableException.class)
+    public void testRegistryWithoutFacadeCannotBeSent() throws Exception {
+        LcaRegistry reg = EmbeddedRegistryContainer.create().getRegistry();
+        serialise(reg);
+    }
+    
+    @Test
+    public void testFacadeServesExternalClients() throws Exception {
+        System.setProperty(EmbeddedRegistryContainer.LCA_REGISTRY_CONFIG_EMBEDDED_PORT_KEY, "0");
+        LcaRegistry reg = EmbeddedRegistryContainer.create().getRegistry();
+        populate(reg);
+        
+        LcaRegistry remote = deserialise(serialise(reg));
+        assertEquals("80", remote.getComponentProperty(appInstId, compId, cinstId, "port"));
+        remote.addComponentProperty(appInstId, compId, cinstId, "ip", "10.0.0.1");
+        assertEquals("10.0.0.1", reg.getComponentProperty(appInstId, compId, cinstId, "ip"));
+    }
+    
+    private void populate(LcaRegistry reg) throws Exception {
+        reg.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        reg.addComponent(appInstId, compId, "comp");
+        reg.addComponentInstance(appInstId, compId, cinstId);
+        reg.addComponentProperty(appInstId, compId, cinstId, "port", Integer.valueOf(80));
+    }
+    
+    private static byte[] serialise(LcaRegistry reg) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(reg);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static LcaRegistry deserialise(byte[] bytes) throws IOException, ClassNotFoundException {
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (LcaRegistry) in.readObject();
+        }
+    }
+}
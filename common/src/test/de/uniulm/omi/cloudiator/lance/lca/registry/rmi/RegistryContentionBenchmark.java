@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * drives simulated agents against the registry: each agent publishes its 
+ * own properties and dumps the component it is wired to, like the port 
+ * updaters do. the registry is compared against the same registry behind 
+ * one global lock, which is how the registry used to be synchronised.
+ *
+ * run with: java RegistryContentionBenchmark [agents] [applications] [seconds]
+ */
+public final class RegistryContentionBenchmark {
+
+    private static final int INSTANCES_PER_COMPONENT = 50;
+    
+    private RegistryContentionBenchmark() {
+        // no instances //
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int agents = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int applications = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        
+        System.out.println("agents: " + agents + "; applications: " + applications + "; seconds: " + seconds);
+        System.out.println("global lock:\t" + run(globallyLocked(new RemoteRegistryImpl()), agents, applications, seconds) + " ops/s");
+        System.out.println("concurrent:\t" + run(new RemoteRegistryImpl(), agents, applications, seconds) + " ops/s");
+    }
+    
+    private static long run(final RmiLcaRegistry registry, int agents, int applications, int seconds) throws Exception {
+        final List<ApplicationInstanceId> apps = new ArrayList<>();
+        final List<ComponentId[]> comps = new ArrayList<>();
+        for(int i = 0; i < applications; i++) {
+            ApplicationInstanceId appInstId = new ApplicationInstanceId();
+            ComponentId[] ids = new ComponentId[] {new ComponentId(), new ComponentId()};
+            registry.addApplicationInstance(appInstId, new ApplicationId(), "app" + i);
+            for(ComponentId id : ids) {
+                registry.addComponent(appInstId, id, "comp");
+                for(int j = 0; j < INSTANCES_PER_COMPONENT; j++) {
+                    ComponentInstanceId cinstId = new ComponentInstanceId();
+                    registry.addComponentInstance(appInstId, id, cinstId);
+                    registry.addComponentProperty(appInstId, id, cinstId, "ACCESS_PUBLIC_PORT", Integer.valueOf(j));
+                }
+            }
+            apps.add(appInstId);
+            comps.add(ids);
+        }
+        
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong operations = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(agents);
+        for(int i = 0; i < agents; i++) {
+            final ApplicationInstanceId appInstId = apps.get(i % applications);
+            final ComponentId[] ids = comps.get(i % applications);
+            Thread agent = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ComponentInstanceId myId = new ComponentInstanceId();
+                        registry.addComponentInstance(appInstId, ids[0], myId);
+                        long ops = 0;
+                        int round = 0;
+                        while(running.get()) {
+                            Map<String, Object> props = new HashMap<>();
+                            props.put("HOST_PUBLIC_IP", "10.0.0." + (round % 250));
+                            props.put("ACCESS_PUBLIC_PORT", Integer.valueOf(round));
+                            registry.addComponentProperties(appInstId, ids[0], myId, props);
+                            registry.dumpComponent(appInstId, ids[1]);
+                            registry.getComponentProperty(appInstId, ids[0], myId, "ACCESS_PUBLIC_PORT");
+                            ops += 3;
+                            round++;
+                        }
+                        operations.addAndGet(ops);
+                    } catch(Exception ex) {
+                        ex.printStackTrace();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            agent.start();
+        }
+        TimeUnit.SECONDS.sleep(seconds);
+        running.set(false);
+        done.await();
+        return operations.get() / seconds;
+    }
+    
+    private static RmiLcaRegistry globallyLocked(final RmiLcaRegistry delegate) {
+        return (RmiLcaRegistry) Proxy.newProxyInstance(RmiLcaRegistry.class.getClassLoader(), 
+                new Class<?>[] {RmiLcaRegistry.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                synchronized(this) {
+                    try {
+                        return method.invoke(delegate, args);
+                    } catch(InvocationTargetException ite) {
+                        throw ite.getCause();
+                    }
+                }
+            }
+        });
+    }
+}
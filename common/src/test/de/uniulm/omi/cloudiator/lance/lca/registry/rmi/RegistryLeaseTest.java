@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistryConstants;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+public class RegistryLeaseTest {
+
+    private static final long TTL = 300;
+    private static final long TIMEOUT = 5000;
+
+    private File dir;
+    private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+    private final ComponentId compId = new ComponentId();
+    private final ComponentInstanceId leased = new ComponentInstanceId();
+    private final ComponentInstanceId unleased = new ComponentInstanceId();
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("registry-lease-test").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        for(int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testExpiredInstanceIsRemoved() throws Exception {
+        RemoteRegistryImpl reg = new RemoteRegistryImpl();
+        populate(reg);
+        assertTrue(reg.renewComponentInstanceLease(appInstId, compId, leased, TTL));
+        long version = reg.getComponentVersion(appInstId, compId);
+
+        awaitExpiry(reg);
+        assertTrue(reg.dumpComponent(appInstId, compId).containsKey(unleased));
+        assertTrue(reg.getComponentVersion(appInstId, compId) != version);
+        // an expired lease cannot be renewed //
+        assertFalse(reg.renewComponentInstanceLease(appInstId, compId, leased, TTL));
+        reg.close();
+    }
+
+    @Test
+    public void testRenewedInstanceIsKept() throws Exception {
+        RemoteRegistryImpl reg = new RemoteRegistryImpl();
+        populate(reg);
+        long end = System.currentTimeMillis() + 4 * TTL;
+        while(System.currentTimeMillis() < end) {
+            assertTrue(reg.renewComponentInstanceLease(appInstId, compId, leased, TTL));
+            Thread.sleep(TTL / 3);
+        }
+        assertTrue(reg.dumpComponent(appInstId, compId).containsKey(leased));
+        reg.close();
+    }
+
+    @Test
+    public void testUnknownInstanceIsNotLeased() throws Exception {
+        RemoteRegistryImpl reg = new RemoteRegistryImpl();
+        populate(reg);
+        assertFalse(reg.renewComponentInstanceLease(appInstId, compId, new ComponentInstanceId(), TTL));
+        assertFalse(reg.renewComponentInstanceLease(appInstId, new ComponentId(), leased, TTL));
+        reg.close();
+    }
+
+    @Test
+    public void testLeaseSurvivesRecovery() throws Exception {
+        RemoteRegistryImpl reg = RemoteRegistryImpl.openDurable(dir, 0);
+        populate(reg);
+        assertTrue(reg.renewComponentInstanceLease(appInstId, compId, leased, TTL));
+        reg.close();
+
+        RemoteRegistryImpl recovered = RemoteRegistryImpl.openDurable(dir, 0);
+        assertTrue(recovered.dumpComponent(appInstId, compId).containsKey(leased));
+        awaitExpiry(recovered);
+        recovered.close();
+
+        // the removal has been logged as well //
+        RemoteRegistryImpl again = RemoteRegistryImpl.openDurable(dir, 0);
+        assertFalse(again.dumpComponent(appInstId, compId).containsKey(leased));
+        assertTrue(again.dumpComponent(appInstId, compId).containsKey(unleased));
+        again.close();
+    }
+
+    @Test
+    public void testLeaseIsNotVisibleAsProperty() throws Exception {
+        RemoteRegistryImpl reg = new RemoteRegistryImpl();
+        populate(reg);
+        assertTrue(reg.renewComponentInstanceLease(appInstId, compId, leased, TTL));
+        assertTrue(reg.renewComponentInstanceLease(appInstId, compId, leased, 2 * TTL));
+        assertEquals(Collections.singleton(LcaRegistryConstants.INSTANCE_NR), 
+                reg.dumpComponent(appInstId, compId).get(leased).keySet());
+        reg.close();
+    }
+
+    @Test
+    public void testLeaseSurvivesCompaction() throws Exception {
+        RemoteRegistryImpl reg = RemoteRegistryImpl.openDurable(dir, 0);
+        populate(reg);
+        assertTrue(reg.renewComponentInstanceLease(appInstId, compId, leased, TTL));
+        reg.compact();
+        reg.close();
+
+        RemoteRegistryImpl recovered = RemoteRegistryImpl.openDurable(dir, 0);
+        assertTrue(recovered.dumpComponent(appInstId, compId).containsKey(leased));
+        awaitExpiry(recovered);
+        assertTrue(recovered.dumpComponent(appInstId, compId).containsKey(unleased));
+        recovered.close();
+    }
+
+    private void awaitExpiry(RemoteRegistryImpl reg) throws Exception {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while(reg.dumpComponent(appInstId, compId).containsKey(leased)) {
+            if(System.currentTimeMillis() > end)
+                fail("lease has not expired");
+            Thread.sleep(20);
+        }
+    }
+
+    private void populate(RemoteRegistryImpl reg) throws Exception {
+        reg.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        reg.addComponent(appInstId, compId, "comp");
+        reg.addComponentInstance(appInstId, compId, leased);
+        reg.addComponentInstance(appInstId, compId, unleased);
+    }
+}
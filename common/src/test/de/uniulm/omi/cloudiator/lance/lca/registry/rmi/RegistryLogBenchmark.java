@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * measures the write latency of the durable registry against the in-memory 
+ * one as well as the time to recover from the log and from a snapshot.
+ *
+ * run with: java RegistryLogBenchmark [writer threads] [instances] [properties per instance] [sync interval ms]
+ */
+public final class RegistryLogBenchmark {
+
+    private RegistryLogBenchmark() {
+        // no instances //
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int instances = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int properties = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        long syncInterval = args.length > 3 ? Long.parseLong(args[3]) : 0L;
+        
+        System.out.println("threads: " + threads + "; instances: " + instances + "; properties: " 
+                        + (instances * properties) + "; sync interval: " + syncInterval + " ms");
+        System.out.println("in-memory write:\t" + populate(new RemoteRegistryImpl(), threads, instances, properties) + " us/op");
+        
+        File dir = Files.createTempDirectory("registry-log-benchmark").toFile();
+        try {
+            RemoteRegistryImpl durable = RemoteRegistryImpl.openDurable(dir, Long.MAX_VALUE, syncInterval);
+            System.out.println("durable write:\t\t" + populate(durable, threads, instances, properties) + " us/op");
+            durable.close();
+            
+            long start = System.nanoTime();
+            RemoteRegistryImpl recovered = RemoteRegistryImpl.openDurable(dir, Long.MAX_VALUE, syncInterval);
+            System.out.println("recovery from log:\t" + (System.nanoTime() - start) / 1000000 + " ms");
+            recovered.compact();
+            recovered.close();
+            
+            start = System.nanoTime();
+            recovered = RemoteRegistryImpl.openDurable(dir, Long.MAX_VALUE, syncInterval);
+            System.out.println("recovery from snapshot:\t" + (System.nanoTime() - start) / 1000000 + " ms");
+            recovered.close();
+        } finally {
+            File[] files = dir.listFiles();
+            for(int i = 0; files != null && i < files.length; i++) {
+                files[i].delete();
+            }
+            dir.delete();
+        }
+    }
+    
+    /** @return the average latency of a property write in microseconds */
+    private static long populate(final RemoteRegistryImpl reg, int threads, final int instances, final int properties) throws Exception {
+        final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+        final ComponentId compId = new ComponentId();
+        reg.addApplicationInstance(appInstId, new ApplicationId(), "benchmark");
+        reg.addComponent(appInstId, compId, "component");
+        
+        final AtomicLong nanos = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for(int t = 0; t < threads; t++) {
+            final int offset = t;
+            final int stride = threads;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long sum = 0;
+                        for(int i = offset; i < instances; i += stride) {
+                            ComponentInstanceId cinstId = new ComponentInstanceId();
+                            reg.addComponentInstance(appInstId, compId, cinstId);
+                            for(int p = 0; p < properties; p++) {
+                                long start = System.nanoTime();
+                                reg.addComponentProperty(appInstId, compId, cinstId, "PROPERTY_" + p, Integer.valueOf(i * p));
+                                sum += System.nanoTime() - start;
+                            }
+                        }
+                        nanos.addAndGet(sum);
+                    } catch(Exception ex) {
+                        ex.printStackTrace();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        done.await();
+        return nanos.get() / 1000 / (instances * properties);
+    }
+}
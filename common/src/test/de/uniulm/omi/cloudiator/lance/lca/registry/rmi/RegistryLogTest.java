@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistryConstants;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+public class RegistryLogTest {
+
+    private File dir;
+    private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+    private final ComponentId compId = new ComponentId();
+    private final ComponentInstanceId first = new ComponentInstanceId();
+    private final ComponentInstanceId second = new ComponentInstanceId();
+    
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("registry-log-test").toFile();
+    }
+    
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        for(int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+    
+    @Test
+    public void testStateIsRecoveredFromLog() throws Exception {
+        RemoteRegistryImpl reg = RemoteRegistryImpl.openDurable(dir, 0);
+        populate(reg);
+        Map<ComponentInstanceId, Map<String, String>> expected = reg.dumpComponent(appInstId, compId);
+        reg.close();
+        
+        RemoteRegistryImpl recovered = RemoteRegistryImpl.openDurable(dir, 0);
+        assertTrue(recovered.applicationInstanceExists(appInstId));
+        assertTrue(recovered.applicationComponentExists(appInstId, compId));
+        assertEquals(expected, recovered.dumpComponent(appInstId, compId));
+        recovered.close();
+    }
+    
+    @Test
+    public void testStateIsRecoveredFromSnapshotAndLog() throws Exception {
+        RemoteRegistryImpl reg = RemoteRegistryImpl.openDurable(dir, 0);
+        populate(reg);
+        reg.compact();
+        reg.addComponentProperty(appInstId, compId, second, "after_snapshot", "yes");
+        Map<ComponentInstanceId, Map<String, String>> expected = reg.dumpComponent(appInstId, compId);
+        reg.close();
+        
+        RemoteRegistryImpl recovered = RemoteRegistryImpl.openDurable(dir, 0);
+        assertEquals(expected, recovered.dumpComponent(appInstId, compId));
+        // instance numbers continue after recovery //
+        ComponentInstanceId third = new ComponentInstanceId();
+        recovered.addComponentInstance(appInstId, compId, third);
+        assertEquals("3", recovered.getComponentProperty(appInstId, compId, third, LcaRegistryConstants.INSTANCE_NR));
+        recovered.close();
+    }
+    
+    @Test
+    public void testIncompleteRecordIsDropped() throws Exception {
+        RemoteRegistryImpl reg = RemoteRegistryImpl.openDurable(dir, 0);
+        populate(reg);
+        Map<ComponentInstanceId, Map<String, String>> expected = reg.dumpComponent(appInstId, compId);
+        reg.close();
+        
+        // simulate a crash in the middle of writing a record //
+        File[] logs = dir.listFiles();
+        assertEquals(1, logs.length);
+        try(FileOutputStream out = new FileOutputStream(logs[0], true)) {
+            out.write(new byte[] {0, 0, 0, 42, 1, 2, 3});
+        }
+        
+        RemoteRegistryImpl recovered = RemoteRegistryImpl.openDurable(dir, 0);
+        assertEquals(expected, recovered.dumpComponent(appInstId, compId));
+        recovered.addComponentProperty(appInstId, compId, first, "after_crash", "yes");
+        recovered.close();
+        
+        RemoteRegistryImpl again = RemoteRegistryImpl.openDurable(dir, 0);
+        assertEquals("yes", again.getComponentProperty(appInstId, compId, first, "after_crash"));
+        again.close();
+    }
+    
+    @Test
+    public void testInstanceWithInitialPropertiesIsRecovered() throws Exception {
+        RemoteRegistryImpl reg = RemoteRegistryImpl.openDurable(dir, 0);
+        populate(reg);
+        long version = reg.getComponentVersion(appInstId, compId);
+        ComponentInstanceId third = new ComponentInstanceId();
+        reg.addComponentInstance(appInstId, compId, third, Collections.singletonMap("status", "NEW"));
+        // a single change to the component //
+        assertEquals(version + 1, reg.getComponentVersion(appInstId, compId));
+        Map<ComponentInstanceId, Map<String, String>> expected = reg.dumpComponent(appInstId, compId);
+        reg.close();
+        
+        RemoteRegistryImpl recovered = RemoteRegistryImpl.openDurable(dir, 0);
+        assertEquals(expected, recovered.dumpComponent(appInstId, compId));
+        assertEquals("NEW", recovered.getComponentProperty(appInstId, compId, third, "status"));
+        assertEquals("3", recovered.getComponentProperty(appInstId, compId, third, LcaRegistryConstants.INSTANCE_NR));
+        recovered.close();
+    }
+    
+    @Test
+    public void testUnreadableSnapshotFallsBackToPreviousOne() throws Exception {
+        RemoteRegistryImpl reg = RemoteRegistryImpl.openDurable(dir, 0);
+        populate(reg);
+        reg.compact();
+        reg.addComponentProperty(appInstId, compId, first, "between_snapshots", "yes");
+        reg.compact();
+        reg.addComponentProperty(appInstId, compId, second, "after_snapshot", "yes");
+        Map<ComponentInstanceId, Map<String, String>> expected = reg.dumpComponent(appInstId, compId);
+        reg.close();
+        
+        corrupt(new File(dir, "registry-2.snapshot"));
+        RemoteRegistryImpl recovered = RemoteRegistryImpl.openDurable(dir, 0);
+        assertEquals(expected, recovered.dumpComponent(appInstId, compId));
+        recovered.close();
+    }
+    
+    @Test(expected = IOException.class)
+    public void testMissingLogAfterUnreadableSnapshotFails() throws Exception {
+        RemoteRegistryImpl reg = RemoteRegistryImpl.openDurable(dir, 0);
+        populate(reg);
+        reg.compact();
+        reg.close();
+        
+        corrupt(new File(dir, "registry-1.snapshot"));
+        assertTrue(new File(dir, "registry-0.log").delete());
+        RemoteRegistryImpl.openDurable(dir, 0);
+    }
+    
+    private static void corrupt(File file) throws IOException {
+        assertTrue(file.isFile());
+        try(FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[] {1, 2, 3});
+        }
+    }
+    
+    private void populate(RemoteRegistryImpl reg) throws Exception {
+        reg.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        reg.addComponent(appInstId, compId, "comp");
+        reg.addComponentInstance(appInstId, compId, first);
+        reg.addComponentInstance(appInstId, compId, second);
+        reg.addComponentProperty(appInstId, compId, first, "port", Integer.valueOf(80));
+        Map<String, Object> props = new HashMap<>();
+        props.put("port", Integer.valueOf(8080));
+        props.put("ip", "10.0.0.1");
+        reg.addComponentProperties(appInstId, compId, second, props);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
+
+import static org.junit.Assert.*;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistryConstants;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+public class RemoteRegistryConcurrencyTest {
+
+    private static final int WRITERS = 16;
+    private static final int READERS = 8;
+    private static final int UPDATES = 500;
+    private static final String COUNTER = "COUNTER";
+    
+    private final RemoteRegistryImpl registry = new RemoteRegistryImpl();
+    private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+    private final ComponentId compId = new ComponentId();
+    
+    @Test
+    public void testConcurrentApplicationInstanceCreation() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for(int i = 0; i < WRITERS; i++) {
+            results.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    start.await();
+                    return Boolean.valueOf(registry.addApplicationInstance(appInstId, new ApplicationId(), "app"));
+                }
+            }));
+        }
+        start.countDown();
+        int created = 0;
+        for(Future<Boolean> result : results) {
+            if(result.get().booleanValue()) {
+                created++;
+            }
+        }
+        executor.shutdown();
+        assertEquals(1, created);
+        assertTrue(registry.applicationInstanceExists(appInstId));
+    }
+    
+    @Test
+    public void testReadersSeeConsistentSnapshots() throws Exception {
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        registry.addComponent(appInstId, compId, "comp");
+        
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<?>> readers = new ArrayList<>();
+        for(int i = 0; i < WRITERS; i++) {
+            writers.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    ComponentInstanceId myId = new ComponentInstanceId();
+                    registry.addComponentInstance(appInstId, compId, myId);
+                    for(int j = 1; j <= UPDATES; j++) {
+                        Map<String, Object> props = new HashMap<>();
+                        props.put(COUNTER, Integer.valueOf(j));
+                        props.put(COUNTER + "_COPY", Integer.valueOf(j));
+                        registry.addComponentProperties(appInstId, compId, myId, props);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for(int i = 0; i < READERS; i++) {
+            readers.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    Map<ComponentInstanceId, Integer> lastSeen = new HashMap<>();
+                    while(writing.get()) {
+                        checkSnapshot(registry.dumpComponent(appInstId, compId), lastSeen);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for(Future<?> writer : writers) {
+            writer.get();
+        }
+        writing.set(false);
+        for(Future<?> reader : readers) {
+            reader.get();
+        }
+        executor.shutdown();
+        
+        Map<ComponentInstanceId, Map<String, String>> dump = registry.dumpComponent(appInstId, compId);
+        assertEquals(WRITERS, dump.size());
+        for(Map<String, String> props : dump.values()) {
+            assertEquals(Integer.toString(UPDATES), props.get(COUNTER));
+        }
+    }
+    
+    @Test
+    public void testWaitersAreWokenByWriters() throws Exception {
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        registry.addComponent(appInstId, compId, "comp");
+        final long version = registry.awaitComponentChange(appInstId, compId, -1, 0);
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Long> waiter = executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws RemoteException {
+                return Long.valueOf(registry.awaitComponentChange(appInstId, compId, version, 60000));
+            }
+        });
+        registry.addComponentInstance(appInstId, compId, new ComponentInstanceId());
+        assertTrue(waiter.get().longValue() > version);
+        executor.shutdown();
+    }
+    
+    private static void checkSnapshot(Map<ComponentInstanceId, Map<String, String>> dump, 
+                Map<ComponentInstanceId, Integer> lastSeen) {
+        for(Entry<ComponentInstanceId, Map<String, String>> entry : dump.entrySet()) {
+            Map<String, String> props = entry.getValue();
+            assertNotNull(props.get(LcaRegistryConstants.INSTANCE_NR));
+            String counter = props.get(COUNTER);
+            if(counter == null) {
+                continue;
+            }
+            // both properties have been written together //
+            assertEquals(counter, props.get(COUNTER + "_COPY"));
+            Integer current = Integer.valueOf(counter);
+            Integer last = lastSeen.put(entry.getKey(), current);
+            assertTrue(last == null || last.intValue() <= current.intValue());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.registry.rmi;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryWatch;
+
+public class RmiComponentWatchTest {
+
+    private final RemoteRegistryImpl registry = new RemoteRegistryImpl();
+    private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+    private final ComponentId compId = new ComponentId();
+    private final Semaphore changes = new Semaphore(0);
+    private final ComponentChangeListener listener = new ComponentChangeListener() {
+        @Override
+        public void componentChanged(ApplicationInstanceId appInstIdParam, ComponentId compIdParam) {
+            changes.release();
+        }
+    };
+    private RegistryWatch watch;
+
+    @After
+    public void tearDown() {
+        if(watch != null) 
+            watch.cancel();
+    }
+
+    @Test
+    public void testListenerFiresOnEveryChangeUntilCancelled() throws Exception {
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        registry.addComponent(appInstId, compId, "comp");
+        ComponentInstanceId cinstId = new ComponentInstanceId();
+        registry.addComponentInstance(appInstId, compId, cinstId);
+        watch = new RmiComponentWatch(registry, appInstId, compId, listener).start();
+        assertFalse(changes.tryAcquire(200, TimeUnit.MILLISECONDS));
+        
+        registry.addComponentProperty(appInstId, compId, cinstId, "port", "80");
+        assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+        registry.addComponentProperty(appInstId, compId, cinstId, "port", "81");
+        assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+        
+        watch.cancel();
+        Thread.sleep(100);
+        changes.drainPermits();
+        registry.addComponentProperty(appInstId, compId, cinstId, "port", "82");
+        assertFalse(changes.tryAcquire(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testMissingComponentFiresWhenAdded() throws Exception {
+        watch = new RmiComponentWatch(registry, appInstId, compId, listener).start();
+        assertFalse(changes.tryAcquire(200, TimeUnit.MILLISECONDS));
+        
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        assertFalse(changes.tryAcquire(200, TimeUnit.MILLISECONDS));
+        registry.addComponent(appInstId, compId, "comp");
+        assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+        
+        registry.addComponentInstance(appInstId, compId, new ComponentInstanceId());
+        assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAwaitingMissingComponentTimesOut() throws Exception {
+        long start = System.currentTimeMillis();
+        assertEquals(LcaRegistry.UNKNOWN_VERSION, registry.awaitComponentChange(appInstId, compId, LcaRegistry.UNKNOWN_VERSION, 200));
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        assertEquals(LcaRegistry.UNKNOWN_VERSION, registry.awaitComponentChange(appInstId, compId, LcaRegistry.UNKNOWN_VERSION, 0));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.util.execution;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class KeyedExecutorTest {
+
+    private static final long TIMEOUT = 5;
+
+    private KeyedExecutor<String> executor;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if(executor != null) 
+            executor.shutdown();
+    }
+
+    @Test
+    public void testTasksOfOneKeyRunInOrder() throws Exception {
+        executor = new KeyedExecutor<>(4, 1000, Executors.defaultThreadFactory());
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(100);
+        for(int i = 0; i < 100; i++) {
+            final int n = i;
+            executor.execute("a", () -> {
+                if(running.incrementAndGet() > 1) 
+                    overlaps.incrementAndGet();
+                order.add(n);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for(int i = 0; i < 100; i++) {
+            assertEquals(i, order.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testKeysRunInParallel() throws Exception {
+        executor = new KeyedExecutor<>(2, 1000, Executors.defaultThreadFactory());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch other = new CountDownLatch(1);
+        executor.execute("busy", () -> { started.countDown(); awaitQuietly(blocked); });
+        executor.execute("busy", () -> { });
+        executor.execute("idle", () -> other.countDown());
+        // the second key is not held up by the first one //
+        assertTrue(other.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(1, executor.getQueueDepth("busy"));
+        assertEquals(0, executor.getQueueDepth("idle"));
+        blocked.countDown();
+    }
+
+    @Test
+    public void testQueueIsBounded() throws Exception {
+        executor = new KeyedExecutor<>(1, 2, Executors.defaultThreadFactory());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        executor.execute("a", () -> { started.countDown(); awaitQuietly(blocked); });
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        executor.execute("a", () -> { });
+        executor.execute("b", () -> { });
+        try {
+            executor.execute("c", () -> { });
+            fail("queue is full");
+        } catch(RejectedExecutionException ree) {
+            // expected //
+        }
+        assertEquals(2, executor.getQueueDepth());
+        blocked.countDown();
+    }
+
+    @Test
+    public void testLatencyIsRecorded() throws Exception {
+        executor = new KeyedExecutor<>(1, 10, Executors.defaultThreadFactory());
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute("a", () -> sleepQuietly(20));
+        executor.execute("a", () -> done.countDown());
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        while(executor.getCompletedTasks() < 2) {
+            Thread.sleep(5);
+        }
+        assertTrue(executor.getMaxLatency(TimeUnit.MILLISECONDS) >= 20);
+        assertEquals(0, executor.getQueueDepth());
+        assertEquals(0, executor.getActiveKeys());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT, TimeUnit.SECONDS);
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -33,11 +33,11 @@ public class DockerShellTestImpl extends TestImpl implements DockerShellTestAgen
   private volatile ComponentInfo info = null;
   private volatile DockerComponent comp;
   private final ProcessBasedConnector connector;
-  private final DockerShellFactory shellFactory;
+  // the shell is used by several remote calls that may come from different threads //
+  private volatile DockerShell sideShell;
 
   public DockerShellTestImpl() {
     connector = new ProcessBasedConnector("ubuntu-host");
-    shellFactory = new DockerShellFactory();
   }
 
   @Override
@@ -83,10 +83,9 @@ public class DockerShellTestImpl extends TestImpl implements DockerShellTestAgen
     if (info == null)
       throw new ContainerException("ComponentInfo not set");
 
-    DockerShell shell;
-
-    DockerShellWrapper w = shellFactory.createShell();
-    shell = w.shell;
+    DockerShell shell = sideShell;
+    if (shell == null)
+      throw new IllegalStateException("shell not set");
 
     BashExportBasedVisitor visitor = new BashExportBasedVisitor(shell);
     visitor.visit("TERM", UUID.randomUUID().toString());
@@ -108,7 +107,10 @@ public class DockerShellTestImpl extends TestImpl implements DockerShellTestAgen
 
   @Override
   public void closeShell() throws ContainerException, RemoteException {
-    shellFactory.closeShell();
+    DockerShell shell = sideShell;
+    sideShell = null;
+    if (shell != null)
+      shell.close();
   }
 
   @Override
@@ -118,7 +120,7 @@ public class DockerShellTestImpl extends TestImpl implements DockerShellTestAgen
 
     try {
       shell = connector.getSideShell(info.getComponentInstanceId());
-      shellFactory.installDockerShell(shell);
+      sideShell = shell;
     } catch (DockerException de) {
       throw new ContainerException("Cannot get side shell");
     }
@@ -48,6 +48,8 @@ final class DestroyTransitionAction implements TransitionAction {
       } catch (ContainerException e) {
         ErrorAwareContainer.getLogger().error("could not shutdown shell;", e);
       }
+      // the lease expires by itself and removes the instance from the registry //
+      theContainer.stopLeaseHeartbeat();
     }
   }
 
@@ -183,7 +183,7 @@ public final class ErrorAwareContainer<T extends ContainerLogic> implements Cont
             throw new ContainerException("container has no IP address set after bootstrapping.");
         network.updateAddress(PortRegistryTranslator.PORT_HIERARCHY_2, address);
         network.iterateOverInPorts(logic.getPortMapper());
-        network.pollForNeededConnections();
+        network.awaitNeededConnections();
     }
 
     void preInitAction() throws LifecycleException {
@@ -207,6 +207,10 @@ public final class ErrorAwareContainer<T extends ContainerLogic> implements Cont
     void registerStatus(ContainerStatus status) throws RegistrationException {
         accessor.updateContainerState(containerId, status);
     }
+
+    void stopLeaseHeartbeat() {
+        accessor.stopLeaseHeartbeat();
+    }
     
     void throwExceptionIfGenericErrorStateOrOtherState(ContainerStatus stat) throws ContainerConfigurationException, UnexpectedContainerStateException {
     	if(stateMachine.isGenericErrorState(stat)){
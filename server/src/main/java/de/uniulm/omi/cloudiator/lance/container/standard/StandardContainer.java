@@ -151,7 +151,7 @@ public final class StandardContainer<T extends ContainerLogic> implements Contai
             throw new ContainerException("container has no IP address set after bootstrapping.");
         network.updateAddress(PortRegistryTranslator.PORT_HIERARCHY_2, address);
         network.iterateOverInPorts(logic.getPortMapper());
-        network.pollForNeededConnections();
+        network.awaitNeededConnections();
     }
 
     void preInitAction() throws LifecycleException {
@@ -262,6 +262,8 @@ public final class StandardContainer<T extends ContainerLogic> implements Contai
                             } catch (ContainerException e) {
                                 getLogger().error("could not publish local data", e);
                             }
+                            // the lease expires by itself and removes the instance from the registry //
+                            accessor.stopLeaseHeartbeat();
                         }
 
                     }
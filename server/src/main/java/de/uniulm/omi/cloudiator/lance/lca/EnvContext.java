@@ -20,6 +20,8 @@ package de.uniulm.omi.cloudiator.lance.lca;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.uniulm.omi.cloudiator.lance.lca.container.ContainerException;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.util.execution.KeyedExecutor;
 import de.uniulm.omi.cloudiator.lance.util.execution.LoggingScheduledThreadPoolExecutor;
 import java.util.HashMap;
 import java.util.Map;
@@ -49,6 +51,8 @@ final class EnvContext implements HostContext {
   public static final String VM_ID_KEY = "host.vm.id";
   public static final String CLOUD_ID_KEY = "host.vm.cloud.id";
   //public static final String CONTAINER_TYPE = "host.container.type";
+  public static final String PORT_UPDATE_THREADS_KEY = "lca.port.update.threads";
+  public static final String PORT_UPDATE_QUEUE_KEY = "lca.port.update.queue";
 
   private static final String[] VALUES =
        new String[]{PUBLIC_IP_KEY , PRIVATE_IP_KEY , /*HOST_OS_KEY, */ TENANT_ID_KEY, VM_ID_KEY
@@ -56,12 +60,19 @@ final class EnvContext implements HostContext {
 
   private final Map<String, String> hostContext;
   private final ScheduledExecutorService executorService;
+  private final KeyedExecutor<ComponentInstanceId> portUpdateExecutor;
 
   EnvContext(Map<String, String> ctxParam) {
     hostContext = ctxParam;
     final ThreadFactory threadFactory =
         new ThreadFactoryBuilder().setNameFormat("EnvContextExecutor-%d").build();
     this.executorService = new LoggingScheduledThreadPoolExecutor(4, threadFactory);
+    // port updates block on the containers' shells; keep them 
+    // away from the detectors scheduled on executorService //
+    final ThreadFactory portUpdateFactory =
+        new ThreadFactoryBuilder().setNameFormat("PortUpdateExecutor-%d").build();
+    this.portUpdateExecutor = new KeyedExecutor<>(Integer.getInteger(PORT_UPDATE_THREADS_KEY, 4).intValue(),
+        Integer.getInteger(PORT_UPDATE_QUEUE_KEY, 256).intValue(), portUpdateFactory);
   }
 
   private void registerRmiAddress() {
@@ -103,6 +114,16 @@ final class EnvContext implements HostContext {
     return sf;
   }
 
+  @Override
+  public ScheduledFuture<?> scheduleOnce(Runnable runner, long delay, TimeUnit unit) {
+    return executorService.schedule(runner, delay, unit);
+  }
+
+  @Override
+  public KeyedExecutor<ComponentInstanceId> getPortUpdateExecutor() {
+    return portUpdateExecutor;
+  }
+
   @Override
   public Future<?> run(Runnable runnable) {
     return executorService.submit(runnable);
@@ -115,6 +136,7 @@ final class EnvContext implements HostContext {
 
   @Override
   public void close() throws InterruptedException {
+    portUpdateExecutor.shutdown();
     executorService.shutdownNow();
     while (true) {
       executorService.awaitTermination(10, TimeUnit.SECONDS);
@@ -20,7 +20,18 @@ package de.uniulm.omi.cloudiator.lance.lca;
 
 import static de.uniulm.omi.cloudiator.lance.lca.LcaRegistryConstants.*;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
 import de.uniulm.omi.cloudiator.lance.application.DeploymentContext;
@@ -29,11 +40,33 @@ import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponent;
 import de.uniulm.omi.cloudiator.lance.application.component.PortReference;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
 import de.uniulm.omi.cloudiator.lance.lca.container.ContainerStatus;
+import de.uniulm.omi.cloudiator.lance.lca.registry.AsyncLcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
 import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryWatch;
 import de.uniulm.omi.cloudiator.lance.lifecycle.LifecycleHandlerType;
 
 public final class GlobalRegistryAccessor {
     
+    private static final Logger LOGGER = LoggerFactory.getLogger(GlobalRegistryAccessor.class);
+    
+    /** time to live of component instance leases in seconds; 0 or less disables leases */
+    public static final String LEASE_TTL_PROPERTY = "lca.registry.lease.ttl";
+    private static final long DEFAULT_LEASE_TTL_SECONDS = 30;
+    
+    /** 
+     * heartbeats do not share the threads of the host context, so that busy 
+     * lifecycle or detector tasks cannot delay them beyond the lease.
+     */
+    private static final ScheduledExecutorService HEARTBEATS = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "registry-lease-heartbeat");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    
     private final LcaRegistry reg;
     // private final ApplicationId appId;
     private final ApplicationInstanceId appInstId; 
@@ -41,6 +74,11 @@ public final class GlobalRegistryAccessor {
     private final DeploymentContext ctx;
     // private final DeployableComponent comp;
     private final ComponentInstanceId localId;
+    private final Object heartbeatLock = new Object();
+    // protected by heartbeatLock //
+    private ScheduledFuture<?> heartbeat;
+    // properties of the local instance; needed to register it again once its lease has expired //
+    private final Map<String, String> published = new ConcurrentHashMap<>();
     
     public GlobalRegistryAccessor(DeploymentContext ctxParam, DeployableComponent compParam, ComponentInstanceId localIdParam) {
         reg = ctxParam.getRegistry();
@@ -52,16 +90,88 @@ public final class GlobalRegistryAccessor {
         localId = localIdParam;
     }
     
+    public ComponentInstanceId getLocalComponentInstanceId() {
+        return localId;
+    }
+    
     public final void init(ComponentInstanceId myId) throws RegistrationException {
-        reg.addComponentInstance(appInstId, compId, myId);
-        reg.addComponentProperty(appInstId, compId, myId, COMPONENT_INSTANCE_STATUS, LifecycleHandlerType.NEW.toString());
+        Map<String, String> initialProperties = new HashMap<>();
+        initialProperties.put(COMPONENT_INSTANCE_STATUS, LifecycleHandlerType.NEW.toString());
+        if(localId.equals(myId)) 
+            published.putAll(initialProperties);
+        reg.addComponentInstance(appInstId, compId, myId, initialProperties);
+    }
+    
+    /**
+     * leases the local component instance at the registry and renews the 
+     * lease periodically, so that the instance disappears from the registry 
+     * once this agent fails to renew it in time. if the lease has expired 
+     * nevertheless, the instance is registered again with its properties.
+     */
+    public void startLeaseHeartbeat() throws RegistrationException {
+        final long ttlMillis = TimeUnit.SECONDS.toMillis(Long.getLong(LEASE_TTL_PROPERTY, DEFAULT_LEASE_TTL_SECONDS).longValue());
+        if(ttlMillis <= 0) 
+            return;
+        if(!reg.renewComponentInstanceLease(appInstId, compId, localId, ttlMillis)) 
+            throw new RegistrationException("component instance not registered: " + localId);
+        synchronized(heartbeatLock) {
+            if(heartbeat != null) 
+                return;
+            // renew well before the lease expires, so that a single missed beat does no harm //
+            long period = Math.max(1, ttlMillis / 3);
+            heartbeat = HEARTBEATS.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    renewLease(ttlMillis);
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    public void stopLeaseHeartbeat() {
+        synchronized(heartbeatLock) {
+            if(heartbeat == null) 
+                return;
+            heartbeat.cancel(false);
+            heartbeat = null;
+        }
+    }
+    
+    private void renewLease(long ttlMillis) {
+        try {
+            if(!reg.renewComponentInstanceLease(appInstId, compId, localId, ttlMillis)) 
+                registerAgain(ttlMillis);
+        } catch(RegistrationException re) {
+            LOGGER.warn("could not renew lease of component instance " + localId, re);
+        } catch(RuntimeException re) {
+            LOGGER.error("could not renew lease of component instance " + localId, re);
+        }
+    }
+    
+    private void registerAgain(long ttlMillis) throws RegistrationException {
+        LOGGER.warn("lease of component instance " + localId + " has expired; registering it again.");
+        // holding the lock keeps a stopped heartbeat from bringing the instance back //
+        synchronized(heartbeatLock) {
+            if(heartbeat == null) 
+                return;
+            reg.addComponentInstance(appInstId, compId, localId, new HashMap<>(published));
+            if(!reg.renewComponentInstanceLease(appInstId, compId, localId, ttlMillis)) 
+                throw new RegistrationException("component instance could not be leased again: " + localId);
+        }
+    }
+    
+    private void remember(ComponentInstanceId myId, String key, String value) {
+        if(localId.equals(myId)) 
+            published.put(key, value);
     }
     
     public final void updateInstanceState(ComponentInstanceId myId, LifecycleHandlerType type) throws RegistrationException {
+        remember(myId, COMPONENT_INSTANCE_STATUS, type.toString());
         reg.addComponentProperty(appInstId, compId, myId, COMPONENT_INSTANCE_STATUS, type.toString());
     }
     
     public final void updateContainerState(ComponentInstanceId myId, ContainerStatus type) throws RegistrationException {
+        remember(myId, CONTAINER_STATUS, type.toString());
         reg.addComponentProperty(appInstId, compId, myId, CONTAINER_STATUS, type.toString());
     }
     
@@ -190,10 +300,42 @@ public final class GlobalRegistryAccessor {
         return reg.dumpComponent(appInstId, sinkReference.getComponentId());
     }
     
+    public long retrieveComponentVersion(PortReference sinkReference) throws RegistrationException {
+        return reg.getComponentVersion(appInstId, sinkReference.getComponentId());
+    }
+    
+    public RegistryWatch watchComponent(PortReference sinkReference, ComponentChangeListener listener) throws RegistrationException {
+        return reg.watchComponent(appInstId, sinkReference.getComponentId(), listener);
+    }
+    
     public void addLocalProperty(String key, String value) throws RegistrationException {
+        published.put(key, value);
         reg.addComponentProperty(appInstId, compId, localId, key, value);
     }
 
+    /**
+     * adds the property without waiting for the registry when it supports
+     * asynchronous access; otherwise the property is written right away.
+     */
+    public CompletableFuture<Void> addLocalPropertyAsync(String key, String value) {
+        published.put(key, value);
+        if(reg instanceof AsyncLcaRegistry) 
+            return ((AsyncLcaRegistry) reg).addComponentPropertyAsync(appInstId, compId, localId, key, value);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            reg.addComponentProperty(appInstId, compId, localId, key, value);
+            future.complete(null);
+        } catch(RegistrationException re) {
+            future.completeExceptionally(re);
+        }
+        return future;
+    }
+
+    public void addLocalProperties(Map<String, String> properties) throws RegistrationException {
+        published.putAll(properties);
+        reg.addComponentProperties(appInstId, compId, localId, properties);
+    }
+
     public String getComponentInstanceProperty(ComponentInstanceId myId, String key) throws RegistrationException {
         return reg.getComponentProperty(appInstId, compId, myId, key);
     }
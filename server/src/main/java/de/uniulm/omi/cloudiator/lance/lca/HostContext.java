@@ -21,6 +21,10 @@ package de.uniulm.omi.cloudiator.lance.lca;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.util.execution.KeyedExecutor;
 
 public interface HostContext extends StaticEnvVars {
 
@@ -48,4 +52,12 @@ public interface HostContext extends StaticEnvVars {
 
   ScheduledFuture<?> scheduleAction(Runnable runner);
 
+  ScheduledFuture<?> scheduleOnce(Runnable runner, long delay, TimeUnit unit);
+
+  /** 
+   * @return the executor that runs port updates; updates of a single 
+   *         component instance are serialised, others run in parallel 
+   */
+  KeyedExecutor<ComponentInstanceId> getPortUpdateExecutor();
+
 }
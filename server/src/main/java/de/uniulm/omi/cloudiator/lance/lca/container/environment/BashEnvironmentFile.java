@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.environment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.uniulm.omi.cloudiator.lance.lifecycle.ExecutionResult;
+
+/**
+ * an environment file that is kept in line with a snapshot of the 
+ * variables that have been exported to it. as shells are short-lived,
+ * a shell sources this file instead of exporting all variables one 
+ * by one. only those variables that have changed since the last export
+ * are written to the file; they are appended as a single batch so that
+ * e.g. a port update touches only the affected out ports. once the file
+ * has grown far beyond the variables it defines, it is rewritten.
+ * 
+ * the lines of the file are the very export commands that used to be
+ * typed into the shell; hence, values are interpreted the same way.
+ * 
+ * if a {@link EnvironmentFileWriter} is given, the content of the file
+ * does not pass through the shell at all. instead, every change leads 
+ * to a new version of the file that is placed next to it by the writer 
+ * and then atomically renamed to the file by the shell that sources it.
+ */
+public final class BashEnvironmentFile {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(BashEnvironmentFile.class);
+    
+    private static final String END_MARKER = "LANCE_ENVIRONMENT_END";
+    private static final int COMPACTION_SLACK = 32;
+    
+    private final String path;
+    private final EnvironmentFileWriter writer;
+    // the variables as defined by the file //
+    private final Map<String, String> exported = new TreeMap<>();
+    private int lines;
+    private boolean written;
+    private long version;
+    
+    public BashEnvironmentFile(String pathParam) {
+        this(pathParam, null);
+    }
+    
+    public BashEnvironmentFile(String pathParam, EnvironmentFileWriter writerParam) {
+        path = pathParam;
+        writer = writerParam;
+    }
+    
+    /**
+     * brings the file in line with the given variables and sources it 
+     * into the shell; all of this happens in a single command. 
+     * 
+     * @param complete true if the given variables are the complete 
+     *          environment; otherwise, variables not contained in 
+     *          variables are retained.
+     */
+    public synchronized ExecutionResult export(ShellLikeInterface shell, Map<String, String> variables, boolean complete) {
+        Map<String, String> changed = new TreeMap<>();
+        for(Entry<String, String> entry : variables.entrySet()) {
+            if(!exported.containsKey(entry.getKey()) || !Objects.equals(exported.get(entry.getKey()), entry.getValue())) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        if(complete) {
+            for(String name : exported.keySet()) {
+                if(!variables.containsKey(name)) {
+                    removed.add(name);
+                }
+            }
+        }
+        if(!written && changed.isEmpty()) {
+            return ExecutionResult.success("", "");
+        }
+        
+        boolean rewrite = !written || lines > 2 * exported.size() + COMPACTION_SLACK
+                || (writer != null && !(changed.isEmpty() && removed.isEmpty()));
+        if(!rewrite) {
+            ExecutionResult result = shell.executeCommand(appendScript(changed, removed));
+            if(result.isSuccess()) {
+                apply(changed, removed);
+                lines = lines + changed.size() + removed.size();
+                return result;
+            }
+            // e.g. the container has been re-created and the file is gone //
+            LOGGER.info("could not update environment file " + path + "; rewriting it: " + result);
+        }
+        Map<String, String> all = complete ? new TreeMap<String, String>() : new TreeMap<>(exported);
+        all.putAll(variables);
+        ExecutionResult result = writer == null ? shell.executeCommand(rewriteScript(all)) : replace(shell, all);
+        if(result.isSuccess()) {
+            exported.clear();
+            exported.putAll(all);
+            lines = all.size();
+            written = true;
+        } else {
+            clear();
+        }
+        return result;
+    }
+    
+    /** 
+     * deletes the file from the file system of the shell, e.g. before the 
+     * container is committed to an image that other instances use as well.
+     * the next export writes the file anew.
+     */
+    public synchronized ExecutionResult remove(ShellLikeInterface shell) {
+        clear();
+        return shell.executeCommand("rm -f " + path + " " + path + ".*");
+    }
+    
+    /** forgets about the file, e.g. because its container has been re-created */
+    public synchronized void clear() {
+        exported.clear();
+        lines = 0;
+        written = false;
+    }
+    
+    private void apply(Map<String, String> changed, List<String> removed) {
+        for(String name : removed) {
+            exported.remove(name);
+        }
+        exported.putAll(changed);
+    }
+    
+    private String appendScript(Map<String, String> changed, List<String> removed) {
+        if(changed.isEmpty() && removed.isEmpty()) {
+            return ". " + path;
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append("[ -f ").append(path).append(" ] && cat >> ").append(path).append(" <<'").append(END_MARKER).append("'\n");
+        for(String name : removed) {
+            builder.append("unset ").append(name).append('\n');
+        }
+        appendExports(builder, changed);
+        return builder.append(END_MARKER).append('\n').append(". ").append(path).toString();
+    }
+    
+    private ExecutionResult replace(ShellLikeInterface shell, Map<String, String> all) {
+        StringBuilder builder = new StringBuilder(all.size() * 64);
+        appendExports(builder, all);
+        version++;
+        String next = path + "." + version;
+        ExecutionResult result = writer.write(next, builder);
+        if(!result.isSuccess()) {
+            return result;
+        }
+        return shell.executeCommand("mv -f " + next + " " + path + " && . " + path);
+    }
+    
+    private String rewriteScript(Map<String, String> all) {
+        StringBuilder builder = new StringBuilder();
+        int index = path.lastIndexOf('/');
+        if(index > 0) {
+            builder.append("mkdir -p ").append(path, 0, index).append(" && ");
+        }
+        builder.append("cat > ").append(path).append(" <<'").append(END_MARKER).append("'\n");
+        appendExports(builder, all);
+        return builder.append(END_MARKER).append('\n').append(". ").append(path).toString();
+    }
+    
+    private static void appendExports(StringBuilder builder, Map<String, String> variables) {
+        for(Entry<String, String> entry : variables.entrySet()) {
+            builder.append("export ").append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+    }
+}
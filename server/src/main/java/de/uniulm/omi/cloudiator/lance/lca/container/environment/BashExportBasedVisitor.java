@@ -19,6 +19,8 @@
 package de.uniulm.omi.cloudiator.lance.lca.container.environment;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,14 +35,26 @@ public final class BashExportBasedVisitor implements NetworkVisitor, PropertyVis
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(OutPort.class);
 	
-    private final ShellLikeInterface interfce;
+    private final BiConsumer<String, String> target;
     
     public BashExportBasedVisitor(ShellLikeInterface ifc) {
-        interfce = ifc;
+        target = ifc::setEnvironmentVariable;
+    }
+    
+    private BashExportBasedVisitor(BiConsumer<String, String> targetParam) {
+        target = targetParam;
+    }
+    
+    /** 
+     * @return a visitor that does not export anything, but puts 
+     * all variables to the given map 
+     */
+    public static BashExportBasedVisitor collecting(Map<String, String> environment) {
+        return new BashExportBasedVisitor(environment::put);
     }
     
     private void addEnvironmentVariable(String name, String value) {
-        interfce.setEnvironmentVariable(name, value);
+        target.accept(name, value);
     }
 
     @Override
@@ -59,14 +73,14 @@ public final class BashExportBasedVisitor implements NetworkVisitor, PropertyVis
 
     @Override
     public void visitOutPort(String portName, PortHierarchyLevel level, List<DownstreamAddress> sinks) {
-        String value = "";
+        StringBuilder builder = new StringBuilder(sinks.size() * 24);
         for(DownstreamAddress element : sinks) {
-            if(!value.isEmpty()) {
-                value = value + ","; 
+            if(builder.length() > 0) {
+                builder.append(',');
             }
-            value = value + element.toString();
-        
+            builder.append(element.toString());
         }
+        String value = builder.toString();
         String name = level.getName().toUpperCase() + "_" + portName;
         LOGGER.info("exporting out port as environment variable: " + name + " = " + value);
         addEnvironmentVariable(name, value);
@@ -18,22 +18,34 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.container.port;
 
+/**
+ * the address of a single sink at a single hierarchy level. the port is 
+ * kept as a primitive and the hash code is computed once, as addresses 
+ * are compared on every poll of the downstream ports. 
+ * 
+ * the cloud of the sink is used for selecting sinks.
+ */
 public final class DownstreamAddress{
     
     private final String hostIp; 
-    private final Integer port;
+    private final int port;
+    private final String cloudId;
+    private final int hash;
 
-    DownstreamAddress(String ip, Integer i) {
+    DownstreamAddress(String ip, int i) {
+        this(ip, i, null);
+    }
+    
+    DownstreamAddress(String ip, int i, String cloud) {
         hostIp = ip;
         port = i;
+        cloudId = cloud;
+        hash = 31 * (31 * (31 + (ip == null ? 0 : ip.hashCode())) + i) + (cloud == null ? 0 : cloud.hashCode());
     }
-
-    private static boolean equalObjects(Object o1, Object o2) {
-        if(o1 == o2 ) // covers null == null 
-            return true;
-        if(o1 == null || o2 == null) 
-            return false;
-        return o1.equals(o2);
+    
+    /** @return the cloud the sink runs in or null if it is not known */
+    String getCloudId() {
+        return cloudId;
     }
     
     boolean hasValidPort() {
@@ -42,23 +54,25 @@ public final class DownstreamAddress{
 
     @Override
     public String toString() {
-        return hostIp + ":" + port.toString();
+        return hostIp + ":" + port;
     }
 
     @Override
     public boolean equals(Object o) {
+        if(o == this) 
+            return true;
         if(! (o instanceof DownstreamAddress)) 
             return false;
         DownstreamAddress that = (DownstreamAddress) o;
-        return equalObjects(this.hostIp, that.hostIp) && equalObjects(this.port, that.port);
+        if(this.port != that.port || this.hash != that.hash) 
+            return false;
+        if(this.cloudId == null ? that.cloudId != null : !this.cloudId.equals(that.cloudId))
+            return false;
+        return this.hostIp == null ? that.hostIp == null : this.hostIp.equals(that.hostIp);
     }
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((hostIp == null) ? 0 : hostIp.hashCode());
-        result = prime * result + ((port == null) ? 0 : port.hashCode());
-        return result;
+        return hash;
     }
 }
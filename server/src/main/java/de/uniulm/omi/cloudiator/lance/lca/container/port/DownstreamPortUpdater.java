@@ -19,90 +19,256 @@
 package de.uniulm.omi.cloudiator.lance.lca.container.port;
 
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.HostContext;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
 import de.uniulm.omi.cloudiator.lance.lca.container.ContainerException;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
 import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
 import de.uniulm.omi.cloudiator.lance.lifecycle.LifecycleController;
-import de.uniulm.omi.cloudiator.lance.lifecycle.detector.PortUpdateHandler;
 
-final class DownstreamPortUpdater implements Runnable {
+/**
+ * updates the out ports of a container when downstream components change. 
+ * change notifications are debounced: an update runs once no further 
+ * notification has arrived for a quiet window (but no later than a 
+ * maximum delay after the first one). all ports that have changed in 
+ * the meantime are then updated with a single preparation of the 
+ * container's environment. updates run on the host's port update executor
+ * so that updates of different containers do not wait for each other.
+ */
+final class DownstreamPortUpdater implements Runnable, ComponentChangeListener {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NetworkHandler.class);
     
+    /** quiet window in milliseconds; 0 runs updates right away */
+    public static final String QUIET_WINDOW_PROPERTY = "lca.port.update.quiet";
+    /** maximum time in milliseconds an update is postponed by the quiet window */
+    public static final String MAX_DELAY_PROPERTY = "lca.port.update.maxdelay";
+    private static final long DEFAULT_QUIET_WINDOW_MILLIS = 500;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 5000;
+    
     private final OutPortHandler outPorts;
     private final PortRegistryTranslator portAccessor;
     private final PortHierarchy portHierarchy;
     private final LifecycleController controller;
+    private final HostContext hostContext;
     private final Object portUpdateLock = new Object();
+    private final AtomicBoolean updateScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean updateQueued = new AtomicBoolean(false);
+    private final ComponentInstanceId myId;
+    private final PortUpdateMetrics metrics;
+    private final long quietNanos;
+    private final long maxDelayNanos;
+    private volatile long firstChange;
+    private volatile long lastChange;
+    private volatile boolean stopped;
 
     // protected by portUpdateLock
 	private boolean updateInProgress;
+    // protected by portUpdateLock
+	private boolean rerunRequested;
     
     DownstreamPortUpdater(OutPortHandler outPortParams, PortRegistryTranslator portAccessorParam, 
-                PortHierarchy portHierarchyParam, LifecycleController controllerParam) {
+                PortHierarchy portHierarchyParam, LifecycleController controllerParam, HostContext hostContextParam,
+                ComponentInstanceId myIdParam, PortUpdateMetrics metricsParam) {
         outPorts = outPortParams;
         portAccessor = portAccessorParam;
         portHierarchy = portHierarchyParam;
         controller = controllerParam;
+        hostContext = hostContextParam;
+        myId = myIdParam;
+        metrics = metricsParam;
+        quietNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(QUIET_WINDOW_PROPERTY, DEFAULT_QUIET_WINDOW_MILLIS).longValue());
+        maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(MAX_DELAY_PROPERTY, DEFAULT_MAX_DELAY_MILLIS).longValue());
+    }
+    
+    /** drops updates that have not started yet */
+    void stop() {
+        stopped = true;
     }
     
     private List<PortDiff<DownstreamAddress>> getUpdatedPortSet() throws RegistrationException {
     	synchronized(portUpdateLock) {
-    		if(updateInProgress) {
-    			LOGGER.info("omitting port update. other update already in progress.");
-    			return null;
-    		}
     		List<PortDiff<DownstreamAddress>> diffs = outPorts.getUpdatedDownstreamPorts(portAccessor, portHierarchy);
     		if(! outPorts.requiredDownstreamPortsSet()) {
     			LOGGER.error("not all downstream ports are available. this may cause some issues");
     			// FIXME: what should happen is that we return to INSTALL state //
     			return null;
     		}
-    		updateInProgress = true;
     		return diffs;
     	}
     }
     
+    /**
+     * @return false if another update is in progress. in that case, 
+     * the update in progress will run once more when it is done.
+     */
+    private boolean beginUpdate() {
+    	synchronized(portUpdateLock) {
+    		if(updateInProgress) {
+    			LOGGER.info("postponing port update. other update already in progress.");
+    			if(rerunRequested) {
+    				metrics.updateCoalesced();
+    			}
+    			rerunRequested = true;
+    			return false;
+    		}
+    		updateInProgress = true;
+    		return true;
+    	}
+    }
+    
+    /**
+     * @return true if the update has to run once more as changes
+     * have been signalled while it was running.
+     */
+    private boolean continueUpdate() {
+    	synchronized(portUpdateLock) {
+    		if(rerunRequested) {
+    			rerunRequested = false;
+    			return true;
+    		}
+    		updateInProgress = false;
+    		return false;
+    	}
+    }
+    
+    private void abortUpdate() {
+    	synchronized(portUpdateLock) {
+    		updateInProgress = false;
+    	}
+    }
+    
     private void handleDiffSet(List<PortDiff<DownstreamAddress>> diffs) {
     	if(diffs.isEmpty()) {
     		LOGGER.info("omitting port update. diffSet empty. nothing to update.");
             return;
         }
         
-        // now that we got all changed ports, for each of them
-        // call the port update handler
-        for(PortDiff<DownstreamAddress> diff : diffs) {
-            OutPort port = diff.getPort();
-            PortUpdateHandler handler = port.getUpdateHandler();
-            LOGGER.info("calling update handler for port: " + diff);
-            try {
-            	controller.blockingUpdatePorts(port, handler, diff);
-            	LOGGER.info("port update handler for port: " + diff + " done. manifesting changes.");
-            	synchronized(portUpdateLock) {
-            		outPorts.manifestChangeset(diff);
-            	}
-            } catch(ContainerException ce) {
-            	LOGGER.warn("could not update ports: " + diff, ce);
-            }
-          }
+        // now that we got all changed ports, call their port 
+        // update handlers within a single update of the container
+        LOGGER.info("calling update handlers for ports: " + diffs);
+        try {
+        	controller.blockingUpdatePorts(diffs);
+        	metrics.updateExecuted(diffs.size());
+        	LOGGER.info("port update handlers for ports: " + diffs + " done. manifesting changes.");
+        	synchronized(portUpdateLock) {
+        		for(PortDiff<DownstreamAddress> diff : diffs) {
+        			outPorts.manifestChangeset(diff);
+        		}
+        	}
+        } catch(ContainerException ce) {
+        	// the diffs remain pending and will be part of the next update //
+        	LOGGER.warn("could not update ports: " + diffs, ce);
+        }
+        LOGGER.debug(metrics.toString());
     }
 
-    //FIXME: ensure only one update process running at a time
-    // add synchronized section here?
     private void doRun() throws RegistrationException {
+    	if(!beginUpdate()) {
+    		return;
+    	}
+    	boolean done = false;
     	try {
-    		List<PortDiff<DownstreamAddress>> diffs = getUpdatedPortSet();
-    		handleDiffSet(diffs);
+    		do {
+    			List<PortDiff<DownstreamAddress>> diffs = getUpdatedPortSet();
+    			if(diffs != null) {
+    				handleDiffSet(diffs);
+    			}
+    		} while(continueUpdate());
+    		done = true;
     	} finally {
-    		synchronized(portUpdateLock){
-    			updateInProgress = false;
+    		if(!done) {
+    			abortUpdate();
     		}
     	}
-        
+    }
+    
+    /** 
+     * triggers an update on the host's executor once the quiet 
+     * window has passed. notifications that arrive while an update 
+     * is pending are coalesced. 
+     */
+    @Override
+    public void componentChanged(ApplicationInstanceId appInstId, ComponentId compId) {
+    	LOGGER.debug("downstream component " + appInstId + "/" + compId + " has changed.");
+    	metrics.notificationReceived();
+    	final long now = System.nanoTime();
+    	lastChange = now;
+    	if(!updateScheduled.compareAndSet(false, true)) {
+    		metrics.updateCoalesced();
+    		return;
+    	}
+    	firstChange = now;
+    	if(quietNanos <= 0) {
+    		runScheduledUpdate();
+    		return;
+    	}
+    	try {
+    		hostContext.scheduleOnce(this::awaitQuietWindow, quietNanos, TimeUnit.NANOSECONDS);
+    	} catch(RejectedExecutionException ree) {
+    		updateScheduled.set(false);
+    		LOGGER.warn("could not schedule port update.", ree);
+    	}
+    }
+    
+    private void awaitQuietWindow() {
+    	final long now = System.nanoTime();
+    	final long quietFor = now - lastChange;
+    	final long waited = now - firstChange;
+    	if(quietFor < quietNanos && waited < maxDelayNanos) {
+    		long delay = Math.min(quietNanos - quietFor, maxDelayNanos - waited);
+    		try {
+    			hostContext.scheduleOnce(this::awaitQuietWindow, delay, TimeUnit.NANOSECONDS);
+    			return;
+    		} catch(RejectedExecutionException ree) {
+    			LOGGER.warn("could not postpone port update; running it now.", ree);
+    		}
+    	}
+    	runScheduledUpdate();
+    }
+    
+    private void runScheduledUpdate() {
+    	updateScheduled.set(false);
+    	submit();
+    }
+    
+    /** 
+     * queues an update on the host's port update executor unless 
+     * an update of this container is already waiting there.
+     */
+    void submit() {
+    	if(stopped) {
+    		return;
+    	}
+    	if(!updateQueued.compareAndSet(false, true)) {
+    		metrics.updateCoalesced();
+    		return;
+    	}
+    	try {
+    		hostContext.getPortUpdateExecutor().execute(myId, this::runQueuedUpdate);
+    	} catch(RejectedExecutionException ree) {
+    		updateQueued.set(false);
+    		// the changes remain pending; the periodic update will pick them up //
+    		LOGGER.warn("could not queue port update for " + myId + ": " + hostContext.getPortUpdateExecutor(), ree);
+    	}
+    }
+    
+    private void runQueuedUpdate() {
+    	updateQueued.set(false);
+    	if(stopped) {
+    		return;
+    	}
+    	run();
+    	LOGGER.debug(hostContext.getPortUpdateExecutor().toString());
     }
     
     @Override
@@ -118,24 +284,4 @@ final class DownstreamPortUpdater implements Runnable {
             throw er;
         }
     }
-    
-    static void pollForNeededConnections(OutPortHandler outPorts, PortRegistryTranslator portAccessor, PortHierarchy portHierarchy) {
-        while(true) {
-            try { 
-                outPorts.updateDownstreamPorts(portAccessor, portHierarchy);
-                if(outPorts.requiredDownstreamPortsSet()) {
-                    return;
-                }
-            } catch (RegistrationException e) {
-                LOGGER.warn("could not access registry for retrieving downstream ports", e);
-            }
-            LOGGER.info("did not find initial values for all required out ports; sleeping for some time... ");
-            try { 
-                Thread.sleep(3000); 
-            } catch(InterruptedException ie) {
-                LOGGER.info("thread interrupted (by system?)", ie);
-            }
-        }
-        // throw new IllegalStateException();
-    }
 }
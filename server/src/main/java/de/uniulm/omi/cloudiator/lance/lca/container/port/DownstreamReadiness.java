@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.lca.HostContext;
+import de.uniulm.omi.cloudiator.lance.lca.container.ContainerException;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryWatch;
+
+/**
+ * a barrier that is passed once all out ports that require sinks have 
+ * enough of them. the registry is checked whenever a downstream component 
+ * changes and, in case notifications get lost, with an exponentially 
+ * growing backoff. no thread is held while waiting. by default, the 
+ * barrier waits forever; if a deadline is configured and passes first, 
+ * the barrier fails with a {@link ContainerException}.
+ */
+final class DownstreamReadiness implements ComponentChangeListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NetworkHandler.class);
+
+    /** deadline in milliseconds for all required sinks to become available; 0 (the default) waits forever */
+    public static final String TIMEOUT_PROPERTY = "lca.port.ready.timeout";
+    /** longest time in milliseconds between two checks of the registry */
+    public static final String MAX_BACKOFF_PROPERTY = "lca.port.ready.maxbackoff";
+    private static final long DEFAULT_TIMEOUT_MILLIS = 0;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 5000;
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+
+    private final OutPortHandler outPorts;
+    private final PortRegistryTranslator portAccessor;
+    private final PortHierarchy portHierarchy;
+    private final HostContext hostContext;
+    private final long timeoutMillis;
+    private final long maxBackoffMillis;
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    // serialises the registry reads; never held together with this //
+    private final Object checkLock = new Object();
+    private final AtomicInteger checks = new AtomicInteger();
+
+    // all protected by this //
+    private long backoffMillis = INITIAL_BACKOFF_MILLIS;
+    private ScheduledFuture<?> nextCheck;
+    private ScheduledFuture<?> deadline;
+    private List<RegistryWatch> watches = Collections.emptyList();
+    private long changes;
+
+    DownstreamReadiness(OutPortHandler outPortsParam, PortRegistryTranslator portAccessorParam, 
+                PortHierarchy portHierarchyParam, HostContext hostContextParam) {
+        outPorts = outPortsParam;
+        portAccessor = portAccessorParam;
+        portHierarchy = portHierarchyParam;
+        hostContext = hostContextParam;
+        timeoutMillis = Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_MILLIS).longValue();
+        maxBackoffMillis = Math.max(INITIAL_BACKOFF_MILLIS, Long.getLong(MAX_BACKOFF_PROPERTY, DEFAULT_MAX_BACKOFF_MILLIS).longValue());
+    }
+
+    /** 
+     * checks the registry once in the calling thread; all further 
+     * checks are scheduled on the host context.
+     *  
+     * @return a future that completes once all required sinks are available 
+     */
+    CompletableFuture<Void> start() {
+        ready.whenComplete((v, t) -> release());
+        if(isSatisfied()) {
+            ready.complete(null);
+            return ready;
+        }
+        // watch first, so that no change between the check and the watch gets lost //
+        List<RegistryWatch> registered = Collections.emptyList();
+        try {
+            registered = outPorts.watchDownstreamPorts(portAccessor, this);
+        } catch(RegistrationException re) {
+            LOGGER.warn("could not watch downstream components; relying on polling only.", re);
+        }
+        try {
+            synchronized(this) {
+                watches = registered;
+                if(timeoutMillis > 0) {
+                    deadline = schedule(this::expire, timeoutMillis);
+                }
+            }
+        } catch(RejectedExecutionException ree) {
+            fail(ree);
+            return ready;
+        }
+        // completion may have happened before the watches were stored //
+        if(ready.isDone()) {
+            release();
+            return ready;
+        }
+        check();
+        return ready;
+    }
+
+    /** @return the number of times the registry has been checked */
+    int getChecks() {
+        return checks.get();
+    }
+
+    @Override
+    public void componentChanged(ApplicationInstanceId appInstId, ComponentId compId) {
+        // do not access the registry from the notifying thread //
+        try {
+            synchronized(this) {
+                if(ready.isDone()) {
+                    return;
+                }
+                changes++;
+                cancel(nextCheck);
+                backoffMillis = INITIAL_BACKOFF_MILLIS;
+                nextCheck = schedule(this::check, 0);
+            }
+        } catch(RejectedExecutionException ree) {
+            fail(ree);
+        }
+    }
+
+    private void check() {
+        if(ready.isDone()) {
+            return;
+        }
+        final long seen;
+        synchronized(this) {
+            seen = changes;
+        }
+        if(isSatisfied()) {
+            // completed outside of the lock as completion releases the watches //
+            ready.complete(null);
+            return;
+        }
+        try {
+            synchronized(this) {
+                // a change notification has already scheduled the next check //
+                if(ready.isDone() || seen != changes) {
+                    return;
+                }
+                LOGGER.info("did not find initial values for all required out ports; checking again in " + backoffMillis + " ms.");
+                cancel(nextCheck);
+                nextCheck = schedule(this::check, backoffMillis);
+                backoffMillis = Math.min(2 * backoffMillis, maxBackoffMillis);
+            }
+        } catch(RejectedExecutionException ree) {
+            fail(ree);
+        }
+    }
+
+    /** 
+     * reads the registry without holding this, so that change notifications 
+     * are not blocked by slow registry access.
+     * 
+     * @return true if all required out ports have sinks 
+     */
+    private boolean isSatisfied() {
+        synchronized(checkLock) {
+            int count = checks.incrementAndGet();
+            try {
+                outPorts.updateDownstreamPorts(portAccessor, portHierarchy);
+                if(outPorts.requiredDownstreamPortsSet()) {
+                    LOGGER.info("all required out ports have sinks after " + count + " checks.");
+                    return true;
+                }
+            } catch(RegistrationException e) {
+                LOGGER.warn("could not access registry for retrieving downstream ports", e);
+            }
+            return false;
+        }
+    }
+
+    private void expire() {
+        ready.completeExceptionally(new ContainerException("required downstream ports have not become available within " 
+                + timeoutMillis + " ms"));
+    }
+
+    /** 
+     * @throws RejectedExecutionException if the host context does not accept 
+     *          further tasks; the caller fails the barrier once it has left 
+     *          the lock, as completion releases the watches
+     */
+    private ScheduledFuture<?> schedule(Runnable runner, long delayMillis) {
+        return hostContext.scheduleOnce(runner, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void fail(RejectedExecutionException ree) {
+        ready.completeExceptionally(new ContainerException("could not schedule check of downstream ports", ree));
+    }
+
+    private void release() {
+        final List<RegistryWatch> toCancel;
+        synchronized(this) {
+            cancel(nextCheck);
+            cancel(deadline);
+            nextCheck = null;
+            deadline = null;
+            toCancel = watches;
+            watches = Collections.emptyList();
+        }
+        // watches are cancelled without holding the lock the listener needs //
+        for(RegistryWatch watch : toCancel) {
+            watch.cancel();
+        }
+    }
+
+    private static void cancel(ScheduledFuture<?> future) {
+        if(future != null) {
+            future.cancel(false);
+        }
+    }
+}
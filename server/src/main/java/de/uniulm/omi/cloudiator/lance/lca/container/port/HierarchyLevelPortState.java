@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * specialisation of {@link HierarchyLevelState} for port numbers that 
+ * keeps one primitive int per level of a {@link PortHierarchy}.
+ */
+public final class HierarchyLevelPortState implements Iterable<PortHierarchyLevel> {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(PortHierarchyLevel.class);
+    
+    // PortRegistryTranslator.UNSET_PORT is a valid value //
+    private static final int NOT_KNOWN = Integer.MIN_VALUE;
+
+    private final String name;
+    private final PortHierarchy hierarchy;
+    private final int[] ports;
+    
+    public HierarchyLevelPortState(String stateName, PortHierarchy portHierarchy) {
+        name = stateName;
+        hierarchy = portHierarchy;
+        ports = new int[portHierarchy.size()];
+        Arrays.fill(ports, NOT_KNOWN);
+    }
+
+    public void registerValueAtLevel(PortHierarchyLevel level, int port) {
+        if(port == NOT_KNOWN) {
+            throw new IllegalArgumentException("not a port number: " + port);
+        }
+        int ordinal = ordinalOf(level);
+        int i = ports[ordinal];
+        ports[ordinal] = port;
+        if(i != NOT_KNOWN) {
+            LOGGER.info("updating hierarchy state '" + name + "' for level '" + level + "': changin from " + i + " to " + port);
+        }
+    }
+    
+    @Override
+    public Iterator<PortHierarchyLevel> iterator(){
+        return hierarchy.levels().iterator();
+    }
+
+    int valueAtLevel(PortHierarchyLevel level) {
+        int port = ports[ordinalOf(level)];
+        if(port == NOT_KNOWN) {
+            throw new NullPointerException("value at level '" + level + "' is not known");
+        }
+        return port;
+    }
+    
+    private int ordinalOf(PortHierarchyLevel level) {
+        int ordinal = hierarchy.ordinalOf(level);
+        if(ordinal < 0) {
+            throw new IllegalArgumentException("level '" + level + "' is not part of " + hierarchy);
+        }
+        return ordinal;
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 + Arrays.hashCode(ports);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(o == this) {
+            return true;
+        }
+        if(!(o instanceof HierarchyLevelPortState)) {
+            return false;
+        }
+        final HierarchyLevelPortState that = (HierarchyLevelPortState) o;
+        if(this.hierarchy != that.hierarchy && !this.hierarchy.levels().equals(that.hierarchy.levels())) {
+            return false;
+        }
+        return Arrays.equals(this.ports, that.ports);
+    }
+}
@@ -18,32 +18,39 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.container.port;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * holds one value per level of a {@link PortHierarchy}. values are 
+ * stored in an array indexed by the ordinal of the level. 
+ * 
+ * @see HierarchyLevelPortState for port numbers
+ */
 public final class HierarchyLevelState<T> implements Iterable<PortHierarchyLevel> {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(PortHierarchyLevel.class);
 
     private final String name;
-    private final Map<PortHierarchyLevel, T> mapping = new HashMap<>(); 
+    private final PortHierarchy hierarchy;
+    private final Object[] values;
     
     public HierarchyLevelState(String stateName, PortHierarchy portHierarchy) {
         name = stateName;
-        for(PortHierarchyLevel level : portHierarchy.levels()) {
-            mapping.put(level, null);
-        }
+        hierarchy = portHierarchy;
+        values = new Object[portHierarchy.size()];
     }
 
     public void registerValueAtLevel(PortHierarchyLevel level, T value) {
         if(value == null) {
             throw new NullPointerException("cannot register a hierarchy state that has the value null");
         }
-        T i = mapping.put(level, value);
+        int ordinal = ordinalOf(level);
+        Object i = values[ordinal];
+        values[ordinal] = value;
         if(i != null) {
             LOGGER.info("updating hierarchy state '" + name + "' for level '" + level + "': changin from " + i + " to " + value);
         }
@@ -51,54 +58,52 @@ public final class HierarchyLevelState<T> implements Iterable<PortHierarchyLevel
     
     @Override
     public Iterator<PortHierarchyLevel> iterator(){
-        return mapping.keySet().iterator();
+        return hierarchy.levels().iterator();
     }
 
     T valueAtLevel(PortHierarchyLevel level) {
-        T t = mapping.get(level);
+        return valueAt(ordinalOf(level));
+    }
+    
+    /** @return the value at the level with the given ordinal */
+    @SuppressWarnings("unchecked")
+    T valueAt(int ordinal) {
+        Object t = values[ordinal];
         if(t == null) {
-            throw new NullPointerException("value at level '" + level + "' is not known");
+            throw new NullPointerException("value at level '" + hierarchy.levelAt(ordinal) + "' is not known");
         }
-        return t;
+        return (T) t;
+    }
+    
+    int size() {
+        return values.length;
+    }
+    
+    private int ordinalOf(PortHierarchyLevel level) {
+        int ordinal = hierarchy.ordinalOf(level);
+        if(ordinal < 0) {
+            throw new IllegalArgumentException("level '" + level + "' is not part of " + hierarchy);
+        }
+        return ordinal;
     }
-
     
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((mapping == null) ? 0 : mapping.hashCode());
-        // result = prime * result + ((name == null) ? 0 : name.hashCode());
-        return result;
+        return 31 + Arrays.hashCode(values);
     }
 
     @Override
     public boolean equals(Object o) {
+        if(o == this) {
+            return true;
+        }
         if(!(o instanceof HierarchyLevelState<?>)) {
             return false;
         }
         final HierarchyLevelState<?> that = (HierarchyLevelState<?>) o;
-        for(PortHierarchyLevel level : this) {
-            if(! containsEqualElementAtSameLevel(level, that)) {
-                return false;
-            }
-        }
-        // now we know that it contains all values that we have as well. 
-        // make sure, there are not more than that.
-        return this.mapping.size() == that.mapping.size();
-    }
-
-    private boolean containsEqualElementAtSameLevel(PortHierarchyLevel level, HierarchyLevelState<?> state) {
-        T myElement = mapping.get(level);
-        if(! state.mapping.containsKey(level)) {
+        if(this.hierarchy != that.hierarchy && !this.hierarchy.levels().equals(that.hierarchy.levels())) {
             return false;
         }
-        
-        Object that = state.mapping.get(level);
-        
-        if(myElement == null) {
-            return that == null;
-        }
-        return myElement.equals(that);
+        return Arrays.equals(this.values, that.values);
     }
 }
@@ -18,11 +18,13 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.container.port;
 
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledFuture;
 
 import org.slf4j.Logger;
@@ -36,6 +38,7 @@ import de.uniulm.omi.cloudiator.lance.lca.HostContext;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
 import de.uniulm.omi.cloudiator.lance.lca.container.ContainerException;
 import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryWatch;
 import de.uniulm.omi.cloudiator.lance.lifecycle.LifecycleController;
 
 public final class NetworkHandler {
@@ -44,6 +47,7 @@ public final class NetworkHandler {
 	
     private static final Logger LOGGER = LoggerFactory.getLogger(NetworkHandler.class);
     private volatile ScheduledFuture<?> updateFuture = null;
+    private volatile List<RegistryWatch> updateWatches = Collections.emptyList();
     
     private final PortHierarchy portHierarchy;
     private final DeployableComponent myComponent;
@@ -51,11 +55,15 @@ public final class NetworkHandler {
     
     private final HierarchyLevelState<String> ipAddresses;
     private final HostContext hostContext;
-    private final Map<String,HierarchyLevelState<Integer>> inPorts = new HashMap<>();
+    private final ComponentInstanceId myId;
+    private final Map<String,HierarchyLevelPortState> inPorts = new HashMap<>();
     
     private final OutPortHandler outPorts;
+    private final PortUpdateMetrics updateMetrics = new PortUpdateMetrics();
+    private volatile DownstreamPortUpdater updater;
     
     public NetworkHandler(GlobalRegistryAccessor accessorParam, DeployableComponent myComponentParam, HostContext hostContextParam) {
+        myId = accessorParam.getLocalComponentInstanceId();
         
         portHierarchy = PortRegistryTranslator.PORT_HIERARCHY;
         myComponent = myComponentParam;
@@ -69,19 +77,23 @@ public final class NetworkHandler {
     	String valueParam = (address == null ? UNKNOWN_ADDRESS : address); 
         portAccessor.shareHostAddresses(this);
         registerAddress(PortRegistryTranslator.PORT_HIERARCHY_2, valueParam);
+        // the address does not depend on the downstream components; 
+        // overlap writing it with reading them //
+        CompletableFuture<Void> addressRegistration = 
+                portAccessor.registerLocalAddressAtLevelAsync(PortRegistryTranslator.PORT_HIERARCHY_2, valueParam);
         initInPorts();
         outPorts.initPortStates(portAccessor, portHierarchy);
-        portAccessor.registerLocalAddressAtLevel(PortRegistryTranslator.PORT_HIERARCHY_2, valueParam);
+        PortRegistryTranslator.awaitRegistration(addressRegistration);
     }
 
     private void initInPorts() {
         List<InPort> inports = myComponent.getExposedPorts();
         for(InPort in : inports) {
             final String name = in.getPortName();
-            HierarchyLevelState<Integer> state = new HierarchyLevelState<>(name, portHierarchy);
+            HierarchyLevelPortState state = new HierarchyLevelPortState(name, portHierarchy);
             inPorts.put(name, state);
             for(PortHierarchyLevel level : state) { 
-                state.registerValueAtLevel(level, PortRegistryTranslator.UNSET_PORT); 
+                state.registerValueAtLevel(level, PortRegistryTranslator.UNSET_PORT.intValue()); 
             }
         }
     }
@@ -109,10 +121,10 @@ public final class NetworkHandler {
          List<InPort> inPortsTmp = myComponent.getExposedPorts();
          for(InPort in : inPortsTmp) {
              String portName = in.getPortName();
-             HierarchyLevelState<Integer> clientState = new HierarchyLevelState<>(portName, portHierarchy);
+             HierarchyLevelPortState clientState = new HierarchyLevelPortState(portName, portHierarchy);
              accessor.accessPort(portName, clientState);
                                  
-             HierarchyLevelState<Integer> state = inPorts.get(portName);
+             HierarchyLevelPortState state = inPorts.get(portName);
              if(state == null) 
                  throw new IllegalStateException("something went terribly wrong when initialising NetworkHandler");
              for(PortHierarchyLevel level : state) {
@@ -125,7 +137,7 @@ public final class NetworkHandler {
 
     /*
     private void registerInPort(PortHierarchyLevel level, String portName, Integer portNumber) {
-        HierarchyLevelState<Integer> state = inPorts.get(portName);
+        HierarchyLevelPortState state = inPorts.get(portName);
         if(state == null) { 
             throw new IllegalStateException("attempt to register an unknown port '" + portName + "': " + inPorts); 
         }
@@ -133,85 +145,96 @@ public final class NetworkHandler {
     }*/
 
     public void publishLocalData(ComponentInstanceId myId) throws ContainerException {
-        publishLocalAddresses(myId, portAccessor);
-        publishLocalPorts(myId, portAccessor);
-    }
-    
-
-    /** this method loops until information from all required external
-     * connection is available (e.g. an application server may require 
-     * that the database is up and running). */
-    public void pollForNeededConnections() {
-        DownstreamPortUpdater.pollForNeededConnections(outPorts, portAccessor, portHierarchy);
+        try { 
+            portAccessor.registerLocalAddressesAndPorts(ipAddresses, inPorts); 
+        } catch(RegistrationException de) {
+            LOGGER.info("problem when accessing registry", de); 
+            throw new ContainerException("could not register all addresses and ports: " + myId + "[" + de.getLocalizedMessage() + "]", de);
+        }
     }
     
-    private void publishLocalAddresses(ComponentInstanceId myId, PortRegistryTranslator registryAccessor) throws ContainerException {
-        List<String> failed = new LinkedList<>();
-        
-        for(PortHierarchyLevel level : ipAddresses) {
-            try { 
-                registryAccessor.registerLocalAddressAtLevel(level, ipAddresses.valueAtLevel(level)); 
-            } catch(RegistrationException de) {
-                LOGGER.info("problem when accessing registry", de); 
-                failed.add(de.getLocalizedMessage());
-            }        
-        }
-        
-        if(failed.isEmpty()) {
-            return;
-        }
-        throw new ContainerException("could register all ports: " + myId + "[" + failed.toString() + "]");
+    /** 
+     * @return a future that completes once information from all required 
+     * external connections is available (e.g. an application server may 
+     * require that the database is up and running). it fails with a 
+     * {@link ContainerException} if the deadline passes first. 
+     */
+    public CompletableFuture<Void> resolveNeededConnections() {
+        return new DownstreamReadiness(outPorts, portAccessor, portHierarchy, hostContext).start();
     }
     
-    private void publishLocalPorts(ComponentInstanceId myId, PortRegistryTranslator registryAccessor) throws ContainerException {
-        List<String> failed = new LinkedList<>();
-        
-        for(Map.Entry<String, HierarchyLevelState<Integer>> entry : inPorts.entrySet()) {
-            HierarchyLevelState<Integer> state = entry.getValue();
-            for(PortHierarchyLevel level : state) {
-                try { 
-                    registryAccessor.registerLocalPortAtLevel(entry.getKey(), level, state.valueAtLevel(level)); 
-                } catch(RegistrationException de) {
-                    LOGGER.info("problem when accessing registry", de); 
-                    failed.add(de.getLocalizedMessage());
-                }        
+    /** waits until information from all required external connections is available. 
+     * @throws ContainerException if they do not become available in time */
+    public void awaitNeededConnections() throws ContainerException {
+        try {
+            resolveNeededConnections().get();
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ContainerException("interrupted while waiting for downstream ports", ie);
+        } catch(ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if(cause instanceof ContainerException) {
+                throw (ContainerException) cause;
             }
+            throw new ContainerException("could not resolve downstream ports", cause);
         }
-        if(failed.isEmpty()) {
-            return;
-        }
-        throw new ContainerException("could register all ports: " + myId + "[" + failed.toString() + "]");
     }
-
+    
     public void startPortUpdaters(LifecycleController controller) {
-        DownstreamPortUpdater updater = new DownstreamPortUpdater(outPorts, portAccessor, portHierarchy, controller);
-        ScheduledFuture<?> sf = hostContext.scheduleAction(updater);
+        DownstreamPortUpdater updater = new DownstreamPortUpdater(outPorts, portAccessor, portHierarchy, controller, hostContext, 
+                myId, updateMetrics);
+        this.updater = updater;
+        // periodic updates remain as a safety net for missed notifications //
+        ScheduledFuture<?> sf = hostContext.scheduleAction(updater::submit);
         updateFuture = sf;
+        try { 
+            updateWatches = outPorts.watchDownstreamPorts(portAccessor, updater);
+        } catch(RegistrationException re) {
+            LOGGER.warn("could not watch downstream components; relying on periodic updates only.", re);
+        }
     }
     
     public void stopPortUpdaters() {
+        DownstreamPortUpdater u = updater;
+        if(u != null) {
+            u.stop();
+        }
         ScheduledFuture<?> sf = updateFuture;
         if(sf == null) {
             LOGGER.warn("updateFuture has not been set.");
         } else {
             sf.cancel(false);
         }
+        List<RegistryWatch> watches = updateWatches;
+        updateWatches = Collections.emptyList();
+        for(RegistryWatch watch : watches) {
+            watch.cancel();
+        }
     }
 
-    public void accept(NetworkVisitor visitor, PortDiff<DownstreamAddress> diffSet) {
+    /** 
+     * @param diffSets diffs that are about to be enacted; they take precedence 
+     *             over the sinks currently known for their ports. may be null. 
+     */
+    public void accept(NetworkVisitor visitor, List<PortDiff<DownstreamAddress>> diffSets) {
         for(PortHierarchyLevel level : ipAddresses) {
             visitor.visitNetworkAddress(level, ipAddresses.valueAtLevel(level));
         }
         
-        for(Entry<String, HierarchyLevelState<Integer>> entry : inPorts.entrySet()) {
+        for(Entry<String, HierarchyLevelPortState> entry : inPorts.entrySet()) {
             String portName = entry.getKey();
-            HierarchyLevelState<Integer> state = entry.getValue();
+            HierarchyLevelPortState state = entry.getValue();
             for(PortHierarchyLevel level : state) {
                 visitor.visitInPort(portName, level, state.valueAtLevel(level));
             }    
         }
         
-        outPorts.accept(visitor, diffSet);
+        outPorts.accept(visitor, diffSets);
+    }
+
+    /** @return statistics on the port updates run for this container */
+    public PortUpdateMetrics getPortUpdateMetrics() {
+        return updateMetrics;
     }
 
     public void updateAddress(PortHierarchyLevel level2Param, String containerIp) {
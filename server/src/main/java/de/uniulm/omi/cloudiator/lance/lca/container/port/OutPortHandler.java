@@ -32,7 +32,9 @@ import org.slf4j.LoggerFactory;
 import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponent;
 import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
 import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryWatch;
 
 final class OutPortHandler {
 
@@ -62,7 +64,8 @@ final class OutPortHandler {
         
         for(OutPort out : outPorts) {
             Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> instances = accessor.findDownstreamInstances(out, portHierarchy);
-            OutPortState state = new OutPortState(out, instances);
+            String cloudId = accessor.getLocalCloudId();
+            OutPortState state = new OutPortState(out, instances, cloudId, accessor.getLocalComponentInstanceId());
             portStates.add(state);
         }
     }
@@ -77,10 +80,8 @@ final class OutPortHandler {
     List<PortDiff<DownstreamAddress>> getUpdatedDownstreamPorts(PortRegistryTranslator accessor, PortHierarchy portHierarchy) throws RegistrationException {
         List<PortDiff<DownstreamAddress>> changedPorts = new LinkedList<>();
         for(OutPortState outPort : portStates) {
-            Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> instances = accessor.findDownstreamInstances(outPort.getPort(), portHierarchy);
-            instances = filterInstancesWithUnsetPorts(instances);
-            PortDiff<DownstreamAddress> diff = outPort.computeDiffSet(instances);
-            //outdated code: updateWithDiff(instances);
+            // only looks at the instances that have changed since the last poll //
+            PortDiff<DownstreamAddress> diff = outPort.pollDiffSet(accessor, portHierarchy);
             if(diff.hasDiffs()) {
                 changedPorts.add(diff);
             }
@@ -88,6 +89,28 @@ final class OutPortHandler {
         return changedPorts;
     }
     
+    /**
+     * registers the listener for changes of all components 
+     * that are wired to one of the out ports.
+     * 
+     * @return the watches created; one per out port
+     * @throws RegistrationException if a watch could not be created
+     */
+    List<RegistryWatch> watchDownstreamPorts(PortRegistryTranslator accessor, ComponentChangeListener listener) throws RegistrationException {
+        List<RegistryWatch> watches = new ArrayList<>(portStates.size());
+        try {
+            for(OutPortState outPort : portStates) {
+                watches.add(accessor.watchDownstreamInstances(outPort.getPort(), listener));
+            }
+        } catch(RegistrationException re) {
+            for(RegistryWatch watch : watches) {
+                watch.cancel();
+            }
+            throw re;
+        }
+        return watches;
+    }
+    
     void updateDownstreamPorts(PortRegistryTranslator accessor, PortHierarchy portHierarchy) throws RegistrationException {
     	List<PortDiff<DownstreamAddress>> diffs = getUpdatedDownstreamPorts(accessor, portHierarchy);
     	for(PortDiff<DownstreamAddress> diff : diffs) {
@@ -104,31 +127,12 @@ final class OutPortHandler {
         return true;
     }
     
-    private static Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> filterInstancesWithUnsetPorts(Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> instances) {
-        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> retVal = new HashMap<>();
-        for(Entry<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> entry : instances.entrySet()) {
-            boolean doSet = true;
-            ComponentInstanceId id = entry.getKey();
-            HierarchyLevelState<DownstreamAddress> state = entry.getValue();
-            for(PortHierarchyLevel level : state) {
-                DownstreamAddress i = state.valueAtLevel(level);
-                if(! i.hasValidPort()) {
-                    doSet = false; 
-                    break;
-                } 
-            }
-            if(doSet) {
-                retVal.put(id, state);
-            }
-        }
-        return retVal;
-    }
-
-    void accept(NetworkVisitor visitor, PortDiff<DownstreamAddress> diffSet) {
+    void accept(NetworkVisitor visitor, List<PortDiff<DownstreamAddress>> diffSets) {
         for(OutPortState out : portStates) {
         	Map<PortHierarchyLevel, List<DownstreamAddress>> elements = null;
-        	if(diffSet != null && out.matchesPort(diffSet.getPort())) {
-        		elements = OutPortState.orderSinksByHierarchyLevel(diffSet.getCurrentSinkSet());
+        	PortDiff<DownstreamAddress> diffSet = findDiffSet(out, diffSets);
+        	if(diffSet != null) {
+        		elements = out.selectSinksByHierarchyLevel(diffSet.getCurrentSinkSet());
         	} else {
         		elements = out.sinksByHierarchyLevel();
         	}
@@ -139,14 +143,25 @@ final class OutPortHandler {
         }
     }
     
+    private static PortDiff<DownstreamAddress> findDiffSet(OutPortState out, List<PortDiff<DownstreamAddress>> diffSets) {
+        if(diffSets == null) 
+            return null;
+        for(PortDiff<DownstreamAddress> diffSet : diffSets) {
+            if(out.matchesPort(diffSet.getPort())) 
+                return diffSet;
+        }
+        return null;
+    }
+    
     private static Map<PortHierarchyLevel, List<DownstreamAddress>> doCollect(OutPortState out, Map<PortHierarchyLevel, List<DownstreamAddress>> elements) {
         Map<PortHierarchyLevel, List<DownstreamAddress>> toVisit = new HashMap<>();        
         for(Entry<PortHierarchyLevel, List<DownstreamAddress>> entry : elements.entrySet()) {
             PortHierarchyLevel level = entry.getKey();
             List<DownstreamAddress> sinks = entry.getValue();
             sinks = out.adaptSinkListByBoundaries(sinks);
-            // FIXME: filter out element that are not reachable on a certain hierarchy level
-            // because they are on a different cluster (e.g. different cloud provider)
+            // sinks in other clouds are listed with their public address on the
+            // cloud level (see OutPortState). FIXME: container addresses of sinks
+            // on other hosts are still listed although they are not reachable
             toVisit.put(level, sinks);
             // sinks are required, but no sinks known for this port at this 
             // hierarchy level it is probably best to drop the entire sink 
@@ -20,27 +20,71 @@ package de.uniulm.omi.cloudiator.lance.lca.container.port;
 
 import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 
 public final class OutPortState {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OutPort.class);
 
+    // always acquired before lock //
+    private final Object pollLock = new Object();
     private final Object lock = new Object();
     private final OutPort thePort;
+    // protected by lock; updated in place //
     private final Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> possibleSinks;
+    // protected by pollLock; reconciled with possibleSinks under lock //
+    private final SinkSetTracker tracker;
+    private final SinkSelectionStrategy selection;
+    private final String localCloudId;
 
+    /**
+     * @deprecated the sinks cannot be ranked for the consuming instance, so 
+     *          rendezvous selection is rejected; use 
+     *          {@link #OutPortState(OutPort, Map, String, ComponentInstanceId)}
+     * @throws IllegalArgumentException if the port or lca.port.selection asks 
+     *          for rendezvous selection
+     */
+    @Deprecated
     public OutPortState(OutPort outPortParam,
         Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> instancesParam) {
+        this(outPortParam, instancesParam, (String) null, null);
+    }
+
+    /**
+     * selects sinks according to the selection mode of the port.
+     *
+     * @param localCloudIdParam the cloud this host runs in; may be null
+     * @param consumerParam the component instance the sinks are selected for
+     */
+    public OutPortState(OutPort outPortParam,
+        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> instancesParam,
+        String localCloudIdParam, ComponentInstanceId consumerParam) {
+        this(outPortParam, instancesParam,
+            SinkSelection.forPort(outPortParam, localCloudIdParam, consumerParam), localCloudIdParam);
+    }
+
+    /**
+     * @param selectionParam selects the sinks handed to the component instance
+     * @param localCloudIdParam the cloud this host runs in; may be null
+     */
+    public OutPortState(OutPort outPortParam,
+        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> instancesParam,
+        SinkSelectionStrategy selectionParam, String localCloudIdParam) {
         thePort = outPortParam;
         possibleSinks = new HashMap<>(instancesParam);
+        tracker = new SinkSetTracker(possibleSinks);
+        selection = selectionParam;
+        localCloudId = localCloudIdParam;
     }
 
     public String getPortName() {
@@ -55,6 +99,33 @@ public final class OutPortState {
         return thePort.namesMatch(thatPort);
     }
 
+    /**
+     * reads the registry only if the downstream component has changed
+     * and only translates the instances that have changed.
+     *
+     * @return the diff between the sinks found in the registry and the
+     * sinks that have been enacted.
+     */
+    PortDiff<DownstreamAddress> pollDiffSet(PortRegistryTranslator accessor,
+        PortHierarchy portHierarchy) throws RegistrationException {
+        synchronized (pollLock) {
+            // the version has to be read before the dump //
+            long version = accessor.findDownstreamVersion(thePort);
+            if (!tracker.isCurrent(version)) {
+                Map<ComponentInstanceId, Map<String, String>> dump =
+                    accessor.findDownstreamDump(thePort);
+                Collection<ComponentInstanceId> touched =
+                    tracker.observe(version, dump, accessor.findSinkKey(thePort), portHierarchy);
+                synchronized (lock) {
+                    tracker.reconcile(touched, possibleSinks);
+                }
+            }
+            synchronized (lock) {
+                return tracker.pendingDiff(thePort, possibleSinks, this::copyOfSinks);
+            }
+        }
+    }
+
     PortDiff<DownstreamAddress> computeDiffSet(
         Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> newSinks) {
         Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> oldSinks =
@@ -72,19 +143,17 @@ public final class OutPortState {
             return false;
         }
 
-        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> newSinks =
-            diff.getCurrentSinkSet();
-        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> oldSinks =
-            diff.getOldSinkSet();
-
-        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> compOldSinks =
-            installNewSinks(newSinks);
-        if (!oldSinks.equals(compOldSinks)) {
-            LOGGER.warn(
-                "old sinks do not match; do we have concurrency pvroblems?" + oldSinks + " vs "
-                    + compOldSinks);
+        synchronized (pollLock) {
+            synchronized (lock) {
+                if (!diff.isBasedOn(possibleSinks)) {
+                    LOGGER.warn("old sinks do not match; do we have concurrency pvroblems?"
+                        + diff.getOldSinkSet() + " vs " + possibleSinks);
+                }
+                // only touches the sinks that have changed //
+                diff.applyTo(possibleSinks);
+                tracker.reconcile(diff.changedSinks(), possibleSinks);
+            }
         }
-
         return true;
     }
 
@@ -103,14 +172,16 @@ public final class OutPortState {
     }
 
     public boolean requiredAndSet() {
-        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks =
-            getCurrentSinkSet();
+        final int sinks;
+        synchronized (lock) {
+            sinks = possibleSinks.size();
+        }
 
-        boolean ret = !(thePort.getLowerBound() > sinks.size());
+        boolean ret = !(thePort.getLowerBound() > sinks);
 
         LOGGER.debug(String
             .format("Evaluating require and set - lower bound: %s; sinks: %s. Return %s.",
-                thePort.getLowerBound(), sinks.size(), ret));
+                thePort.getLowerBound(), sinks, ret));
 
         return ret;
     }
@@ -120,27 +191,53 @@ public final class OutPortState {
     }
 
     Map<PortHierarchyLevel, List<DownstreamAddress>> sinksByHierarchyLevel() {
-        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks =
-            getCurrentSinkSet();
-        return orderSinksByHierarchyLevel(sinks);
+        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks = copyOfSinks();
+        return selectSinksByHierarchyLevel(sinks);
     }
 
-    static Map<PortHierarchyLevel, List<DownstreamAddress>> orderSinksByHierarchyLevel(
+    /**
+     * selects at most as many sinks as the upper bound of the port allows. 
+     * the same instances are selected for all hierarchy levels.
+     *
+     * @return the addresses of the selected sinks per level, most preferred first
+     */
+    Map<PortHierarchyLevel, List<DownstreamAddress>> selectSinksByHierarchyLevel(
         Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks) {
+        final int b = thePort.getUpperBound();
+        final int count = (b == OutPort.INFINITE_SINKS) ? sinks.size() : Math.min(sinks.size(), b);
         Map<PortHierarchyLevel, List<DownstreamAddress>> elements = new HashMap<>();
-        for (Entry<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> entry : sinks
-            .entrySet()) {
-            // ComponentInstanceId id = entry.getKey();
-            HierarchyLevelState<DownstreamAddress> state = entry.getValue();
+        for (ComponentInstanceId id : selection.select(sinks, count)) {
+            HierarchyLevelState<DownstreamAddress> state = sinks.get(id);
             for (PortHierarchyLevel level : state) {
-                List<DownstreamAddress> l = getElement(elements, level);
-                DownstreamAddress value = state.valueAtLevel(level);
-                l.add(value);
+                List<DownstreamAddress> l = getElement(elements, level, count);
+                l.add(reachableAddress(state, level));
             }
         }
         return elements;
     }
 
+    /**
+     * the cloud-internal address of a sink in another cloud cannot be 
+     * reached from here; its public address is used instead.
+     */
+    private DownstreamAddress reachableAddress(HierarchyLevelState<DownstreamAddress> state,
+        PortHierarchyLevel level) {
+        DownstreamAddress value = state.valueAtLevel(level);
+        if (!PortRegistryTranslator.PORT_HIERARCHY_1.equals(level)) {
+            return value;
+        }
+        String cloud = value.getCloudId();
+        if (localCloudId == null || cloud == null || localCloudId.equals(cloud)) {
+            return value;
+        }
+        DownstreamAddress external = state.valueAtLevel(PortRegistryTranslator.PORT_HIERARCHY_0);
+        return external == null ? value : external;
+    }
+
+    /**
+     * @param sinks the selected sinks of a single hierarchy level
+     * @return the sinks, or null if there are fewer sinks than the lower bound requires
+     */
     List<DownstreamAddress> adaptSinkListByBoundaries(List<DownstreamAddress> sinks) {
         final int a = sinks.size();
 
@@ -158,10 +255,10 @@ public final class OutPortState {
     }
 
     private static List<DownstreamAddress> getElement(
-        Map<PortHierarchyLevel, List<DownstreamAddress>> elements, PortHierarchyLevel level) {
+        Map<PortHierarchyLevel, List<DownstreamAddress>> elements, PortHierarchyLevel level, int capacity) {
         List<DownstreamAddress> l = elements.get(level);
         if (l == null) {
-            l = new LinkedList<>();
+            l = new ArrayList<>(capacity);
             elements.put(level, l);
         }
         return l;
@@ -170,17 +267,26 @@ public final class OutPortState {
     private Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> installNewSinks(
         Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> newSinksParam) {
         HashMap<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> old = null;
-        synchronized (lock) {
-            old = new HashMap<>(possibleSinks);
-            possibleSinks.clear();
-            possibleSinks.putAll(newSinksParam);
+        synchronized (pollLock) {
+            synchronized (lock) {
+                old = new HashMap<>(possibleSinks);
+                possibleSinks.clear();
+                possibleSinks.putAll(newSinksParam);
+                Set<ComponentInstanceId> touched = new HashSet<>(old.keySet());
+                touched.addAll(possibleSinks.keySet());
+                tracker.reconcile(touched, possibleSinks);
+            }
         }
         return old;
     }
 
     private Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> getCurrentSinkSet() {
+        return copyOfSinks();
+    }
+
+    private Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> copyOfSinks() {
         synchronized (lock) {
-            return possibleSinks;
+            return new HashMap<>(possibleSinks);
         }
     }
 
@@ -18,23 +18,37 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.container.port;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
 
+/**
+ * the changes of the sinks of an out port. internally, a diff only 
+ * keeps the sinks that have changed; the full sink sets are only 
+ * built on request.
+ */
 public final class PortDiff<T> {
 
     private final OutPort myPort;
-    private final Map<ComponentInstanceId, HierarchyLevelState<T>> current;
-    private final Map<ComponentInstanceId, HierarchyLevelState<T>> oldSinks;
+    // new state of every changed sink; null for removed sinks //
+    private final Map<ComponentInstanceId, HierarchyLevelState<T>> changes;
+    // state of the same sinks before the change; null for added sinks //
+    private final Map<ComponentInstanceId, HierarchyLevelState<T>> previous;
     private final Set<ComponentInstanceId> added;
     private final Set<ComponentInstanceId> removed;
     private final Set<ComponentInstanceId> diffSet;
+    // sink set the changes are based on; null if both sets are known //
+    private final Supplier<Map<ComponentInstanceId, HierarchyLevelState<T>>> base;
+    // protected by 'this' when base is set //
+    private Map<ComponentInstanceId, HierarchyLevelState<T>> current;
+    private Map<ComponentInstanceId, HierarchyLevelState<T>> oldSinks;
     
     PortDiff(Map<ComponentInstanceId, HierarchyLevelState<T>> newSinksParam,
             Map<ComponentInstanceId, HierarchyLevelState<T>> oldSinksParam,
@@ -49,6 +63,53 @@ public final class PortDiff<T> {
         removed = inFirstNotInSecond(oldSinksParam, newSinksParam);
         diffSet = diffPerElement(oldSinksParam);
         myPort = myPortParam;
+        base = null;
+        changes = new HashMap<>();
+        previous = new HashMap<>();
+        for(ComponentInstanceId id : added) {
+            changes.put(id, current.get(id));
+            previous.put(id, null);
+        }
+        for(ComponentInstanceId id : removed) {
+            changes.put(id, null);
+            previous.put(id, oldSinks.get(id));
+        }
+        for(ComponentInstanceId id : diffSet) {
+            changes.put(id, current.get(id));
+            previous.put(id, oldSinks.get(id));
+        }
+    }
+    
+    /**
+     * creates a diff from the changed sinks only. 
+     * 
+     * @param changesParam the new state of all changed sinks; null for removed sinks
+     * @param previousParam the old state of the same sinks; null for added sinks
+     * @param baseParam provides the sink set the changes are based on. it is only 
+     *             used when the full sink sets are requested. 
+     */
+    PortDiff(OutPort myPortParam, Map<ComponentInstanceId, HierarchyLevelState<T>> changesParam, 
+            Map<ComponentInstanceId, HierarchyLevelState<T>> previousParam, 
+            Supplier<Map<ComponentInstanceId, HierarchyLevelState<T>>> baseParam) {
+    	if(myPortParam == null) 
+    		throw new NullPointerException("port cannot be  null");
+        myPort = myPortParam;
+        changes = changesParam;
+        previous = previousParam;
+        base = baseParam;
+        added = new HashSet<>();
+        removed = new HashSet<>();
+        diffSet = new HashSet<>();
+        for(Entry<ComponentInstanceId, HierarchyLevelState<T>> entry : changes.entrySet()) {
+            ComponentInstanceId id = entry.getKey();
+            if(entry.getValue() == null) {
+                removed.add(id);
+            } else if(previous.get(id) == null) {
+                added.add(id);
+            } else {
+                diffSet.add(id);
+            }
+        }
     }
 
     private Set<ComponentInstanceId> diffPerElement(Map<ComponentInstanceId, HierarchyLevelState<T>> old) {
@@ -73,7 +134,7 @@ public final class PortDiff<T> {
      * @param newElements
      * @return true if the both elements do differ (are not equal to each other).
      */
-    private boolean diffCrititcalElements(HierarchyLevelState<T> oldElements, HierarchyLevelState<T> newElements) {
+    static <T> boolean diffCrititcalElements(HierarchyLevelState<T> oldElements, HierarchyLevelState<T> newElements) {
         if(oldElements == null) 
             return newElements != null;
         return !oldElements.equals(newElements);
@@ -90,7 +151,13 @@ public final class PortDiff<T> {
     }
 
     public Map<ComponentInstanceId, HierarchyLevelState<T>> getCurrentSinkSet() {
-        return new HashMap<>(current);
+        if(base == null) 
+            return new HashMap<>(current);
+        synchronized(this) {
+            if(current == null) 
+                current = materialise(changes);
+            return new HashMap<>(current);
+        }
     }
 
     public boolean hasDiffs() {
@@ -107,11 +174,59 @@ public final class PortDiff<T> {
     }
 
 	public final Map<ComponentInstanceId, HierarchyLevelState<T>> getOldSinkSet() {
-		return oldSinks;
+        if(base == null) 
+            return oldSinks;
+        synchronized(this) {
+            if(oldSinks == null) 
+                oldSinks = Collections.unmodifiableMap(materialise(previous));
+            return oldSinks;
+        }
 	}
 
 	boolean portMatches(OutPort thePort) {
 		if(thePort == null) return false;
 		return myPort.equals(thePort);
 	}
+	
+	/** @return the ids of all sinks that have been added, removed, or changed */
+	Set<ComponentInstanceId> changedSinks() {
+	    return changes.keySet();
+	}
+	
+	/** 
+	 * @return true if the sinks touched by this diff are in the 
+	 *             state this diff has been computed against
+	 */
+	boolean isBasedOn(Map<ComponentInstanceId, HierarchyLevelState<T>> sinks) {
+	    for(Entry<ComponentInstanceId, HierarchyLevelState<T>> entry : previous.entrySet()) {
+	        if(diffCrititcalElements(entry.getValue(), sinks.get(entry.getKey()))) 
+	            return false;
+	    }
+	    return true;
+	}
+	
+	/** applies the changes to the given sink set in place */
+	void applyTo(Map<ComponentInstanceId, HierarchyLevelState<T>> sinks) {
+	    apply(changes, sinks);
+	}
+	
+	/** 
+	 * applying the same state twice has no effect; hence, this also works 
+	 * once the diff has been enacted on the base set already. 
+	 */
+	private Map<ComponentInstanceId, HierarchyLevelState<T>> materialise(Map<ComponentInstanceId, HierarchyLevelState<T>> states) {
+	    Map<ComponentInstanceId, HierarchyLevelState<T>> sinks = new HashMap<>(base.get());
+	    apply(states, sinks);
+	    return sinks;
+	}
+	
+	private static <T> void apply(Map<ComponentInstanceId, HierarchyLevelState<T>> states, Map<ComponentInstanceId, HierarchyLevelState<T>> sinks) {
+	    for(Entry<ComponentInstanceId, HierarchyLevelState<T>> entry : states.entrySet()) {
+	        if(entry.getValue() == null) {
+	            sinks.remove(entry.getKey());
+	        } else {
+	            sinks.put(entry.getKey(), entry.getValue());
+	        }
+	    }
+	}
 }
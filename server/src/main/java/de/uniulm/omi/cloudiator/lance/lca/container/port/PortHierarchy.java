@@ -18,15 +18,25 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.container.port;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+/**
+ * an ordered set of hierarchy levels. each level is assigned a dense 
+ * ordinal (its position in the hierarchy) that allows hierarchy level 
+ * states to be stored in fixed-size arrays.
+ */
 public final class PortHierarchy {
 
+    private final PortHierarchyLevel[] ordered;
     private final List<PortHierarchyLevel> levels;
     
-    PortHierarchy(List<PortHierarchyLevel> levelsParam) { levels = levelsParam; }
+    PortHierarchy(List<PortHierarchyLevel> levelsParam) { 
+        ordered = levelsParam.toArray(new PortHierarchyLevel[levelsParam.size()]);
+        levels = Collections.unmodifiableList(Arrays.asList(ordered));
+    }
     
     public static class PortHierarchyBuilder {
 
@@ -53,7 +63,34 @@ public final class PortHierarchy {
     }
 
     public List<PortHierarchyLevel> levels() {
-        return Collections.unmodifiableList(levels);
+        return levels;
+    }
+    
+    /** @return the number of levels in this hierarchy */
+    public int size() {
+        return ordered.length;
+    }
+    
+    /** @return the level with the given ordinal */
+    public PortHierarchyLevel levelAt(int ordinal) {
+        return ordered[ordinal];
+    }
+    
+    /** 
+     * @return the ordinal of the given level or -1 if the level 
+     *             is not part of this hierarchy 
+     */
+    public int ordinalOf(PortHierarchyLevel level) {
+        // hierarchies are tiny; a linear scan beats hashing //
+        for(int i = 0; i < ordered.length; i++) {
+            if(ordered[i] == level) 
+                return i;
+        }
+        for(int i = 0; i < ordered.length; i++) {
+            if(ordered[i].equals(level)) 
+                return i;
+        }
+        return -1;
     }
     
     @Override
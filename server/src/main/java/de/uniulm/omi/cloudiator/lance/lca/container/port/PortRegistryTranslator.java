@@ -23,6 +23,8 @@ import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,10 +33,13 @@ import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
 import de.uniulm.omi.cloudiator.lance.application.component.PortReference;
 import de.uniulm.omi.cloudiator.lance.lca.GlobalRegistryAccessor;
 import de.uniulm.omi.cloudiator.lance.lca.HostContext;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistryConstants;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
 import de.uniulm.omi.cloudiator.lance.lca.container.ContainerStatus;
 import de.uniulm.omi.cloudiator.lance.lca.container.port.PortHierarchy.PortHierarchyBuilder;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
 import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryWatch;
 
 public final class PortRegistryTranslator {
 	
@@ -56,22 +61,21 @@ public final class PortRegistryTranslator {
     public static final String PORT_PREFIX = "ACCESS_";
     public static final String HOST_PREFIX = "HOST_";
     
-    private static final String buildFullPortName(String portName){
-        return PORT_PREFIX + portName;
-    }
-    
     public static final String buildFullPortName(String portName, PortHierarchyLevel level){
-        return buildFullPortName(level.getName().toUpperCase() + "_" + portName);
+        return RegistryKey.forPort(portName).portNameAtLevel(level);
     }
     
     public static final String buildFullHostName(PortHierarchyLevel level){
-        return HOST_PREFIX + level.getName().toUpperCase() + "_IP";
+        return RegistryKey.hostNameAtLevel(level);
     }
     
     public static boolean isValidPort(Integer i) {
         if(i == null) 
             return false;
-        final int j = i.intValue();
+        return isValidPort(i.intValue());
+    }
+    
+    public static boolean isValidPort(int j) {
         if(j < 1 || j > 65535) 
             return false;
         return true;
@@ -84,10 +88,42 @@ public final class PortRegistryTranslator {
         accessor = accessorParam;
         hostContext = context;
     }
+    
+    /** @return the component instance the ports are translated for */
+    public ComponentInstanceId getLocalComponentInstanceId() {
+        return accessor.getLocalComponentInstanceId();
+    }
+    
+    /** @return the cloud this host runs in or null if it is not known */
+    public String getLocalCloudId() {
+        return hostContext.getCloudIdentifier();
+    }
 
-    public void registerLocalPortAtLevel(String portName, PortHierarchyLevel level, Integer value) throws RegistrationException {
-        String key = buildFullPortName(portName, level);
-        accessor.addLocalProperty(key, value.toString());
+    /**
+     * registers host addresses, ports, and the cloud of the local component 
+     * instance with a single access to the registry.
+     * 
+     * @param addresses the addresses of this component instance per hierarchy level
+     * @param ports the in ports of this component instance per hierarchy level
+     * @throws RegistrationException when the registry cannot be accessed
+     */
+    public void registerLocalAddressesAndPorts(HierarchyLevelState<String> addresses, Map<String, HierarchyLevelPortState> ports) throws RegistrationException {
+        Map<String, String> properties = new HashMap<>();
+        String cloudId = getLocalCloudId();
+        if(cloudId != null) {
+            properties.put(LcaRegistryConstants.CLOUD_PROVIDER_ID, cloudId);
+        }
+        for(PortHierarchyLevel level : addresses) {
+            properties.put(buildFullHostName(level), addresses.valueAtLevel(level));
+        }
+        for(Entry<String, HierarchyLevelPortState> entry : ports.entrySet()) {
+            RegistryKey key = RegistryKey.forPort(entry.getKey());
+            HierarchyLevelPortState state = entry.getValue();
+            for(PortHierarchyLevel level : state) {
+                properties.put(key.portNameAtLevel(level), Integer.toString(state.valueAtLevel(level)));
+            }
+        }
+        accessor.addLocalProperties(properties);
     }
     
     public Integer findPortAtLevel(ComponentInstanceId myId, String portName, PortHierarchyLevel level) throws RegistrationException {
@@ -109,65 +145,121 @@ public final class PortRegistryTranslator {
         portHandler.registerAddress(PORT_HIERARCHY_1, hostContext.getInternalIp());
     }
 
-    public void registerLocalAddressAtLevel(PortHierarchyLevel level, String value) throws RegistrationException {
+    public CompletableFuture<Void> registerLocalAddressAtLevelAsync(PortHierarchyLevel level, String value) {
         String key = buildFullHostName(level);
-        accessor.addLocalProperty(key, value);
+        return accessor.addLocalPropertyAsync(key, value);
+    }
+    
+    static void awaitRegistration(CompletableFuture<?> registration) throws RegistrationException {
+        try {
+            registration.get();
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RegistrationException("interrupted while waiting for registry", ie);
+        } catch(ExecutionException ee) {
+            if(ee.getCause() instanceof RegistrationException) 
+                throw (RegistrationException) ee.getCause();
+            throw new RegistrationException(ee.getCause());
+        }
     }
     
     /* define 3 levels of hierarchy throughout the applicatin */
     public Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> findDownstreamInstances(OutPort out, PortHierarchy portHierarchy) throws RegistrationException {
-        PortReference sinkReference = null;        
+        PortReference sinkReference = getSinkReference(out);
+        Map<ComponentInstanceId, Map<String, String>> dump = accessor.retrieveComponentDump(sinkReference);
+        return getHierarchicalPorts(sinkReference, dump, portHierarchy);
+    }
+    
+    /**
+     * @return the version of the registry entries of the component wired to this port 
+     *             or LcaRegistry.UNKNOWN_VERSION if the registry does not know it.
+     */
+    long findDownstreamVersion(OutPort out) throws RegistrationException {
+        return accessor.retrieveComponentVersion(getSinkReference(out));
+    }
+    
+    /** 
+     * @return the raw registry entries of all instances of the component 
+     *             wired to this port; the dump must not be modified.
+     */
+    Map<ComponentInstanceId, Map<String, String>> findDownstreamDump(OutPort out) throws RegistrationException {
+        return accessor.retrieveComponentDump(getSinkReference(out));
+    }
+    
+    RegistryKey findSinkKey(OutPort out) throws RegistrationException {
+        return RegistryKey.forPort(getSinkReference(out).getPortName());
+    }
+    
+    public RegistryWatch watchDownstreamInstances(OutPort out, ComponentChangeListener listener) throws RegistrationException {
+        PortReference sinkReference = getSinkReference(out);
+        return accessor.watchComponent(sinkReference, listener);
+    }
+    
+    private PortReference getSinkReference(OutPort out) throws RegistrationException {
         Object o = accessor.getLocalProperty(out.getName(), OutPort.class);
         try { 
-            sinkReference = (PortReference) o;
+            return (PortReference) o;
         } catch(ClassCastException cce) {
             throw new IllegalStateException("sink unknown: port '" + out.getName() + "' not correctly wired.", cce);
         }
-        
-        Map<ComponentInstanceId, Map<String, String>> dump = accessor.retrieveComponentDump(sinkReference);
-        return getHierarchicalPorts(sinkReference, dump, portHierarchy);
     }
     
     private static boolean isValidPortOrUnset(Integer i) {
         if(i == null) 
             return false;
+        return isValidPortOrUnset(i.intValue());
+    }
+    
+    private static boolean isValidPortOrUnset(int i) {
         if(isValidPort(i)) 
             return true;
-        return i.intValue() == UNSET_PORT.intValue();
+        return i == UNSET_PORT.intValue();
     }
     
     private static Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> getHierarchicalPorts(PortReference sinkReference, Map<ComponentInstanceId, Map<String, String>> dump, PortHierarchy portHierarchy) throws RegistrationException {
         Map<ComponentInstanceId,HierarchyLevelState<DownstreamAddress>> addresses = new HashMap<>(); 
+        final RegistryKey sinkKey = RegistryKey.forPort(sinkReference.getPortName());
         for(Entry<ComponentInstanceId, Map<String, String>> entry : dump.entrySet()) {
             ComponentInstanceId id = entry.getKey();
-            Map<String,String> map = entry.getValue();
-            boolean isReady = GlobalRegistryAccessor.dumpMapHasContainerStatus(map, ContainerStatus.READY);
-            if(!isReady) {
-            	LOGGER.info("dropping data (ports and ips of component instance " + id + " as it is not in ready state");
-            	continue;
-            }
-            HierarchyLevelState<DownstreamAddress> state = new HierarchyLevelState<>(id.toString(), portHierarchy);
-            boolean forAll = true;
-            for(PortHierarchyLevel level : portHierarchy.levels()) {
-                Integer i = getHierarchicalPort(sinkReference, map, level);
-                String ip = getHierarchicalHostname(level, map);
-                if(i == null || ip == null) {
-                	forAll = false;
-                    continue;
-                }
-                state.registerValueAtLevel(level, new DownstreamAddress(ip, i));
-            }
-            if(forAll) { // only pass on when we found sth for all levels.
+            HierarchyLevelState<DownstreamAddress> state = getHierarchicalState(sinkKey, id, entry.getValue(), portHierarchy);
+            if(state != null) {
             	addresses.put(id, state);
-            } else {
-            	// drop values to avoid inconsistencies
             }
         }
         return addresses;
     }
+    
+    /**
+     * @return the addresses of a single sink instance or null if the instance 
+     *             is not ready or its addresses are not known for all levels
+     */
+    static HierarchyLevelState<DownstreamAddress> getHierarchicalState(RegistryKey sinkKey, ComponentInstanceId id, 
+                Map<String, String> map, PortHierarchy portHierarchy) throws RegistrationException {
+        boolean isReady = GlobalRegistryAccessor.dumpMapHasContainerStatus(map, ContainerStatus.READY);
+        if(!isReady) {
+        	LOGGER.info("dropping data (ports and ips of component instance " + id + " as it is not in ready state");
+        	return null;
+        }
+        HierarchyLevelState<DownstreamAddress> state = new HierarchyLevelState<>(id.toString(), portHierarchy);
+        String cloudId = map.get(LcaRegistryConstants.CLOUD_PROVIDER_ID);
+        boolean forAll = true;
+        for(int ordinal = 0; ordinal < portHierarchy.size(); ordinal++) {
+            PortHierarchyLevel level = portHierarchy.levelAt(ordinal);
+            int i = getHierarchicalPort(sinkKey, map, level);
+            String ip = getHierarchicalHostname(level, map);
+            if(ip == null) {
+            	forAll = false;
+                continue;
+            }
+            state.registerValueAtLevel(level, new DownstreamAddress(ip, i, cloudId));
+        }
+        // only pass on when we found sth for all levels; 
+        // drop values otherwise to avoid inconsistencies 
+        return forAll ? state : null;
+    }
 
-	private static Integer getHierarchicalPort(PortReference sinkReference, Map<String, String> dump, PortHierarchyLevel level) throws RegistrationException {
-        String key = buildFullPortName(sinkReference.getPortName(), level);
+	private static int getHierarchicalPort(RegistryKey sinkKey, Map<String, String> dump, PortHierarchyLevel level) throws RegistrationException {
+        String key = sinkKey.portNameAtLevel(level);
         String value = dump.get(key);
         try {
         	if(value == null) {
@@ -175,7 +267,7 @@ public final class PortRegistryTranslator {
         		// hence, port has to be set.
         		throw new RegistrationException("port with '" + key + "' has not been found. Value was null.");
         	}
-            Integer i = Integer.valueOf(value);
+            int i = Integer.parseInt(value);
             if(isValidPortOrUnset(i)) {
                 return i;
             }
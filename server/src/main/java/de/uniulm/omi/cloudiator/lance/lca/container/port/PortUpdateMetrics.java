@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * counts how the changes of downstream components of a single 
+ * container have been turned into port updates. 
+ */
+public final class PortUpdateMetrics {
+
+    private final AtomicLong notifications = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong updatedPorts = new AtomicLong();
+    
+    void notificationReceived() {
+        notifications.incrementAndGet();
+    }
+    
+    void updateCoalesced() {
+        coalesced.incrementAndGet();
+    }
+    
+    void updateExecuted(int ports) {
+        executed.incrementAndGet();
+        updatedPorts.addAndGet(ports);
+    }
+    
+    /** @return the number of change notifications received for downstream components */
+    public long getNotifications() {
+        return notifications.get();
+    }
+    
+    /** @return the number of update requests that have been merged into another update */
+    public long getCoalescedUpdates() {
+        return coalesced.get();
+    }
+    
+    /** @return the number of combined updates run in the container */
+    public long getExecutedUpdates() {
+        return executed.get();
+    }
+    
+    /** @return the number of port diffs enacted by all executed updates */
+    public long getUpdatedPorts() {
+        return updatedPorts.get();
+    }
+    
+    @Override
+    public String toString() {
+        return "PortUpdateMetrics: notifications=" + getNotifications() + ", coalesced=" + getCoalescedUpdates() 
+                + ", executed=" + getExecutedUpdates() + ", ports=" + getUpdatedPorts();
+    }
+}
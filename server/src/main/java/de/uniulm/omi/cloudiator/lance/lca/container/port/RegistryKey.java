@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * canonical registry property names of a port on all hierarchy levels.
+ * there is a single key per port name and every name is built only once,
+ * so that looking up ports and hosts in component dumps does not create
+ * any strings.
+ */
+final class RegistryKey {
+
+    private static final ConcurrentMap<String, RegistryKey> PORT_KEYS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<PortHierarchyLevel, String> HOST_NAMES = new ConcurrentHashMap<>();
+
+    private final String portName;
+    private final ConcurrentMap<PortHierarchyLevel, String> fullNames = new ConcurrentHashMap<>();
+
+    private RegistryKey(String portNameParam) {
+        portName = portNameParam;
+    }
+
+    static RegistryKey forPort(String portName) {
+        RegistryKey key = PORT_KEYS.get(portName);
+        if(key != null)
+            return key;
+        RegistryKey created = new RegistryKey(portName);
+        key = PORT_KEYS.putIfAbsent(portName, created);
+        return key == null ? created : key;
+    }
+
+    static String hostNameAtLevel(PortHierarchyLevel level) {
+        String name = HOST_NAMES.get(level);
+        if(name != null)
+            return name;
+        String created = PortRegistryTranslator.HOST_PREFIX + level.getName().toUpperCase() + "_IP";
+        name = HOST_NAMES.putIfAbsent(level, created);
+        return name == null ? created : name;
+    }
+
+    String portNameAtLevel(PortHierarchyLevel level) {
+        String name = fullNames.get(level);
+        if(name != null)
+            return name;
+        String created = PortRegistryTranslator.PORT_PREFIX + level.getName().toUpperCase() + "_" + portName;
+        name = fullNames.putIfAbsent(level, created);
+        return name == null ? created : name;
+    }
+
+    @Override
+    public String toString() {
+        return "RegistryKey: " + portName;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+
+import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
+import de.uniulm.omi.cloudiator.lance.application.component.PortProperties;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * selects sinks by a chain of criteria; a later criterion only decides 
+ * between sinks that are equal with respect to all earlier ones. the 
+ * chain is given as a comma-separated list of
+ * <ul>
+ *     <li><code>cloud</code>: sinks in the cloud of this host first</li>
+ *     <li><code>hash</code>: orders sinks by a hash of their instance id. 
+ *          the selection is stable across updates: a new sink only 
+ *          displaces a single selected sink</li>
+ *     <li><code>rendezvous</code>: orders sinks by a hash of their instance 
+ *          id and the id of the consuming instance (highest random weight). 
+ *          as stable as <code>hash</code>, but every consumer ranks the 
+ *          sinks differently, so that consumers spread evenly</li>
+ *     <li><code>unordered</code>: no order at all (the former behaviour)</li>
+ * </ul>
+ * the default chain is <code>cloud,hash</code>. out ports in {@link PortProperties.SelectionMode#RENDEZVOUS} 
+ * mode always use <code>cloud,rendezvous</code>.
+ */
+public final class SinkSelection implements SinkSelectionStrategy {
+
+    public static final String SELECTION_PROPERTY = "lca.port.selection";
+    public static final String DEFAULT_SELECTION = "cloud,hash";
+    public static final String RENDEZVOUS_SELECTION = "cloud,rendezvous";
+
+    private static final String UNORDERED = "unordered";
+    private static final String CLOUD = "cloud";
+    private static final String HASH = "hash";
+    private static final String RENDEZVOUS = "rendezvous";
+
+    private final String spec;
+    private final Comparator<Candidate> order;
+    private final String localCloudId;
+    private final ComponentInstanceId consumer;
+    private final long consumerSeed;
+
+    private SinkSelection(String specParam, Comparator<Candidate> orderParam, String localCloudIdParam, 
+                ComponentInstanceId consumerParam) {
+        spec = specParam;
+        order = orderParam;
+        localCloudId = localCloudIdParam;
+        consumer = consumerParam;
+        consumerSeed = consumerParam == null ? 0 : mix(consumerParam.hashCode() * 0x9e3779b97f4a7c15L);
+    }
+
+    /**
+     * @param consumerId the instance the sinks are selected for
+     * @return the selection for the mode of the given port
+     */
+    public static SinkSelection forPort(OutPort port, String localCloudId, ComponentInstanceId consumerId) {
+        if(port.getSelectionMode() == PortProperties.SelectionMode.RENDEZVOUS) {
+            return create(RENDEZVOUS_SELECTION, localCloudId, consumerId);
+        }
+        return create(System.getProperty(SELECTION_PROPERTY, DEFAULT_SELECTION), localCloudId, consumerId);
+    }
+
+    /**
+     * @param spec the comma-separated list of criteria
+     * @param localCloudId the cloud this host runs in; may be null
+     * @throws IllegalArgumentException if a criterion is not known
+     */
+    public static SinkSelection create(String spec, String localCloudId) {
+        return create(spec, localCloudId, null);
+    }
+
+    /**
+     * @param consumerId the instance the sinks are selected for; 
+     *          required if the sinks are ranked by rendezvous hashing
+     * @throws IllegalArgumentException if a criterion is not known
+     */
+    public static SinkSelection create(String spec, String localCloudId, ComponentInstanceId consumerId) {
+        Comparator<Candidate> order = null;
+        for(String raw : spec.split(",")) {
+            String criterion = raw.trim();
+            if(criterion.isEmpty() || UNORDERED.equals(criterion)) {
+                continue;
+            }
+            if(RENDEZVOUS.equals(criterion) && consumerId == null) {
+                throw new IllegalArgumentException("sink selection '" + spec + "' ranks sinks by rendezvous "
+                        + "hashing, which requires the id of the consuming component instance");
+            }
+            Comparator<Candidate> next = criterion(criterion);
+            order = order == null ? next : order.thenComparing(next);
+        }
+        return new SinkSelection(spec, order, localCloudId, consumerId);
+    }
+
+    private static Comparator<Candidate> criterion(String criterion) {
+        switch(criterion) {
+        case CLOUD:
+            return (a, b) -> Boolean.compare(b.local, a.local);
+        case HASH:
+            return (a, b) -> Long.compare(a.hash, b.hash);
+        case RENDEZVOUS:
+            // the highest weight wins //
+            return (a, b) -> Long.compare(b.weight, a.weight);
+        default:
+            throw new IllegalArgumentException("unknown sink selection criterion: " + criterion);
+        }
+    }
+
+    @Override
+    public List<ComponentInstanceId> select(Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks, int count) {
+        if(count <= 0) {
+            return Collections.emptyList();
+        }
+        List<ComponentInstanceId> selected = new ArrayList<>(count);
+        if(order == null) {
+            for(ComponentInstanceId id : sinks.keySet()) {
+                if(selected.size() == count)
+                    break;
+                selected.add(id);
+            }
+            return selected;
+        }
+        Candidate[] best = count < sinks.size() / 4 ? topOf(sinks, count) : sortAll(sinks);
+        for(int i = 0; i < count && i < best.length; i++) {
+            selected.add(best[i].id);
+        }
+        return selected;
+    }
+
+    /** keeps the best candidates in a bounded heap; O(n log k) */
+    private Candidate[] topOf(Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks, int count) {
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(count + 1, order.reversed());
+        for(Entry<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> entry : sinks.entrySet()) {
+            Candidate c = candidate(entry.getKey(), entry.getValue());
+            if(heap.size() < count) {
+                heap.add(c);
+            } else if(order.compare(c, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(c);
+            }
+        }
+        Candidate[] best = heap.toArray(new Candidate[heap.size()]);
+        Arrays.sort(best, order);
+        return best;
+    }
+
+    private Candidate[] sortAll(Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks) {
+        Candidate[] all = new Candidate[sinks.size()];
+        int i = 0;
+        for(Entry<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> entry : sinks.entrySet()) {
+            all[i++] = candidate(entry.getKey(), entry.getValue());
+        }
+        Arrays.sort(all, order);
+        return all;
+    }
+
+    private Candidate candidate(ComponentInstanceId id, HierarchyLevelState<DownstreamAddress> state) {
+        DownstreamAddress address = state.valueAt(0);
+        String cloud = address == null ? null : address.getCloudId();
+        boolean local = localCloudId != null && localCloudId.equals(cloud);
+        long hash = hash(id);
+        return new Candidate(id, local, hash, mix(hash ^ consumerSeed));
+    }
+
+    /** a 64 bit hash of the instance id; identical on all hosts as the hash code of the id is */
+    static long hash(ComponentInstanceId id) {
+        return mix(id.hashCode());
+    }
+
+    /** the finalisation step of murmur3 */
+    static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "SinkSelection: " + spec + " (cloud: " + localCloudId + ", consumer: " + consumer + ")";
+    }
+
+    private static final class Candidate {
+        final ComponentInstanceId id;
+        final boolean local;
+        final long hash;
+        // the weight of the sink for the consumer //
+        final long weight;
+
+        Candidate(ComponentInstanceId idParam, boolean localParam, long hashParam, long weightParam) {
+            id = idParam;
+            local = localParam;
+            hash = hashParam;
+            weight = weightParam;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import java.util.List;
+import java.util.Map;
+
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * decides which of the known sinks of an out port are handed to the 
+ * component instance and in which order.
+ */
+public interface SinkSelectionStrategy {
+
+    /**
+     * @param sinks all usable sinks of an out port
+     * @param count the number of sinks to select; not larger than the number of sinks
+     * @return the selected sinks, most preferred first
+     */
+    List<ComponentInstanceId> select(Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks, int count);
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+
+/**
+ * keeps track of the sinks of a single out port as seen in the registry
+ * and of those sinks whose state differs from the sinks that have been
+ * enacted. the registry is only read when the version of the downstream
+ * component has changed, and only instances whose registry entries have
+ * changed are translated again. hence, diffs are created in time
+ * proportional to the change rather than to the number of sinks.
+ *
+ * instances of this class are not thread-safe; they are guarded by
+ * the owning {@link OutPortState}.
+ */
+final class SinkSetTracker {
+
+    private long version = LcaRegistry.UNKNOWN_VERSION;
+    // the registry entries each sink has been translated from //
+    private final Map<ComponentInstanceId, Map<String, String>> seen = new HashMap<>();
+    // usable sinks as found in the registry //
+    private final Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> observed = new HashMap<>();
+    // sinks whose observed state differs from the enacted state //
+    private final Set<ComponentInstanceId> pending = new HashSet<>();
+
+    SinkSetTracker(Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> enacted) {
+        // nothing has been observed yet; all enacted sinks are pending //
+        pending.addAll(enacted.keySet());
+    }
+
+    /** @return true if the registry has not changed since it was last observed */
+    boolean isCurrent(long versionParam) {
+        return versionParam != LcaRegistry.UNKNOWN_VERSION && versionParam == version;
+    }
+
+    /**
+     * records the content of the registry. if the registry cannot be
+     * translated, nothing is recorded.
+     *
+     * @return the sinks whose observed state may have changed
+     */
+    Collection<ComponentInstanceId> observe(long versionParam, Map<ComponentInstanceId, Map<String, String>> dump,
+                RegistryKey sinkKey, PortHierarchy portHierarchy) throws RegistrationException {
+        List<ComponentInstanceId> touched = new ArrayList<>();
+        List<HierarchyLevelState<DownstreamAddress>> states = new ArrayList<>();
+        final int seenBefore = seen.size();
+        int known = 0;
+        for(Entry<ComponentInstanceId, Map<String, String>> entry : dump.entrySet()) {
+            ComponentInstanceId id = entry.getKey();
+            Map<String, String> properties = entry.getValue();
+            Map<String, String> before = seen.get(id);
+            if(before != null) {
+                known++;
+                // dumps of unchanged instances are usually shared //
+                if(before == properties || before.equals(properties))
+                    continue;
+            }
+            touched.add(id);
+            states.add(usableState(PortRegistryTranslator.getHierarchicalState(sinkKey, id, properties, portHierarchy)));
+        }
+
+        // all sinks have been translated; now update the state //
+        for(int i = 0; i < touched.size(); i++) {
+            ComponentInstanceId id = touched.get(i);
+            seen.put(id, dump.get(id));
+            HierarchyLevelState<DownstreamAddress> state = states.get(i);
+            if(state == null) {
+                observed.remove(id);
+            } else {
+                observed.put(id, state);
+            }
+        }
+        // some instances have vanished from the registry //
+        if(known < seenBefore) {
+            collectRemoved(dump, touched);
+        }
+        version = versionParam;
+        return touched;
+    }
+
+    /** re-evaluates whether the given sinks differ from their enacted state */
+    void reconcile(Collection<ComponentInstanceId> ids, Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> enacted) {
+        for(ComponentInstanceId id : ids) {
+            if(PortDiff.diffCrititcalElements(enacted.get(id), observed.get(id))) {
+                pending.add(id);
+            } else {
+                pending.remove(id);
+            }
+        }
+    }
+
+    /** @return a diff of all sinks whose observed state has not been enacted yet */
+    PortDiff<DownstreamAddress> pendingDiff(OutPort port, Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> enacted,
+                Supplier<Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>>> base) {
+        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> changes = new HashMap<>();
+        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> previous = new HashMap<>();
+        for(ComponentInstanceId id : pending) {
+            changes.put(id, observed.get(id));
+            previous.put(id, enacted.get(id));
+        }
+        return new PortDiff<>(port, changes, previous, base);
+    }
+
+    private void collectRemoved(Map<ComponentInstanceId, Map<String, String>> dump, List<ComponentInstanceId> touched) {
+        Iterator<ComponentInstanceId> it = seen.keySet().iterator();
+        while(it.hasNext()) {
+            ComponentInstanceId id = it.next();
+            if(dump.containsKey(id))
+                continue;
+            it.remove();
+            observed.remove(id);
+            touched.add(id);
+        }
+    }
+
+    /** sinks with unset ports cannot be used */
+    private static HierarchyLevelState<DownstreamAddress> usableState(HierarchyLevelState<DownstreamAddress> state) {
+        if(state == null)
+            return null;
+        for(int ordinal = 0; ordinal < state.size(); ordinal++) {
+            if(!state.valueAt(ordinal).hasValidPort())
+                return null;
+        }
+        return state;
+    }
+}
@@ -30,6 +30,7 @@ import de.uniulm.omi.cloudiator.lance.lca.HostContext;
 import de.uniulm.omi.cloudiator.lance.lca.StaticEnvVars;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
 import de.uniulm.omi.cloudiator.lance.lca.container.ContainerException;
+import de.uniulm.omi.cloudiator.lance.lca.container.environment.BashEnvironmentFile;
 import de.uniulm.omi.cloudiator.lance.lca.container.environment.BashExportBasedVisitor;
 import de.uniulm.omi.cloudiator.lance.lca.container.environment.PropertyVisitor;
 import de.uniulm.omi.cloudiator.lance.lca.container.port.DownstreamAddress;
@@ -39,31 +40,47 @@ import de.uniulm.omi.cloudiator.lance.lca.container.port.PortDiff;
 import de.uniulm.omi.cloudiator.lance.lca.container.port.PortRegistryTranslator;
 import de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector.DockerConnector;
 import de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector.DockerException;
+import de.uniulm.omi.cloudiator.lance.lifecycle.ExecutionResult;
 import de.uniulm.omi.cloudiator.lance.lifecycle.HandlerType;
 import de.uniulm.omi.cloudiator.lance.lifecycle.LifecycleActionInterceptor;
 import de.uniulm.omi.cloudiator.lance.lifecycle.LifecycleHandlerType;
 import de.uniulm.omi.cloudiator.lance.lifecycle.LifecycleStore;
 import de.uniulm.omi.cloudiator.lance.lifecycle.detector.DetectorType;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-//install shell in doInit (todo: rename to doBootstrap as it is called in BootstrapTransitionAction), close shell in preInit
-//install shell before every LifeCycleTransition, close shell after eacgy LifeCycleTransition
-//install shell in preDestroy, close shell in completeShutDown
-//install shell in preprocessDetector, close shell in postProcessDetector
-//install shell in preprocessPortUpdate, close shell in postprocessPortUpdate
+//shells are leased from the container's shell pool and installed for the current thread
+//lease shell in doInit (todo: rename to doBootstrap as it is called in BootstrapTransitionAction) and release it right after setting the environment
+//lease shell before every LifeCycleTransition, release shell after every LifeCycleTransition
+//lease shell in preDestroy and release it right after setting the environment, close the pool in completeShutDown
+//lease shell in preprocessDetector, release shell in postProcessDetector
+//lease shell in preprocessPortUpdate, release shell in postprocessPortUpdate
 class DockerContainerLogic implements ContainerLogic, LifecycleActionInterceptor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DockerContainerManager.class);
+
+  // sourced by every shell of the container //
+  private static final String ENVIRONMENT_FILE = "/tmp/.lance-environment";
+  // copy the environment file to the container instead of writing it through the shell //
+  public static final String ENVIRONMENT_COPY_PROPERTY = "lca.docker.environment.copy";
+  // number of idle side shells kept per container //
+  public static final String SHELL_POOL_PROPERTY = "lca.docker.shell.pool";
         
   private final ComponentInstanceId myId;
   private final DockerConnector client;
 
   private final DockerShellFactory shellFactory;
+  private final DockerShellPool shellPool;
   private final DeploymentContext deploymentContext;
 
   private final DockerImageHandler imageHandler;
@@ -77,6 +94,7 @@ class DockerContainerLogic implements ContainerLogic, LifecycleActionInterceptor
 
   private final Map<String, String> envVarsStatic;
   private final Map<String, String> envVarsDynamic;
+  private final BashEnvironmentFile environmentFile;
 
   //todo: not needed in post-colosseum version, as the environment-var names should be set correctly then
   private static final Map<String, String> translateMap;
@@ -92,14 +110,20 @@ class DockerContainerLogic implements ContainerLogic, LifecycleActionInterceptor
     if (builder.osParam == null) {
       throw new NullPointerException("operating system has to be set.");
     }
+    if (builder.imageService == null) {
+      // the service and its pull threads are shared by all containers of a manager //
+      throw new NullPointerException("image service has to be set.");
+    }
 
     this.myId = builder.myId;
     this.instVars = this.myId;
     this.client = builder.client;
     this.imageHandler = new DockerImageHandler(builder.osParam, new DockerOperatingSystemTranslator(),
-    builder.client, builder.myComponent, builder.dockerConfig);
+    builder.client, builder.myComponent, builder.dockerConfig,
+    builder.imageService);
     this.deploymentContext = builder.deploymentContext;
     this.shellFactory = builder.shellFactory;
+    this.shellPool = new DockerShellPool(() -> client.getSideShell(myId), Integer.getInteger(SHELL_POOL_PROPERTY, 2).intValue());
     this.myComponent = builder.myComponent;
     this.networkHandler = builder.networkHandler;
     this.hostContext = builder.hostContext;
@@ -110,6 +134,9 @@ class DockerContainerLogic implements ContainerLogic, LifecycleActionInterceptor
       envVarsStatic.put(kv.getKey(),kv.getValue());
     }
 
+    environmentFile = Boolean.getBoolean(ENVIRONMENT_COPY_PROPERTY) ?
+        new BashEnvironmentFile(ENVIRONMENT_FILE, this::copyEnvironmentFile) : new BashEnvironmentFile(ENVIRONMENT_FILE);
+
     envVarsDynamic = new HashMap<>();
     //todo: fill dynamic map with appropriate env-vars
   }
@@ -136,7 +163,7 @@ class DockerContainerLogic implements ContainerLogic, LifecycleActionInterceptor
 
   @Override
   public void preDestroy() throws ContainerException{
-    setStaticEnvironment();
+    exportStaticEnvironment();
   }
 
   @Override
@@ -158,19 +185,58 @@ class DockerContainerLogic implements ContainerLogic, LifecycleActionInterceptor
   @Override
   public void setStaticEnvironment() throws ContainerException {
     DockerShell shell = getShell();
-    BashExportBasedVisitor visitor = new BashExportBasedVisitor(shell);
-    doVisit(shell,visitor);
+    Map<String, String> environment = new HashMap<>();
+    doVisit(BashExportBasedVisitor.collecting(environment));
+    exportEnvironment(shell, environment, false);
   }
 
-  private void setCompleteStaticEnvironment(PortDiff<DownstreamAddress> diff) throws ContainerException {
+  private void setCompleteStaticEnvironment(List<PortDiff<DownstreamAddress>> diffs) throws ContainerException {
     DockerShell shell = getShell();
-    BashExportBasedVisitor visitor = new BashExportBasedVisitor(shell);
-    doVisit(shell,visitor);
-    networkHandler.accept(visitor, diff);
+    Map<String, String> environment = new HashMap<>();
+    BashExportBasedVisitor visitor = BashExportBasedVisitor.collecting(environment);
+    doVisit(visitor);
+    networkHandler.accept(visitor, diffs);
     myComponent.accept(deploymentContext, visitor);
+    exportEnvironment(shell, environment, true);
+  }
+
+  /** writes only the changed variables to the environment file and sources it */
+  private void exportEnvironment(DockerShell shell, Map<String, String> environment, boolean complete) throws ContainerException {
+    ExecutionResult result = environmentFile.export(shell, environment, complete);
+    if(!result.isSuccess()) {
+      throw new ContainerException("could not set environment of container " + myId + ": " + result);
+    }
+  }
+
+  private ExecutionResult copyEnvironmentFile(String path, CharSequence content) {
+    Path file = null;
+    try {
+      file = Files.createTempFile("lance-environment", ".sh");
+      try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+        writer.append(content);
+      }
+      client.copyToContainer(myId, file, path);
+      return ExecutionResult.success("", "");
+    } catch (IOException | DockerException ex) {
+      LOGGER.warn("could not copy environment file to container " + myId, ex);
+      return ExecutionResult.systemFailure(ex.getMessage());
+    } finally {
+      deleteQuietly(file);
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    if(file == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException ioe) {
+      LOGGER.info("could not delete " + file, ioe);
+    }
   }
 
-  private void doVisit(DockerShell shell, BashExportBasedVisitor visitor) {
+  private void doVisit(BashExportBasedVisitor visitor) {
     visitor.visit("TERM", "DUMB");
 
     for(Entry<String, String> entry: envVarsStatic.entrySet()) {
@@ -200,22 +266,28 @@ class DockerContainerLogic implements ContainerLogic, LifecycleActionInterceptor
     return null;
   }
 
-  //close shell, before opening them again in prepare(...) via LifeCycle-Actions
+  //nothing to do, the shell of doInit has already been released
 	@Override
 	public void preInit() throws ContainerException {
-    closeShell();
+    // no shell is leased at this point //
 	}
 
   @Override
   public void completeShutDown() throws ContainerException {
-    closeShell();
+    shellPool.close();
   }
 
   @Override
   public void prepare(HandlerType type) throws ContainerException {
-    setStaticEnvironment();
-    if (type == LifecycleHandlerType.INSTALL) {
-      preInstallAction();
+    try {
+      setStaticEnvironment();
+      if (type == LifecycleHandlerType.INSTALL) {
+        preInstallAction();
+      }
+    } catch (ContainerException | RuntimeException ex) {
+      // postprocess is not called when preparing fails //
+      closeShellIfInstalled();
+      throw ex;
     }
   }
 
@@ -244,12 +316,18 @@ class DockerContainerLogic implements ContainerLogic, LifecycleActionInterceptor
   }
 
   @Override
-  public void preprocessPortUpdate(PortDiff<DownstreamAddress> diffSet) throws ContainerException {
-    prepareEnvironment(diffSet);
+  public void preprocessPortUpdate(List<PortDiff<DownstreamAddress>> diffSets) throws ContainerException {
+    try {
+      prepareEnvironment(diffSets);
+    } catch (ContainerException | RuntimeException ex) {
+      // postprocessPortUpdate is not called when preprocessing fails //
+      closeShellIfInstalled();
+      throw ex;
+    }
   }
 
   @Override
-  public void postprocessPortUpdate(PortDiff<DownstreamAddress> diffSet) {
+  public void postprocessPortUpdate(List<PortDiff<DownstreamAddress>> diffSets) {
     closeShell();
   }
 
@@ -266,30 +344,59 @@ class DockerContainerLogic implements ContainerLogic, LifecycleActionInterceptor
   @Override
   public void preprocessDetector(DetectorType type) throws ContainerException {
     // nothing special to do; just create a shell and prepare an environment //
-    prepareEnvironment();
+    try {
+      prepareEnvironment();
+    } catch (ContainerException | RuntimeException ex) {
+      // postprocessDetector is not called when preprocessing fails //
+      closeShellIfInstalled();
+      throw ex;
+    }
   }
 
   @Override
   public void postprocessDetector(DetectorType type) {
     // nothing special to do; just create a shell //
     closeShell();
+    // a detector may have found the container gone; look again on the next lookup //
+    client.invalidateInspection(myId);
   }
 
   private void doStartContainer() throws ContainerException {
     final DockerShell dshell;
     try {
       dshell = client.startContainer(myId);
-      setStaticEnvironment();
+      exportStaticEnvironment();
     } catch (DockerException de) {
       throw new ContainerException("cannot start container: " + myId, de);
     }
   }
 
+  /** the environment file keeps the environment; hence, the shell is not needed afterwards */
+  private void exportStaticEnvironment() throws ContainerException {
+    try {
+      setStaticEnvironment();
+    } finally {
+      closeShellIfInstalled();
+    }
+  }
+
   private void preInstallAction() throws ContainerException {
     prepareEnvironment();
   }
 
   private void postPreInstall() {
+    // the snapshot is shared by all instances of the component and pushed to a  
+    // registry; it must not carry the environment of this instance //
+    ExecutionResult removed;
+    try {
+      removed = environmentFile.remove(getShell());
+    } catch (ContainerException ce) {
+      removed = ExecutionResult.systemFailure(ce.getMessage());
+    }
+    if(!removed.isSuccess()) {
+      LOGGER.warn("not creating an image snapshot, as the environment file could not be removed: " + removed);
+      return;
+    }
     try {
       imageHandler.runPostInstallAction(myId);
     } catch (DockerException de) {
@@ -301,40 +408,70 @@ class DockerContainerLogic implements ContainerLogic, LifecycleActionInterceptor
     prepareEnvironment(null);
   }
 
-  private void prepareEnvironment(PortDiff<DownstreamAddress> diff) throws ContainerException {
-    setCompleteStaticEnvironment(diff);
+  private void prepareEnvironment(List<PortDiff<DownstreamAddress>> diffs) throws ContainerException {
+    setCompleteStaticEnvironment(diffs);
   }
 
   private void executeCreation() throws DockerException {
+    environmentFile.clear();
     String target = imageHandler.doPullImages(myId);
-    Map<Integer, Integer> portsToSet = networkHandler.findPortsToSet(deploymentContext);
-    //@SuppressWarnings("unused") String dockerId =
-    client.createContainer(target, myId, portsToSet);
+    createContainer(target);
   }
 
   private void executeCreation(String imageName) throws DockerException {
+    environmentFile.clear();
     String target = imageHandler.doPullImages(myId, imageName);
+    createContainer(target);
+  }
+
+  private void createContainer(String target) throws DockerException {
     Map<Integer, Integer> portsToSet = networkHandler.findPortsToSet(deploymentContext);
-    //@SuppressWarnings("unused") String dockerId =
-    client.createContainer(target, myId, portsToSet);
+    try {
+      //@SuppressWarnings("unused") String dockerId =
+      client.createContainer(target, myId, portsToSet);
+    } catch (DockerException de) {
+      // the image may have been removed from the host in the meantime //
+      imageHandler.imageUnavailable(target);
+      throw de;
+    }
   }
 
-  //used for setting the environment
+  //used for setting the environment; a thread keeps its shell until it calls closeShell
   private DockerShell getShell() throws ContainerException {
-    DockerShell shell;
+    DockerShell shell = shellFactory.installedShell();
+    if(shell != null && shell.isReusable()) {
+      return shell;
+    }
+    if(shell != null) {
+      // e.g. a start handler has replaced the shell by the application //
+      closeShell();
+    }
 
     try {
-      shell = client.getSideShell(myId);
+      shell = shellPool.lease();
       shellFactory.installDockerShell(shell);
     } catch (DockerException de) {
-      throw new ContainerException("Cannot get side shell");
+      // the container may have exited //
+      client.invalidateInspection(myId);
+      throw new ContainerException("Cannot get side shell", de);
     }
 
     return shell;
   }
 
+  //hands the shell of the current thread back to the pool
   private void closeShell() {
-    shellFactory.closeShell();
+    DockerShell shell = shellFactory.uninstallShell();
+    if(shell != null) {
+      shellPool.release(shell);
+    }
+  }
+
+  //for operations that may have failed before leasing a shell
+  private void closeShellIfInstalled() {
+    if(shellFactory.installedShell() != null) {
+      closeShell();
+    }
   }
 
   public static class Builder {
@@ -349,6 +486,7 @@ class DockerContainerLogic implements ContainerLogic, LifecycleActionInterceptor
 
     private DeployableComponent myComponent;
     private DockerConfiguration dockerConfig;
+    private ImageAcquisitionService imageService;
 
     private HostContext hostContext;
 
@@ -394,6 +532,11 @@ class DockerContainerLogic implements ContainerLogic, LifecycleActionInterceptor
       return this;
     }
 
+    public Builder imageService(ImageAcquisitionService imageService) {
+      this.imageService = imageService;
+      return this;
+    }
+
     public Builder hostContext(HostContext hostContext) {
       this.hostContext = hostContext;
       return this;
@@ -53,6 +53,7 @@ public class DockerContainerManager implements ContainerManager {
     private final DockerConnector client;
     private final ContainerRegistry registry = new ContainerRegistry();
     private final DockerConfiguration dockerConfig = DockerConfiguration.INSTANCE; 
+    private final ImageAcquisitionService imageService;
     
     public DockerContainerManager(HostContext vmId) {
         this(vmId, LcaConstants.LOCALHOST_IP, false);
@@ -67,6 +68,7 @@ public class DockerContainerManager implements ContainerManager {
         hostContext = vmId;
         hostname = host;
         client = ConnectorFactory.INSTANCE.createConnector(hostname);
+        imageService = new ImageAcquisitionService(client);
         // translator = createAndInitTranslator();
         isRemote = remote;
     }
@@ -92,13 +94,14 @@ public class DockerContainerManager implements ContainerManager {
         NetworkHandler networkHandler = new NetworkHandler(accessor, comp, hostContext);
         DockerContainerLogic.Builder builder = new DockerContainerLogic.Builder();
         DockerContainerLogic logic = builder.cInstId(id).dockerConnector(client).deplComp(comp).deplContext(ctx).osParam(os).
-            nwHandler(networkHandler).dockerShellFac(shellFactory).dockerConfig(dockerConfig).hostContext(hostContext).build();
+            nwHandler(networkHandler).dockerShellFac(shellFactory).dockerConfig(dockerConfig).imageService(imageService).hostContext(hostContext).build();
         // DockerLifecycleInterceptor interceptor = new DockerLifecycleInterceptor(accessor, id, networkHandler, comp, shellFactory);
         ExecutionContext ec = new ExecutionContext(os, shellFactory);
         LifecycleController controller = new LifecycleController(comp.getLifecycleStore(), logic, accessor, ec, hostContext);
         
         try { 
             accessor.init(id); 
+            accessor.startLeaseHeartbeat();
         } catch(RegistrationException re) { 
             throw new ContainerException("cannot start container, because registry not available", re); 
         }
@@ -112,6 +115,7 @@ public class DockerContainerManager implements ContainerManager {
     @Override
     public void terminate() {
         LOGGER.error("terminate has not been fully implemented; not terminating containers.");
+        imageService.shutdown();
         // FIXME: add other parts to shut down //
     }
 
@@ -36,11 +36,13 @@ final class DockerImageHandler {
     private final DockerConnector client;
     private final DeployableComponent myComponent;
     private final DockerConfiguration dockerConfig;
+    private final ImageAcquisitionService images;
     
     private volatile ImageCreationType initSource;
     
     DockerImageHandler(OperatingSystem osParam, DockerOperatingSystemTranslator translatorParam, 
-                DockerConnector clientParam, DeployableComponent componentParam, DockerConfiguration dockerConfigParam) {
+                DockerConnector clientParam, DeployableComponent componentParam, DockerConfiguration dockerConfigParam,
+                ImageAcquisitionService imagesParam) {
         if(osParam == null) 
             throw new NullPointerException("operating system has to be set.");
         
@@ -49,6 +51,7 @@ final class DockerImageHandler {
         translator = translatorParam;
         client = clientParam;
         myComponent = componentParam;
+        images = imagesParam;
     }
     
     
@@ -115,17 +118,17 @@ final class DockerImageHandler {
     }
 
     private String doGetSingleImage(String key) throws DockerException {
-        if(client.findImage(key) != null) {
+        // shared with all other containers on this host //
+        if(images.acquire(key)) {
             return key;
         }
-   
-        try {      	
-            client.pullImage(key); 
-            return key; 
-        } catch(DockerException de) {
-            LOGGER.debug("could not pull image: " + key + " creating a new one.");
-            return null; 
-        }
+        LOGGER.debug("could not pull image: " + key + " creating a new one.");
+        return null;
+    }
+
+    /** the image is not present on the host anymore */
+    void imageUnavailable(String key) {
+        images.forget(key);
     }
     
     /**
@@ -210,6 +213,7 @@ final class DockerImageHandler {
             // let's keep it for debugging purposes, though
             // @SuppressWarnings("unused") String imageSnapshot = 
             client.createSnapshotImage(myId, target);
+            images.imageCreated(target);
             client.pushImage(target);
         }
     }
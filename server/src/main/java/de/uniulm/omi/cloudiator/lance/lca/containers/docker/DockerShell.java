@@ -25,7 +25,17 @@ public interface DockerShell extends ShellLikeInterface  {
 
     @Override
     ExecutionResult executeCommand(String command);
+    /** 
+     * runs a command that is expected to complete within the timeout. 
+     * if it does not, the shell cannot be used any further.
+     */
+    ExecutionResult executeCommand(String command, long timeoutMillis);
     ExecutionResult executeBlockingCommand(String command);
     void close();
     boolean processStillRunning();
+    /** 
+     * @return false once the shell cannot run further commands, because a 
+     *          blocking command has replaced it or a command has timed out
+     */
+    boolean isReusable();
 }
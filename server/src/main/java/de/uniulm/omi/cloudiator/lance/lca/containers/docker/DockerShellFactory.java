@@ -18,18 +18,22 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.containers.docker;
 
-import java.util.concurrent.atomic.AtomicReference;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.uniulm.omi.cloudiator.lance.lifecycle.ShellFactory;
 
+/**
+ * hands out the shell that has been installed by the current thread.
+ * lifecycle handlers, detectors, and port updates are prepared, run, and
+ * postprocessed on the same thread, so that each of them sees its own 
+ * shell even when they run concurrently.
+ */
 final class DockerShellFactory implements ShellFactory {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DockerShell.class);
     
-    private final AtomicReference<DockerShellWrapper> reference = new AtomicReference<>();
+    private final ThreadLocal<DockerShellWrapper> reference = new ThreadLocal<>();
     
     @Override
     public DockerShellWrapper createShell() {
@@ -41,19 +45,28 @@ final class DockerShellFactory implements ShellFactory {
 
     void installDockerShell(DockerShell dshell) {
         final DockerShellWrapper wrapper = new DockerShellWrapper(dshell);
-        DockerShellWrapper old = reference.getAndSet(wrapper);
+        DockerShellWrapper old = reference.get();
+        reference.set(wrapper);
         if(old != null) {
             LOGGER.error("ERROR: overriding docker shell with new one. this should never happen.");
         }        
     }
 
-    void closeShell() {
-        DockerShellWrapper old = reference.getAndSet(null);
+    /** @return the shell installed by the current thread or null */
+    DockerShell installedShell() {
+        DockerShellWrapper wrapper = reference.get();
+        return wrapper == null ? null : wrapper.shell;
+    }
+
+    /** @return the shell installed by the current thread or null */
+    DockerShell uninstallShell() {
+        DockerShellWrapper old = reference.get();
+        reference.remove();
         if(old == null) {
             LOGGER.error("ERROR: no shell set that can be closed. this should never happen.");
-        } else {
-            old.shell.close();
+            return null;
         }
+        return old.shell;
     }
 
 }
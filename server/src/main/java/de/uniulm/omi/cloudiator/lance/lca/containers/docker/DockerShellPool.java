@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector.DockerException;
+import de.uniulm.omi.cloudiator.lance.lifecycle.ExecutionResult;
+
+/**
+ * keeps warm side shells of a single container so that lifecycle
+ * handlers, detectors, and port updates do not have to start a new
+ * docker exec session each time. a shell is leased to one caller at a
+ * time; several callers may hold shells concurrently.
+ *
+ * when a shell is opened, its working directory, umask, and exported
+ * variables are recorded within the shell itself. when it is released,
+ * they are restored so that no lease sees what a previous one has left
+ * behind. shells that have died, have been replaced by a blocking 
+ * command, or cannot be reset in time are closed instead of being kept.
+ */
+final class DockerShellPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerShell.class);
+
+    static final String BASELINE_COMMAND = "__lance_home=$PWD; __lance_umask=$(umask); __lance_env=$(export -p); "
+            + "__lance_names=$'\\n'\"$(compgen -e)\"$'\\n'";
+    static final String RESET_COMMAND = "set +e +u +o pipefail; umask \"$__lance_umask\" && cd -- \"$__lance_home\" && { "
+            + "for __lance_v in $(compgen -e); do case \"$__lance_names\" in *$'\\n'\"$__lance_v\"$'\\n'*) ;; "
+            + "*) unset -v \"$__lance_v\" 2>/dev/null;; esac; done; eval \"$__lance_env\" 2>/dev/null; true; }";
+    // how long recording and restoring the state of a shell may take //
+    static final long RESET_TIMEOUT = 10000;
+
+    interface ShellOpener {
+        DockerShell open() throws DockerException;
+    }
+
+    private final ShellOpener opener;
+    private final int maxIdle;
+    // most recently released shells first //
+    private final Deque<DockerShell> idle = new ArrayDeque<>();
+    private boolean closed;
+
+    DockerShellPool(ShellOpener openerParam, int maxIdleParam) {
+        if(maxIdleParam < 0) {
+            throw new IllegalArgumentException("number of idle shells must not be negative: " + maxIdleParam);
+        }
+        opener = openerParam;
+        maxIdle = maxIdleParam;
+    }
+
+    /** @return a running shell that is reserved for the caller until it is released */
+    DockerShell lease() throws DockerException {
+        while(true) {
+            DockerShell shell = pollIdle();
+            if(shell == null) {
+                return open();
+            }
+            if(shell.isReusable()) {
+                return shell;
+            }
+            LOGGER.info("discarding side shell that has terminated while idle");
+            shell.close();
+        }
+    }
+
+    /** resets the shell and keeps it for the next lease or closes it */
+    void release(DockerShell shell) {
+        if(!reset(shell) || !offerIdle(shell)) {
+            shell.close();
+        }
+    }
+
+    /** closes all idle shells; shells released afterwards are closed as well */
+    void close() {
+        List<DockerShell> shells;
+        synchronized(this) {
+            closed = true;
+            shells = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for(DockerShell shell : shells) {
+            shell.close();
+        }
+    }
+
+    synchronized int idleShells() {
+        return idle.size();
+    }
+
+    private DockerShell open() throws DockerException {
+        DockerShell shell = opener.open();
+        ExecutionResult result = execute(shell, BASELINE_COMMAND);
+        if(result == null || !result.isSuccess()) {
+            shell.close();
+            throw new DockerException("cannot record initial state of side shell: " + result);
+        }
+        return shell;
+    }
+
+    private static boolean reset(DockerShell shell) {
+        if(!shell.isReusable()) {
+            if(shell.processStillRunning()) {
+                LOGGER.info("discarding side shell that cannot run further commands");
+            }
+            return false;
+        }
+        ExecutionResult result = execute(shell, RESET_COMMAND);
+        if(result != null && result.isSuccess()) {
+            return true;
+        }
+        LOGGER.info("discarding side shell that could not be reset: " + result);
+        return false;
+    }
+
+    private static ExecutionResult execute(DockerShell shell, String command) {
+        try {
+            return shell.executeCommand(command, RESET_TIMEOUT);
+        } catch(IllegalStateException ise) {
+            // the shell has terminated in the meantime //
+            return null;
+        }
+    }
+
+    private synchronized DockerShell pollIdle() {
+        return idle.pollFirst();
+    }
+
+    private synchronized boolean offerIdle(DockerShell shell) {
+        if(closed || idle.size() >= maxIdle) {
+            return false;
+        }
+        idle.addFirst(shell);
+        return true;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector.DockerConnector;
+import de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector.DockerException;
+
+/**
+ * makes images available on the docker host for all containers of a
+ * container manager. concurrent requests for the same image reference
+ * share a single lookup and pull, at most a fixed number of pulls run
+ * at the same time, and images known to be present are not looked up
+ * again.
+ */
+final class ImageAcquisitionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerContainerLogic.class);
+
+    // number of images that are pulled in parallel //
+    public static final String PULL_THREADS_PROPERTY = "lca.docker.pull.threads";
+
+    private final DockerConnector client;
+    private final ThreadPoolExecutor pullExecutor;
+    private final Set<String> present = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> inflight = new ConcurrentHashMap<>();
+
+    ImageAcquisitionService(DockerConnector clientParam) {
+        this(clientParam, Integer.getInteger(PULL_THREADS_PROPERTY, 2).intValue());
+    }
+
+    ImageAcquisitionService(DockerConnector clientParam, int pullThreads) {
+        if(pullThreads < 1) {
+            throw new IllegalArgumentException("at least one pull thread is needed: " + pullThreads);
+        }
+        client = clientParam;
+        final ThreadFactory threadFactory =
+            new ThreadFactoryBuilder().setNameFormat("DockerImagePull-%d").setDaemon(true).build();
+        pullExecutor = new ThreadPoolExecutor(pullThreads, pullThreads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), threadFactory);
+        pullExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * makes sure that the image is available locally, either because it
+     * is present already or because it has been pulled.
+     *
+     * @return false if the image could not be pulled
+     * @throws DockerException if the docker host cannot be queried
+     */
+    boolean acquire(String reference) throws DockerException {
+        if(present.contains(reference)) {
+            return true;
+        }
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = inflight.putIfAbsent(reference, future);
+        if(running == null) {
+            running = future;
+            try {
+                pullExecutor.execute(() -> doAcquire(reference, future));
+            } catch(RejectedExecutionException ree) {
+                // e.g. after shutdown; callers waiting for the same image must not hang //
+                inflight.remove(reference, future);
+                future.completeExceptionally(new DockerException("cannot pull image " + reference, ree));
+            }
+        }
+        return await(reference, running);
+    }
+
+    /** records an image that has been created on the host, e.g. a snapshot */
+    void imageCreated(String reference) {
+        present.add(reference);
+    }
+
+    /** drops an image that has turned out to be unusable, e.g. because it has been removed */
+    void forget(String reference) {
+        present.remove(reference);
+    }
+
+    void shutdown() {
+        pullExecutor.shutdown();
+    }
+
+    private void doAcquire(String reference, CompletableFuture<Boolean> future) {
+        boolean available;
+        try {
+            available = lookUpOrPull(reference);
+        } catch(DockerException | RuntimeException ex) {
+            inflight.remove(reference, future);
+            future.completeExceptionally(ex);
+            return;
+        }
+        // later requests have to try again if the image could not be pulled //
+        inflight.remove(reference, future);
+        future.complete(Boolean.valueOf(available));
+    }
+
+    private boolean lookUpOrPull(String reference) throws DockerException {
+        if(present.contains(reference)) {
+            return true;
+        }
+        if(client.findImage(reference) == null) {
+            try {
+                client.pullImage(reference);
+            } catch(DockerException de) {
+                LOGGER.debug("could not pull image: " + reference, de);
+                return false;
+            }
+        }
+        present.add(reference);
+        return true;
+    }
+
+    private static boolean await(String reference, CompletableFuture<Boolean> future) throws DockerException {
+        try {
+            return future.get().booleanValue();
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new DockerException("interrupted while waiting for image " + reference, ie);
+        } catch(ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if(cause instanceof DockerException) {
+                throw (DockerException) cause;
+            }
+            throw new DockerException("cannot acquire image " + reference, cause);
+        }
+    }
+}
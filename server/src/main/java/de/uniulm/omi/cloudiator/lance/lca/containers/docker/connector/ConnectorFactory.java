@@ -18,12 +18,35 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public enum ConnectorFactory {
 
     INSTANCE;
     
+    /** "process" (default) forks a docker client per operation, "socket" talks to the engine api */
+    public static final String CONNECTOR_PROPERTY = "lca.docker.connector";
+    public static final String ENDPOINT_PROPERTY = "lca.docker.endpoint";
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectorFactory.class);
+    
     @SuppressWarnings("static-method")
     public DockerConnector createConnector(String hostname) {
-        return new ProcessBasedConnector(hostname);
+        return new InspectionCachingConnector(createUncachedConnector(hostname));
+    }
+    
+    private static DockerConnector createUncachedConnector(String hostname) {
+        DockerConnector processBased = new ProcessBasedConnector(hostname);
+        if(!"socket".equals(System.getProperty(CONNECTOR_PROPERTY))) {
+            return processBased;
+        }
+        String endpoint = System.getProperty(ENDPOINT_PROPERTY, EngineEndpoint.DEFAULT_ENDPOINT);
+        try {
+            return SocketBasedConnector.connect(endpoint, processBased);
+        } catch(DockerException de) {
+            LOGGER.warn("cannot use docker engine api at " + endpoint + "; falling back to docker client processes", de);
+            return processBased;
+        }
     }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** the state and network settings of a container as reported by a single inspection */
+public final class ContainerInspection {
+
+    private final boolean running;
+    private final String ipAddress;
+    private final Map<Integer, Integer> portMappings;
+
+    ContainerInspection(boolean runningParam, String ipAddressParam, Map<Integer, Integer> portMappingsParam) {
+        running = runningParam;
+        ipAddress = ipAddressParam == null || ipAddressParam.isEmpty() ? null : ipAddressParam;
+        portMappings = Collections.unmodifiableMap(portMappingsParam);
+    }
+
+    /** @param inspection the object returned by inspecting a container */
+    static ContainerInspection fromInspection(Object inspection) {
+        boolean running = Boolean.TRUE.equals(Json.path(inspection, "State", "Running"));
+        Object networkSettings = Json.path(inspection, "NetworkSettings");
+        Map<Integer, Integer> mappings = new HashMap<>();
+        Object ports = Json.path(networkSettings, "Ports");
+        if(ports instanceof Map) {
+            for(Map.Entry<?, ?> entry : ((Map<?, ?>) ports).entrySet()) {
+                String key = entry.getKey().toString();
+                if(!key.endsWith("/tcp") || !(entry.getValue() instanceof List) || ((List<?>) entry.getValue()).isEmpty()) {
+                    continue;
+                }
+                String hostPort = Json.string(((List<?>) entry.getValue()).get(0), "HostPort");
+                try {
+                    mappings.put(Integer.valueOf(key.substring(0, key.length() - "/tcp".length())), Integer.valueOf(hostPort));
+                } catch(NumberFormatException nfe) {
+                    // not bound to a host port //
+                }
+            }
+        }
+        return new ContainerInspection(running, Json.string(networkSettings, "IPAddress"), mappings);
+    }
+
+    /** @return true if the container was running at the time of the inspection */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** @return null if the container has no address, e.g. because it is not running */
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    /** @return the host port the given container port is mapped to or -1 */
+    public int getPortMapping(Integer portNumber) {
+        Integer mapped = portMappings.get(portNumber);
+        return mapped == null ? -1 : mapped.intValue();
+    }
+
+    @Override
+    public String toString() {
+        return "running=" + running + ", ip=" + ipAddress + ", ports=" + portMappings;
+    }
+}
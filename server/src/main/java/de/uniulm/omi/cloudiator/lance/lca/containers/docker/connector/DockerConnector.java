@@ -18,6 +18,7 @@
 
 package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
 
+import java.nio.file.Path;
 import java.util.Map;
 
 import de.uniulm.omi.cloudiator.lance.container.spec.os.OperatingSystem;
@@ -49,8 +50,17 @@ public interface DockerConnector {
 
     int getPortMapping(ComponentInstanceId myId, Integer portNumber) throws DockerException;
 
+    /** @return the state, address and all port mappings of the container or null if it cannot be inspected */
+    ContainerInspection inspectContainer(ComponentInstanceId myId) throws DockerException;
+
+    /** drops what is known about the container, e.g. because a check of it has failed; a no-op for connectors without cache */
+    void invalidateInspection(ComponentInstanceId myId);
+
     DockerShell getSideShell(ComponentInstanceId myId) throws DockerException;
 
+    /** copies a file of the host to the given path within the container */
+    void copyToContainer(ComponentInstanceId myId, Path source, String target) throws DockerException;
+
 	void stopContainer(ComponentInstanceId myId) throws DockerException;
 
 	void pushImage(String target) throws DockerException;;
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/** 
+ * a persistent http/1.1 connection to the docker engine. requests are 
+ * sent one after the other; a connection is kept alive unless the engine
+ * asks to close it. instances are not thread-safe.
+ */
+final class EngineConnection implements Closeable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean reusable = true;
+    private int exchanges;
+    // true once a byte of the current request has been handed to the engine //
+    private boolean sent;
+
+    EngineConnection(SocketChannel channelParam) {
+        channel = channelParam;
+        in.flip();
+    }
+
+    /** 
+     * @return null if the engine has closed a connection that has been 
+     *          used before without responding, and the request either is 
+     *          idempotent or has not been sent at all; the request can then 
+     *          be repeated on a new connection.
+     */
+    EngineResponse exchange(String method, String path, Map<String, String> headers, String body) throws IOException {
+        byte[] content = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        StringBuilder head = new StringBuilder(256);
+        head.append(method).append(' ').append(path).append(" HTTP/1.1\r\nHost: docker\r\n");
+        for(Entry<String, String> header : headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        if(body != null) {
+            head.append("Content-Type: application/json\r\n");
+        }
+        head.append("Content-Length: ").append(content.length).append("\r\n\r\n");
+        String statusLine;
+        sent = false;
+        try {
+            write(ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.UTF_8)), ByteBuffer.wrap(content));
+            statusLine = readLine();
+            if(statusLine == null) {
+                throw new EOFException("docker engine closed the connection without response");
+            }
+        } catch(IOException ioe) {
+            reusable = false;
+            // the engine may have acted on a request it did not answer //
+            if(exchanges > 0 && (!sent || isIdempotent(method))) {
+                return null;
+            }
+            throw ioe;
+        }
+        exchanges++;
+        return readResponse(statusLine);
+    }
+
+    boolean isReusable() {
+        return reusable && channel.isOpen();
+    }
+
+    /** 
+     * checks without blocking whether the engine has closed this idle 
+     * connection (or sent data nobody asked for).
+     */
+    boolean isStale() {
+        if(!isReusable()) {
+            return true;
+        }
+        ByteBuffer probe = ByteBuffer.allocate(1);
+        try {
+            channel.configureBlocking(false);
+            try {
+                return channel.read(probe) != 0;
+            } finally {
+                channel.configureBlocking(true);
+            }
+        } catch(IOException ioe) {
+            return true;
+        }
+    }
+
+    /** @return true for the methods that http defines as idempotent */
+    static boolean isIdempotent(String method) {
+        switch(method) {
+        case "GET":
+        case "HEAD":
+        case "PUT":
+        case "DELETE":
+        case "OPTIONS":
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reusable = false;
+        channel.close();
+    }
+
+    private EngineResponse readResponse(String statusLine) throws IOException {
+        String[] parts = statusLine.split(" ", 3);
+        if(parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("malformed status line: " + statusLine);
+        }
+        final int status;
+        try {
+            status = Integer.parseInt(parts[1]);
+        } catch(NumberFormatException nfe) {
+            throw new IOException("malformed status line: " + statusLine, nfe);
+        }
+        long length = -1;
+        boolean chunked = false;
+        for(String line = readLine(); line != null && !line.isEmpty(); line = readLine()) {
+            int index = line.indexOf(':');
+            if(index < 0) {
+                continue;
+            }
+            String name = line.substring(0, index).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(index + 1).trim();
+            if("content-length".equals(name)) {
+                length = Long.parseLong(value);
+            } else if("transfer-encoding".equals(name)) {
+                chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+            } else if("connection".equals(name) && "close".equalsIgnoreCase(value)) {
+                reusable = false;
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if(status == 204 || status == 304 || (status >= 100 && status < 200)) {
+            // no body //
+        } else if(chunked) {
+            readChunked(out);
+        } else if(length >= 0) {
+            readFully(length, out);
+        } else {
+            readToEnd(out);
+        }
+        return new EngineResponse(status, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private void readChunked(ByteArrayOutputStream out) throws IOException {
+        while(true) {
+            String line = readLine();
+            if(line == null) {
+                throw new EOFException("chunked response ended prematurely");
+            }
+            int index = line.indexOf(';');
+            long size = Long.parseLong((index < 0 ? line : line.substring(0, index)).trim(), 16);
+            if(size == 0) {
+                // skip trailers //
+                for(line = readLine(); line != null && !line.isEmpty(); line = readLine()) {
+                    // nothing to do //
+                }
+                return;
+            }
+            readFully(size, out);
+            readLine();
+        }
+    }
+
+    private void readFully(long length, ByteArrayOutputStream out) throws IOException {
+        long missing = length;
+        while(missing > 0) {
+            if(!in.hasRemaining() && fill() < 0) {
+                throw new EOFException("response ended prematurely");
+            }
+            int count = (int) Math.min(missing, in.remaining());
+            out.write(in.array(), in.arrayOffset() + in.position(), count);
+            in.position(in.position() + count);
+            missing -= count;
+        }
+    }
+
+    private void readToEnd(ByteArrayOutputStream out) throws IOException {
+        reusable = false;
+        do {
+            out.write(in.array(), in.arrayOffset() + in.position(), in.remaining());
+            in.position(in.limit());
+        } while(fill() >= 0);
+    }
+
+    /** @return the next line without its line break or null at the end of the stream */
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        while(true) {
+            if(!in.hasRemaining() && fill() < 0) {
+                return line.length() == 0 ? null : line.toString();
+            }
+            char c = (char) (in.get() & 0xff);
+            if(c == '\n') {
+                int last = line.length() - 1;
+                if(last >= 0 && line.charAt(last) == '\r') {
+                    line.setLength(last);
+                }
+                return line.toString();
+            }
+            line.append(c);
+        }
+    }
+
+    private int fill() throws IOException {
+        in.compact();
+        try {
+            return channel.read(in);
+        } finally {
+            in.flip();
+        }
+    }
+
+    private void write(ByteBuffer head, ByteBuffer content) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[] {head, content};
+        while(head.hasRemaining() || content.hasRemaining()) {
+            if(channel.write(buffers) > 0) {
+                sent = true;
+            }
+        }
+    }
+}
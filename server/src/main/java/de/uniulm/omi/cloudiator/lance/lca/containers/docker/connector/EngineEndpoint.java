@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/** 
+ * the address of a docker engine, either unix:///path/to/docker.sock or
+ * tcp://host:port. unix domain socket channels are only available from 
+ * java 16 on; they are looked up reflectively so that this class still
+ * runs on older java versions, where only tcp can be used.
+ */
+final class EngineEndpoint {
+
+    static final String DEFAULT_ENDPOINT = "unix:///var/run/docker.sock";
+
+    private static final String UNIX_SCHEME = "unix://";
+    private static final String TCP_SCHEME = "tcp://";
+
+    private final String unixPath;
+    private final InetSocketAddress tcpAddress;
+
+    private EngineEndpoint(String unixPathParam, InetSocketAddress tcpAddressParam) {
+        unixPath = unixPathParam;
+        tcpAddress = tcpAddressParam;
+    }
+
+    static EngineEndpoint parse(String endpoint) throws DockerException {
+        if(endpoint.startsWith(UNIX_SCHEME)) {
+            return new EngineEndpoint(endpoint.substring(UNIX_SCHEME.length()), null);
+        }
+        if(endpoint.startsWith(TCP_SCHEME)) {
+            String address = endpoint.substring(TCP_SCHEME.length());
+            int index = address.lastIndexOf(':');
+            if(index > 0) {
+                try {
+                    int port = Integer.parseInt(address.substring(index + 1));
+                    return new EngineEndpoint(null, InetSocketAddress.createUnresolved(address.substring(0, index), port));
+                } catch(NumberFormatException nfe) {
+                    throw new DockerException("illegal port in docker endpoint: " + endpoint, nfe);
+                }
+            }
+        }
+        throw new DockerException("docker endpoint has to look like " + UNIX_SCHEME + "<path> or " + TCP_SCHEME + "<host>:<port>: " + endpoint);
+    }
+
+    static EngineEndpoint tcp(InetSocketAddress address) {
+        return new EngineEndpoint(null, address);
+    }
+
+    static EngineEndpoint unix(String path) {
+        return new EngineEndpoint(path, null);
+    }
+
+    /** @return a connected channel in blocking mode */
+    SocketChannel open() throws IOException {
+        if(unixPath == null) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(tcpAddress.getHostString(), tcpAddress.getPort()));
+            channel.socket().setTcpNoDelay(true);
+            return channel;
+        }
+        SocketChannel channel = (SocketChannel) invoke(SocketChannel.class, unixFamily());
+        try {
+            channel.connect(unixAddress(unixPath));
+        } catch(IOException ioe) {
+            channel.close();
+            throw ioe;
+        }
+        return channel;
+    }
+
+    /** @return a channel accepting connections at this endpoint, e.g. for a fake engine */
+    ServerSocketChannel bind() throws IOException {
+        if(unixPath == null) {
+            return ServerSocketChannel.open().bind(tcpAddress);
+        }
+        ServerSocketChannel channel = (ServerSocketChannel) invoke(ServerSocketChannel.class, unixFamily());
+        return channel.bind(unixAddress(unixPath));
+    }
+
+    static boolean unixSocketsAvailable() {
+        try {
+            unixFamily();
+            return true;
+        } catch(IOException ioe) {
+            return false;
+        }
+    }
+
+    private static ProtocolFamily unixFamily() throws IOException {
+        try {
+            return StandardProtocolFamily.valueOf("UNIX");
+        } catch(IllegalArgumentException iae) {
+            throw new IOException("unix domain socket channels require java 16 or later", iae);
+        }
+    }
+
+    private static SocketAddress unixAddress(String path) throws IOException {
+        try {
+            return (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class).invoke(null, path);
+        } catch(ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            throw new IOException("cannot create unix domain socket address for " + path, ex);
+        }
+    }
+
+    private static Object invoke(Class<?> channelClass, ProtocolFamily family) throws IOException {
+        try {
+            return channelClass.getMethod("open", ProtocolFamily.class).invoke(null, family);
+        } catch(InvocationTargetException ite) {
+            if(ite.getCause() instanceof IOException) {
+                throw (IOException) ite.getCause();
+            }
+            throw new IOException("cannot open unix domain socket channel", ite.getCause());
+        } catch(NoSuchMethodException | IllegalAccessException ex) {
+            throw new IOException("cannot open unix domain socket channel", ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return unixPath == null ? TCP_SCHEME + tcpAddress.getHostString() + ":" + tcpAddress.getPort() : UNIX_SCHEME + unixPath;
+    }
+}
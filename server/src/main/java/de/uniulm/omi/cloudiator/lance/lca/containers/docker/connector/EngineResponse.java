@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+final class EngineResponse {
+
+    private final int status;
+    private final String body;
+
+    EngineResponse(int statusParam, String bodyParam) {
+        status = statusParam;
+        body = bodyParam;
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    String getBody() {
+        return body;
+    }
+
+    boolean isSuccess() {
+        return status >= 200 && status < 300;
+    }
+
+    /** @return the message the engine has sent along with an error status */
+    String errorMessage() {
+        try {
+            String message = Json.string(Json.parse(body), "message");
+            if(message != null) {
+                return status + ": " + message;
+            }
+        } catch(DockerException de) {
+            // not json; use the plain body //
+        }
+        return status + ": " + body.trim();
+    }
+
+    @Override
+    public String toString() {
+        return "HTTP " + status + " " + body;
+    }
+}
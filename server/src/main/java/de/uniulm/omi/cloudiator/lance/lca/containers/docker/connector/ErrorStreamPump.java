@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** 
+ * continuously reads the error stream of a shell so that the shell never
+ * blocks on a full pipe. the content is handed out in frames, each of 
+ * which is terminated by a sentinel line written by the shell after a 
+ * command has completed. if a frame is given up on before its sentinel 
+ * has shown up, everything up to that sentinel is dropped once it arrives, 
+ * so that late output never ends up in the frame of a later command.
+ * the pump owns the reader and closes it once the stream has ended.
+ */
+final class ErrorStreamPump implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ErrorStreamPump.class);
+
+    private final Reader reader;
+    private final CharBuffer buffer = CharBuffer.allocate(4096);
+    private final StringBuilder pending = new StringBuilder();
+    // sentinel lines of frames that have been given up on, oldest first //
+    private final Deque<String> abandoned = new ArrayDeque<>();
+    private boolean finished;
+
+    private ErrorStreamPump(Reader readerParam) {
+        reader = readerParam;
+    }
+
+    static ErrorStreamPump start(Reader reader) {
+        ErrorStreamPump pump = new ErrorStreamPump(reader);
+        Thread thread = new Thread(pump, "docker-shell-stderr");
+        thread.setDaemon(true);
+        thread.start();
+        return pump;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while(true) {
+                buffer.clear();
+                int count = reader.read(buffer);
+                if(count < 0) {
+                    break;
+                }
+                buffer.flip();
+                synchronized(this) {
+                    pending.append(buffer);
+                    notifyAll();
+                }
+            }
+        } catch(IOException ioe) {
+            LOGGER.debug("error stream of shell closed", ioe);
+        }
+        closeReader();
+        synchronized(this) {
+            finished = true;
+            notifyAll();
+        }
+    }
+
+    /** 
+     * @return everything written before the sentinel line; if the line 
+     *          does not show up within the timeout or the stream ends, 
+     *          everything of this frame written so far 
+     */
+    synchronized String awaitFrame(String sentinel, long timeoutMillis) throws InterruptedException {
+        String marker = "\n" + sentinel + "\n";
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while(true) {
+            skipAbandoned();
+            if(abandoned.isEmpty()) {
+                int index = pending.indexOf(marker);
+                if(index >= 0) {
+                    String frame = pending.substring(0, index);
+                    pending.delete(0, index + marker.length());
+                    return frame;
+                }
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if(finished || remaining <= 0) {
+                return abandon(sentinel + "\n");
+            }
+            wait(remaining);
+        }
+    }
+
+    /** drops the output of frames given up on as far as their sentinels have arrived */
+    private void skipAbandoned() {
+        while(!abandoned.isEmpty()) {
+            String line = abandoned.peekFirst();
+            // the leading line break may already have been handed out //
+            int end;
+            if(pending.indexOf(line) == 0) {
+                end = line.length();
+            } else {
+                int index = pending.indexOf("\n" + line);
+                if(index < 0) {
+                    return;
+                }
+                end = index + 1 + line.length();
+            }
+            pending.delete(0, end);
+            abandoned.removeFirst();
+        }
+    }
+
+    /** 
+     * @return the output of the frame so far; empty if the output of an 
+     *          earlier frame has not been completed yet
+     */
+    private String abandon(String line) {
+        // keep what may be the beginning of the sentinel line, so that it can still be found //
+        int keep = Math.min(pending.length(), line.length() - 1);
+        while(keep > 0 && !line.startsWith(pending.substring(pending.length() - keep))) {
+            keep--;
+        }
+        String frame = pending.substring(0, pending.length() - keep);
+        pending.delete(0, pending.length() - keep);
+        boolean earlier = !abandoned.isEmpty();
+        abandoned.addLast(line);
+        if(earlier) {
+            LOGGER.debug("dropping late error output of an earlier command: " + frame);
+            return "";
+        }
+        return frame;
+    }
+
+    /** @return everything written once the stream has ended or the timeout has expired */
+    synchronized String awaitEnd(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while(!finished && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return drain();
+    }
+
+    /** @return true if the stream has ended and the reader has been closed */
+    synchronized boolean awaitClosed(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while(!finished && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return finished;
+    }
+
+    // a blocked read holds the lock of the reader, hence only the pump closes it //
+    private void closeReader() {
+        try {
+            reader.close();
+        } catch(IOException ioe) {
+            LOGGER.debug("could not close error stream of shell", ioe);
+        }
+    }
+
+    synchronized String drain() {
+        String content = pending.toString();
+        pending.setLength(0);
+        return content;
+    }
+}
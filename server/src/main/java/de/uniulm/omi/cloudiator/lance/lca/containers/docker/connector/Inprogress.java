@@ -25,61 +25,68 @@ import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStreamWriter;
+import java.nio.CharBuffer;
+import java.util.UUID;
 
+/**
+ * a shell that executes one command after the other. after each command,
+ * the shell writes a sentinel line carrying the exit code to stdout and
+ * another sentinel line to stderr. the sentinels are unique per command,
+ * so that the output of a command can neither be mistaken for them nor be
+ * attributed to the wrong command. stdout is read in blocks; stderr is
+ * read continuously by an {@link ErrorStreamPump}.
+ */
 class Inprogress implements DockerShell {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DockerShell.class);
 
+    // how long to wait for the stderr sentinel once the stdout sentinel has arrived //
+    private static final long ERROR_FRAME_TIMEOUT = 5000;
+    // how often to look for output while a command with a timeout is running //
+    private static final long POLL_INTERVAL = 10;
+    // how long a shell may take to exit once its input has been closed //
+    private static final long CLOSE_TIMEOUT = 1000;
+
     private final Process proc;
     private final BufferedReader stdOut;
-    private final BufferedReader stdErr;
+    private final ErrorStreamPump stdErr;
     private final BufferedWriter stdIn;
+    private final String sentinelPrefix = "__lance_" + UUID.randomUUID().toString().replace("-", "") + "_";
+    private final CharBuffer outBuffer = CharBuffer.allocate(8192);
+    // stdout read beyond the end of the last command //
+    private final StringBuilder outPending = new StringBuilder();
+    private long commands;
+    // why the shell cannot run further commands; null while it can //
+    private volatile String unusable;
 
     Inprogress(Process procParam, BufferedReader stdOutParam, BufferedReader stdErrParam) {
         proc = procParam;
         stdOut = stdOutParam;
-        stdErr = stdErrParam;
+        stdErr = ErrorStreamPump.start(stdErrParam);
         stdIn = new BufferedWriter(new OutputStreamWriter(proc.getOutputStream()));
     }
-    
-    /*private String readInLine() {
-        try {
-            return stdOut.readLine();
-        } catch(IOException ioe) {
-            logger.warn("IOExeception when reading line from external process", ioe);
-            return null;
-        }
-    }*/
-
-    private static final char BELL_CHAR = (char) 7;
 
-    String readOutUntilBell() {
-        return readAvailable(stdOut, BELL_CHAR);
+    /** 
+     * waits until the shell is able to execute commands 
+     * @return anything the shell has printed on start-up
+     */
+    String awaitStartup() throws IOException {
+        ExecutionResult result = runFramed(":", 0);
+        return result.getOutput() + "///" + stdErr.drain();
     }
 
     public String readOutAvailable() {
-        return readAvailable(stdOut, -1);
-    }
-
-    public String readErrAvailable() {
-        return readAvailable(stdErr, -1);
-    }
-
-    // FIXME: change return value and interface such that
-    //  i) a StringBuilder is passed as a parameter
-    // ii) return enum Status.TERMINATOR or 
-    // 				   Status.EOF
-    private static String readAvailable(BufferedReader std, int terminator) {
-        StringBuilder builder = new StringBuilder();
+        StringBuilder builder = new StringBuilder(outPending);
+        outPending.setLength(0);
         try {
-            while ((terminator > 0) || std.ready()) {
-                int i = std.read();
-                if (i == -1 || i == terminator) {
+            while(stdOut.ready()) {
+                if(!readBlock(builder)) {
                     break;
                 }
-                builder.append((char) i);
             }
         } catch (IOException ioe) {
             LOGGER.info("reading available bytes terminated due to exception", ioe);
@@ -87,6 +94,10 @@ class Inprogress implements DockerShell {
         return builder.toString();
     }
 
+    public String readErrAvailable() {
+        return stdErr.drain();
+    }
+
     @Override
     public boolean processStillRunning() {
         try {
@@ -106,15 +117,29 @@ class Inprogress implements DockerShell {
             throw new IllegalStateException("process still running; cannot be drained.");
 
         ExecResultBuilder result = new ExecResultBuilder();
+        result.output.append(outPending);
+        outPending.setLength(0);
         ProcessWrapper.drainStream(result.output, stdOut);
-        ProcessWrapper.drainStream(result.error, stdErr);
+        try {
+            result.error.append(stdErr.awaitEnd(ERROR_FRAME_TIMEOUT));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            result.error.append(stdErr.drain());
+        }
         return result.build(proc.exitValue());
     }
 
 
+    @Override
+    public boolean isReusable() {
+        return unusable == null && processStillRunning();
+    }
+
     @Override public ExecutionResult executeBlockingCommand(String command) {
-        if (!processStillRunning())
+        if (!isReusable())
             throw new IllegalStateException();
+        // the shell process is replaced by the command //
+        unusable = "shell has been replaced by: " + command;
         try {
             doExecuteCommand("exec " + command);
             String tmpOut = readOutAvailable();
@@ -138,53 +163,25 @@ class Inprogress implements DockerShell {
         stdIn.flush();
     }
 
-    private static int drainAfterExitStatus(String in, StringBuffer buffer) {
-        String tmpOut = in.trim();
-        // we enforced this line break before the return 
-        // value ==> EXIT_CODE command
-        int index = tmpOut.lastIndexOf("\n");
-        // at least one element is required for number //
-        // this means something went really wrong //
-        if (index >= tmpOut.length() - 1) {
-            return -1;
-        }
-        // it may well be < 0 when the command 
-        // did not print anything 
-        String toparse = tmpOut.substring(index + 1);
-        int trailIndex = in.lastIndexOf(toparse);
-        if (trailIndex > 0) {
-            String trail = in.substring(0, trailIndex - 1);
-            buffer.append(trail);
-        } else if (trailIndex > -1) {
-            buffer.append(""); // no output was written
-        } else {
-            LOGGER.error("could not find trailing element: " + toparse + " in input " + in);
-            buffer.append(in);
-        }
-        return Integer.parseInt(toparse);
+    @Override public ExecutionResult executeCommand(String command) {
+        return executeCommand(command, 0);
     }
 
-    private static final String EXIT_CODE = "echo -n -e \"\\n$?\"";
-    static final String BELL_COMMAND = "echo -e \"\\a\"";
-
-    @Override public ExecutionResult executeCommand(String command) {
-        if (!processStillRunning()) {
+    @Override public ExecutionResult executeCommand(String command, long timeoutMillis) {
+        if (!processStillRunning() || unusable != null) {
             throw new IllegalStateException(
-                "shell not available for executing command: " + command);
+                "shell not available for executing command: " + command + (unusable == null ? "" : "; " + unusable));
         }
         try {
-            doExecuteCommand(command + "; " + EXIT_CODE + " ; " + BELL_COMMAND);
-            String tmpOut = readOutUntilBell();
-            // use a return value to figure out if shell was closed
-            String tmpErr = readErrAvailable();
-            StringBuffer buffer = new StringBuffer();
-            int exit = drainAfterExitStatus(tmpOut, buffer);
-            ExecutionResult result = exit == 0 ?
-                ExecutionResult.success(buffer.toString(), tmpErr) :
-                ExecutionResult.commandFailure(exit, buffer.toString(), tmpErr);
+            ExecutionResult result = runFramed(command, timeoutMillis);
             LOGGER.debug(String
                 .format("%s has executed the command: %s. Result is %s.", this, command, result));
             return result;
+        } catch (InterruptedIOException iioe) {
+            // the rest of the output would end up in the next command //
+            unusable = "command has not completed in time: " + command;
+            LOGGER.warn(unusable, iioe);
+            return ExecutionResult.systemFailure(iioe.getMessage());
         } catch (IOException ioe) {
             LOGGER.warn("problem when reading from external process", ioe);
             return ExecutionResult.systemFailure(ioe.getMessage());
@@ -194,14 +191,104 @@ class Inprogress implements DockerShell {
         }
     }
 
+    /** @param timeoutMillis 0 to wait for the command for as long as it takes */
+    private ExecutionResult runFramed(String command, long timeoutMillis) throws IOException {
+        long deadline = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : 0;
+        commands++;
+        String sentinel = sentinelPrefix + commands;
+        // the command is terminated by a line break so that a trailing comment or '&' cannot swallow the sentinels //
+        doExecuteCommand(command + "\n__lance_rc=$?; printf '\\n%s:%d\\n' '" + sentinel + "' \"$__lance_rc\"; printf '\\n%s\\n' '" + sentinel + "' >&2");
+        StringBuilder out = new StringBuilder(outPending);
+        outPending.setLength(0);
+        int exit = readOutFrame(sentinel, out, deadline);
+        String err;
+        try {
+            err = stdErr.awaitFrame(sentinel, ERROR_FRAME_TIMEOUT);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            err = stdErr.drain();
+        }
+        return exit == 0 ? ExecutionResult.success(out.toString(), err) : ExecutionResult.commandFailure(exit, out.toString(), err);
+    }
+
+    /** 
+     * reads stdout until the sentinel line. afterwards, the builder holds
+     * the output of the command only.
+     * @param deadline 0 to wait for the sentinel for as long as it takes
+     * @return the exit code carried by the sentinel line 
+     */
+    private int readOutFrame(String sentinel, StringBuilder out, long deadline) throws IOException {
+        String marker = "\n" + sentinel + ":";
+        int from = 0;
+        while(true) {
+            int index = out.indexOf(marker, from);
+            if(index >= 0) {
+                int end = out.indexOf("\n", index + marker.length());
+                if(end >= 0) {
+                    int exit = Integer.parseInt(out.substring(index + marker.length(), end));
+                    outPending.append(out, end + 1, out.length());
+                    out.setLength(index);
+                    return exit;
+                }
+                from = index;
+            } else {
+                from = Math.max(0, out.length() - marker.length() + 1);
+            }
+            if(deadline > 0) {
+                awaitOutput(deadline);
+            }
+            if(!readBlock(out)) {
+                throw new EOFException("shell terminated before command completed; output: " + out);
+            }
+        }
+    }
+
+    private void awaitOutput(long deadline) throws IOException {
+        // a terminated shell is left to readBlock, which sees the end of the stream //
+        while(!stdOut.ready() && processStillRunning()) {
+            if(System.currentTimeMillis() >= deadline) {
+                throw new InterruptedIOException("shell has not completed the command in time");
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for the shell");
+            }
+        }
+    }
+
+    /** @return false at the end of the stream */
+    private boolean readBlock(StringBuilder builder) throws IOException {
+        outBuffer.clear();
+        int count = stdOut.read(outBuffer);
+        if(count < 0) {
+            return false;
+        }
+        outBuffer.flip();
+        builder.append(outBuffer);
+        return true;
+    }
+
     @Override public void close() {
         try {
             stdIn.close();
             stdOut.close();
-            stdErr.close();
         } catch (IOException ioe) {
             LOGGER.info("exception when closing InProgress shell", ioe);
         }
+        // the shell exits at the end of its input, which ends the error stream and //
+        // lets the pump close the stderr reader. a stuck shell has to be destroyed //
+        try {
+            if(!stdErr.awaitClosed(CLOSE_TIMEOUT)) {
+                LOGGER.info("shell did not exit after its input has been closed; destroying it.");
+                proc.destroy();
+                stdErr.awaitClosed(CLOSE_TIMEOUT);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            proc.destroy();
+        }
     }
 
     @Override public void setEnvironmentVariable(String name, String value) {
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.containers.docker.DockerShell;
+
+/**
+ * serves address and port mapping lookups from a single inspection per 
+ * container. the network settings of a container change when it is
+ * created, started or stopped; each of these operations invalidates the 
+ * inspection of the container. as a container may also exit on its own, 
+ * inspections are only kept for a short time and only while the container 
+ * is running. failed inspections are not cached.
+ */
+public final class InspectionCachingConnector implements DockerConnector {
+
+    /** time in milliseconds an inspection of a running container is reused */
+    public static final String TTL_PROPERTY = "lca.docker.inspection.ttl";
+    private static final long DEFAULT_TTL_MILLIS = 2000;
+
+    private final DockerConnector delegate;
+    private final long ttlNanos;
+    private final Map<ComponentInstanceId, CachedInspection> inspections = new ConcurrentHashMap<>();
+    // inspections that have started before an invalidation must not be cached //
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public InspectionCachingConnector(DockerConnector delegateParam) {
+        this(delegateParam, Long.getLong(TTL_PROPERTY, DEFAULT_TTL_MILLIS).longValue());
+    }
+
+    InspectionCachingConnector(DockerConnector delegateParam, long ttlMillis) {
+        delegate = delegateParam;
+        ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    @Override
+    public ContainerInspection inspectContainer(ComponentInstanceId myId) throws DockerException {
+        CachedInspection cached = inspections.get(myId);
+        if(cached != null) {
+            if(System.nanoTime() - cached.inspected < ttlNanos) {
+                return cached.inspection;
+            }
+            inspections.remove(myId, cached);
+        }
+        long before = invalidations.get();
+        long inspected = System.nanoTime();
+        ContainerInspection inspection = delegate.inspectContainer(myId);
+        // a container that is not running has no address; it may be started any time //
+        if(inspection != null && inspection.isRunning() && ttlNanos > 0 && invalidations.get() == before) {
+            inspections.put(myId, new CachedInspection(inspection, inspected));
+        }
+        return inspection;
+    }
+
+    @Override
+    public void invalidateInspection(ComponentInstanceId myId) {
+        invalidate(myId);
+    }
+
+    @Override
+    public String getContainerIp(ComponentInstanceId myId) throws DockerException {
+        ContainerInspection inspection = inspectContainer(myId);
+        return inspection == null ? null : inspection.getIpAddress();
+    }
+
+    @Override
+    public int getPortMapping(ComponentInstanceId myId, Integer portNumber) throws DockerException {
+        ContainerInspection inspection = inspectContainer(myId);
+        return inspection == null ? -1 : inspection.getPortMapping(portNumber);
+    }
+
+    @Override
+    public String createContainer(String image, ComponentInstanceId myId, Map<Integer, Integer> portsToSet) throws DockerException {
+        invalidate(myId);
+        try {
+            return delegate.createContainer(image, myId, portsToSet);
+        } finally {
+            invalidate(myId);
+        }
+    }
+
+    @Override
+    public DockerShell startContainer(ComponentInstanceId myId) throws DockerException {
+        invalidate(myId);
+        try {
+            return delegate.startContainer(myId);
+        } finally {
+            invalidate(myId);
+        }
+    }
+
+    @Override
+    public void stopContainer(ComponentInstanceId myId) throws DockerException {
+        invalidate(myId);
+        try {
+            delegate.stopContainer(myId);
+        } finally {
+            invalidate(myId);
+        }
+    }
+
+    private void invalidate(ComponentInstanceId myId) {
+        invalidations.incrementAndGet();
+        inspections.remove(myId);
+    }
+
+    @Override
+    public void pullImage(String target) throws DockerException {
+        delegate.pullImage(target);
+    }
+
+    @Override
+    public String createSnapshotImage(ComponentInstanceId containerId, String key) throws DockerException {
+        return delegate.createSnapshotImage(containerId, key);
+    }
+
+    @Override
+    public String findImage(String target) throws DockerException {
+        return delegate.findImage(target);
+    }
+
+    @Override
+    public DockerShell getSideShell(ComponentInstanceId myId) throws DockerException {
+        return delegate.getSideShell(myId);
+    }
+
+    @Override
+    public void copyToContainer(ComponentInstanceId myId, Path source, String target) throws DockerException {
+        delegate.copyToContainer(myId, source, target);
+    }
+
+    @Override
+    public void pushImage(String target) throws DockerException {
+        delegate.pushImage(target);
+    }
+
+    private static final class CachedInspection {
+        final ContainerInspection inspection;
+        final long inspected;
+
+        CachedInspection(ContainerInspection inspectionParam, long inspectedParam) {
+            inspection = inspectionParam;
+            inspected = inspectedParam;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** 
+ * just enough json for the docker engine api. objects are parsed to 
+ * maps, arrays to lists, numbers to doubles.
+ */
+final class Json {
+
+    private final String text;
+    private int pos;
+
+    private Json(String textParam) {
+        text = textParam;
+    }
+
+    static Object parse(String text) throws DockerException {
+        Json json = new Json(text);
+        json.skipWhitespace();
+        Object value = json.readValue();
+        json.skipWhitespace();
+        if(json.pos != text.length()) {
+            throw json.error("trailing characters");
+        }
+        return value;
+    }
+
+    /** follows the given keys through nested objects; returns null if any of them is missing */
+    static Object path(Object root, String ... keys) {
+        Object current = root;
+        for(String key : keys) {
+            if(!(current instanceof Map)) {
+                return null;
+            }
+            current = ((Map<?, ?>) current).get(key);
+        }
+        return current;
+    }
+
+    static String string(Object root, String ... keys) {
+        Object value = path(root, keys);
+        return value instanceof String ? (String) value : null;
+    }
+
+    static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch(c) {
+                case '"': builder.append("\\\""); break;
+                case '\\': builder.append("\\\\"); break;
+                case '\n': builder.append("\\n"); break;
+                case '\r': builder.append("\\r"); break;
+                case '\t': builder.append("\\t"); break;
+                default:
+                    if(c < 0x20) {
+                        builder.append(String.format("\\u%04x", Integer.valueOf(c)));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private Object readValue() throws DockerException {
+        if(pos >= text.length()) {
+            throw error("unexpected end");
+        }
+        char c = text.charAt(pos);
+        switch(c) {
+            case '{': return readObject();
+            case '[': return readArray();
+            case '"': return readString();
+            case 't': return readLiteral("true", Boolean.TRUE);
+            case 'f': return readLiteral("false", Boolean.FALSE);
+            case 'n': return readLiteral("null", null);
+            default: return readNumber();
+        }
+    }
+
+    private Map<String, Object> readObject() throws DockerException {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipWhitespace();
+        if(consume('}')) {
+            return map;
+        }
+        do {
+            skipWhitespace();
+            if(pos >= text.length() || text.charAt(pos) != '"') {
+                throw error("key expected");
+            }
+            String key = readString();
+            skipWhitespace();
+            if(!consume(':')) {
+                throw error("':' expected");
+            }
+            skipWhitespace();
+            map.put(key, readValue());
+            skipWhitespace();
+        } while(consume(','));
+        if(!consume('}')) {
+            throw error("'}' expected");
+        }
+        return map;
+    }
+
+    private List<Object> readArray() throws DockerException {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipWhitespace();
+        if(consume(']')) {
+            return list;
+        }
+        do {
+            skipWhitespace();
+            list.add(readValue());
+            skipWhitespace();
+        } while(consume(','));
+        if(!consume(']')) {
+            throw error("']' expected");
+        }
+        return list;
+    }
+
+    private String readString() throws DockerException {
+        pos++;
+        StringBuilder builder = null;
+        int start = pos;
+        while(pos < text.length()) {
+            char c = text.charAt(pos);
+            if(c == '"') {
+                String value = builder == null ? text.substring(start, pos) : builder.append(text, start, pos).toString();
+                pos++;
+                return value;
+            }
+            if(c != '\\') {
+                pos++;
+                continue;
+            }
+            if(builder == null) {
+                builder = new StringBuilder();
+            }
+            builder.append(text, start, pos);
+            if(pos + 1 >= text.length()) {
+                break;
+            }
+            char escaped = text.charAt(pos + 1);
+            pos += 2;
+            switch(escaped) {
+                case 'b': builder.append('\b'); break;
+                case 'f': builder.append('\f'); break;
+                case 'n': builder.append('\n'); break;
+                case 'r': builder.append('\r'); break;
+                case 't': builder.append('\t'); break;
+                case 'u':
+                    if(pos + 4 > text.length()) {
+                        throw error("broken unicode escape");
+                    }
+                    try {
+                        builder.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch(NumberFormatException nfe) {
+                        throw error("broken unicode escape");
+                    }
+                    pos += 4;
+                    break;
+                default: builder.append(escaped);
+            }
+            start = pos;
+        }
+        throw error("unterminated string");
+    }
+
+    private Object readLiteral(String literal, Object value) throws DockerException {
+        if(!text.startsWith(literal, pos)) {
+            throw error("unknown literal");
+        }
+        pos += literal.length();
+        return value;
+    }
+
+    private Double readNumber() throws DockerException {
+        int start = pos;
+        while(pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+            pos++;
+        }
+        try {
+            return Double.valueOf(text.substring(start, pos));
+        } catch(NumberFormatException nfe) {
+            throw error("number expected");
+        }
+    }
+
+    private boolean consume(char c) {
+        if(pos < text.length() && text.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while(pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private DockerException error(String message) {
+        return new DockerException("malformed json at " + pos + ": " + message);
+    }
+}
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -49,7 +50,7 @@ public final class ProcessBasedConnector implements DockerConnector {
         // no values to set //
     }
     
-    private static String buildContainerName(ComponentInstanceId id) {
+    static String buildContainerName(ComponentInstanceId id) {
         return "dockering__"+ id.toString();
     }
     
@@ -211,6 +212,29 @@ public final class ProcessBasedConnector implements DockerConnector {
 	      throw new DockerException(result.getError());
 	}
 
+    @Override
+    public void copyToContainer(ComponentInstanceId myId, Path source, String target) throws DockerException {
+        ExecResult result = ProcessWrapper.singleDockerCommand("cp", source.toString(), buildContainerName(myId) + ":" + target);
+        if(result.isSuccess()) {
+            return;
+        }
+        throw new DockerException("cannot copy " + source + " to container: " + result.getError());
+    }
+
+    @Override
+    public ContainerInspection inspectContainer(ComponentInstanceId myId) throws DockerException {
+        ExecResult result = ProcessWrapper.singleDockerCommand("inspect", "--format={{json .}}", buildContainerName(myId));
+        if(!result.isSuccess()) {
+            return null;
+        }
+        return ContainerInspection.fromInspection(Json.parse(result.getOutput().trim()));
+    }
+
+    @Override
+    public void invalidateInspection(ComponentInstanceId myId) {
+        // nothing is cached //
+    }
+
     @Override
     public DockerShell getSideShell(ComponentInstanceId myId) throws DockerException {
         Inprogress pw = ProcessWrapper.progressingDockerCommand("exec", "-i", buildContainerName(myId), "bash");
@@ -73,10 +73,8 @@ public final class ProcessWrapper {
         Inprogress prog = new Inprogress(pw.proc, createReader(pw.stdout), createReader(pw.stderr));
         
         try {
-            prog.doExecuteCommand(Inprogress.BELL_COMMAND);
             if(prog.processStillRunning()) {
-                String drowned = prog.readOutUntilBell();
-                drowned = drowned + "///" + prog.readErrAvailable();
+                String drowned = prog.awaitStartup();
                 LOGGER.info("created log running command: '" + drowned + "'");
             }
         } catch (IOException ioe) {
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.containers.docker.DockerShell;
+
+/** 
+ * talks to the docker engine api directly, using a few persistent 
+ * connections to its socket instead of starting a docker client process
+ * per operation. interactive sessions (shells attached to a container) 
+ * and copies are still handled by the given process-based connector. 
+ * 
+ * instances of this class are shared among DockerContainerLogics; they 
+ * are thread-safe.
+ */
+public final class SocketBasedConnector implements DockerConnector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocketBasedConnector.class);
+
+    static final String API_VERSION = "/v1.24";
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+    // the engine does not accept pushes without credentials; we rely on those configured for the engine //
+    private static final Map<String, String> EMPTY_AUTH = 
+            Collections.singletonMap("X-Registry-Auth", Base64.getEncoder().encodeToString("{}".getBytes(StandardCharsets.UTF_8)));
+
+    private final EngineEndpoint endpoint;
+    private final DockerConnector sessions;
+    private final Deque<EngineConnection> idle = new ArrayDeque<>();
+
+    SocketBasedConnector(EngineEndpoint endpointParam, DockerConnector sessionsParam) {
+        endpoint = endpointParam;
+        sessions = sessionsParam;
+    }
+
+    /** 
+     * @throws DockerException if the endpoint is malformed or if the 
+     *          engine cannot be reached at the endpoint 
+     */
+    public static SocketBasedConnector connect(String endpoint, DockerConnector sessions) throws DockerException {
+        SocketBasedConnector connector = new SocketBasedConnector(EngineEndpoint.parse(endpoint), sessions);
+        EngineResponse response = connector.call("GET", "/_ping", NO_HEADERS, null);
+        if(!response.isSuccess()) {
+            throw new DockerException("docker engine at " + endpoint + " does not respond: " + response.errorMessage());
+        }
+        return connector;
+    }
+
+    @Override
+    public DockerShell startContainer(ComponentInstanceId myId) throws DockerException {
+        return sessions.startContainer(myId);
+    }
+
+    @Override
+    public DockerShell getSideShell(ComponentInstanceId myId) throws DockerException {
+        return sessions.getSideShell(myId);
+    }
+
+    @Override
+    public void copyToContainer(ComponentInstanceId myId, Path source, String target) throws DockerException {
+        sessions.copyToContainer(myId, source, target);
+    }
+
+    @Override
+    public void pullImage(String target) throws DockerException {
+        String[] reference = splitReference(target);
+        EngineResponse response = call("POST", "/images/create?fromImage=" + encode(reference[0]) + tagParameter(reference[1]), NO_HEADERS, null);
+        checkProgress("cannot pull image " + target, response);
+    }
+
+    @Override
+    public void pushImage(String target) throws DockerException {
+        String[] reference = splitReference(target);
+        String tag = reference[1].isEmpty() ? "" : "?tag=" + encode(reference[1]);
+        EngineResponse response = call("POST", "/images/" + reference[0] + "/push" + tag, EMPTY_AUTH, null);
+        checkProgress("cannot push image " + target, response);
+    }
+
+    @Override
+    public String createSnapshotImage(ComponentInstanceId containerId, String key) throws DockerException {
+        String[] reference = splitReference(key);
+        EngineResponse response = call("POST", "/commit?container=" + encode(ProcessBasedConnector.buildContainerName(containerId)) 
+                + "&repo=" + encode(reference[0]) + tagParameter(reference[1]) 
+                + "&author=" + encode("Cloudiator LifecylceAgent") + "&comment=" + encode("automatic snapshot after initialisation"), NO_HEADERS, null);
+        if(!response.isSuccess()) {
+            throw new DockerException(response.errorMessage());
+        }
+        return Json.string(Json.parse(response.getBody()), "Id");
+    }
+
+    @Override
+    public String createContainer(String image, ComponentInstanceId myId, Map<Integer, Integer> portsToSet) throws DockerException {
+        StringBuilder exposed = new StringBuilder();
+        StringBuilder bindings = new StringBuilder();
+        for(Entry<Integer, Integer> entry : portsToSet.entrySet()) {
+            Integer i = entry.getKey();
+            Integer j = entry.getValue();
+            String hostPort = j.intValue() < 0 || j.intValue() > 65536 ? "" : j.toString();
+            if(exposed.length() > 0) {
+                exposed.append(',');
+                bindings.append(',');
+            }
+            exposed.append(Json.quote(i + "/tcp")).append(":{}");
+            bindings.append(Json.quote(i + "/tcp")).append(":[{\"HostPort\":").append(Json.quote(hostPort)).append("}]");
+        }
+        String body = "{\"Image\":" + Json.quote(image) + ",\"Cmd\":[\"bash\",\"--noediting\"]" 
+                + ",\"OpenStdin\":true,\"AttachStdin\":true,\"AttachStdout\":true,\"AttachStderr\":true"
+                + ",\"ExposedPorts\":{" + exposed + "}"
+                + ",\"HostConfig\":{\"RestartPolicy\":{\"Name\":\"no\"},\"PortBindings\":{" + bindings + "}}}";
+        EngineResponse response = call("POST", "/containers/create?name=" + encode(ProcessBasedConnector.buildContainerName(myId)), NO_HEADERS, body);
+        if(!response.isSuccess()) {
+            throw new DockerException(response.errorMessage());
+        }
+        return Json.string(Json.parse(response.getBody()), "Id");
+    }
+
+    @Override
+    public String findImage(String target) throws DockerException {
+        EngineResponse response = call("GET", "/images/" + target + "/json", NO_HEADERS, null);
+        if(!response.isSuccess()) {
+            if(response.getStatus() != 404) {
+                LOGGER.warn("cannot look up image " + target + ": " + response.errorMessage());
+            }
+            return null;
+        }
+        return Json.string(Json.parse(response.getBody()), "Id");
+    }
+
+    @Override
+    public String getContainerIp(ComponentInstanceId myId) throws DockerException {
+        ContainerInspection inspection = inspectContainer(myId);
+        return inspection == null ? null : inspection.getIpAddress();
+    }
+
+    @Override
+    public int getPortMapping(ComponentInstanceId myId, Integer portNumber) throws DockerException {
+        ContainerInspection inspection = inspectContainer(myId);
+        return inspection == null ? -1 : inspection.getPortMapping(portNumber);
+    }
+
+    @Override
+    public ContainerInspection inspectContainer(ComponentInstanceId myId) throws DockerException {
+        EngineResponse response = call("GET", "/containers/" + ProcessBasedConnector.buildContainerName(myId) + "/json", NO_HEADERS, null);
+        if(!response.isSuccess()) {
+            return null;
+        }
+        return ContainerInspection.fromInspection(Json.parse(response.getBody()));
+    }
+
+    @Override
+    public void invalidateInspection(ComponentInstanceId myId) {
+        // nothing is cached //
+    }
+
+    @Override
+    public void stopContainer(ComponentInstanceId myId) throws DockerException {
+        EngineResponse response = call("POST", "/containers/" + ProcessBasedConnector.buildContainerName(myId) + "/stop", NO_HEADERS, null);
+        // 304: container has already been stopped //
+        if(response.isSuccess() || response.getStatus() == 304) {
+            return;
+        }
+        throw new DockerException("cannot terminate container: " + response.errorMessage());
+    }
+
+    EngineResponse call(String method, String path, Map<String, String> headers, String body) throws DockerException {
+        String target = API_VERSION + path;
+        EngineConnection connection = null;
+        try {
+            connection = borrow(EngineConnection.isIdempotent(method));
+            EngineResponse response = connection.exchange(method, target, headers, body);
+            if(response == null) {
+                // an idle connection has been closed by the engine //
+                connection.close();
+                connection = new EngineConnection(endpoint.open());
+                response = connection.exchange(method, target, headers, body);
+            }
+            release(connection);
+            return response;
+        } catch(IOException ioe) {
+            closeQuietly(connection);
+            throw new DockerException("cannot talk to docker engine at " + endpoint, ioe);
+        }
+    }
+
+    /** 
+     * @param idempotent false if the request must not be repeated; then idle 
+     *          connections the engine has already closed are skipped
+     */
+    private EngineConnection borrow(boolean idempotent) throws IOException {
+        while(true) {
+            EngineConnection connection;
+            synchronized(idle) {
+                connection = idle.pollFirst();
+            }
+            if(connection == null) {
+                return new EngineConnection(endpoint.open());
+            }
+            if(idempotent || !connection.isStale()) {
+                return connection;
+            }
+            closeQuietly(connection);
+        }
+    }
+
+    private void release(EngineConnection connection) {
+        if(connection.isReusable()) {
+            synchronized(idle) {
+                if(idle.size() < MAX_IDLE_CONNECTIONS) {
+                    idle.addFirst(connection);
+                    return;
+                }
+            }
+        }
+        closeQuietly(connection);
+    }
+
+    private static void closeQuietly(EngineConnection connection) {
+        if(connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch(IOException ioe) {
+            LOGGER.debug("could not close connection to docker engine", ioe);
+        }
+    }
+
+    /** pulls and pushes report errors within their progress stream */
+    private static void checkProgress(String message, EngineResponse response) throws DockerException {
+        if(!response.isSuccess()) {
+            throw new DockerException(message + ": " + response.errorMessage());
+        }
+        for(String line : response.getBody().split("\n")) {
+            if(!line.contains("\"error\"")) {
+                continue;
+            }
+            String error = Json.string(Json.parse(line.trim()), "error");
+            if(error != null) {
+                throw new DockerException(message + ": " + error);
+            }
+        }
+    }
+
+    /** @return repository and tag of the given image reference; the tag is empty for digests */
+    static String[] splitReference(String reference) {
+        if(reference.indexOf('@') >= 0) {
+            return new String[] {reference, ""};
+        }
+        int slash = reference.lastIndexOf('/');
+        int colon = reference.lastIndexOf(':');
+        if(colon > slash) {
+            return new String[] {reference.substring(0, colon), reference.substring(colon + 1)};
+        }
+        return new String[] {reference, "latest"};
+    }
+
+    private static String tagParameter(String tag) {
+        return tag.isEmpty() ? "" : "&tag=" + encode(tag);
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch(UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+}
@@ -44,6 +44,7 @@ import de.uniulm.omi.cloudiator.lance.lifecycle.LifecycleStore;
 import de.uniulm.omi.cloudiator.lance.lifecycle.detector.DetectorType;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import org.slf4j.Logger;
@@ -273,12 +274,12 @@ public class PlainContainerLogic implements ContainerLogic, LifecycleActionInter
   }
 
   @Override
-  public void postprocessPortUpdate(PortDiff<DownstreamAddress> diff) {
+  public void postprocessPortUpdate(List<PortDiff<DownstreamAddress>> diffs) {
     plainShellFactory.closeShell();
   }
 
   @Override
-  public void preprocessPortUpdate(PortDiff<DownstreamAddress> diff)
+  public void preprocessPortUpdate(List<PortDiff<DownstreamAddress>> diffs)
       throws ContainerException {
 
     //TODO: again duplicated code, needs refactoring
@@ -289,13 +290,13 @@ public class PlainContainerLogic implements ContainerLogic, LifecycleActionInter
 
       PowershellExportBasedVisitor visitor =
           new PowershellExportBasedVisitor(plainShellWrapper.plainShell);
-      networkHandler.accept(visitor, diff);
+      networkHandler.accept(visitor, diffs);
       this.deployableComponent.accept(this.deploymentContext, visitor);
     } else if (this.os.getFamily().equals(OperatingSystemFamily.LINUX)) {
       BashExportBasedVisitor visitor =
           new BashExportBasedVisitor(plainShellWrapper.plainShell);
 
-      networkHandler.accept(visitor, diff);
+      networkHandler.accept(visitor, diffs);
       this.deployableComponent.accept(this.deploymentContext, visitor);
     } else {
       throw new RuntimeException("Unsupported Operating System: " + this.os.toString());
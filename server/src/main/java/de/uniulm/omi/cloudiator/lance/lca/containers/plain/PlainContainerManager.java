@@ -80,6 +80,7 @@ public class PlainContainerManager implements ContainerManager {
 
         try {
             accessor.init(componentInstanceId);
+            accessor.startLeaseHeartbeat();
         } catch (RegistrationException re) {
             throw new ContainerException("cannot start container, because registry not available",
                 re);
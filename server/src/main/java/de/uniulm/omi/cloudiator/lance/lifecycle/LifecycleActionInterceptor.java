@@ -18,6 +18,8 @@
 
 package de.uniulm.omi.cloudiator.lance.lifecycle;
 
+import java.util.List;
+
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
 import de.uniulm.omi.cloudiator.lance.lca.container.ContainerException;
 import de.uniulm.omi.cloudiator.lance.lca.container.port.DownstreamAddress;
@@ -32,9 +34,10 @@ public interface LifecycleActionInterceptor {
 
 	ComponentInstanceId getComponentInstanceId();
 
-	void postprocessPortUpdate(PortDiff<DownstreamAddress> diff) throws ContainerException;
+	void postprocessPortUpdate(List<PortDiff<DownstreamAddress>> diffs) throws ContainerException;
 
-	void preprocessPortUpdate(PortDiff<DownstreamAddress> diff) throws ContainerException;
+	/** prepares a single update of all ports in diffs */
+	void preprocessPortUpdate(List<PortDiff<DownstreamAddress>> diffs) throws ContainerException;
 
 	void postprocessDetector(DetectorType type) throws ContainerException;
 
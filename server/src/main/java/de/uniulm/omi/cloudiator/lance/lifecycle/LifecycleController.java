@@ -18,6 +18,8 @@
 
 package de.uniulm.omi.cloudiator.lance.lifecycle;
 
+import java.util.List;
+
 import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
 import de.uniulm.omi.cloudiator.lance.lifecycle.detector.DetectorState;
 import de.uniulm.omi.cloudiator.lance.lca.GlobalRegistryAccessor;
@@ -171,13 +173,21 @@ public final class LifecycleController {
 		run(LifecycleHandlerType.POST_START, LifecycleHandlerType.UNEXPECTED_EXECUTION_STOP);
     }
 
-    public synchronized void blockingUpdatePorts(OutPort port, PortUpdateHandler handler, PortDiff<DownstreamAddress> diff) throws ContainerException {
+    /**
+     * runs the update handlers of all changed ports within a 
+     * single preparation of the container's environment.
+     */
+    public synchronized void blockingUpdatePorts(List<PortDiff<DownstreamAddress>> diffs) throws ContainerException {
         boolean preprocessed = false;
         try {
-            interceptor.preprocessPortUpdate(diff);
+            interceptor.preprocessPortUpdate(diffs);
             preprocessed = true;
-            getLogger().info("updating ports via port handler.");
-            handler.execute(ec);
+            for(PortDiff<DownstreamAddress> diff : diffs) {
+                OutPort port = diff.getPort();
+                getLogger().info("updating ports via port handler: " + port.getName());
+                PortUpdateHandler handler = port.getUpdateHandler();
+                handler.execute(ec);
+            }
         } catch (ContainerException ce) {
         	getLogger()
                 .warn("Exception when executing state transition. this is not thoroughly handled.",
@@ -187,7 +197,7 @@ public final class LifecycleController {
             // updateStateInRegistry(LifecycleHandlerType.START);
         } finally {
             if (preprocessed) {
-                interceptor.postprocessPortUpdate(diff);
+                interceptor.postprocessPortUpdate(diffs);
                 updateStateInRegistry(LifecycleHandlerType.START);
             }
         }
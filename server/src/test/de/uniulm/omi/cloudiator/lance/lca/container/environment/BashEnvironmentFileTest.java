@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.environment;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.lifecycle.ExecutionResult;
+
+public class BashEnvironmentFileTest {
+
+    private static final String PATH = "/tmp/.lance-environment";
+
+    private final RecordingShell shell = new RecordingShell();
+    private final BashEnvironmentFile file = new BashEnvironmentFile(PATH);
+
+    @Test
+    public void testFirstExportWritesAllVariables() {
+        assertTrue(file.export(shell, env("A", "1", "B", "2"), true).isSuccess());
+        assertEquals(1, shell.commands.size());
+        String script = shell.commands.get(0);
+        assertTrue(script.startsWith("mkdir -p /tmp && cat > " + PATH));
+        assertTrue(script.contains("\nexport A=1\nexport B=2\n"));
+        assertTrue(script.endsWith(". " + PATH));
+    }
+
+    @Test
+    public void testUnchangedEnvironmentIsOnlySourced() {
+        file.export(shell, env("A", "1", "B", "2"), true);
+        file.export(shell, env("A", "1", "B", "2"), true);
+        file.export(shell, env("B", "2"), false);
+        assertEquals(". " + PATH, shell.commands.get(1));
+        assertEquals(". " + PATH, shell.commands.get(2));
+    }
+
+    @Test
+    public void testOnlyDeltaIsAppended() {
+        file.export(shell, env("A", "1", "B", "2", "C", "3"), true);
+        file.export(shell, env("A", "1", "B", "4"), true);
+        String script = shell.commands.get(1);
+        assertTrue(script.startsWith("[ -f " + PATH + " ] && cat >> " + PATH));
+        assertTrue(script.contains("\nunset C\nexport B=4\n"));
+        assertFalse(script.contains("export A="));
+    }
+
+    @Test
+    public void testPartialExportRetainsVariables() {
+        file.export(shell, env("A", "1", "B", "2"), true);
+        file.export(shell, env("A", "3"), false);
+        assertFalse(shell.commands.get(1).contains("unset"));
+        file.export(shell, env("A", "3", "B", "2"), true);
+        assertEquals(". " + PATH, shell.commands.get(2));
+    }
+
+    @Test
+    public void testFileIsRewrittenIfAppendFails() {
+        file.export(shell, env("A", "1", "B", "2"), true);
+        shell.failures = 1;
+        assertTrue(file.export(shell, env("A", "1", "B", "3"), true).isSuccess());
+        assertEquals(3, shell.commands.size());
+        assertTrue(shell.commands.get(2).contains("cat > " + PATH));
+        assertTrue(shell.commands.get(2).contains("\nexport A=1\nexport B=3\n"));
+    }
+
+    @Test
+    public void testGrownFileIsCompacted() {
+        for(int i = 0; i < 40; i++) {
+            file.export(shell, env("A", Integer.toString(i)), true);
+        }
+        int rewrites = 0;
+        for(String command : shell.commands) {
+            if(command.contains("cat > ")) {
+                rewrites++;
+            }
+        }
+        assertEquals(2, rewrites);
+    }
+
+    @Test
+    public void testRemovedFileIsWrittenAnew() {
+        file.export(shell, env("A", "1"), true);
+        assertTrue(file.remove(shell).isSuccess());
+        assertEquals("rm -f " + PATH + " " + PATH + ".*", shell.commands.get(1));
+        file.export(shell, env("A", "1"), true);
+        assertTrue(shell.commands.get(2).contains("cat > " + PATH));
+    }
+
+    @Test
+    public void testWriterReplacesFileAtomically() {
+        Map<String, CharSequence> written = new HashMap<>();
+        BashEnvironmentFile copied = new BashEnvironmentFile(PATH, (path, content) -> {
+            written.put(path, content.toString());
+            return ExecutionResult.success("", "");
+        });
+        copied.export(shell, env("A", "1", "B", "2"), true);
+        copied.export(shell, env("A", "1", "B", "2"), true);
+        copied.export(shell, env("A", "1"), true);
+        assertEquals("export A=1\nexport B=2\n", written.get(PATH + ".1"));
+        assertEquals("export A=1\n", written.get(PATH + ".2"));
+        assertEquals("mv -f " + PATH + ".1 " + PATH + " && . " + PATH, shell.commands.get(0));
+        assertEquals(". " + PATH, shell.commands.get(1));
+        assertEquals("mv -f " + PATH + ".2 " + PATH + " && . " + PATH, shell.commands.get(2));
+    }
+
+    private static Map<String, String> env(String... keyValues) {
+        Map<String, String> map = new HashMap<>();
+        for(int i = 0; i < keyValues.length; i += 2) {
+            map.put(keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+
+    private static final class RecordingShell implements ShellLikeInterface {
+
+        final List<String> commands = new ArrayList<>();
+        int failures;
+
+        @Override
+        public ExecutionResult executeCommand(String command) {
+            commands.add(command);
+            if(failures > 0) {
+                failures--;
+                return ExecutionResult.commandFailure(1, "", "no such file");
+            }
+            return ExecutionResult.success("", "");
+        }
+
+        @Override
+        public void setEnvironmentVariable(String key, String value) {
+            fail("variables must not be exported one by one");
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.DeploymentContext;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponent;
+import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponentBuilder;
+import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
+import de.uniulm.omi.cloudiator.lance.application.component.PortProperties;
+import de.uniulm.omi.cloudiator.lance.application.component.PortReference;
+import de.uniulm.omi.cloudiator.lance.lca.EnvContextWrapper;
+import de.uniulm.omi.cloudiator.lance.lca.GlobalRegistryAccessor;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistryConstants;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ContainerStatus;
+import de.uniulm.omi.cloudiator.lance.lca.registry.CachingLcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.registry.dummy.DummyRegistry;
+import de.uniulm.omi.cloudiator.lance.lifecycle.ExecutionContext;
+import de.uniulm.omi.cloudiator.lance.lifecycle.detector.PortUpdateHandler;
+
+/**
+ * measures time and heap allocation of a full downstream polling cycle
+ * ({@link OutPortHandler#getUpdatedDownstreamPorts}) against a cached
+ * in-memory registry, so that the registry itself does not allocate.
+ *
+ * run with: java DownstreamPollingBenchmark [downstream instances] [iterations]
+ */
+public final class DownstreamPollingBenchmark {
+
+    private static final String OUT_PORT = "DB_OUT";
+    private static final String SINK_PORT = "DB_IN";
+    private static final int KEY_LOOKUPS = 1000000;
+
+    private DownstreamPollingBenchmark() {
+        // no instances //
+    }
+
+    public static void main(String[] args) throws Exception {
+        int instances = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+        ApplicationInstanceId appInstId = new ApplicationInstanceId();
+        ComponentId sinkId = new ComponentId();
+        LcaRegistry registry = new CachingLcaRegistry(new DummyRegistry());
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "benchmark");
+        registry.addComponent(appInstId, sinkId, "sink");
+        for(int i = 0; i < instances; i++) {
+            addSinkInstance(registry, appInstId, sinkId, i);
+        }
+
+        DeployableComponentBuilder builder = DeployableComponentBuilder.createBuilder("source", new ComponentId());
+        builder.addOutport(OUT_PORT, new NoopHandler(), PortProperties.INFINITE_CARDINALITY);
+        DeployableComponent comp = builder.build();
+        DeploymentContext ctx = new DeploymentContext(new ApplicationId(), appInstId, registry);
+        ctx.setProperty(OUT_PORT, new PortReference(sinkId, SINK_PORT, PortProperties.PortLinkage.ALL), OutPort.class);
+        GlobalRegistryAccessor accessor = new GlobalRegistryAccessor(ctx, comp, new ComponentInstanceId());
+        PortRegistryTranslator translator = new PortRegistryTranslator(accessor, EnvContextWrapper.create());
+        PortHierarchy hierarchy = PortRegistryTranslator.PORT_HIERARCHY;
+
+        OutPortHandler handler = new OutPortHandler(comp);
+        handler.initPortStates(translator, hierarchy);
+
+        // warm up //
+        for(int i = 0; i < iterations; i++) {
+            handler.getUpdatedDownstreamPorts(translator, hierarchy);
+        }
+
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i++) {
+            if(!handler.getUpdatedDownstreamPorts(translator, hierarchy).isEmpty())
+                throw new IllegalStateException("no diff expected");
+        }
+        long nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        System.out.println("downstream instances: " + instances);
+        System.out.println("polling cycle: " + (nanos / iterations) + " ns, " + (bytes / iterations) + " bytes allocated");
+
+        bytes = allocatedBytes();
+        start = System.nanoTime();
+        int length = 0;
+        for(int i = 0; i < KEY_LOOKUPS; i++) {
+            for(PortHierarchyLevel level : hierarchy.levels()) {
+                length += PortRegistryTranslator.buildFullPortName(SINK_PORT, level).length();
+                length += PortRegistryTranslator.buildFullHostName(level).length();
+            }
+        }
+        nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        int lookups = KEY_LOOKUPS * hierarchy.levels().size() * 2;
+        System.out.println("key lookup: " + ((double) nanos / lookups) + " ns, "
+                + ((double) bytes / lookups) + " bytes allocated (" + length + ")");
+    }
+
+    private static void addSinkInstance(LcaRegistry registry, ApplicationInstanceId appInstId, ComponentId sinkId, int i) throws Exception {
+        ComponentInstanceId id = new ComponentInstanceId();
+        registry.addComponentInstance(appInstId, sinkId, id);
+        Map<String, String> properties = new HashMap<>();
+        properties.put(LcaRegistryConstants.CONTAINER_STATUS, ContainerStatus.READY.toString());
+        int port = 1024 + i;
+        String ip = "10.0." + (i / 250) + "." + (1 + i % 250);
+        for(PortHierarchyLevel level : PortRegistryTranslator.PORT_HIERARCHY.levels()) {
+            properties.put(PortRegistryTranslator.buildFullHostName(level), ip);
+            properties.put(PortRegistryTranslator.buildFullPortName(SINK_PORT, level), Integer.toString(port));
+        }
+        registry.addComponentProperties(appInstId, sinkId, id, properties);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static final class NoopHandler implements PortUpdateHandler {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void execute(ExecutionContext ec) {
+            // nothing to do //
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.DeploymentContext;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponent;
+import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponentBuilder;
+import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
+import de.uniulm.omi.cloudiator.lance.application.component.PortProperties;
+import de.uniulm.omi.cloudiator.lance.application.component.PortReference;
+import de.uniulm.omi.cloudiator.lance.lca.EnvContextWrapper;
+import de.uniulm.omi.cloudiator.lance.lca.GlobalRegistryAccessor;
+import de.uniulm.omi.cloudiator.lance.lca.HostContext;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistryConstants;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ContainerStatus;
+import de.uniulm.omi.cloudiator.lance.lca.registry.CachingLcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.registry.dummy.DummyRegistry;
+import de.uniulm.omi.cloudiator.lance.lifecycle.ExecutionContext;
+import de.uniulm.omi.cloudiator.lance.lifecycle.detector.PortUpdateHandler;
+
+public class DownstreamPortUpdaterTest {
+
+    private static final String OUT_PORT = "DB_OUT";
+    private static final String SINK_PORT = "DB_IN";
+    private static final long QUIET_WINDOW = 200;
+
+    private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+    private final ComponentId sinkId = new ComponentId();
+    private final PortHierarchy hierarchy = PortRegistryTranslator.PORT_HIERARCHY;
+    private final PortUpdateMetrics metrics = new PortUpdateMetrics();
+    private HostContext hostContext;
+    private DownstreamPortUpdater updater;
+
+    @Before
+    public void setUp() throws Exception {
+        LcaRegistry registry = new CachingLcaRegistry(new DummyRegistry());
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        registry.addComponent(appInstId, sinkId, "sink");
+        ComponentInstanceId sink = new ComponentInstanceId();
+        registry.addComponentInstance(appInstId, sinkId, sink);
+        Map<String, String> properties = new HashMap<>();
+        properties.put(LcaRegistryConstants.CONTAINER_STATUS, ContainerStatus.READY.toString());
+        for(PortHierarchyLevel level : hierarchy.levels()) {
+            properties.put(PortRegistryTranslator.buildFullHostName(level), "10.0.0.1");
+            properties.put(PortRegistryTranslator.buildFullPortName(SINK_PORT, level), "3306");
+        }
+        registry.addComponentProperties(appInstId, sinkId, sink, properties);
+
+        DeployableComponentBuilder builder = DeployableComponentBuilder.createBuilder("source", new ComponentId());
+        builder.addOutport(OUT_PORT, new NoopHandler(), PortProperties.INFINITE_CARDINALITY);
+        DeployableComponent comp = builder.build();
+        DeploymentContext ctx = new DeploymentContext(new ApplicationId(), appInstId, registry);
+        ctx.setProperty(OUT_PORT, new PortReference(sinkId, SINK_PORT, PortProperties.PortLinkage.ALL), OutPort.class);
+        hostContext = EnvContextWrapper.create();
+        PortRegistryTranslator translator = new PortRegistryTranslator(new GlobalRegistryAccessor(ctx, comp, new ComponentInstanceId()), hostContext);
+        OutPortHandler outPorts = new OutPortHandler(comp);
+        outPorts.initPortStates(translator, hierarchy);
+
+        System.setProperty(DownstreamPortUpdater.QUIET_WINDOW_PROPERTY, Long.toString(QUIET_WINDOW));
+        try {
+            // the registry does not change; hence, no update handler is run //
+            updater = new DownstreamPortUpdater(outPorts, translator, hierarchy, null, hostContext, new ComponentInstanceId(), metrics);
+        } finally {
+            System.clearProperty(DownstreamPortUpdater.QUIET_WINDOW_PROPERTY);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hostContext.close();
+    }
+
+    @Test
+    public void testNotificationsWithinQuietWindowAreCoalesced() throws Exception {
+        for(int i = 0; i < 50; i++) {
+            updater.componentChanged(appInstId, sinkId);
+        }
+        assertEquals(50, metrics.getNotifications());
+        assertEquals(49, metrics.getCoalescedUpdates());
+
+        // once the quiet window has passed, changes lead to a new update //
+        Thread.sleep(3 * QUIET_WINDOW);
+        updater.componentChanged(appInstId, sinkId);
+        assertEquals(49, metrics.getCoalescedUpdates());
+    }
+
+    @Test
+    public void testNotificationsExtendQuietWindow() throws Exception {
+        updater.componentChanged(appInstId, sinkId);
+        for(int i = 0; i < 4; i++) {
+            Thread.sleep(QUIET_WINDOW / 4);
+            updater.componentChanged(appInstId, sinkId);
+        }
+        // the update has been postponed since the last notification //
+        assertEquals(4, metrics.getCoalescedUpdates());
+    }
+
+    private static final class NoopHandler implements PortUpdateHandler {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void execute(ExecutionContext ec) {
+            // nothing to do //
+        }
+    }
+}
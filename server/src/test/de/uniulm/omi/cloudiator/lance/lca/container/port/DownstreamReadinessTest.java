@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.DeploymentContext;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponent;
+import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponentBuilder;
+import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
+import de.uniulm.omi.cloudiator.lance.application.component.PortProperties;
+import de.uniulm.omi.cloudiator.lance.application.component.PortReference;
+import de.uniulm.omi.cloudiator.lance.lca.EnvContextWrapper;
+import de.uniulm.omi.cloudiator.lance.lca.GlobalRegistryAccessor;
+import de.uniulm.omi.cloudiator.lance.lca.HostContext;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistryConstants;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ContainerException;
+import de.uniulm.omi.cloudiator.lance.lca.container.ContainerStatus;
+import de.uniulm.omi.cloudiator.lance.lca.registry.CachingLcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.registry.dummy.DummyRegistry;
+import de.uniulm.omi.cloudiator.lance.lifecycle.ExecutionContext;
+import de.uniulm.omi.cloudiator.lance.lifecycle.detector.PortUpdateHandler;
+
+public class DownstreamReadinessTest {
+
+    private static final String OUT_PORT = "DB_OUT";
+    private static final String SINK_PORT = "DB_IN";
+
+    private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+    private final ComponentId sinkId = new ComponentId();
+    private final PortHierarchy hierarchy = PortRegistryTranslator.PORT_HIERARCHY;
+    private LcaRegistry registry;
+    private HostContext hostContext;
+    private PortRegistryTranslator translator;
+    private OutPortHandler outPorts;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new CachingLcaRegistry(new DummyRegistry());
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        registry.addComponent(appInstId, sinkId, "sink");
+
+        DeployableComponentBuilder builder = DeployableComponentBuilder.createBuilder("source", new ComponentId());
+        // at least one sink is required //
+        builder.addOutport(OUT_PORT, new NoopHandler(), PortProperties.INFINITE_CARDINALITY, 1);
+        DeployableComponent comp = builder.build();
+        DeploymentContext ctx = new DeploymentContext(new ApplicationId(), appInstId, registry);
+        ctx.setProperty(OUT_PORT, new PortReference(sinkId, SINK_PORT, PortProperties.PortLinkage.ALL), OutPort.class);
+        hostContext = EnvContextWrapper.create();
+        translator = new PortRegistryTranslator(new GlobalRegistryAccessor(ctx, comp, new ComponentInstanceId()), hostContext);
+        outPorts = new OutPortHandler(comp);
+        outPorts.initPortStates(translator, hierarchy);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(DownstreamReadiness.TIMEOUT_PROPERTY);
+        hostContext.close();
+    }
+
+    @Test
+    public void testAvailableSinksPassBarrierRightAway() throws Exception {
+        addSink();
+        DownstreamReadiness readiness = new DownstreamReadiness(outPorts, translator, hierarchy, hostContext);
+        assertTrue(readiness.start().isDone());
+        assertEquals(1, readiness.getChecks());
+    }
+
+    @Test
+    public void testChangeNotificationPassesBarrier() throws Exception {
+        System.setProperty(DownstreamReadiness.TIMEOUT_PROPERTY, "10000");
+        DownstreamReadiness readiness = new DownstreamReadiness(outPorts, translator, hierarchy, hostContext);
+        CompletableFuture<Void> ready = readiness.start();
+        assertFalse(ready.isDone());
+
+        addSink();
+        long start = System.nanoTime();
+        readiness.componentChanged(appInstId, sinkId);
+        ready.get(2, TimeUnit.SECONDS);
+        // no need to wait for the next backoff period //
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertTrue(outPorts.requiredDownstreamPortsSet());
+    }
+
+    @Test
+    public void testBarrierFailsAfterDeadline() throws Exception {
+        System.setProperty(DownstreamReadiness.TIMEOUT_PROPERTY, "300");
+        DownstreamReadiness readiness = new DownstreamReadiness(outPorts, translator, hierarchy, hostContext);
+        CompletableFuture<Void> ready = readiness.start();
+        try {
+            ready.get(5, TimeUnit.SECONDS);
+            fail("barrier has been passed without sinks");
+        } catch(ExecutionException ee) {
+            assertTrue(ee.getCause() instanceof ContainerException);
+        }
+        // the registry has been polled with a backoff in the meantime //
+        int checks = readiness.getChecks();
+        assertTrue(checks > 1 && checks < 10);
+    }
+
+    private void addSink() throws Exception {
+        ComponentInstanceId sink = new ComponentInstanceId();
+        registry.addComponentInstance(appInstId, sinkId, sink);
+        Map<String, String> properties = new HashMap<>();
+        properties.put(LcaRegistryConstants.CONTAINER_STATUS, ContainerStatus.READY.toString());
+        for(PortHierarchyLevel level : hierarchy.levels()) {
+            properties.put(PortRegistryTranslator.buildFullHostName(level), "10.0.0.1");
+            properties.put(PortRegistryTranslator.buildFullPortName(SINK_PORT, level), "3306");
+        }
+        registry.addComponentProperties(appInstId, sinkId, sink, properties);
+    }
+
+    private static final class NoopHandler implements PortUpdateHandler {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void execute(ExecutionContext ec) {
+            // nothing to do //
+        }
+    }
+}
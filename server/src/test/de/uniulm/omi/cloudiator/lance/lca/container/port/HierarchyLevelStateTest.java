@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HierarchyLevelStateTest {
+
+    private final PortHierarchy hierarchy = PortRegistryTranslator.PORT_HIERARCHY;
+
+    @Test
+    public void testLevelsHaveDenseOrdinals() {
+        for(int i = 0; i < hierarchy.size(); i++) {
+            assertEquals(i, hierarchy.ordinalOf(hierarchy.levelAt(i)));
+        }
+        assertEquals(1, hierarchy.ordinalOf(PortHierarchyLevel.create(PortRegistryTranslator.PORT_HIERARCHY_1.getName())));
+        assertEquals(-1, hierarchy.ordinalOf(PortHierarchyLevel.create("UNKNOWN")));
+    }
+
+    @Test
+    public void testStatesWithEqualValuesAreEqual() {
+        HierarchyLevelState<DownstreamAddress> first = fill("first", "10.0.0.1", 80);
+        HierarchyLevelState<DownstreamAddress> second = fill("second", "10.0.0.1", 80);
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertFalse(first.equals(fill("third", "10.0.0.1", 81)));
+        assertFalse(first.equals(new HierarchyLevelState<DownstreamAddress>("empty", hierarchy)));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testUnsetLevelIsNotKnown() {
+        new HierarchyLevelState<String>("empty", hierarchy).valueAtLevel(PortRegistryTranslator.PORT_HIERARCHY_0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForeignLevelIsRejected() {
+        new HierarchyLevelState<String>("foreign", hierarchy).registerValueAtLevel(PortHierarchyLevel.create("UNKNOWN"), "value");
+    }
+
+    @Test
+    public void testPortStateKeepsUnsetPorts() {
+        HierarchyLevelPortState state = new HierarchyLevelPortState("port", hierarchy);
+        for(PortHierarchyLevel level : state) {
+            state.registerValueAtLevel(level, PortRegistryTranslator.UNSET_PORT.intValue());
+        }
+        state.registerValueAtLevel(PortRegistryTranslator.PORT_HIERARCHY_0, 8080);
+        assertEquals(8080, state.valueAtLevel(PortRegistryTranslator.PORT_HIERARCHY_0));
+        assertEquals(-1, state.valueAtLevel(PortRegistryTranslator.PORT_HIERARCHY_2));
+    }
+
+    private HierarchyLevelState<DownstreamAddress> fill(String name, String ip, int port) {
+        HierarchyLevelState<DownstreamAddress> state = new HierarchyLevelState<>(name, hierarchy);
+        for(PortHierarchyLevel level : state) {
+            state.registerValueAtLevel(level, new DownstreamAddress(ip, port));
+        }
+        return state;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.DeploymentContext;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponent;
+import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponentBuilder;
+import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
+import de.uniulm.omi.cloudiator.lance.application.component.PortProperties;
+import de.uniulm.omi.cloudiator.lance.application.component.PortReference;
+import de.uniulm.omi.cloudiator.lance.lca.EnvContextWrapper;
+import de.uniulm.omi.cloudiator.lance.lca.GlobalRegistryAccessor;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistryConstants;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ContainerStatus;
+import de.uniulm.omi.cloudiator.lance.lca.registry.CachingLcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.registry.dummy.DummyRegistry;
+import de.uniulm.omi.cloudiator.lance.lifecycle.ExecutionContext;
+import de.uniulm.omi.cloudiator.lance.lifecycle.detector.PortUpdateHandler;
+
+public class OutPortStateTest {
+
+    private static final String OUT_PORT = "DB_OUT";
+    private static final String SINK_PORT = "DB_IN";
+
+    private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+    private final ComponentId sinkId = new ComponentId();
+    private final ComponentInstanceId first = new ComponentInstanceId();
+    private final ComponentInstanceId second = new ComponentInstanceId();
+    private final PortHierarchy hierarchy = PortRegistryTranslator.PORT_HIERARCHY;
+    private LcaRegistry registry;
+    private PortRegistryTranslator translator;
+    private OutPortState state;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new CachingLcaRegistry(new DummyRegistry());
+        registry.addApplicationInstance(appInstId, new ApplicationId(), "app");
+        registry.addComponent(appInstId, sinkId, "sink");
+        addSink(first, "10.0.0.1", 3306);
+
+        DeployableComponentBuilder builder = DeployableComponentBuilder.createBuilder("source", new ComponentId());
+        builder.addOutport(OUT_PORT, new NoopHandler(), PortProperties.INFINITE_CARDINALITY);
+        DeployableComponent comp = builder.build();
+        DeploymentContext ctx = new DeploymentContext(new ApplicationId(), appInstId, registry);
+        ctx.setProperty(OUT_PORT, new PortReference(sinkId, SINK_PORT, PortProperties.PortLinkage.ALL), OutPort.class);
+        GlobalRegistryAccessor accessor = new GlobalRegistryAccessor(ctx, comp, new ComponentInstanceId());
+        translator = new PortRegistryTranslator(accessor, EnvContextWrapper.create());
+        OutPort port = comp.getDownstreamPorts().get(0);
+        state = new OutPortState(port, translator.findDownstreamInstances(port, hierarchy), null, accessor.getLocalComponentInstanceId());
+    }
+
+    @Test
+    public void testUnchangedRegistryHasNoDiff() throws Exception {
+        assertFalse(state.pollDiffSet(translator, hierarchy).hasDiffs());
+        assertFalse(state.pollDiffSet(translator, hierarchy).hasDiffs());
+    }
+
+    @Test
+    public void testOnlyChangedSinksAreReported() throws Exception {
+        addSink(second, "10.0.0.2", 3306);
+        PortDiff<DownstreamAddress> diff = state.pollDiffSet(translator, hierarchy);
+        assertEquals(bothSinks(), diff.getCurrentSinkSet().keySet());
+        assertEquals(1, diff.changedSinks().size());
+        assertTrue(diff.changedSinks().contains(second));
+        state.enactDiffSet(diff);
+        assertFalse(state.pollDiffSet(translator, hierarchy).hasDiffs());
+
+        registry.addComponentProperty(appInstId, sinkId, first,
+                PortRegistryTranslator.buildFullPortName(SINK_PORT, PortRegistryTranslator.PORT_HIERARCHY_0), "3307");
+        diff = state.pollDiffSet(translator, hierarchy);
+        assertEquals(1, diff.changedSinks().size());
+        assertTrue(diff.changedSinks().contains(first));
+        assertEquals("10.0.0.1:3307", diff.getCurrentSinkSet().get(first).valueAtLevel(PortRegistryTranslator.PORT_HIERARCHY_0).toString());
+        assertEquals("10.0.0.1:3306", diff.getOldSinkSet().get(first).valueAtLevel(PortRegistryTranslator.PORT_HIERARCHY_0).toString());
+    }
+
+    @Test
+    public void testSinkThatIsNoLongerReadyIsRemoved() throws Exception {
+        registry.addComponentProperty(appInstId, sinkId, first, LcaRegistryConstants.CONTAINER_STATUS, ContainerStatus.SHUTTING_DOWN.toString());
+        PortDiff<DownstreamAddress> diff = state.pollDiffSet(translator, hierarchy);
+        assertTrue(diff.hasDiffs());
+        assertTrue(diff.getCurrentSinkSet().isEmpty());
+        state.enactDiffSet(diff);
+        assertTrue(state.sinksByHierarchyLevel().isEmpty());
+    }
+
+    @Test
+    public void testDiffIsReportedUntilEnacted() throws Exception {
+        addSink(second, "10.0.0.2", 3306);
+        assertTrue(state.pollDiffSet(translator, hierarchy).hasDiffs());
+        // e.g. the update handler has failed; the diff has not been enacted //
+        PortDiff<DownstreamAddress> diff = state.pollDiffSet(translator, hierarchy);
+        assertTrue(diff.changedSinks().contains(second));
+        state.enactDiffSet(diff);
+        assertFalse(state.pollDiffSet(translator, hierarchy).hasDiffs());
+    }
+
+    private Set<ComponentInstanceId> bothSinks() {
+        Set<ComponentInstanceId> ids = new HashSet<>();
+        ids.add(first);
+        ids.add(second);
+        return ids;
+    }
+
+    private void addSink(ComponentInstanceId id, String ip, int port) throws Exception {
+        registry.addComponentInstance(appInstId, sinkId, id);
+        Map<String, String> properties = new HashMap<>();
+        properties.put(LcaRegistryConstants.CONTAINER_STATUS, ContainerStatus.READY.toString());
+        for(PortHierarchyLevel level : hierarchy.levels()) {
+            properties.put(PortRegistryTranslator.buildFullHostName(level), ip);
+            properties.put(PortRegistryTranslator.buildFullPortName(SINK_PORT, level), Integer.toString(port));
+        }
+        registry.addComponentProperties(appInstId, sinkId, id, properties);
+    }
+
+    private static final class NoopHandler implements PortUpdateHandler {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void execute(ExecutionContext ec) {
+            // nothing to do //
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.uniulm.omi.cloudiator.lance.application.ApplicationId;
+import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
+import de.uniulm.omi.cloudiator.lance.application.DeploymentContext;
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponent;
+import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponentBuilder;
+import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
+import de.uniulm.omi.cloudiator.lance.application.component.PortProperties;
+import de.uniulm.omi.cloudiator.lance.application.component.PortReference;
+import de.uniulm.omi.cloudiator.lance.lca.EnvContextWrapper;
+import de.uniulm.omi.cloudiator.lance.lca.GlobalRegistryAccessor;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.LcaRegistryConstants;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.container.ContainerStatus;
+import de.uniulm.omi.cloudiator.lance.lca.registry.CachingLcaRegistry;
+import de.uniulm.omi.cloudiator.lance.lca.registry.dummy.DummyRegistry;
+import de.uniulm.omi.cloudiator.lance.lifecycle.ExecutionContext;
+import de.uniulm.omi.cloudiator.lance.lifecycle.detector.PortUpdateHandler;
+
+/**
+ * compares the full re-translation of all sinks on every poll (as done
+ * before sinks were tracked incrementally) with the incremental diff of
+ * {@link OutPortState#pollDiffSet}, both for an unchanged registry and for
+ * a single sink that changes its port between two polls.
+ *
+ * run with: java PortDiffBenchmark [iterations] [sink counts...]
+ */
+public final class PortDiffBenchmark {
+
+    private static final String OUT_PORT = "DB_OUT";
+    private static final String SINK_PORT = "DB_IN";
+
+    private PortDiffBenchmark() {
+        // no instances //
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        List<Integer> counts = new ArrayList<>();
+        for(int i = 1; i < args.length; i++) {
+            counts.add(Integer.valueOf(args[i]));
+        }
+        if(counts.isEmpty()) {
+            counts.add(Integer.valueOf(1000));
+            counts.add(Integer.valueOf(5000));
+            counts.add(Integer.valueOf(10000));
+        }
+        System.out.println("sinks\tfull (unchanged)\tincremental (unchanged)\tfull (1 changed)\tincremental (1 changed)");
+        for(Integer count : counts) {
+            new Setup(count.intValue()).run(iterations);
+        }
+    }
+
+    private static final class Setup {
+
+        private final int instances;
+        private final ApplicationInstanceId appInstId = new ApplicationInstanceId();
+        private final ComponentId sinkId = new ComponentId();
+        private final List<ComponentInstanceId> ids = new ArrayList<>();
+        private final LcaRegistry registry = new CachingLcaRegistry(new DummyRegistry());
+        private final PortRegistryTranslator translator;
+        private final PortHierarchy hierarchy = PortRegistryTranslator.PORT_HIERARCHY;
+        private final OutPort port;
+        private final ComponentInstanceId consumer = new ComponentInstanceId();
+        private int nextPort = 40000;
+
+        Setup(int instancesParam) throws Exception {
+            instances = instancesParam;
+            registry.addApplicationInstance(appInstId, new ApplicationId(), "benchmark");
+            registry.addComponent(appInstId, sinkId, "sink");
+            for(int i = 0; i < instances; i++) {
+                ComponentInstanceId id = new ComponentInstanceId();
+                ids.add(id);
+                addSinkInstance(id, i);
+            }
+            DeployableComponentBuilder builder = DeployableComponentBuilder.createBuilder("source", new ComponentId());
+            builder.addOutport(OUT_PORT, new NoopHandler(), PortProperties.INFINITE_CARDINALITY);
+            DeployableComponent comp = builder.build();
+            DeploymentContext ctx = new DeploymentContext(new ApplicationId(), appInstId, registry);
+            ctx.setProperty(OUT_PORT, new PortReference(sinkId, SINK_PORT, PortProperties.PortLinkage.ALL), OutPort.class);
+            GlobalRegistryAccessor accessor = new GlobalRegistryAccessor(ctx, comp, consumer);
+            translator = new PortRegistryTranslator(accessor, EnvContextWrapper.create());
+            port = comp.getDownstreamPorts().get(0);
+        }
+
+        void run(int iterations) throws Exception {
+            Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> enacted = translator.findDownstreamInstances(port, hierarchy);
+            OutPortState state = new OutPortState(port, enacted, null, consumer);
+            state.enactDiffSet(state.pollDiffSet(translator, hierarchy));
+
+            // warm up //
+            for(int i = 0; i < iterations; i++) {
+                full(enacted);
+                incremental(state);
+            }
+
+            long fullUnchanged = 0;
+            long incrementalUnchanged = 0;
+            long fullChanged = 0;
+            long incrementalChanged = 0;
+            for(int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                full(enacted);
+                fullUnchanged += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                incremental(state);
+                incrementalUnchanged += System.nanoTime() - start;
+
+                changeOneSink(i);
+                start = System.nanoTime();
+                PortDiff<DownstreamAddress> diff = full(enacted);
+                fullChanged += System.nanoTime() - start;
+                enacted = diff.getCurrentSinkSet();
+
+                start = System.nanoTime();
+                incremental(state);
+                incrementalChanged += System.nanoTime() - start;
+            }
+            System.out.println(instances + "\t" + micros(fullUnchanged, iterations) + "\t" + micros(incrementalUnchanged, iterations)
+                    + "\t" + micros(fullChanged, iterations) + "\t" + micros(incrementalChanged, iterations));
+        }
+
+        private PortDiff<DownstreamAddress> full(Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> enacted) throws Exception {
+            Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> current = translator.findDownstreamInstances(port, hierarchy);
+            return new PortDiff<>(current, enacted, port);
+        }
+
+        private void incremental(OutPortState state) throws Exception {
+            PortDiff<DownstreamAddress> diff = state.pollDiffSet(translator, hierarchy);
+            if(diff.hasDiffs()) {
+                state.enactDiffSet(diff);
+            }
+        }
+
+        private void changeOneSink(int i) throws Exception {
+            ComponentInstanceId id = ids.get(i % ids.size());
+            registry.addComponentProperty(appInstId, sinkId, id,
+                    PortRegistryTranslator.buildFullPortName(SINK_PORT, PortRegistryTranslator.PORT_HIERARCHY_0), Integer.toString(nextPort++));
+            if(nextPort > 65000) {
+                nextPort = 40000;
+            }
+        }
+
+        private void addSinkInstance(ComponentInstanceId id, int i) throws Exception {
+            registry.addComponentInstance(appInstId, sinkId, id);
+            Map<String, String> properties = new HashMap<>();
+            properties.put(LcaRegistryConstants.CONTAINER_STATUS, ContainerStatus.READY.toString());
+            int sinkPort = 1024 + (i % 30000);
+            String ip = "10." + (i / 62500) + "." + ((i / 250) % 250) + "." + (1 + i % 250);
+            for(PortHierarchyLevel level : hierarchy.levels()) {
+                properties.put(PortRegistryTranslator.buildFullHostName(level), ip);
+                properties.put(PortRegistryTranslator.buildFullPortName(SINK_PORT, level), Integer.toString(sinkPort));
+            }
+            registry.addComponentProperties(appInstId, sinkId, id, properties);
+        }
+    }
+
+    private static String micros(long nanos, int iterations) {
+        return String.format("%.1f us", nanos / 1000.0 / iterations);
+    }
+
+    private static final class NoopHandler implements PortUpdateHandler {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void execute(ExecutionContext ec) {
+            // nothing to do //
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class RegistryKeyTest {
+
+    @Test
+    public void testNamesFollowTheLevels() {
+        RegistryKey key = RegistryKey.forPort("HTTP");
+        assertEquals("ACCESS_PUBLIC_HTTP", key.portNameAtLevel(PortRegistryTranslator.PORT_HIERARCHY_0));
+        assertEquals("ACCESS_CONTAINER_HTTP", key.portNameAtLevel(PortRegistryTranslator.PORT_HIERARCHY_2));
+        assertEquals("HOST_CLOUD_IP", RegistryKey.hostNameAtLevel(PortRegistryTranslator.PORT_HIERARCHY_1));
+    }
+
+    @Test
+    public void testKeysAndNamesAreBuiltOnce() {
+        RegistryKey key = RegistryKey.forPort(new String("HTTP"));
+        assertSame(key, RegistryKey.forPort(new String("HTTP")));
+        assertNotSame(key, RegistryKey.forPort("SSH"));
+        assertSame(key.portNameAtLevel(PortRegistryTranslator.PORT_HIERARCHY_1), 
+                key.portNameAtLevel(PortRegistryTranslator.PORT_HIERARCHY_1));
+        assertSame(RegistryKey.hostNameAtLevel(PortRegistryTranslator.PORT_HIERARCHY_0), 
+                RegistryKey.hostNameAtLevel(PortRegistryTranslator.PORT_HIERARCHY_0));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * simulates many consumer instances that select a bounded number of 
+ * sinks each. reports how evenly the consumers spread over the sinks 
+ * and how many selections change when a sink is added or removed, once 
+ * for the shared hash order and once for rendezvous hashing.
+ *
+ * run with: java RendezvousSimulation [consumers] [sinks] [bound]
+ */
+public final class RendezvousSimulation {
+
+    private static final String[] SPECS = {"hash", "rendezvous"};
+
+    private RendezvousSimulation() {
+        // no instances //
+    }
+
+    public static void main(String[] args) {
+        int consumers = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int sinkCount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int bound = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        List<ComponentInstanceId> consumerIds = new ArrayList<>();
+        for(int i = 0; i < consumers; i++) {
+            consumerIds.add(new ComponentInstanceId());
+        }
+        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks = new HashMap<>();
+        for(int i = 0; i < sinkCount; i++) {
+            addSink(sinks, i);
+        }
+        double ideal = (double) consumers * bound / sinkCount;
+        System.out.println(consumers + " consumers, " + sinkCount + " sinks, " + bound + " sinks per consumer; ideal load " 
+                + String.format("%.1f", ideal));
+        System.out.println("selection\tsinks used\tmin\tmax\tstddev\tmax/ideal\tmoved on add\tmoved on remove");
+        for(String spec : SPECS) {
+            Map<ComponentInstanceId, Set<ComponentInstanceId>> before = selectAll(spec, consumerIds, sinks, bound);
+            Map<ComponentInstanceId, Integer> load = loadPerSink(before, sinks);
+            
+            Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> grown = new HashMap<>(sinks);
+            addSink(grown, sinkCount);
+            int movedOnAdd = moved(before, selectAll(spec, consumerIds, grown, bound));
+            
+            Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> shrunk = new HashMap<>(sinks);
+            shrunk.remove(mostLoaded(load));
+            int movedOnRemove = moved(before, selectAll(spec, consumerIds, shrunk, bound));
+            
+            printStatistics(spec, load, ideal, movedOnAdd, movedOnRemove);
+        }
+    }
+
+    private static Map<ComponentInstanceId, Set<ComponentInstanceId>> selectAll(String spec, List<ComponentInstanceId> consumerIds, 
+                Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks, int bound) {
+        Map<ComponentInstanceId, Set<ComponentInstanceId>> selected = new HashMap<>();
+        int count = Math.min(bound, sinks.size());
+        for(ComponentInstanceId consumer : consumerIds) {
+            SinkSelection selection = SinkSelection.create(spec, null, consumer);
+            selected.put(consumer, new HashSet<>(selection.select(sinks, count)));
+        }
+        return selected;
+    }
+
+    private static Map<ComponentInstanceId, Integer> loadPerSink(Map<ComponentInstanceId, Set<ComponentInstanceId>> selected, 
+                Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks) {
+        Map<ComponentInstanceId, Integer> load = new HashMap<>();
+        for(ComponentInstanceId sink : sinks.keySet()) {
+            load.put(sink, Integer.valueOf(0));
+        }
+        for(Set<ComponentInstanceId> set : selected.values()) {
+            for(ComponentInstanceId sink : set) {
+                load.put(sink, Integer.valueOf(load.get(sink).intValue() + 1));
+            }
+        }
+        return load;
+    }
+
+    /** @return the number of sink slots that have changed over all consumers */
+    private static int moved(Map<ComponentInstanceId, Set<ComponentInstanceId>> before, 
+                Map<ComponentInstanceId, Set<ComponentInstanceId>> after) {
+        int moved = 0;
+        for(Map.Entry<ComponentInstanceId, Set<ComponentInstanceId>> entry : before.entrySet()) {
+            Set<ComponentInstanceId> kept = new HashSet<>(entry.getValue());
+            kept.retainAll(after.get(entry.getKey()));
+            moved += entry.getValue().size() - kept.size();
+        }
+        return moved;
+    }
+
+    private static ComponentInstanceId mostLoaded(Map<ComponentInstanceId, Integer> load) {
+        ComponentInstanceId max = null;
+        for(Map.Entry<ComponentInstanceId, Integer> entry : load.entrySet()) {
+            if(max == null || entry.getValue().intValue() > load.get(max).intValue()) {
+                max = entry.getKey();
+            }
+        }
+        return max;
+    }
+
+    private static void printStatistics(String spec, Map<ComponentInstanceId, Integer> load, double ideal, 
+                int movedOnAdd, int movedOnRemove) {
+        int used = 0;
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        double squares = 0;
+        for(Integer value : load.values()) {
+            int v = value.intValue();
+            if(v > 0) {
+                used++;
+            }
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+            squares += (v - ideal) * (v - ideal);
+        }
+        double stddev = Math.sqrt(squares / load.size());
+        System.out.println(spec + "\t" + used + "\t" + min + "\t" + max + "\t" + String.format("%.1f", stddev) 
+                + "\t" + String.format("%.2f", max / ideal) + "\t" + movedOnAdd + "\t" + movedOnRemove);
+    }
+
+    private static void addSink(Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks, int i) {
+        PortHierarchy hierarchy = PortRegistryTranslator.PORT_HIERARCHY;
+        ComponentInstanceId id = new ComponentInstanceId();
+        HierarchyLevelState<DownstreamAddress> state = new HierarchyLevelState<>(id.toString(), hierarchy);
+        for(int ordinal = 0; ordinal < hierarchy.size(); ordinal++) {
+            state.registerValueAtLevel(hierarchy.levelAt(ordinal), new DownstreamAddress("10.0." + (i / 250) + "." + (i % 250), 80));
+        }
+        sinks.put(id, state);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * measures the time needed to select sinks from large sink sets with 
+ * the different selection criteria, both for bounded out ports (heap 
+ * based selection) and for unbounded ones (full sort).
+ *
+ * run with: java SinkSelectionBenchmark [iterations] [sink counts...]
+ */
+public final class SinkSelectionBenchmark {
+
+    private static final String[] SPECS = {"unordered", "cloud,hash"};
+    private static final int[] BOUNDS = {1, 10, 100, -1};
+    private static final String LOCAL = "cloud-0";
+
+    private SinkSelectionBenchmark() {
+        // no instances //
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        List<Integer> counts = new ArrayList<>();
+        for(int i = 1; i < args.length; i++) {
+            counts.add(Integer.valueOf(args[i]));
+        }
+        if(counts.isEmpty()) {
+            counts.add(Integer.valueOf(1000));
+            counts.add(Integer.valueOf(10000));
+            counts.add(Integer.valueOf(100000));
+        }
+        System.out.println("sinks\tselection\tbound\ttime per selection");
+        for(Integer count : counts) {
+            Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks = createSinks(count.intValue());
+            for(String spec : SPECS) {
+                SinkSelection selection = SinkSelection.create(spec, LOCAL);
+                for(int bound : BOUNDS) {
+                    int selected = bound < 0 ? sinks.size() : Math.min(bound, sinks.size());
+                    run(sinks, selection, selected, iterations);
+                    long start = System.nanoTime();
+                    run(sinks, selection, selected, iterations);
+                    long nanos = System.nanoTime() - start;
+                    System.out.println(count + "\t" + spec + "\t" + (bound < 0 ? "all" : Integer.toString(bound)) 
+                            + "\t" + String.format("%.1f us", nanos / 1000.0 / iterations));
+                }
+            }
+        }
+    }
+
+    private static int run(Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks, 
+                SinkSelection selection, int count, int iterations) {
+        int sum = 0;
+        for(int i = 0; i < iterations; i++) {
+            sum += selection.select(sinks, count).size();
+        }
+        return sum;
+    }
+
+    private static Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> createSinks(int count) {
+        PortHierarchy hierarchy = PortRegistryTranslator.PORT_HIERARCHY;
+        Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks = new HashMap<>();
+        for(int i = 0; i < count; i++) {
+            ComponentInstanceId id = new ComponentInstanceId();
+            HierarchyLevelState<DownstreamAddress> state = new HierarchyLevelState<>(id.toString(), hierarchy);
+            String cloud = "cloud-" + (i % 4);
+            String ip = "10." + (i / 62500) + "." + ((i / 250) % 250) + "." + (1 + i % 250);
+            for(int ordinal = 0; ordinal < hierarchy.size(); ordinal++) {
+                state.registerValueAtLevel(hierarchy.levelAt(ordinal), new DownstreamAddress(ip, 1024 + i % 30000, cloud));
+            }
+            sinks.put(id, state);
+        }
+        return sinks;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.container.port;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
+import de.uniulm.omi.cloudiator.lance.application.component.DeployableComponentBuilder;
+import de.uniulm.omi.cloudiator.lance.application.component.OutPort;
+import de.uniulm.omi.cloudiator.lance.application.component.PortProperties;
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lifecycle.ExecutionContext;
+import de.uniulm.omi.cloudiator.lance.lifecycle.detector.PortUpdateHandler;
+
+public class SinkSelectionTest {
+
+    private static final String LOCAL = "cloud-a";
+    private static final String REMOTE = "cloud-b";
+
+    private final PortHierarchy hierarchy = PortRegistryTranslator.PORT_HIERARCHY;
+    private final Map<ComponentInstanceId, HierarchyLevelState<DownstreamAddress>> sinks = new HashMap<>();
+
+    @Test
+    public void testLocalSinksArePreferred() {
+        for(int i = 0; i < 20; i++) {
+            addSink(new ComponentInstanceId(), i, REMOTE);
+        }
+        ComponentInstanceId local = addSink(new ComponentInstanceId(), 100, LOCAL);
+        List<ComponentInstanceId> selected = SinkSelection.create(SinkSelection.DEFAULT_SELECTION, LOCAL).select(sinks, 3);
+        assertEquals(3, selected.size());
+        assertEquals(local, selected.get(0));
+    }
+
+    @Test
+    public void testHashSelectionChangesMinimally() {
+        for(int i = 0; i < 100; i++) {
+            addSink(new ComponentInstanceId(), i, LOCAL);
+        }
+        SinkSelection selection = SinkSelection.create("hash", LOCAL);
+        Set<ComponentInstanceId> before = new HashSet<>(selection.select(sinks, 10));
+        // the selection does not depend on the iteration order //
+        assertEquals(before, new HashSet<>(selection.select(new HashMap<>(sinks), 10)));
+        addSink(new ComponentInstanceId(), 200, LOCAL);
+        Set<ComponentInstanceId> after = new HashSet<>(selection.select(sinks, 10));
+        after.retainAll(before);
+        assertTrue(after.size() >= 9);
+    }
+
+    @Test
+    public void testRendezvousSpreadsConsumers() {
+        for(int i = 0; i < 20; i++) {
+            addSink(new ComponentInstanceId(), i, LOCAL);
+        }
+        Map<ComponentInstanceId, Integer> load = new HashMap<>();
+        for(int i = 0; i < 1000; i++) {
+            ComponentInstanceId consumer = new ComponentInstanceId();
+            SinkSelection selection = SinkSelection.create(SinkSelection.RENDEZVOUS_SELECTION, LOCAL, consumer);
+            List<ComponentInstanceId> selected = selection.select(sinks, 2);
+            // the ranking of a consumer does not change //
+            assertEquals(selected, selection.select(new HashMap<>(sinks), 2));
+            for(ComponentInstanceId id : selected) {
+                Integer before = load.get(id);
+                load.put(id, Integer.valueOf(before == null ? 1 : before.intValue() + 1));
+            }
+        }
+        // ideally, every sink is used by 100 consumers //
+        assertEquals(20, load.size());
+        for(Integer value : load.values()) {
+            assertTrue(value.toString(), value.intValue() > 40 && value.intValue() < 160);
+        }
+    }
+
+    @Test
+    public void testRendezvousSelectionChangesMinimally() {
+        for(int i = 0; i < 30; i++) {
+            addSink(new ComponentInstanceId(), i, LOCAL);
+        }
+        for(int i = 0; i < 50; i++) {
+            SinkSelection selection = SinkSelection.create("rendezvous", LOCAL, new ComponentInstanceId());
+            Set<ComponentInstanceId> before = new HashSet<>(selection.select(sinks, 5));
+            ComponentInstanceId added = addSink(new ComponentInstanceId(), 100 + i, LOCAL);
+            Set<ComponentInstanceId> after = new HashSet<>(selection.select(sinks, 5));
+            after.retainAll(before);
+            assertTrue(after.size() >= 4);
+            sinks.remove(added);
+        }
+    }
+
+    @Test
+    public void testPortSelectsRendezvousMode() {
+        DeployableComponentBuilder builder = DeployableComponentBuilder.createBuilder("source", new ComponentId());
+        builder.addOutport("OUT", new NoopHandler(), PortProperties.INFINITE_CARDINALITY, 1, 2, PortProperties.SelectionMode.RENDEZVOUS);
+        OutPort port = builder.build().getDownstreamPorts().get(0);
+        assertEquals(PortProperties.SelectionMode.RENDEZVOUS, port.getSelectionMode());
+        assertEquals(PortProperties.SelectionMode.CONFIGURED, boundedPort(2).getSelectionMode());
+        assertTrue(SinkSelection.forPort(port, LOCAL, new ComponentInstanceId()).toString().contains(SinkSelection.RENDEZVOUS_SELECTION));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRendezvousRequiresConsumer() {
+        SinkSelection.create(SinkSelection.RENDEZVOUS_SELECTION, LOCAL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownCriterionIsRejected() {
+        SinkSelection.create("cloud,random", LOCAL);
+    }
+
+    @Test
+    public void testRemoteSinksUsePublicAddressInCloud() {
+        ComponentInstanceId remote = addSink(new ComponentInstanceId(), 1, REMOTE);
+        addSink(new ComponentInstanceId(), 2, LOCAL);
+        OutPortState state = new OutPortState(boundedPort(2), sinks, SinkSelection.create(SinkSelection.DEFAULT_SELECTION, LOCAL), LOCAL);
+        Map<PortHierarchyLevel, List<DownstreamAddress>> selected = state.selectSinksByHierarchyLevel(sinks);
+        List<DownstreamAddress> cloudLevel = selected.get(PortRegistryTranslator.PORT_HIERARCHY_1);
+        assertEquals("10.1.0.2:80", cloudLevel.get(0).toString());
+        assertEquals(sinks.get(remote).valueAtLevel(PortRegistryTranslator.PORT_HIERARCHY_0), cloudLevel.get(1));
+        assertEquals(2, selected.get(PortRegistryTranslator.PORT_HIERARCHY_0).size());
+
+        state = new OutPortState(boundedPort(1), sinks, SinkSelection.create(SinkSelection.DEFAULT_SELECTION, LOCAL), LOCAL);
+        assertEquals(1, state.selectSinksByHierarchyLevel(sinks).get(PortRegistryTranslator.PORT_HIERARCHY_2).size());
+    }
+
+    private ComponentInstanceId addSink(ComponentInstanceId id, int i, String cloud) {
+        HierarchyLevelState<DownstreamAddress> state = new HierarchyLevelState<>(id.toString(), hierarchy);
+        for(int ordinal = 0; ordinal < hierarchy.size(); ordinal++) {
+            String ip = "10." + ordinal + "." + (i / 250) + "." + (i % 250);
+            state.registerValueAtLevel(hierarchy.levelAt(ordinal), new DownstreamAddress(ip, 80, cloud));
+        }
+        sinks.put(id, state);
+        return id;
+    }
+
+    private static OutPort boundedPort(int maxSinks) {
+        DeployableComponentBuilder builder = DeployableComponentBuilder.createBuilder("source", new ComponentId());
+        builder.addOutport("OUT", new NoopHandler(), PortProperties.INFINITE_CARDINALITY, 1, maxSinks);
+        return builder.build().getDownstreamPorts().get(0);
+    }
+
+    private static final class NoopHandler implements PortUpdateHandler {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void execute(ExecutionContext ec) {
+            // nothing to do //
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector.DockerException;
+import de.uniulm.omi.cloudiator.lance.lifecycle.ExecutionResult;
+
+public class DockerShellPoolTest {
+
+    private final List<FakeShell> opened = new ArrayList<>();
+    private final DockerShellPool pool = new DockerShellPool(() -> open(), 2);
+
+    @Test
+    public void testReleasedShellIsResetAndReused() throws Exception {
+        DockerShell first = pool.lease();
+        assertEquals(DockerShellPool.BASELINE_COMMAND, opened.get(0).commands.get(0));
+        pool.release(first);
+        assertEquals(DockerShellPool.RESET_COMMAND, opened.get(0).commands.get(1));
+        assertSame(first, pool.lease());
+        assertEquals(1, opened.size());
+    }
+
+    @Test
+    public void testConcurrentLeasesGetDistinctShells() throws Exception {
+        DockerShell first = pool.lease();
+        DockerShell second = pool.lease();
+        DockerShell third = pool.lease();
+        assertNotSame(first, second);
+        assertNotSame(second, third);
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        // only two shells are kept //
+        assertEquals(2, pool.idleShells());
+        assertFalse(((FakeShell) first).closed);
+        assertTrue(((FakeShell) third).closed);
+    }
+
+    @Test
+    public void testDeadShellIsReplaced() throws Exception {
+        FakeShell first = (FakeShell) pool.lease();
+        pool.release(first);
+        first.running = false;
+        DockerShell next = pool.lease();
+        assertNotSame(first, next);
+        assertTrue(first.closed);
+    }
+
+    @Test
+    public void testShellThatCannotBeResetIsClosed() throws Exception {
+        FakeShell first = (FakeShell) pool.lease();
+        first.failing = true;
+        pool.release(first);
+        assertTrue(first.closed);
+        assertEquals(0, pool.idleShells());
+    }
+
+    @Test
+    public void testShellReplacedByBlockingCommandIsClosed() throws Exception {
+        FakeShell first = (FakeShell) pool.lease();
+        first.executeBlockingCommand("exec service");
+        pool.release(first);
+        assertTrue(first.closed);
+        // no reset is sent to the replacing process //
+        assertEquals(1, first.commands.size());
+        assertEquals(0, pool.idleShells());
+    }
+
+    @Test
+    public void testClosedPoolKeepsNoShells() throws Exception {
+        FakeShell first = (FakeShell) pool.lease();
+        FakeShell second = (FakeShell) pool.lease();
+        pool.release(first);
+        pool.close();
+        assertTrue(first.closed);
+        pool.release(second);
+        assertTrue(second.closed);
+        assertEquals(0, pool.idleShells());
+    }
+
+    @Test(expected = DockerException.class)
+    public void testShellWithoutBaselineIsNotHandedOut() throws Exception {
+        DockerShellPool failing = new DockerShellPool(() -> {
+            FakeShell shell = open();
+            shell.failing = true;
+            return shell;
+        }, 2);
+        try {
+            failing.lease();
+        } finally {
+            assertTrue(opened.get(0).closed);
+        }
+    }
+
+    private FakeShell open() {
+        FakeShell shell = new FakeShell();
+        opened.add(shell);
+        return shell;
+    }
+
+    private static final class FakeShell implements DockerShell {
+
+        final List<String> commands = new ArrayList<>();
+        volatile boolean running = true;
+        volatile boolean failing;
+        volatile boolean closed;
+        volatile boolean replaced;
+
+        @Override
+        public ExecutionResult executeCommand(String command, long timeoutMillis) {
+            assertEquals(DockerShellPool.RESET_TIMEOUT, timeoutMillis);
+            return executeCommand(command);
+        }
+
+        @Override
+        public ExecutionResult executeCommand(String command) {
+            if(!running || replaced) {
+                throw new IllegalStateException("shell not available for executing command: " + command);
+            }
+            commands.add(command);
+            return failing ? ExecutionResult.commandFailure(1, "", "") : ExecutionResult.success("", "");
+        }
+
+        @Override
+        public ExecutionResult executeBlockingCommand(String command) {
+            replaced = true;
+            return ExecutionResult.success("", "");
+        }
+
+        @Override
+        public void setEnvironmentVariable(String key, String value) {
+            fail("variables must not be exported one by one");
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            running = false;
+        }
+
+        @Override
+        public boolean processStillRunning() {
+            return running;
+        }
+
+        @Override
+        public boolean isReusable() {
+            return running && !replaced;
+        }
+    }
+}
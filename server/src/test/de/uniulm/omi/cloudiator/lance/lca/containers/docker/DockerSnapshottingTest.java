@@ -6,6 +6,7 @@ import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -23,6 +24,7 @@ import de.uniulm.omi.cloudiator.lance.lifecycle.LifecycleController;
 import de.uniulm.omi.cloudiator.lance.lifecycle.LifecycleHandlerType;
 import de.uniulm.omi.cloudiator.lance.lifecycles.CoreElements;
 import de.uniulm.omi.cloudiator.lance.lifecycles.LifecycleStoreCreator;
+import de.uniulm.omi.cloudiator.lance.util.execution.KeyedExecutor;
 
 public class DockerSnapshottingTest {
 
@@ -101,6 +103,16 @@ public class DockerSnapshottingTest {
 		public ScheduledFuture<?> scheduleAction(Runnable runner) {
 			throw new UnsupportedOperationException();
 		}
+
+		@Override
+		public ScheduledFuture<?> scheduleOnce(Runnable runner, long delay, TimeUnit unit) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public KeyedExecutor<ComponentInstanceId> getPortUpdateExecutor() {
+			throw new UnsupportedOperationException();
+		}
 		
 	}
 	
@@ -127,12 +139,14 @@ public class DockerSnapshottingTest {
 		DockerConfiguration dockerConfig = DockerConfiguration.INSTANCE;
 		DockerConnector client = ConnectorFactory.INSTANCE.createConnector(hostname);
 		DockerShellFactory shellFactory = new DockerShellFactory();
+		ImageAcquisitionService imageService = new ImageAcquisitionService(client);
 		DockerContainerLogic.Builder builder = new DockerContainerLogic.Builder();
 		//split for better readability
 		builder = builder.cInstId(core.componentInstanceId).dockerConnector(client).deplComp(core.comp).deplContext(core.ctx).osParam(OperatingSystem.UBUNTU_14_04);
-		DockerContainerLogic logic = builder.nwHandler(core.networkHandler).dockerShellFac(shellFactory).dockerConfig(dockerConfig).hostContext(new FakeHostContext()).build();
+		DockerContainerLogic logic = builder.nwHandler(core.networkHandler).dockerShellFac(shellFactory).dockerConfig(dockerConfig).imageService(imageService).hostContext(new FakeHostContext()).build();
 		logic.doCreate();
 		logic.doDestroy(true);
+		imageService.shutdown();
 	}
 	
 	
@@ -142,16 +156,18 @@ public class DockerSnapshottingTest {
 		DockerConfiguration dockerConfig = DockerConfiguration.INSTANCE;
 		DockerConnector client = ConnectorFactory.INSTANCE.createConnector(hostname);
 		DockerShellFactory shellFactory = new DockerShellFactory();
+		ImageAcquisitionService imageService = new ImageAcquisitionService(client);
 		DockerContainerLogic.Builder builder = new DockerContainerLogic.Builder();
 		//split for better readability
 		builder = builder.cInstId(core.componentInstanceId).dockerConnector(client).deplComp(core.comp).deplContext(core.ctx).osParam(OperatingSystem.UBUNTU_14_04);
-		DockerContainerLogic logic = builder.nwHandler(core.networkHandler).dockerShellFac(shellFactory).dockerConfig(dockerConfig).hostContext(new FakeHostContext()).build();
+		DockerContainerLogic logic = builder.nwHandler(core.networkHandler).dockerShellFac(shellFactory).dockerConfig(dockerConfig).imageService(imageService).hostContext(new FakeHostContext()).build();
 		logic.doCreate();
 		logic.prepare(LifecycleHandlerType.PRE_INSTALL);
 		logic.postprocess(LifecycleHandlerType.PRE_INSTALL);
 		logic.doDestroy(true);
 
 		builder = builder.cInstId(core.componentInstanceId).dockerConnector(client).deplComp(core.comp).deplContext(core.ctx).osParam(OperatingSystem.UBUNTU_14_04);
-		logic = builder.nwHandler(core.networkHandler).dockerShellFac(shellFactory).dockerConfig(dockerConfig).hostContext(new FakeHostContext()).build();
+		logic = builder.nwHandler(core.networkHandler).dockerShellFac(shellFactory).dockerConfig(dockerConfig).imageService(imageService).hostContext(new FakeHostContext()).build();
+		imageService.shutdown();
 	}
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.container.spec.os.OperatingSystem;
+import de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector.DockerConnector;
+import de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector.DockerException;
+
+public class ImageAcquisitionServiceTest {
+
+    private final FakeImages host = new FakeImages();
+    private final ImageAcquisitionService service = new ImageAcquisitionService(host.connector(), 2);
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testContainerLogicDoesNotCreateItsOwnService() {
+        new DockerContainerLogic.Builder().dockerConnector(host.connector()).osParam(OperatingSystem.UBUNTU_14_04).build();
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOnePull() throws Exception {
+        host.pullDelay = 100;
+        ExecutorService callers = Executors.newFixedThreadPool(10);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for(int i = 0; i < 10; i++) {
+                results.add(callers.submit(() -> {
+                    start.await();
+                    return Boolean.valueOf(service.acquire("ubuntu:14.04"));
+                }));
+            }
+            start.countDown();
+            for(Future<Boolean> result : results) {
+                assertTrue(result.get().booleanValue());
+            }
+        } finally {
+            callers.shutdown();
+        }
+        assertEquals(1, host.finds.get());
+        assertEquals(1, host.pulls.get());
+    }
+
+    @Test
+    public void testPresentImageIsLookedUpOnce() throws Exception {
+        host.local.add("ubuntu:14.04");
+        assertTrue(service.acquire("ubuntu:14.04"));
+        assertTrue(service.acquire("ubuntu:14.04"));
+        assertEquals(1, host.finds.get());
+        assertEquals(0, host.pulls.get());
+
+        service.forget("ubuntu:14.04");
+        assertTrue(service.acquire("ubuntu:14.04"));
+        assertEquals(2, host.finds.get());
+    }
+
+    @Test
+    public void testFailedPullIsRetried() throws Exception {
+        host.failing = true;
+        assertFalse(service.acquire("missing:latest"));
+        assertFalse(service.acquire("missing:latest"));
+        assertEquals(2, host.pulls.get());
+    }
+
+    @Test
+    public void testParallelPullsAreBounded() throws Exception {
+        host.pullDelay = 50;
+        ExecutorService callers = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for(int i = 0; i < 6; i++) {
+                final String reference = "image" + i + ":latest";
+                results.add(callers.submit(() -> Boolean.valueOf(service.acquire(reference))));
+            }
+            for(Future<Boolean> result : results) {
+                assertTrue(result.get().booleanValue());
+            }
+        } finally {
+            callers.shutdown();
+        }
+        assertEquals(6, host.pulls.get());
+        assertTrue(host.maxParallelPulls.get() <= 2);
+    }
+
+    @Test(expected = DockerException.class)
+    public void testFailedLookupIsReported() throws Exception {
+        host.unreachable = true;
+        service.acquire("ubuntu:14.04");
+    }
+
+    @Test
+    public void testRejectedPullIsReportedAndNotShared() throws Exception {
+        service.shutdown();
+        for(int i = 0; i < 2; i++) {
+            try {
+                service.acquire("ubuntu:14.04");
+                fail("pull must not be accepted after shutdown");
+            } catch(DockerException de) {
+                // a second request must not wait for the first one //
+            }
+        }
+        assertEquals(0, host.finds.get());
+    }
+
+    private static final class FakeImages implements InvocationHandler {
+
+        final Set<String> local = ConcurrentHashMap.newKeySet();
+        final AtomicInteger finds = new AtomicInteger();
+        final AtomicInteger pulls = new AtomicInteger();
+        final AtomicInteger parallelPulls = new AtomicInteger();
+        final AtomicInteger maxParallelPulls = new AtomicInteger();
+        volatile long pullDelay;
+        volatile boolean failing;
+        volatile boolean unreachable;
+
+        DockerConnector connector() {
+            return (DockerConnector) Proxy.newProxyInstance(DockerConnector.class.getClassLoader(),
+                    new Class<?>[] {DockerConnector.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String reference = (String) args[0];
+            if("findImage".equals(method.getName())) {
+                finds.incrementAndGet();
+                if(unreachable) {
+                    throw new DockerException("cannot connect to docker daemon");
+                }
+                return local.contains(reference) ? reference : null;
+            }
+            if("pullImage".equals(method.getName())) {
+                pull(reference);
+                return null;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+
+        private void pull(String reference) throws Exception {
+            pulls.incrementAndGet();
+            int parallel = parallelPulls.incrementAndGet();
+            maxParallelPulls.accumulateAndGet(parallel, Math::max);
+            try {
+                Thread.sleep(pullDelay);
+                if(failing) {
+                    throw new DockerException("pull access denied for " + reference);
+                }
+                local.add(reference);
+            } finally {
+                parallelPulls.decrementAndGet();
+            }
+        }
+    }
+}
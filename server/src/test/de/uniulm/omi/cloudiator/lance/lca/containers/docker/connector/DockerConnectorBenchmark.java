@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+import java.util.HashMap;
+
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * compares the per-operation latency of {@link SocketBasedConnector} 
+ * with that of {@link ProcessBasedConnector}.
+ * 
+ * run with: java DockerConnectorBenchmark [iterations] 
+ *      uses a {@link FakeDockerEngine}; as there is no docker client 
+ *      process in this case, the process-based connector is represented
+ *      by the bare start of a process (/bin/true), which is a lower bound 
+ *      of its cost.
+ * 
+ * or with: java DockerConnectorBenchmark [iterations] <image> 
+ *      looks up the given image with both connectors against the local 
+ *      docker engine (requires sudo docker and access to the socket).
+ */
+public final class DockerConnectorBenchmark {
+
+    private DockerConnectorBenchmark() {
+        // no instances //
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        if(args.length > 1) {
+            real(iterations, args[1]);
+        } else {
+            fake(iterations);
+        }
+    }
+
+    private static void fake(int iterations) throws Exception {
+        try(FakeDockerEngine engine = new FakeDockerEngine()) {
+            SocketBasedConnector socket = SocketBasedConnector.connect(engine.getEndpoint(), new ProcessBasedConnector("localhost"));
+            ComponentInstanceId id = new ComponentInstanceId();
+            socket.createContainer("ubuntu:14.04", id, new HashMap<Integer, Integer>());
+            engine.addImage("ubuntu:14.04");
+
+            Operation inspect = () -> socket.getContainerIp(id);
+            Operation find = () -> socket.findImage("ubuntu:14.04");
+            Operation fork = () -> {
+                if(!ProcessWrapper.singleCommand("/bin/true").isSuccess()) {
+                    throw new DockerException("cannot run /bin/true");
+                }
+            };
+            System.out.println("engine: " + engine.getEndpoint());
+            System.out.println("operation\tlatency");
+            System.out.println("socket getContainerIp\t" + measure(inspect, iterations));
+            System.out.println("socket findImage\t" + measure(find, iterations));
+            System.out.println("process start (lower bound)\t" + measure(fork, iterations));
+            System.out.println("connections opened: " + engine.getConnections());
+        }
+    }
+
+    private static void real(int iterations, String image) throws Exception {
+        ProcessBasedConnector process = new ProcessBasedConnector("localhost");
+        SocketBasedConnector socket = SocketBasedConnector.connect(
+                System.getProperty(ConnectorFactory.ENDPOINT_PROPERTY, EngineEndpoint.DEFAULT_ENDPOINT), process);
+        System.out.println("operation\tlatency");
+        System.out.println("socket findImage\t" + measure(() -> socket.findImage(image), iterations));
+        System.out.println("process findImage\t" + measure(() -> process.findImage(image), iterations));
+    }
+
+    private static String measure(Operation operation, int iterations) throws Exception {
+        // warm up //
+        for(int i = 0; i < Math.max(10, iterations / 10); i++) {
+            operation.run();
+        }
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        return String.format("%.1f us", (System.nanoTime() - start) / 1000.0 / iterations);
+    }
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+}
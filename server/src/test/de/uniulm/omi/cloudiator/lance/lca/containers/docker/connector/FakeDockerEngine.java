@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+/**
+ * an in-memory docker engine that speaks just enough of the engine api
+ * for {@link SocketBasedConnector}. it listens on a unix domain socket 
+ * if the jvm supports them and on a loopback tcp port otherwise. 
+ * containers run as soon as they have been created.
+ */
+final class FakeDockerEngine implements Closeable {
+
+    private static final Pattern CREATE_PORT = Pattern.compile("\"(\\d+)/tcp\":\\[\\{\"HostPort\":\"(\\d*)\"\\}\\]");
+
+    private final ServerSocketChannel server;
+    private final String endpoint;
+    private final Path directory;
+    private final Thread acceptor;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger nextHostPort = new AtomicInteger(32768);
+    private final Map<String, FakeContainer> containers = new ConcurrentHashMap<>();
+    private final Set<String> images = ConcurrentHashMap.newKeySet();
+    private volatile boolean closeAfterResponse;
+    private volatile boolean dropNextResponse;
+
+    FakeDockerEngine() throws IOException {
+        EngineEndpoint address;
+        if(EngineEndpoint.unixSocketsAvailable()) {
+            directory = Files.createTempDirectory("fake-docker");
+            address = EngineEndpoint.unix(directory.resolve("docker.sock").toString());
+            server = address.bind();
+            endpoint = address.toString();
+        } else {
+            directory = null;
+            server = EngineEndpoint.tcp(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)).bind();
+            InetSocketAddress bound = (InetSocketAddress) server.getLocalAddress();
+            endpoint = "tcp://" + bound.getHostString() + ":" + bound.getPort();
+        }
+        acceptor = new Thread(this::accept, "fake-docker-engine");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    int getConnections() {
+        return connections.get();
+    }
+
+    int getRequests() {
+        return requests.get();
+    }
+
+    void addImage(String reference) {
+        images.add(reference);
+    }
+
+    /** simulates an engine that closes idle connections without telling */
+    void closeAfterResponse(boolean value) {
+        closeAfterResponse = value;
+    }
+
+    /** simulates a container that exits on its own */
+    void exitContainer(ComponentInstanceId myId) {
+        containers.get(ProcessBasedConnector.buildContainerName(myId)).running = false;
+    }
+
+    /** simulates an engine that acts on the next request but closes the connection instead of responding */
+    void dropNextResponse() {
+        dropNextResponse = true;
+    }
+
+    private void accept() {
+        while(server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                connections.incrementAndGet();
+                Thread worker = new Thread(() -> serve(channel), "fake-docker-connection");
+                worker.setDaemon(true);
+                worker.start();
+            } catch(IOException ioe) {
+                return;
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try(SocketChannel c = channel) {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(c));
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(c));
+            while(true) {
+                String requestLine = readLine(in);
+                if(requestLine == null || requestLine.isEmpty()) {
+                    return;
+                }
+                int length = 0;
+                for(String line = readLine(in); line != null && !line.isEmpty(); line = readLine(in)) {
+                    if(line.toLowerCase().startsWith("content-length:")) {
+                        length = Integer.parseInt(line.substring(15).trim());
+                    }
+                }
+                byte[] body = new byte[length];
+                for(int read = 0; read < length; ) {
+                    int count = in.read(body, read, length - read);
+                    if(count < 0) {
+                        return;
+                    }
+                    read += count;
+                }
+                requests.incrementAndGet();
+                String[] parts = requestLine.split(" ");
+                if(dropNextResponse) {
+                    dropNextResponse = false;
+                    handle(parts[0], parts[1], new String(body, StandardCharsets.UTF_8), new ByteArrayOutputStream());
+                    return;
+                }
+                handle(parts[0], parts[1], new String(body, StandardCharsets.UTF_8), out);
+                out.flush();
+                if(closeAfterResponse) {
+                    return;
+                }
+            }
+        } catch(IOException ioe) {
+            // connection closed by the client //
+        }
+    }
+
+    private void handle(String method, String uri, String body, OutputStream out) throws IOException {
+        String path = uri.startsWith(SocketBasedConnector.API_VERSION) ? uri.substring(SocketBasedConnector.API_VERSION.length()) : uri;
+        String query = "";
+        int index = path.indexOf('?');
+        if(index >= 0) {
+            query = path.substring(index + 1);
+            path = path.substring(0, index);
+        }
+        if("GET".equals(method) && "/_ping".equals(path)) {
+            respond(out, 200, "OK");
+        } else if("POST".equals(method) && "/containers/create".equals(path)) {
+            createContainer(parameter(query, "name"), body, out);
+        } else if(path.startsWith("/containers/")) {
+            handleContainer(method, path.substring("/containers/".length()), out);
+        } else if("POST".equals(method) && "/images/create".equals(path)) {
+            pull(parameter(query, "fromImage") + ":" + parameter(query, "tag"), out);
+        } else if("GET".equals(method) && path.startsWith("/images/") && path.endsWith("/json")) {
+            String reference = path.substring("/images/".length(), path.length() - "/json".length());
+            if(images.contains(reference)) {
+                respond(out, 200, "{\"Id\":\"sha256:" + Integer.toHexString(reference.hashCode()) + "\",\"RepoTags\":[\"" + reference + "\"]}");
+            } else {
+                respond(out, 404, "{\"message\":\"No such image: " + reference + "\"}");
+            }
+        } else {
+            respond(out, 404, "{\"message\":\"page not found\"}");
+        }
+    }
+
+    private void createContainer(String name, String body, OutputStream out) throws IOException {
+        if(containers.containsKey(name)) {
+            respond(out, 409, "{\"message\":\"Conflict. The container name \\\"/" + name + "\\\" is already in use\"}");
+            return;
+        }
+        FakeContainer container = new FakeContainer(Integer.toHexString(name.hashCode()), "172.17.0." + (2 + containers.size()));
+        Matcher matcher = CREATE_PORT.matcher(body);
+        while(matcher.find()) {
+            String hostPort = matcher.group(2).isEmpty() ? Integer.toString(nextHostPort.getAndIncrement()) : matcher.group(2);
+            container.ports.put(matcher.group(1), hostPort);
+        }
+        containers.put(name, container);
+        respond(out, 201, "{\"Id\":\"" + container.id + "\",\"Warnings\":[]}");
+    }
+
+    private void handleContainer(String method, String rest, OutputStream out) throws IOException {
+        int index = rest.indexOf('/');
+        FakeContainer container = index < 0 ? null : containers.get(rest.substring(0, index));
+        if(container == null) {
+            respond(out, 404, "{\"message\":\"No such container\"}");
+            return;
+        }
+        String action = rest.substring(index + 1);
+        if("GET".equals(method) && "json".equals(action)) {
+            StringBuilder ports = new StringBuilder();
+            for(Map.Entry<String, String> entry : container.ports.entrySet()) {
+                if(ports.length() > 0) {
+                    ports.append(',');
+                }
+                ports.append("\"").append(entry.getKey()).append("/tcp\":[{\"HostIp\":\"0.0.0.0\",\"HostPort\":\"").append(entry.getValue()).append("\"}]");
+            }
+            respond(out, 200, "{\"Id\":\"" + container.id + "\",\"State\":{\"Running\":" + container.running 
+                    + "},\"NetworkSettings\":{\"IPAddress\":\"" + (container.running ? container.ip : "") + "\",\"Ports\":{" + ports + "}}}");
+        } else if("POST".equals(method) && "stop".equals(action)) {
+            if(!container.running) {
+                respond(out, 304, "");
+                return;
+            }
+            container.running = false;
+            respond(out, 204, "");
+        } else {
+            respond(out, 404, "{\"message\":\"page not found\"}");
+        }
+    }
+
+    /** progress is streamed in chunks, errors are reported within the stream */
+    private void pull(String reference, OutputStream out) throws IOException {
+        StringBuilder head = new StringBuilder("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nTransfer-Encoding: chunked\r\n\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+        chunk(out, "{\"status\":\"Pulling from " + reference + "\"}\r\n");
+        if(reference.contains("missing")) {
+            chunk(out, "{\"errorDetail\":{\"message\":\"not found\"},\"error\":\"manifest for " + reference + " not found\"}\r\n");
+        } else {
+            chunk(out, "{\"status\":\"Downloading\",\"progressDetail\":{\"current\":1,\"total\":2}}\r\n");
+            images.add(reference);
+            chunk(out, "{\"status\":\"Status: Downloaded newer image for " + reference + "\"}\r\n");
+        }
+        out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void chunk(OutputStream out, String data) throws IOException {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        out.write((Integer.toHexString(bytes.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(bytes);
+        out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void respond(OutputStream out, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(status).append(" X\r\nApi-Version: 1.24\r\n");
+        if(status != 204 && status != 304) {
+            head.append("Content-Type: application/json\r\nContent-Length: ").append(bytes.length).append("\r\n");
+        }
+        head.append("\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+        if(status != 204 && status != 304) {
+            out.write(bytes);
+        }
+    }
+
+    private static String parameter(String query, String name) throws IOException {
+        for(String pair : query.split("&")) {
+            if(pair.startsWith(name + "=")) {
+                return URLDecoder.decode(pair.substring(name.length() + 1), "UTF-8");
+            }
+        }
+        return "";
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for(int c = in.read(); c != '\n'; c = in.read()) {
+            if(c < 0) {
+                return line.size() == 0 ? null : line.toString("US-ASCII");
+            }
+            if(c != '\r') {
+                line.write(c);
+            }
+        }
+        return line.toString("US-ASCII");
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        if(directory != null) {
+            Files.deleteIfExists(directory.resolve("docker.sock"));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static final class FakeContainer {
+        final String id;
+        final String ip;
+        final Map<String, String> ports = new ConcurrentHashMap<>();
+        volatile boolean running = true;
+
+        FakeContainer(String idParam, String ipParam) {
+            id = idParam;
+            ip = ipParam;
+        }
+    }
+}
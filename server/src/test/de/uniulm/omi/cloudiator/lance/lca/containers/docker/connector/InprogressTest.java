@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.lifecycle.ExecutionResult;
+
+public class InprogressTest {
+
+    private Process process;
+    private BufferedReader stdErr;
+    private Inprogress shell;
+
+    @Before
+    public void setUp() throws Exception {
+        process = new ProcessBuilder("bash").start();
+        stdErr = new BufferedReader(new InputStreamReader(process.getErrorStream()));
+        shell = new Inprogress(process, new BufferedReader(new InputStreamReader(process.getInputStream())), stdErr);
+        shell.awaitStartup();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        shell.close();
+        process.destroy();
+    }
+
+    @Test
+    public void testOutputAndExitCode() {
+        ExecutionResult result = shell.executeCommand("echo hello");
+        assertTrue(result.isSuccess());
+        assertEquals("hello\n", result.getOutput());
+        assertEquals("abc", shell.executeCommand("printf abc").getOutput());
+        assertFalse(shell.executeCommand("false").isSuccess());
+        assertTrue(shell.executeCommand("true").isSuccess());
+    }
+
+    @Test
+    public void testErrorsAreAttributedToTheirCommand() {
+        ExecutionResult first = shell.executeCommand("echo out; echo first >&2; echo more >&2");
+        ExecutionResult second = shell.executeCommand("echo second >&2; exit_code_is() { return 3; }; exit_code_is");
+        // there is no accessor for stderr //
+        assertEquals("[0-> {out\n},{first\nmore\n}]", first.toString());
+        assertEquals("[3-> {},{second\n}]", second.toString());
+    }
+
+    @Test
+    public void testLargeOutput() {
+        ExecutionResult result = shell.executeCommand("seq 1 100000");
+        assertTrue(result.isSuccess());
+        String output = result.getOutput();
+        assertTrue(output.startsWith("1\n2\n"));
+        assertTrue(output.endsWith("\n99999\n100000\n"));
+        assertEquals(100000, output.split("\n").length);
+    }
+
+    @Test
+    public void testOutputThatLooksLikeASentinel() {
+        ExecutionResult result = shell.executeCommand("printf '\\n__lance_x_1:7\\n' # trailing comment");
+        assertTrue(result.isSuccess());
+        assertEquals("\n__lance_x_1:7\n", result.getOutput());
+        assertEquals("next\n", shell.executeCommand("echo next").getOutput());
+    }
+
+    @Test
+    public void testCommandThatDoesNotCompleteInTimeMakesShellUnusable() {
+        long start = System.currentTimeMillis();
+        ExecutionResult result = shell.executeCommand("sleep 10", 200);
+        assertFalse(result.isSuccess());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertFalse(shell.isReusable());
+        try {
+            shell.executeCommand("true");
+            fail("the output of the sleep would be taken for the output of this command");
+        } catch (IllegalStateException ise) {
+            // expected //
+        }
+    }
+
+    @Test
+    public void testCloseEndsTheErrorStreamOfAStuckShell() throws Exception {
+        assertFalse(shell.executeCommand("while :; do :; done", 200).isSuccess());
+        long start = System.currentTimeMillis();
+        shell.close();
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(process.waitFor(1, TimeUnit.SECONDS));
+        try {
+            stdErr.ready();
+            fail("the error stream of the shell is still open");
+        } catch (IOException ioe) {
+            // expected //
+        }
+    }
+
+    @Test
+    public void testBlockingCommandMakesShellUnusable() {
+        assertTrue(shell.executeBlockingCommand("sleep 10").isSuccess());
+        assertFalse(shell.isReusable());
+    }
+
+    @Test
+    public void testLateErrorsDoNotLeakIntoTheNextFrame() throws Exception {
+        PipedWriter writer = new PipedWriter();
+        ErrorStreamPump pump = ErrorStreamPump.start(new PipedReader(writer));
+        writer.write("early\n");
+        writer.flush();
+        assertEquals("early\n", pump.awaitFrame("s_1", 200));
+        writer.write("late\n\ns_1\nsecond\n\ns_2\n");
+        writer.flush();
+        assertEquals("second\n", pump.awaitFrame("s_2", 5000));
+        writer.close();
+    }
+}
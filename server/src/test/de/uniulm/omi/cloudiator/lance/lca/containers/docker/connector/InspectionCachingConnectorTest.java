@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+public class InspectionCachingConnectorTest {
+
+    private FakeDockerEngine engine;
+    private DockerConnector connector;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = new FakeDockerEngine();
+        connector = new InspectionCachingConnector(SocketBasedConnector.connect(engine.getEndpoint(), new ProcessBasedConnector("localhost")));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        engine.close();
+    }
+
+    @Test
+    public void testLookupsShareOneInspection() throws Exception {
+        ComponentInstanceId id = new ComponentInstanceId();
+        Map<Integer, Integer> ports = new HashMap<>();
+        for(int i = 0; i < 10; i++) {
+            ports.put(Integer.valueOf(8000 + i), Integer.valueOf(-1));
+        }
+        connector.createContainer("ubuntu:14.04", id, ports);
+        int before = engine.getRequests();
+
+        assertNotNull(connector.getContainerIp(id));
+        for(Integer port : ports.keySet()) {
+            assertTrue(connector.getPortMapping(id, port) > 0);
+        }
+        assertNotNull(connector.getContainerIp(id));
+        assertEquals(before + 1, engine.getRequests());
+    }
+
+    @Test
+    public void testStopInvalidatesInspection() throws Exception {
+        ComponentInstanceId id = new ComponentInstanceId();
+        connector.createContainer("ubuntu:14.04", id, new HashMap<Integer, Integer>());
+        assertNotNull(connector.getContainerIp(id));
+        connector.stopContainer(id);
+        assertNull(connector.getContainerIp(id));
+    }
+
+    @Test
+    public void testExitedContainerIsSeenAfterInvalidation() throws Exception {
+        ComponentInstanceId id = new ComponentInstanceId();
+        connector.createContainer("ubuntu:14.04", id, new HashMap<Integer, Integer>());
+        assertNotNull(connector.getContainerIp(id));
+        engine.exitContainer(id);
+        connector.invalidateInspection(id);
+        assertNull(connector.getContainerIp(id));
+        // inspections of stopped containers are not kept //
+        int before = engine.getRequests();
+        assertNull(connector.getContainerIp(id));
+        assertEquals(before + 1, engine.getRequests());
+    }
+
+    @Test
+    public void testInspectionExpires() throws Exception {
+        connector = new InspectionCachingConnector(SocketBasedConnector.connect(engine.getEndpoint(), new ProcessBasedConnector("localhost")), 50);
+        ComponentInstanceId id = new ComponentInstanceId();
+        connector.createContainer("ubuntu:14.04", id, new HashMap<Integer, Integer>());
+        assertNotNull(connector.getContainerIp(id));
+        engine.exitContainer(id);
+        Thread.sleep(100);
+        assertNull(connector.getContainerIp(id));
+    }
+
+    @Test
+    public void testFailedInspectionIsNotCached() throws Exception {
+        ComponentInstanceId id = new ComponentInstanceId();
+        assertNull(connector.getContainerIp(id));
+        connector.createContainer("ubuntu:14.04", id, new HashMap<Integer, Integer>());
+        assertNotNull(connector.getContainerIp(id));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2014-2015 University of Ulm
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.uniulm.omi.cloudiator.lance.lca.containers.docker.connector;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+
+public class SocketBasedConnectorTest {
+
+    private FakeDockerEngine engine;
+    private SocketBasedConnector connector;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = new FakeDockerEngine();
+        connector = SocketBasedConnector.connect(engine.getEndpoint(), new ProcessBasedConnector("localhost"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        engine.close();
+    }
+
+    @Test
+    public void testContainerLifecycle() throws Exception {
+        ComponentInstanceId id = new ComponentInstanceId();
+        Map<Integer, Integer> ports = new HashMap<>();
+        ports.put(Integer.valueOf(80), Integer.valueOf(-1));
+        ports.put(Integer.valueOf(443), Integer.valueOf(8443));
+        assertNotNull(connector.createContainer("ubuntu:14.04", id, ports));
+        assertEquals("172.17.0.2", connector.getContainerIp(id));
+        assertEquals(32768, connector.getPortMapping(id, Integer.valueOf(80)));
+        assertEquals(8443, connector.getPortMapping(id, Integer.valueOf(443)));
+        assertEquals(-1, connector.getPortMapping(id, Integer.valueOf(22)));
+
+        connector.stopContainer(id);
+        assertNull(connector.getContainerIp(id));
+        // stopping twice is fine //
+        connector.stopContainer(id);
+    }
+
+    @Test(expected = DockerException.class)
+    public void testCreatingContainerTwiceFails() throws Exception {
+        ComponentInstanceId id = new ComponentInstanceId();
+        connector.createContainer("ubuntu:14.04", id, new HashMap<Integer, Integer>());
+        connector.createContainer("ubuntu:14.04", id, new HashMap<Integer, Integer>());
+    }
+
+    @Test
+    public void testUnknownContainerHasNoAddress() throws Exception {
+        assertNull(connector.getContainerIp(new ComponentInstanceId()));
+        assertEquals(-1, connector.getPortMapping(new ComponentInstanceId(), Integer.valueOf(80)));
+    }
+
+    @Test
+    public void testPullImage() throws Exception {
+        assertNull(connector.findImage("registry:5000/ubuntu:14.04"));
+        connector.pullImage("registry:5000/ubuntu:14.04");
+        assertNotNull(connector.findImage("registry:5000/ubuntu:14.04"));
+        try {
+            connector.pullImage("missing:1.0");
+            fail("errors within the progress stream have to be reported");
+        } catch(DockerException de) {
+            assertTrue(de.getMessage().contains("manifest for missing:1.0 not found"));
+        }
+    }
+
+    @Test
+    public void testConnectionIsKeptAlive() throws Exception {
+        ComponentInstanceId id = new ComponentInstanceId();
+        connector.createContainer("ubuntu:14.04", id, new HashMap<Integer, Integer>());
+        for(int i = 0; i < 50; i++) {
+            connector.getContainerIp(id);
+        }
+        connector.pullImage("ubuntu:14.04");
+        connector.stopContainer(id);
+        assertEquals(1, engine.getConnections());
+        assertEquals(54, engine.getRequests());
+    }
+
+    @Test
+    public void testClosedConnectionIsReplaced() throws Exception {
+        engine.closeAfterResponse(true);
+        engine.addImage("ubuntu:14.04");
+        for(int i = 0; i < 5; i++) {
+            assertNotNull(connector.findImage("ubuntu:14.04"));
+        }
+        assertEquals(6, engine.getRequests());
+    }
+
+    @Test
+    public void testUnansweredPostIsNotRepeated() throws Exception {
+        engine.addImage("ubuntu:14.04");
+        assertNotNull(connector.findImage("ubuntu:14.04"));
+        engine.dropNextResponse();
+        try {
+            connector.createContainer("ubuntu:14.04", new ComponentInstanceId(), new HashMap<Integer, Integer>());
+            fail("a request the engine may have acted on must not be sent again");
+        } catch(DockerException de) {
+            // expected //
+        }
+        // the ping of connect, the look-up and a single create //
+        assertEquals(3, engine.getRequests());
+    }
+
+    @Test
+    public void testUnansweredGetIsRepeated() throws Exception {
+        engine.addImage("ubuntu:14.04");
+        assertNotNull(connector.findImage("ubuntu:14.04"));
+        engine.dropNextResponse();
+        assertNotNull(connector.findImage("ubuntu:14.04"));
+        assertEquals(4, engine.getRequests());
+    }
+
+    @Test
+    public void testSplitReference() {
+        assertArrayEquals(new String[] {"registry:5000/ubuntu", "14.04"}, SocketBasedConnector.splitReference("registry:5000/ubuntu:14.04"));
+        assertArrayEquals(new String[] {"registry:5000/ubuntu", "latest"}, SocketBasedConnector.splitReference("registry:5000/ubuntu"));
+        assertArrayEquals(new String[] {"ubuntu@sha256:abc", ""}, SocketBasedConnector.splitReference("ubuntu@sha256:abc"));
+    }
+}
@@ -66,7 +66,7 @@ public class DummyInterceptor implements LifecycleActionInterceptor {
 	}
 
 	@Override
-	public void postprocessPortUpdate(PortDiff<DownstreamAddress> diff) throws ContainerException {
+	public void postprocessPortUpdate(List<PortDiff<DownstreamAddress>> diffs) throws ContainerException {
 		if(!countingHandlerCalls.containsKey(portUpdateType)) {
 			throw new IllegalStateException("prepare port update handler not called");
 		}
@@ -76,12 +76,12 @@ public class DummyInterceptor implements LifecycleActionInterceptor {
 		int i = countingHandlerCalls.get(portUpdateType);
 		countingHandlerCalls.put(portUpdateType, i+1);
 		ongoingPreparation = null;
-		invocations.add("postprocessPortUpdate_"+diff);
+		invocations.add("postprocessPortUpdate_"+diffs);
 		checkForFailure(portUpdateType);
 	}
 
 	@Override
-	public void preprocessPortUpdate(PortDiff<DownstreamAddress> diff) throws ContainerException {
+	public void preprocessPortUpdate(List<PortDiff<DownstreamAddress>> diffs) throws ContainerException {
 		if(ongoingPreparation != null) {
 			throw new IllegalStateException("preparation is ongoing: " + ongoingPreparation); 
 		}
@@ -90,7 +90,7 @@ public class DummyInterceptor implements LifecycleActionInterceptor {
 		}
 		ongoingPreparation = portUpdateType;
 		countingHandlerCalls.put(portUpdateType, 1);
-		invocations.add("preprocessPortUpdate_"+diff);
+		invocations.add("preprocessPortUpdate_"+diffs);
 		called.add(portUpdateType);
 		checkForFailure(portUpdateType);
 	}
@@ -8,7 +8,10 @@ import de.uniulm.omi.cloudiator.lance.application.ApplicationInstanceId;
 import de.uniulm.omi.cloudiator.lance.application.component.ComponentId;
 import de.uniulm.omi.cloudiator.lance.lca.LcaRegistry;
 import de.uniulm.omi.cloudiator.lance.lca.container.ComponentInstanceId;
+import de.uniulm.omi.cloudiator.lance.lca.registry.AbstractRegistryWatch;
+import de.uniulm.omi.cloudiator.lance.lca.registry.ComponentChangeListener;
 import de.uniulm.omi.cloudiator.lance.lca.registry.RegistrationException;
+import de.uniulm.omi.cloudiator.lance.lca.registry.RegistryWatch;
 import de.uniulm.omi.cloudiator.lance.lca.registry.rmi.RemoteRegistryImpl;
 
 public class DummyRegistry implements LcaRegistry {
@@ -44,6 +47,16 @@ public class DummyRegistry implements LcaRegistry {
 		}	
 	}
 
+	@Override
+	public void addComponentInstance(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId,
+			Map<String, ?> properties) throws RegistrationException {
+		try {
+			reg.addComponentInstance(instId, cid, cinstId, properties);
+		} catch(RemoteException re) {
+			throw new IllegalStateException();
+		}	
+	}
+
 	@Override
 	public void addComponentProperty(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId,
 			String property, Object value) throws RegistrationException {
@@ -54,6 +67,16 @@ public class DummyRegistry implements LcaRegistry {
 		}	
 	}
 
+	@Override
+	public void addComponentProperties(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId,
+			Map<String, ?> properties) throws RegistrationException {
+		try {
+			reg.addComponentProperties(instId, cid, cinstId, properties);
+		} catch(RemoteException re) {
+			throw new IllegalStateException();
+		}	
+	}
+
 	@Override
 	public Map<ComponentInstanceId, Map<String, String>> dumpComponent(ApplicationInstanceId instId, ComponentId compId) throws RegistrationException {
 		try {
@@ -92,4 +115,42 @@ public class DummyRegistry implements LcaRegistry {
 		}
 	}
 
+	@Override
+	public boolean renewComponentInstanceLease(ApplicationInstanceId instId, ComponentId cid, ComponentInstanceId cinstId,
+			long ttlMillis) throws RegistrationException {
+		try {
+			return reg.renewComponentInstanceLease(instId, cid, cinstId, ttlMillis);
+		} catch(RemoteException re) {
+			throw new IllegalStateException();
+		}
+	}
+
+	@Override
+	public long getComponentVersion(ApplicationInstanceId appInstId, ComponentId compId) throws RegistrationException {
+		try {
+			return reg.getComponentVersion(appInstId, compId);
+		} catch(RemoteException re) {
+			throw new IllegalStateException();
+		}
+	}
+
+	@Override
+	public RegistryWatch watchComponent(final ApplicationInstanceId appInstId, final ComponentId compId,
+			ComponentChangeListener listener) throws RegistrationException {
+		return new AbstractRegistryWatch(appInstId, compId, listener) {
+			
+			private long version = -1;
+			
+			@Override
+			protected boolean awaitChange() {
+				try {
+					long old = version;
+					version = reg.awaitComponentChange(appInstId, compId, old, 1000L);
+					return old != -1 && old != version;
+				} catch(RemoteException re) {
+					throw new IllegalStateException();
+				}
+			}
+		}.start();
+	}
 }